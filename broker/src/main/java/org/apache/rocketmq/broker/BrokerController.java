@@ -22,6 +22,8 @@ import org.apache.rocketmq.broker.client.rebalance.RebalanceLockManager;
 import org.apache.rocketmq.broker.filtersrv.FilterServerManager;
 import org.apache.rocketmq.broker.latency.BrokerFastFailure;
 import org.apache.rocketmq.broker.latency.BrokerFixedThreadPoolExecutor;
+import org.apache.rocketmq.broker.latency.BrokerStripedThreadPoolExecutor;
+import org.apache.rocketmq.broker.latency.QueueDelayController;
 import org.apache.rocketmq.broker.longpolling.NotifyMessageArrivingListener;
 import org.apache.rocketmq.broker.longpolling.PullRequestHoldService;
 import org.apache.rocketmq.broker.mqtrace.ConsumeMessageHook;
@@ -57,9 +59,11 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.*;
 
 public class BrokerController {
@@ -94,9 +98,18 @@ public class BrokerController {
         "BrokerControllerScheduledThread"));
     private final SlaveSynchronize slaveSynchronize;
     private final BlockingQueue<Runnable> sendThreadPoolQueue;
+    /**
+     * 发送消息线程池的队列, 分通道时每个通道一个队列
+     */
+    private final List<BlockingQueue<Runnable>> sendThreadPoolQueueList = new ArrayList<BlockingQueue<Runnable>>();
     private final BlockingQueue<Runnable> pullThreadPoolQueue;
     private final BlockingQueue<Runnable> clientManagerThreadPoolQueue;
     private final BlockingQueue<Runnable> consumerManagerThreadPoolQueue;
+    private final BlockingQueue<Runnable> adminBrokerThreadPoolQueue;
+    /**
+     * 受排队时延准入控制的线程池
+     */
+    private final List<BrokerFixedThreadPoolExecutor> fixedThreadPoolExecutorList = new ArrayList<BrokerFixedThreadPoolExecutor>();
     private final FilterServerManager filterServerManager;
     private final BrokerStatsManager brokerStatsManager;
     private final List<SendMessageHook> sendMessageHookList = new ArrayList<SendMessageHook>();
@@ -146,6 +159,7 @@ public class BrokerController {
         this.pullThreadPoolQueue = new LinkedBlockingQueue<Runnable>(this.brokerConfig.getPullThreadPoolQueueCapacity());
         this.clientManagerThreadPoolQueue = new LinkedBlockingQueue<Runnable>(this.brokerConfig.getClientManagerThreadPoolQueueCapacity());
         this.consumerManagerThreadPoolQueue = new LinkedBlockingQueue<Runnable>(this.brokerConfig.getConsumerManagerThreadPoolQueueCapacity());
+        this.adminBrokerThreadPoolQueue = new LinkedBlockingQueue<Runnable>();
 
         this.brokerStatsManager = new BrokerStatsManager(this.brokerConfig.getBrokerClusterName());
         this.setStoreHost(new InetSocketAddress(this.getBrokerConfig().getBrokerIP1(), this.getNettyServerConfig().getListenPort()));
@@ -202,37 +216,77 @@ public class BrokerController {
             NettyServerConfig fastConfig = (NettyServerConfig)this.nettyServerConfig.clone();
             fastConfig.setListenPort(nettyServerConfig.getListenPort() - 2);
             this.fastRemotingServer = new NettyRemotingServer(fastConfig, this.clientHousekeepingService);
-            this.sendMessageExecutor = new BrokerFixedThreadPoolExecutor(
-                this.brokerConfig.getSendMessageThreadPoolNums(),
-                this.brokerConfig.getSendMessageThreadPoolNums(),
-                1000 * 60,
-                TimeUnit.MILLISECONDS,
-                this.sendThreadPoolQueue,
-                new ThreadFactoryImpl("SendMessageThread_"));
-
-            this.pullMessageExecutor = new BrokerFixedThreadPoolExecutor(
-                this.brokerConfig.getPullMessageThreadPoolNums(),
+            QueueDelayController sendQueueDelayController = new QueueDelayController("send", this.brokerConfig, new QueueDelayController.WaitTimeMills() {
+                @Override
+                public long get() {
+                    return brokerConfig.getWaitTimeMillsInSendQueue();
+                }
+            });
+            if (this.brokerConfig.isSendMessageThreadPoolStriped()) {
+                // 按 topic + queueId 分通道, 并行处理不同队列的发送请求, 同一队列内保持顺序
+                BrokerStripedThreadPoolExecutor stripedExecutor = new BrokerStripedThreadPoolExecutor(
+                    this.brokerConfig.getSendMessageThreadPoolNums(),
+                    Math.max(1, this.brokerConfig.getSendThreadPoolQueueCapacity() / this.brokerConfig.getSendMessageThreadPoolNums()),
+                    "SendMessageThread_",
+                    sendQueueDelayController);
+                for (BrokerFixedThreadPoolExecutor lane : stripedExecutor.getLanes()) {
+                    this.fixedThreadPoolExecutorList.add(lane);
+                    this.sendThreadPoolQueueList.add(lane.getQueue());
+                }
+                this.sendMessageExecutor = stripedExecutor;
+            } else {
+                this.sendMessageExecutor = this.newBrokerFixedThreadPoolExecutor(
+                    this.brokerConfig.getSendMessageThreadPoolNums(),
+                    this.sendThreadPoolQueue,
+                    "SendMessageThread_",
+                    sendQueueDelayController);
+                this.sendThreadPoolQueueList.add(this.sendThreadPoolQueue);
+            }
+
+            // 除发送队列外, 只在开启自适应准入控制时才按等待时间丢弃请求
+            this.pullMessageExecutor = this.newBrokerFixedThreadPoolExecutor(
                 this.brokerConfig.getPullMessageThreadPoolNums(),
-                1000 * 60,
-                TimeUnit.MILLISECONDS,
                 this.pullThreadPoolQueue,
-                new ThreadFactoryImpl("PullMessageThread_"));
+                "PullMessageThread_",
+                new QueueDelayController("pull", this.brokerConfig, new QueueDelayController.WaitTimeMills() {
+                    @Override
+                    public long get() {
+                        return brokerConfig.getWaitTimeMillsInPullQueue();
+                    }
+                }, true));
 
-            this.adminBrokerExecutor =
-                Executors.newFixedThreadPool(this.brokerConfig.getAdminBrokerThreadPoolNums(), new ThreadFactoryImpl(
-                    "AdminBrokerThread_"));
+            this.adminBrokerExecutor = this.newBrokerFixedThreadPoolExecutor(
+                this.brokerConfig.getAdminBrokerThreadPoolNums(),
+                this.adminBrokerThreadPoolQueue,
+                "AdminBrokerThread_",
+                new QueueDelayController("admin", this.brokerConfig, new QueueDelayController.WaitTimeMills() {
+                    @Override
+                    public long get() {
+                        return brokerConfig.getWaitTimeMillsInAdminQueue();
+                    }
+                }, true));
 
-            this.clientManageExecutor = new ThreadPoolExecutor(
+            this.clientManageExecutor = this.newBrokerFixedThreadPoolExecutor(
                 this.brokerConfig.getClientManageThreadPoolNums(),
-                this.brokerConfig.getClientManageThreadPoolNums(),
-                1000 * 60,
-                TimeUnit.MILLISECONDS,
                 this.clientManagerThreadPoolQueue,
-                new ThreadFactoryImpl("ClientManageThread_"));
+                "ClientManageThread_",
+                new QueueDelayController("heartbeat", this.brokerConfig, new QueueDelayController.WaitTimeMills() {
+                    @Override
+                    public long get() {
+                        return brokerConfig.getWaitTimeMillsInHeartbeatQueue();
+                    }
+                }, true));
 
-            this.consumerManageExecutor =
-                Executors.newFixedThreadPool(this.brokerConfig.getConsumerManageThreadPoolNums(), new ThreadFactoryImpl(
-                    "ConsumerManageThread_"));
+            this.consumerManageExecutor = this.newBrokerFixedThreadPoolExecutor(
+                this.brokerConfig.getConsumerManageThreadPoolNums(),
+                this.consumerManagerThreadPoolQueue,
+                "ConsumerManageThread_",
+                new QueueDelayController("consumerManage", this.brokerConfig, new QueueDelayController.WaitTimeMills() {
+                    @Override
+                    public long get() {
+                        return brokerConfig.getWaitTimeMillsInConsumerManageQueue();
+                    }
+                }, true));
 
             //注册请求处理器
             this.registerProcessor();
@@ -366,9 +420,13 @@ public class BrokerController {
         this.remotingServer.registerProcessor(RequestCode.SEND_MESSAGE, sendProcessor, this.sendMessageExecutor);
         this.remotingServer.registerProcessor(RequestCode.SEND_MESSAGE_V2, sendProcessor, this.sendMessageExecutor);
         this.remotingServer.registerProcessor(RequestCode.CONSUMER_SEND_MSG_BACK, sendProcessor, this.sendMessageExecutor);
+        this.remotingServer.registerProcessor(RequestCode.CONSUMER_SEND_MSG_BACK_BATCH, sendProcessor, this.sendMessageExecutor);
+        this.remotingServer.registerProcessor(RequestCode.SEND_BATCH_MESSAGE, sendProcessor, this.sendMessageExecutor);
         this.fastRemotingServer.registerProcessor(RequestCode.SEND_MESSAGE, sendProcessor, this.sendMessageExecutor);
         this.fastRemotingServer.registerProcessor(RequestCode.SEND_MESSAGE_V2, sendProcessor, this.sendMessageExecutor);
         this.fastRemotingServer.registerProcessor(RequestCode.CONSUMER_SEND_MSG_BACK, sendProcessor, this.sendMessageExecutor);
+        this.fastRemotingServer.registerProcessor(RequestCode.CONSUMER_SEND_MSG_BACK_BATCH, sendProcessor, this.sendMessageExecutor);
+        this.fastRemotingServer.registerProcessor(RequestCode.SEND_BATCH_MESSAGE, sendProcessor, this.sendMessageExecutor);
         /**
          * PullMessageProcessor
          */
@@ -390,9 +448,11 @@ public class BrokerController {
          */
         ClientManageProcessor clientProcessor = new ClientManageProcessor(this);
         this.remotingServer.registerProcessor(RequestCode.HEART_BEAT, clientProcessor, this.clientManageExecutor);
+        this.remotingServer.registerProcessor(RequestCode.HEART_BEAT_LITE, clientProcessor, this.clientManageExecutor);
         this.remotingServer.registerProcessor(RequestCode.UNREGISTER_CLIENT, clientProcessor, this.clientManageExecutor);
 
         this.fastRemotingServer.registerProcessor(RequestCode.HEART_BEAT, clientProcessor, this.clientManageExecutor);
+        this.fastRemotingServer.registerProcessor(RequestCode.HEART_BEAT_LITE, clientProcessor, this.clientManageExecutor);
         this.fastRemotingServer.registerProcessor(RequestCode.UNREGISTER_CLIENT, clientProcessor, this.clientManageExecutor);
 
         /**
@@ -401,10 +461,12 @@ public class BrokerController {
         ConsumerManageProcessor consumerManageProcessor = new ConsumerManageProcessor(this);
         this.remotingServer.registerProcessor(RequestCode.GET_CONSUMER_LIST_BY_GROUP, consumerManageProcessor, this.consumerManageExecutor);
         this.remotingServer.registerProcessor(RequestCode.UPDATE_CONSUMER_OFFSET, consumerManageProcessor, this.consumerManageExecutor);
+        this.remotingServer.registerProcessor(RequestCode.UPDATE_CONSUMER_OFFSET_BATCH, consumerManageProcessor, this.consumerManageExecutor);
         this.remotingServer.registerProcessor(RequestCode.QUERY_CONSUMER_OFFSET, consumerManageProcessor, this.consumerManageExecutor);
 
         this.fastRemotingServer.registerProcessor(RequestCode.GET_CONSUMER_LIST_BY_GROUP, consumerManageProcessor, this.consumerManageExecutor);
         this.fastRemotingServer.registerProcessor(RequestCode.UPDATE_CONSUMER_OFFSET, consumerManageProcessor, this.consumerManageExecutor);
+        this.fastRemotingServer.registerProcessor(RequestCode.UPDATE_CONSUMER_OFFSET_BATCH, consumerManageProcessor, this.consumerManageExecutor);
         this.fastRemotingServer.registerProcessor(RequestCode.QUERY_CONSUMER_OFFSET, consumerManageProcessor, this.consumerManageExecutor);
 
         /**
@@ -446,6 +508,20 @@ public class BrokerController {
         }
     }
 
+    private BrokerFixedThreadPoolExecutor newBrokerFixedThreadPoolExecutor(final int threadNums, final BlockingQueue<Runnable> queue,
+        final String threadNamePrefix, final QueueDelayController queueDelayController) {
+        BrokerFixedThreadPoolExecutor executor = new BrokerFixedThreadPoolExecutor(
+            threadNums,
+            threadNums,
+            1000 * 60,
+            TimeUnit.MILLISECONDS,
+            queue,
+            new ThreadFactoryImpl(threadNamePrefix));
+        executor.setQueueDelayController(queueDelayController);
+        this.fixedThreadPoolExecutorList.add(executor);
+        return executor;
+    }
+
     public long headSlowTimeMills(BlockingQueue<Runnable> q) {
         long slowTimeMills = 0;
         final Runnable peek = q.peek();
@@ -460,7 +536,19 @@ public class BrokerController {
     }
 
     public long headSlowTimeMills4SendThreadPoolQueue() {
-        return this.headSlowTimeMills(this.sendThreadPoolQueue);
+        long slowTimeMills = 0;
+        for (BlockingQueue<Runnable> queue : this.sendThreadPoolQueueList) {
+            slowTimeMills = Math.max(slowTimeMills, this.headSlowTimeMills(queue));
+        }
+        return slowTimeMills;
+    }
+
+    public int sendThreadPoolQueueSize() {
+        int size = 0;
+        for (BlockingQueue<Runnable> queue : this.sendThreadPoolQueueList) {
+            size += queue.size();
+        }
+        return size;
     }
 
     public long headSlowTimeMills4PullThreadPoolQueue() {
@@ -468,8 +556,22 @@ public class BrokerController {
     }
 
     public void printWaterMark() {
-        LOG_WATER_MARK.info("[WATERMARK] Send Queue Size: {} SlowTimeMills: {}", this.sendThreadPoolQueue.size(), headSlowTimeMills4SendThreadPoolQueue());
+        LOG_WATER_MARK.info("[WATERMARK] Send Queue Size: {} SlowTimeMills: {}", this.sendThreadPoolQueueSize(), headSlowTimeMills4SendThreadPoolQueue());
+        if (this.sendThreadPoolQueueList.size() > 1) {
+            for (int i = 0; i < this.sendThreadPoolQueueList.size(); i++) {
+                LOG_WATER_MARK.info("[WATERMARK] Send Lane {} Queue Size: {}", i, this.sendThreadPoolQueueList.get(i).size());
+            }
+        }
         LOG_WATER_MARK.info("[WATERMARK] Pull Queue Size: {} SlowTimeMills: {}", this.pullThreadPoolQueue.size(), headSlowTimeMills4PullThreadPoolQueue());
+        Set<QueueDelayController> printed = new HashSet<QueueDelayController>();
+        for (BrokerFixedThreadPoolExecutor executor : this.fixedThreadPoolExecutorList) {
+            QueueDelayController controller = executor.getQueueDelayController();
+            if (!printed.add(controller)) {
+                continue;
+            }
+            LOG_WATER_MARK.info("[WATERMARK] {} Queue Sojourn: {} Overloaded: {} ShedTimes: {}", controller.getQueueName(),
+                controller.getSojournDistributeStringInfo(), controller.isOverloaded(), controller.getShedTimes());
+        }
     }
 
     public MessageStore getMessageStore() {
@@ -568,6 +670,14 @@ public class BrokerController {
             this.adminBrokerExecutor.shutdown();
         }
 
+        if (this.clientManageExecutor != null) {
+            this.clientManageExecutor.shutdown();
+        }
+
+        if (this.consumerManageExecutor != null) {
+            this.consumerManageExecutor.shutdown();
+        }
+
         if (this.brokerOuterAPI != null) {
             this.brokerOuterAPI.shutdown();
         }
@@ -677,7 +787,8 @@ public class BrokerController {
             topicConfigWrapper,
             this.filterServerManager.buildNewFilterServerList(),
             oneway,
-            this.brokerConfig.getRegisterBrokerTimeoutMills());
+            this.brokerConfig.getRegisterBrokerTimeoutMills(),
+            this.brokerConfig.isRegisterBrokerCompactEnable());
 
         if (registerBrokerResult != null) {
             //如果Slave在配置时没有指定Master的IP
@@ -726,6 +837,14 @@ public class BrokerController {
         return sendThreadPoolQueue;
     }
 
+    public List<BlockingQueue<Runnable>> getSendThreadPoolQueueList() {
+        return sendThreadPoolQueueList;
+    }
+
+    public List<BrokerFixedThreadPoolExecutor> getFixedThreadPoolExecutorList() {
+        return fixedThreadPoolExecutorList;
+    }
+
     public FilterServerManager getFilterServerManager() {
         return filterServerManager;
     }
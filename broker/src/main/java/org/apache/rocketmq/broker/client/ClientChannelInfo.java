@@ -25,6 +25,10 @@ public class ClientChannelInfo {
     private final LanguageCode language;
     private final int version;
     private volatile long lastUpdateTimestamp = System.currentTimeMillis();
+    /**
+     * 最近一次完整心跳的数据指纹, 客户端不支持精简心跳时为null
+     */
+    private volatile Long heartbeatFingerprint;
 
     public ClientChannelInfo(Channel channel) {
         this(channel, null, null, 0);
@@ -61,6 +65,14 @@ public class ClientChannelInfo {
         this.lastUpdateTimestamp = lastUpdateTimestamp;
     }
 
+    public Long getHeartbeatFingerprint() {
+        return heartbeatFingerprint;
+    }
+
+    public void setHeartbeatFingerprint(Long heartbeatFingerprint) {
+        this.heartbeatFingerprint = heartbeatFingerprint;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
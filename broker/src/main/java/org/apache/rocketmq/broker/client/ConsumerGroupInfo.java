@@ -161,6 +161,7 @@ public class ConsumerGroupInfo {
 
         this.lastUpdateTimestamp = System.currentTimeMillis();
         infoOld.setLastUpdateTimestamp(this.lastUpdateTimestamp);
+        infoOld.setHeartbeatFingerprint(infoNew.getHeartbeatFingerprint());
 
         return updated;
     }
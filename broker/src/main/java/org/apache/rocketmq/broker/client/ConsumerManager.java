@@ -140,6 +140,31 @@ public class ConsumerManager {
         return r1 || r2;
     }
 
+    /**
+     * 精简心跳刷新Consumer存活时间, 不比较订阅信息
+     *
+     * @param group       分组
+     * @param channel     连接
+     * @param fingerprint 心跳数据指纹
+     * @return 该连接已注册且指纹一致时返回true
+     */
+    public boolean touchConsumer(final String group, final Channel channel, final long fingerprint) {
+        ConsumerGroupInfo consumerGroupInfo = this.consumerTable.get(group);
+        if (null == consumerGroupInfo) {
+            return false;
+        }
+
+        ClientChannelInfo clientChannelInfo = consumerGroupInfo.getChannelInfoTable().get(channel);
+        if (null == clientChannelInfo || !Long.valueOf(fingerprint).equals(clientChannelInfo.getHeartbeatFingerprint())) {
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        clientChannelInfo.setLastUpdateTimestamp(now);
+        consumerGroupInfo.setLastUpdateTimestamp(now);
+        return true;
+    }
+
     public void unregisterConsumer(final String group, final ClientChannelInfo clientChannelInfo, boolean isNotifyConsumerIdsChangedEnable) {
         ConsumerGroupInfo consumerGroupInfo = this.consumerTable.get(group);
         if (null != consumerGroupInfo) {
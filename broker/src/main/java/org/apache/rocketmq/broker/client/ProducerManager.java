@@ -146,6 +146,7 @@ public class ProducerManager {
 
                 if (clientChannelInfoFound != null) {
                     clientChannelInfoFound.setLastUpdateTimestamp(System.currentTimeMillis());
+                    clientChannelInfoFound.setHeartbeatFingerprint(clientChannelInfo.getHeartbeatFingerprint());
                 }
             } else {
                 log.warn("ProducerManager registerProducer lock timeout");
@@ -155,6 +156,40 @@ public class ProducerManager {
         }
     }
 
+    /**
+     * 精简心跳刷新Producer存活时间
+     *
+     * @param group       分组
+     * @param channel     连接
+     * @param fingerprint 心跳数据指纹
+     * @return 该连接已注册且指纹一致时返回true
+     */
+    public boolean touchProducer(final String group, final Channel channel, final long fingerprint) {
+        try {
+            ClientChannelInfo clientChannelInfo = null;
+            if (this.groupChannelLock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                try {
+                    HashMap<Channel, ClientChannelInfo> channelTable = this.groupChannelTable.get(group);
+                    if (channelTable != null) {
+                        clientChannelInfo = channelTable.get(channel);
+                    }
+                } finally {
+                    this.groupChannelLock.unlock();
+                }
+            } else {
+                log.warn("ProducerManager touchProducer lock timeout");
+            }
+
+            if (clientChannelInfo != null && Long.valueOf(fingerprint).equals(clientChannelInfo.getHeartbeatFingerprint())) {
+                clientChannelInfo.setLastUpdateTimestamp(System.currentTimeMillis());
+                return true;
+            }
+        } catch (InterruptedException e) {
+            log.error("", e);
+        }
+        return false;
+    }
+
     public void unregisterProducer(final String group, final ClientChannelInfo clientChannelInfo) {
         try {
             if (this.groupChannelLock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
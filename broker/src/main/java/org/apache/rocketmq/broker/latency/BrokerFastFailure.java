@@ -16,6 +16,7 @@
  */
 package org.apache.rocketmq.broker.latency;
 
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -58,27 +59,46 @@ public class BrokerFastFailure {
     }
 
     private void cleanExpiredRequest() {
-        while (this.brokerController.getMessageStore().isOSPageCacheBusy()) {
-            try {
-                if (!this.brokerController.getSendThreadPoolQueue().isEmpty()) {
-                    final Runnable runnable = this.brokerController.getSendThreadPoolQueue().poll(0, TimeUnit.SECONDS);
-                    if (null == runnable) {
+        for (BlockingQueue<Runnable> sendThreadPoolQueue : this.brokerController.getSendThreadPoolQueueList()) {
+            while (this.brokerController.getMessageStore().isOSPageCacheBusy()) {
+                try {
+                    if (!sendThreadPoolQueue.isEmpty()) {
+                        final Runnable runnable = sendThreadPoolQueue.poll(0, TimeUnit.SECONDS);
+                        if (null == runnable) {
+                            break;
+                        }
+
+                        final RequestTask rt = castRunnable(runnable);
+                        rt.returnResponse(RemotingSysResponseCode.SYSTEM_BUSY, String.format("[PCBUSY_CLEAN_QUEUE]broker busy, start flow control for a while, period in queue: %sms, size of queue: %d", System.currentTimeMillis() - rt.getCreateTimestamp(), sendThreadPoolQueue.size()));
+                    } else {
                         break;
                     }
-
-                    final RequestTask rt = castRunnable(runnable);
-                    rt.returnResponse(RemotingSysResponseCode.SYSTEM_BUSY, String.format("[PCBUSY_CLEAN_QUEUE]broker busy, start flow control for a while, period in queue: %sms, size of queue: %d", System.currentTimeMillis() - rt.getCreateTimestamp(), this.brokerController.getSendThreadPoolQueue().size()));
-                } else {
-                    break;
+                } catch (Throwable ignored) {
                 }
-            } catch (Throwable ignored) {
             }
         }
 
+        for (BrokerFixedThreadPoolExecutor executor : this.brokerController.getFixedThreadPoolExecutorList()) {
+            final QueueDelayController controller = executor.getQueueDelayController();
+            if (controller != null) {
+                cleanExpiredRequestInQueue(executor.getQueue(), controller);
+            }
+        }
+    }
+
+    /**
+     * 从队头开始清理排队时间超过当前允许等待时间的请求, 允许等待时间由 {@link QueueDelayController} 根据排队时延动态调整;
+     * 未开启自适应准入控制时只清理发送队列
+     */
+    void cleanExpiredRequestInQueue(final BlockingQueue<Runnable> blockingQueue, final QueueDelayController controller) {
+        if (!controller.isShedEnabled()) {
+            return;
+        }
+
         while (true) {
             try {
-                if (!this.brokerController.getSendThreadPoolQueue().isEmpty()) {
-                    final Runnable runnable = this.brokerController.getSendThreadPoolQueue().peek();
+                if (!blockingQueue.isEmpty()) {
+                    final Runnable runnable = blockingQueue.peek();
                     if (null == runnable) {
                         break;
                     }
@@ -88,10 +108,12 @@ public class BrokerFastFailure {
                     }
 
                     final long behind = System.currentTimeMillis() - rt.getCreateTimestamp();
-                    if (behind >= this.brokerController.getBrokerConfig().getWaitTimeMillsInSendQueue()) {
-                        if (this.brokerController.getSendThreadPoolQueue().remove(runnable)) {
+                    if (behind >= controller.allowedWaitTimeMills()) {
+                        if (blockingQueue.remove(runnable)) {
                             rt.setStopRun(true);
-                            rt.returnResponse(RemotingSysResponseCode.SYSTEM_BUSY, String.format("[TIMEOUT_CLEAN_QUEUE]broker busy, start flow control for a while, period in queue: %sms, size of queue: %d", behind, this.brokerController.getSendThreadPoolQueue().size()));
+                            controller.incShedTimes();
+                            rt.returnResponse(RemotingSysResponseCode.SYSTEM_BUSY, String.format("[TIMEOUT_CLEAN_QUEUE]broker busy, start flow control for a while, queue: %s, period in queue: %sms, size of queue: %d",
+                                controller.getQueueName(), behind, blockingQueue.size()));
                         }
                     } else {
                         break;
@@ -103,6 +125,7 @@ public class BrokerFastFailure {
             }
         }
     }
+
     public void shutdown() {
         this.scheduledExecutorService.shutdown();
     }
@@ -23,8 +23,12 @@ import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.remoting.netty.RequestTask;
+import org.apache.rocketmq.remoting.protocol.RemotingSysResponseCode;
 
 public class BrokerFixedThreadPoolExecutor extends ThreadPoolExecutor {
+    private volatile QueueDelayController queueDelayController;
+
     public BrokerFixedThreadPoolExecutor(final int corePoolSize, final int maximumPoolSize, final long keepAliveTime, final TimeUnit unit,
         final BlockingQueue<Runnable> workQueue) {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
@@ -45,6 +49,38 @@ public class BrokerFixedThreadPoolExecutor extends ThreadPoolExecutor {
         super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
     }
 
+    /**
+     * 出队时统计排队时延, 超过当前允许的等待时间则直接返回SYSTEM_BUSY, 不再执行
+     */
+    @Override
+    protected void beforeExecute(final Thread t, final Runnable r) {
+        super.beforeExecute(t, r);
+        final QueueDelayController controller = this.queueDelayController;
+        if (controller == null || !(r instanceof FutureTaskExt)) {
+            return;
+        }
+
+        final RequestTask rt = BrokerFastFailure.castRunnable(r);
+        if (rt == null || rt.isStopRun()) {
+            return;
+        }
+
+        final long sojourn = System.currentTimeMillis() - rt.getCreateTimestamp();
+        if (controller.onDequeue(sojourn, System.currentTimeMillis())) {
+            rt.setStopRun(true);
+            rt.returnResponse(RemotingSysResponseCode.SYSTEM_BUSY, String.format("[QUEUE_DELAY_SHED]broker busy, start flow control for a while, queue: %s, period in queue: %sms, size of queue: %d",
+                controller.getQueueName(), sojourn, this.getQueue().size()));
+        }
+    }
+
+    public QueueDelayController getQueueDelayController() {
+        return queueDelayController;
+    }
+
+    public void setQueueDelayController(final QueueDelayController queueDelayController) {
+        this.queueDelayController = queueDelayController;
+    }
+
     @Override
     protected <T> RunnableFuture<T> newTaskFor(final Runnable runnable, final T value) {
         return new FutureTaskExt<T>(runnable, value);
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.broker.latency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.remoting.netty.RequestTask;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+
+/**
+ * 按 topic + queueId 将请求分派到多条单线程通道(lane)上执行:
+ * 不同队列的请求可以并行处理, 同一队列的请求始终落在同一通道, 保持先进先出。
+ */
+public class BrokerStripedThreadPoolExecutor extends AbstractExecutorService {
+    private final BrokerFixedThreadPoolExecutor[] lanes;
+
+    public BrokerStripedThreadPoolExecutor(final int laneNums, final int queueCapacityPerLane, final String threadNamePrefix,
+        final QueueDelayController queueDelayController) {
+        this.lanes = new BrokerFixedThreadPoolExecutor[laneNums];
+        for (int i = 0; i < laneNums; i++) {
+            this.lanes[i] = new BrokerFixedThreadPoolExecutor(
+                1,
+                1,
+                1000 * 60,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacityPerLane),
+                new ThreadFactoryImpl(threadNamePrefix + i + "_"));
+            this.lanes[i].setQueueDelayController(queueDelayController);
+        }
+    }
+
+    /**
+     * 计算请求所属的通道, 发送消息按 topic + queueId, 消息回退按消费分组, 其余请求按opaque打散
+     */
+    int selectLane(final Runnable runnable) {
+        if (runnable instanceof FutureTaskExt && ((FutureTaskExt) runnable).getRunnable() instanceof RequestTask) {
+            final RemotingCommand request = ((RequestTask) ((FutureTaskExt) runnable).getRunnable()).getRequest();
+            return (stripeHash(request) & Integer.MAX_VALUE) % this.lanes.length;
+        }
+        return (runnable.hashCode() & Integer.MAX_VALUE) % this.lanes.length;
+    }
+
+    private static int stripeHash(final RemotingCommand request) {
+        final HashMap<String, String> extFields = request.getExtFields();
+        if (extFields != null) {
+            String topic = extFields.get("topic");
+            String queueId = extFields.get("queueId");
+            if (null == topic) {
+                // SendMessageRequestHeaderV2
+                topic = extFields.get("b");
+                queueId = extFields.get("e");
+            }
+            if (topic != null) {
+                return 31 * topic.hashCode() + (queueId != null ? queueId.hashCode() : 0);
+            }
+
+            final String group = extFields.get("group");
+            if (group != null) {
+                return group.hashCode();
+            }
+        }
+        return request.getOpaque();
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Runnable runnable, final T value) {
+        return new FutureTaskExt<T>(runnable, value);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        this.lanes[this.selectLane(command)].execute(command);
+    }
+
+    @Override
+    public void shutdown() {
+        for (BrokerFixedThreadPoolExecutor lane : this.lanes) {
+            lane.shutdown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = new ArrayList<Runnable>();
+        for (BrokerFixedThreadPoolExecutor lane : this.lanes) {
+            result.addAll(lane.shutdownNow());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        for (BrokerFixedThreadPoolExecutor lane : this.lanes) {
+            if (!lane.isShutdown()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (BrokerFixedThreadPoolExecutor lane : this.lanes) {
+            if (!lane.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (BrokerFixedThreadPoolExecutor lane : this.lanes) {
+            if (!lane.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<BrokerFixedThreadPoolExecutor> getLanes() {
+        List<BrokerFixedThreadPoolExecutor> result = new ArrayList<BrokerFixedThreadPoolExecutor>(this.lanes.length);
+        Collections.addAll(result, this.lanes);
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.broker.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.rocketmq.common.BrokerConfig;
+
+/**
+ * 基于排队时延(sojourn time)的自适应准入控制, 思路来自CoDel:
+ * 每个统计周期内记录请求在队列中等待的最小时延, 若整个周期的最小时延都超过目标值,
+ * 说明队列中存在无法自行消退的积压, 此时将允许的排队时间收紧到目标值, 尽早返回SYSTEM_BUSY;
+ * 积压消退后恢复为该队列配置的最大等待时间。
+ */
+public class QueueDelayController {
+    private static final long[] SOJOURN_BUCKETS = new long[] {1, 5, 10, 50, 100, 200, 500, 1000, 2000, 5000};
+    private static final String[] SOJOURN_BUCKETS_DESC = new String[] {
+        "[<1ms]", "[1~5ms]", "[5~10ms]", "[10~50ms]", "[50~100ms]", "[100~200ms]", "[200~500ms]", "[500ms~1s]", "[1~2s]", "[2~5s]", "[5s~]",
+    };
+
+    private final String queueName;
+    private final BrokerConfig brokerConfig;
+    private final WaitTimeMills maxWaitTimeMills;
+    /**
+     * 是否只在开启自适应准入控制时才按等待时间丢弃请求; 为false时始终按配置的最大等待时间丢弃(发送队列的原有行为)
+     */
+    private final boolean adaptiveOnly;
+
+    private final AtomicLong[] sojournDistribute = new AtomicLong[SOJOURN_BUCKETS_DESC.length];
+    private final AtomicLong shedTimes = new AtomicLong(0);
+
+    private final AtomicLong intervalBeginTimestamp = new AtomicLong(System.currentTimeMillis());
+    private final AtomicLong minSojournInInterval = new AtomicLong(Long.MAX_VALUE);
+    private volatile boolean overloaded = false;
+
+    public QueueDelayController(final String queueName, final BrokerConfig brokerConfig, final WaitTimeMills maxWaitTimeMills) {
+        this(queueName, brokerConfig, maxWaitTimeMills, false);
+    }
+
+    public QueueDelayController(final String queueName, final BrokerConfig brokerConfig, final WaitTimeMills maxWaitTimeMills,
+        final boolean adaptiveOnly) {
+        this.queueName = queueName;
+        this.brokerConfig = brokerConfig;
+        this.maxWaitTimeMills = maxWaitTimeMills;
+        this.adaptiveOnly = adaptiveOnly;
+        for (int i = 0; i < this.sojournDistribute.length; i++) {
+            this.sojournDistribute[i] = new AtomicLong(0);
+        }
+    }
+
+    /**
+     * 请求出队时调用, 记录排队时延并判断是否需要丢弃
+     *
+     * @param sojournMills 请求在队列中等待的时间
+     * @param now          当前时间
+     * @return 是否应返回SYSTEM_BUSY
+     */
+    public boolean onDequeue(final long sojournMills, final long now) {
+        this.sojournDistribute[bucketOf(sojournMills)].incrementAndGet();
+
+        final long begin = this.intervalBeginTimestamp.get();
+        if (now - begin >= this.brokerConfig.getQueueDelayIntervalMills()) {
+            if (this.intervalBeginTimestamp.compareAndSet(begin, now)) {
+                final long min = this.minSojournInInterval.getAndSet(sojournMills);
+                this.overloaded = min != Long.MAX_VALUE && min > this.brokerConfig.getQueueDelayTargetMills();
+            }
+        } else {
+            long min = this.minSojournInInterval.get();
+            while (sojournMills < min && !this.minSojournInInterval.compareAndSet(min, sojournMills)) {
+                min = this.minSojournInInterval.get();
+            }
+        }
+
+        if (this.isShedEnabled() && sojournMills >= this.allowedWaitTimeMills()) {
+            this.shedTimes.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return 当前允许的最大排队时间
+     */
+    public long allowedWaitTimeMills() {
+        if (this.overloaded && this.brokerConfig.isAdaptiveAdmissionEnable()) {
+            return Math.min(this.brokerConfig.getQueueDelayTargetMills(), this.maxWaitTimeMills.get());
+        }
+        return this.maxWaitTimeMills.get();
+    }
+
+    /**
+     * @return 当前是否按等待时间丢弃该队列的请求
+     */
+    public boolean isShedEnabled() {
+        return !this.adaptiveOnly || this.brokerConfig.isAdaptiveAdmissionEnable();
+    }
+
+    private static int bucketOf(final long sojournMills) {
+        for (int i = 0; i < SOJOURN_BUCKETS.length; i++) {
+            if (sojournMills < SOJOURN_BUCKETS[i]) {
+                return i;
+            }
+        }
+        return SOJOURN_BUCKETS.length;
+    }
+
+    public String getSojournDistributeStringInfo() {
+        final StringBuilder sb = new StringBuilder(256);
+        for (int i = 0; i < this.sojournDistribute.length; i++) {
+            sb.append(SOJOURN_BUCKETS_DESC[i]).append(':').append(this.sojournDistribute[i].get()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    public String getQueueName() {
+        return queueName;
+    }
+
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+
+    public void incShedTimes() {
+        this.shedTimes.incrementAndGet();
+    }
+
+    public long getShedTimes() {
+        return shedTimes.get();
+    }
+
+    /**
+     * 队列配置的最大等待时间, 每次读取以便动态更新配置后立即生效
+     */
+    public interface WaitTimeMills {
+        long get();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.broker.offset;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.rocketmq.common.DataVersion;
+
+/**
+ * 消费进度增量, Master向Slave同步消费进度时使用
+ *
+ * 只包含自Slave上次同步以来有变化的 topic@group, 每个 topic@group 带上其全部队列的进度。
+ * 二进制编码: timestamp(8) counter(8) 条目数(4), 每个条目为 key长度(2) key 队列数(4) [queueId(4) offset(8)]...
+ */
+public class ConsumerOffsetIncrement {
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Master的消费进度版本, 旧版本Master返回全量JSON时为null
+     */
+    private final DataVersion dataVersion;
+    private final Map<String/* topic@group */, Map<Integer, Long>> offsetTable;
+
+    public ConsumerOffsetIncrement(final DataVersion dataVersion, final Map<String, Map<Integer, Long>> offsetTable) {
+        this.dataVersion = dataVersion;
+        this.offsetTable = offsetTable;
+    }
+
+    public byte[] encode() {
+        int size = 8 + 8 + 4;
+        List<byte[]> keys = new ArrayList<byte[]>(this.offsetTable.size());
+        for (Map.Entry<String, Map<Integer, Long>> entry : this.offsetTable.entrySet()) {
+            byte[] key = entry.getKey().getBytes(CHARSET_UTF8);
+            keys.add(key);
+            size += 2 + key.length + 4 + entry.getValue().size() * (4 + 8);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(this.dataVersion.getTimestamp());
+        buffer.putLong(this.dataVersion.getCounter().get());
+        buffer.putInt(this.offsetTable.size());
+        int index = 0;
+        for (Map.Entry<String, Map<Integer, Long>> entry : this.offsetTable.entrySet()) {
+            byte[] key = keys.get(index++);
+            buffer.putShort((short) key.length);
+            buffer.put(key);
+            buffer.putInt(entry.getValue().size());
+            for (Map.Entry<Integer, Long> offset : entry.getValue().entrySet()) {
+                buffer.putInt(offset.getKey());
+                buffer.putLong(offset.getValue());
+            }
+        }
+        return buffer.array();
+    }
+
+    public static ConsumerOffsetIncrement decode(final byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        DataVersion dataVersion = new DataVersion();
+        dataVersion.setTimestamp(buffer.getLong());
+        dataVersion.getCounter().set(buffer.getLong());
+
+        int entryCount = buffer.getInt();
+        Map<String, Map<Integer, Long>> offsetTable = new HashMap<String, Map<Integer, Long>>(entryCount * 2);
+        for (int i = 0; i < entryCount; i++) {
+            byte[] key = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(key);
+            int queueCount = buffer.getInt();
+            Map<Integer, Long> offsets = new HashMap<Integer, Long>(queueCount * 2);
+            for (int j = 0; j < queueCount; j++) {
+                offsets.put(buffer.getInt(), buffer.getLong());
+            }
+            offsetTable.put(new String(key, CHARSET_UTF8), offsets);
+        }
+        return new ConsumerOffsetIncrement(dataVersion, offsetTable);
+    }
+
+    public DataVersion getDataVersion() {
+        return dataVersion;
+    }
+
+    public Map<String, Map<Integer, Long>> getOffsetTable() {
+        return offsetTable;
+    }
+}
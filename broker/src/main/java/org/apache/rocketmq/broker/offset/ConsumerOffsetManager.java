@@ -19,6 +19,7 @@ package org.apache.rocketmq.broker.offset;
 import org.apache.rocketmq.broker.BrokerController;
 import org.apache.rocketmq.broker.BrokerPathConfigHelper;
 import org.apache.rocketmq.common.ConfigManager;
+import org.apache.rocketmq.common.DataVersion;
 import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.constant.LoggerName;
 import org.apache.rocketmq.remoting.protocol.RemotingSerializable;
@@ -28,6 +29,8 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 消费进度管理器
@@ -41,6 +44,17 @@ public class ConsumerOffsetManager extends ConfigManager {
      */
     private ConcurrentHashMap<String/* topic@group */, ConcurrentHashMap<Integer, Long>> offsetTable = new ConcurrentHashMap<>(512);
 
+    /**
+     * 消费进度版本, 用于向Slave增量同步
+     * timestamp 为本次启动时间, counter 随每次进度变化递增
+     */
+    private final transient DataVersion offsetVersion = new DataVersion();
+
+    /**
+     * 消费进度变化记录, topic@group => 最近一次变化
+     */
+    private final transient ConcurrentHashMap<String/* topic@group */, OffsetChange> offsetChangeTable = new ConcurrentHashMap<>(512);
+
     private transient BrokerController brokerController;
 
     public ConsumerOffsetManager() {
@@ -63,6 +77,7 @@ public class ConsumerOffsetManager extends ConfigManager {
                 if (null == brokerController.getConsumerManager().findSubscriptionData(group, topic)
                     && this.offsetBehindMuchThanData(topic, next.getValue())) {
                     it.remove();
+                    this.offsetChangeTable.remove(topicAtGroup);
                     log.warn("remove topic offset, {}", topicAtGroup);
                 }
             }
@@ -134,6 +149,46 @@ public class ConsumerOffsetManager extends ConfigManager {
         this.commitOffset(clientHost, key, queueId, offset);
     }
 
+    /**
+     * 批量提交同一Topic多个队列的消费进度, key只构建与查找一次
+     *
+     * @param clientHost 提交client地址
+     * @param group 消费分组
+     * @param topic 主题
+     * @param queueOffsets 队列编号 => 进度
+     */
+    public void commitOffset(final String clientHost, final String group, final String topic, final Map<Integer, Long> queueOffsets) {
+        if (queueOffsets == null || queueOffsets.isEmpty()) {
+            return;
+        }
+        // topic@group
+        String key = topic + TOPIC_GROUP_SEPARATOR + group;
+        ConcurrentHashMap<Integer, Long> map = this.offsetTable.get(key);
+        if (null == map) {
+            map = new ConcurrentHashMap<>(Math.max(32, queueOffsets.size() * 2));
+            ConcurrentHashMap<Integer, Long> prev = this.offsetTable.putIfAbsent(key, map);
+            if (prev != null) {
+                map = prev;
+            }
+        }
+
+        OffsetChange change = this.beginChange(key);
+        try {
+            for (Map.Entry<Integer, Long> entry : queueOffsets.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    continue;
+                }
+                Long storeOffset = map.put(entry.getKey(), entry.getValue());
+                if (storeOffset != null && entry.getValue() < storeOffset) {
+                    log.warn("[NOTIFYME]update consumer offset less than store. clientHost={}, key={}, queueId={}, requestOffset={}, storeOffset={}",
+                        clientHost, key, entry.getKey(), entry.getValue(), storeOffset);
+                }
+            }
+        } finally {
+            this.endChange(change);
+        }
+    }
+
     /**
      * 提交消费进度
      *
@@ -143,17 +198,46 @@ public class ConsumerOffsetManager extends ConfigManager {
      * @param offset 进度（队列位置）
      */
     private void commitOffset(final String clientHost, final String key, final int queueId, final long offset) {
-        ConcurrentHashMap<Integer, Long> map = this.offsetTable.get(key);
-        if (null == map) {
-            map = new ConcurrentHashMap<>(32);
-            map.put(queueId, offset);
-            this.offsetTable.put(key, map);
-        } else {
-            Long storeOffset = map.put(queueId, offset);
-            if (storeOffset != null && offset < storeOffset) {
-                log.warn("[NOTIFYME]update consumer offset less than store. clientHost={}, key={}, queueId={}, requestOffset={}, storeOffset={}", clientHost, key, queueId, offset, storeOffset);
+        OffsetChange change = this.beginChange(key);
+        try {
+            ConcurrentHashMap<Integer, Long> map = this.offsetTable.get(key);
+            if (null == map) {
+                map = new ConcurrentHashMap<>(32);
+                map.put(queueId, offset);
+                this.offsetTable.put(key, map);
+            } else {
+                Long storeOffset = map.put(queueId, offset);
+                if (storeOffset != null && offset < storeOffset) {
+                    log.warn("[NOTIFYME]update consumer offset less than store. clientHost={}, key={}, queueId={}, requestOffset={}, storeOffset={}", clientHost, key, queueId, offset, storeOffset);
+                }
+            }
+        } finally {
+            this.endChange(change);
+        }
+    }
+
+    /**
+     * 开始修改 topic@group 的消费进度, 修改完成前该 topic@group 总是被视为有变化
+     */
+    private OffsetChange beginChange(final String key) {
+        OffsetChange change = this.offsetChangeTable.get(key);
+        if (null == change) {
+            change = new OffsetChange();
+            OffsetChange prev = this.offsetChangeTable.putIfAbsent(key, change);
+            if (prev != null) {
+                change = prev;
             }
         }
+        change.begin();
+        return change;
+    }
+
+    /**
+     * 修改完成后递增消费进度版本, 版本必须在修改之后递增:
+     * 读到该版本的 {@link #buildOffsetIncrement(DataVersion)} 一定能看到本次修改
+     */
+    private void endChange(final OffsetChange change) {
+        change.end(this.offsetVersion.getCounter().incrementAndGet());
     }
 
     public long queryOffset(final String group, final String topic, final int queueId) {
@@ -258,7 +342,94 @@ public class ConsumerOffsetManager extends ConfigManager {
     public void cloneOffset(final String srcGroup, final String destGroup, final String topic) {
         ConcurrentHashMap<Integer, Long> offsets = this.offsetTable.get(topic + TOPIC_GROUP_SEPARATOR + srcGroup);
         if (offsets != null) {
-            this.offsetTable.put(topic + TOPIC_GROUP_SEPARATOR + destGroup, new ConcurrentHashMap<Integer, Long>(offsets));
+            String key = topic + TOPIC_GROUP_SEPARATOR + destGroup;
+            OffsetChange change = this.beginChange(key);
+            try {
+                this.offsetTable.put(key, new ConcurrentHashMap<Integer, Long>(offsets));
+            } finally {
+                this.endChange(change);
+            }
+        }
+    }
+
+    /**
+     * 生成Slave已同步版本之后的消费进度增量
+     * 版本不是本次启动生成的(包括Slave首次同步)时返回全量
+     *
+     * @param since Slave已同步到的版本
+     * @return 消费进度增量
+     */
+    public ConsumerOffsetIncrement buildOffsetIncrement(final DataVersion since) {
+        // 先读版本再读进度, 版本不晚于返回的进度
+        DataVersion dataVersion = new DataVersion();
+        dataVersion.assignNewOne(this.offsetVersion);
+
+        Map<String, Map<Integer, Long>> table = new HashMap<String, Map<Integer, Long>>();
+        if (since != null && since.getTimestamp() == dataVersion.getTimestamp()
+            && since.getCounter().get() <= dataVersion.getCounter().get()) {
+            final long sinceCounter = since.getCounter().get();
+            for (Map.Entry<String, OffsetChange> entry : this.offsetChangeTable.entrySet()) {
+                if (entry.getValue().isChangedSince(sinceCounter)) {
+                    ConcurrentHashMap<Integer, Long> offsets = this.offsetTable.get(entry.getKey());
+                    if (offsets != null) {
+                        table.put(entry.getKey(), new HashMap<Integer, Long>(offsets));
+                    }
+                }
+            }
+        } else {
+            for (Map.Entry<String, ConcurrentHashMap<Integer, Long>> entry : this.offsetTable.entrySet()) {
+                table.put(entry.getKey(), new HashMap<Integer, Long>(entry.getValue()));
+            }
+        }
+        return new ConsumerOffsetIncrement(dataVersion, table);
+    }
+
+    /**
+     * Slave在原有消费进度上合并Master同步的增量
+     *
+     * @param increment 消费进度增量
+     */
+    public void applyOffsetIncrement(final ConsumerOffsetIncrement increment) {
+        for (Map.Entry<String, Map<Integer, Long>> entry : increment.getOffsetTable().entrySet()) {
+            ConcurrentHashMap<Integer, Long> map = this.offsetTable.get(entry.getKey());
+            if (null == map) {
+                map = new ConcurrentHashMap<>(Math.max(32, entry.getValue().size() * 2));
+                ConcurrentHashMap<Integer, Long> prev = this.offsetTable.putIfAbsent(entry.getKey(), map);
+                if (prev != null) {
+                    map = prev;
+                }
+            }
+            map.putAll(entry.getValue());
+        }
+    }
+
+    /**
+     * 一个 topic@group 的消费进度变化
+     */
+    private static class OffsetChange {
+        /**
+         * 正在进行的修改数
+         */
+        private final AtomicInteger writing = new AtomicInteger(0);
+        /**
+         * 最近一次修改完成时的消费进度版本
+         */
+        private final AtomicLong version = new AtomicLong(0);
+
+        void begin() {
+            this.writing.incrementAndGet();
+        }
+
+        void end(final long newVersion) {
+            long current = this.version.get();
+            while (current < newVersion && !this.version.compareAndSet(current, newVersion)) {
+                current = this.version.get();
+            }
+            this.writing.decrementAndGet();
+        }
+
+        boolean isChangedSince(final long counter) {
+            return this.writing.get() > 0 || this.version.get() > counter;
         }
     }
 
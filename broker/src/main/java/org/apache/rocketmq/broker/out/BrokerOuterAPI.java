@@ -16,14 +16,20 @@
  */
 package org.apache.rocketmq.broker.out;
 
+import org.apache.rocketmq.broker.offset.ConsumerOffsetIncrement;
 import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.common.DataVersion;
 import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.constant.LoggerName;
 import org.apache.rocketmq.common.namesrv.RegisterBrokerResult;
 import org.apache.rocketmq.common.namesrv.TopAddressing;
 import org.apache.rocketmq.common.protocol.RequestCode;
 import org.apache.rocketmq.common.protocol.ResponseCode;
 import org.apache.rocketmq.common.protocol.body.*;
+import org.apache.rocketmq.common.protocol.header.SyncMetadataRequestHeader;
+import org.apache.rocketmq.common.protocol.header.SyncMetadataResponseHeader;
 import org.apache.rocketmq.common.protocol.header.namesrv.RegisterBrokerRequestHeader;
 import org.apache.rocketmq.common.protocol.header.namesrv.RegisterBrokerResponseHeader;
 import org.apache.rocketmq.common.protocol.header.namesrv.UnRegisterBrokerRequestHeader;
@@ -36,15 +42,40 @@ import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class BrokerOuterAPI {
     private static final Logger log = LoggerFactory.getLogger(LoggerName.BROKER_LOGGER_NAME);
     private final RemotingClient remotingClient;
     private final TopAddressing topAddressing = new TopAddressing(MixAll.WS_ADDR);
     private String nameSrvAddr = null;
+    /**
+     * 向各Namesrv并行注册的线程池
+     */
+    private final ExecutorService brokerOuterExecutor = new ThreadPoolExecutor(4, 10, 1, TimeUnit.MINUTES,
+        new ArrayBlockingQueue<Runnable>(32), new ThreadFactoryImpl("BrokerOuterAPIThread_"), new ThreadPoolExecutor.CallerRunsPolicy());
+    /**
+     * 支持压缩请求体与只上报数据版本的Namesrv
+     */
+    private final Set<String/* namesrvAddr */> compactRegisterNamesrvSet =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /**
+     * Namesrv地址 与 最近一次注册成功时上报的数据版本
+     */
+    private final ConcurrentHashMap<String/* namesrvAddr */, DataVersion> registeredVersionTable = new ConcurrentHashMap<>();
 
     public BrokerOuterAPI(final NettyClientConfig nettyClientConfig) {
         this(nettyClientConfig, null);
@@ -61,6 +92,7 @@ public class BrokerOuterAPI {
 
     public void shutdown() {
         this.remotingClient.shutdown();
+        this.brokerOuterExecutor.shutdown();
     }
 
     public String fetchNameServerAddr() {
@@ -91,7 +123,7 @@ public class BrokerOuterAPI {
     }
 
     /**
-     * 注册到多个 Namesrv
+     * 注册到多个 Namesrv, 并行发送, 单个Namesrv响应慢不影响向其他Namesrv注册
      *
      * @param clusterName 集群名
      * @param brokerAddr broker地址
@@ -102,6 +134,7 @@ public class BrokerOuterAPI {
      * @param filterServerList filtersrv数组
      * @param oneway 是否oneway通信方式
      * @param timeoutMills 请求超时时间
+     * @param compact 向支持的Namesrv注册时, Topic配置未变化则只上报数据版本, 否则压缩请求体
      * @return 注册结果
      */
     public RegisterBrokerResult registerBrokerAll(
@@ -113,26 +146,51 @@ public class BrokerOuterAPI {
         final TopicConfigSerializeWrapper topicConfigWrapper,
         final List<String> filterServerList,
         final boolean oneway,
-        final int timeoutMills) {
-        RegisterBrokerResult registerBrokerResult = null;
+        final int timeoutMills,
+        final boolean compact) {
+        final List<String> nameServerAddressList = this.remotingClient.getNameServerAddressList();
+        if (null == nameServerAddressList || nameServerAddressList.isEmpty()) {
+            return null;
+        }
 
-        List<String> nameServerAddressList = this.remotingClient.getNameServerAddressList();
-        if (nameServerAddressList != null) {
-            for (String namesrvAddr : nameServerAddressList) { // 循环多个 Namesrv
-                try {
-                    RegisterBrokerResult result = this.registerBroker(namesrvAddr, clusterName, brokerAddr, brokerName, brokerId,
-                        haServerAddr, topicConfigWrapper, filterServerList, oneway, timeoutMills);
-                    if (result != null) {
-                        registerBrokerResult = result;
+        final RegisterBrokerRequestBody requestBody = new RegisterBrokerRequestBody(topicConfigWrapper, filterServerList);
+        final RegisterBrokerResult[] results = new RegisterBrokerResult[nameServerAddressList.size()];
+        final CountDownLatch countDownLatch = new CountDownLatch(nameServerAddressList.size());
+        for (int i = 0; i < nameServerAddressList.size(); i++) { // 循环多个 Namesrv
+            final int index = i;
+            final String namesrvAddr = nameServerAddressList.get(i);
+            this.brokerOuterExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results[index] = BrokerOuterAPI.this.registerBroker(namesrvAddr, clusterName, brokerAddr, brokerName, brokerId,
+                            haServerAddr, requestBody, oneway, timeoutMills, compact);
+
+                        log.info("register broker to name server {} OK", namesrvAddr);
+                    } catch (Exception e) {
+                        log.warn("registerBroker Exception, {}", namesrvAddr, e);
+                    } finally {
+                        countDownLatch.countDown();
                     }
-
-                    log.info("register broker to name server {} OK", namesrvAddr);
-                } catch (Exception e) {
-                    log.warn("registerBroker Exception, {}", namesrvAddr, e);
                 }
+            });
+        }
+
+        try {
+            // 完整注册被要求时会重发一次请求
+            if (!countDownLatch.await(timeoutMills * 2L, TimeUnit.MILLISECONDS)) {
+                log.warn("registerBrokerAll timeout, {} name server(s) not responded", countDownLatch.getCount());
             }
+        } catch (InterruptedException e) {
+            log.warn("registerBrokerAll interrupted", e);
         }
 
+        RegisterBrokerResult registerBrokerResult = null;
+        for (RegisterBrokerResult result : results) {
+            if (result != null) {
+                registerBrokerResult = result;
+            }
+        }
         return registerBrokerResult;
     }
 
@@ -143,24 +201,30 @@ public class BrokerOuterAPI {
         final String brokerName,
         final long brokerId,
         final String haServerAddr,
-        final TopicConfigSerializeWrapper topicConfigWrapper,
-        final List<String> filterServerList,
+        final RegisterBrokerRequestBody requestBody,
         final boolean oneway,
-        final int timeoutMills
+        final int timeoutMills,
+        final boolean compact
     ) throws RemotingCommandException, MQBrokerException, RemotingConnectException, RemotingSendRequestException, RemotingTimeoutException,
-        InterruptedException {
+        InterruptedException, IOException {
+        final boolean compactSupported = compact && this.compactRegisterNamesrvSet.contains(namesrvAddr);
+        final DataVersion dataVersion = requestBody.getDataVersion();
+        // oneway 无法得知Namesrv是否已登记, 总是携带Topic配置
+        final boolean versionOnly = compactSupported && !oneway && dataVersion.equals(this.registeredVersionTable.get(namesrvAddr));
+
         RegisterBrokerRequestHeader requestHeader = new RegisterBrokerRequestHeader();
         requestHeader.setBrokerAddr(brokerAddr);
         requestHeader.setBrokerId(brokerId);
         requestHeader.setBrokerName(brokerName);
         requestHeader.setClusterName(clusterName);
         requestHeader.setHaServerAddr(haServerAddr);
+        if (versionOnly) {
+            requestHeader.setVersionOnly(true);
+        } else if (compactSupported) {
+            requestHeader.setCompressed(true);
+        }
         RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.REGISTER_BROKER, requestHeader);
-
-        RegisterBrokerBody requestBody = new RegisterBrokerBody();
-        requestBody.setTopicConfigSerializeWrapper(topicConfigWrapper);
-        requestBody.setFilterServerList(filterServerList);
-        request.setBody(requestBody.encode());
+        request.setBody(versionOnly ? requestBody.getVersionOnlyBody() : compactSupported ? requestBody.getCompressedBody() : requestBody.getBody());
 
         if (oneway) {
             try {
@@ -177,6 +241,14 @@ public class BrokerOuterAPI {
             case ResponseCode.SUCCESS: {
                 RegisterBrokerResponseHeader responseHeader =
                     (RegisterBrokerResponseHeader) response.decodeCommandCustomHeader(RegisterBrokerResponseHeader.class);
+                if (Boolean.TRUE.equals(responseHeader.getCompactRegisterSupported())) {
+                    this.compactRegisterNamesrvSet.add(namesrvAddr);
+                    this.registeredVersionTable.put(namesrvAddr, dataVersion);
+                } else {
+                    this.compactRegisterNamesrvSet.remove(namesrvAddr);
+                    this.registeredVersionTable.remove(namesrvAddr);
+                }
+
                 RegisterBrokerResult result = new RegisterBrokerResult();
                 result.setMasterAddr(responseHeader.getMasterAddr());
                 result.setHaServerAddr(responseHeader.getHaServerAddr());
@@ -185,6 +257,15 @@ public class BrokerOuterAPI {
                 }
                 return result;
             }
+            case ResponseCode.REGISTER_BROKER_TOPIC_CONFIG_REQUIRED: {
+                // Namesrv重启或注册信息有变化, 重新完整注册
+                this.registeredVersionTable.remove(namesrvAddr);
+                if (versionOnly) {
+                    return this.registerBroker(namesrvAddr, clusterName, brokerAddr, brokerName, brokerId, haServerAddr,
+                        requestBody, false, timeoutMills, compact);
+                }
+                break;
+            }
             default:
                 break;
         }
@@ -192,6 +273,60 @@ public class BrokerOuterAPI {
         throw new MQBrokerException(response.getCode(), response.getRemark());
     }
 
+    /**
+     * 一次注册中发往各Namesrv的请求体, 只序列化、压缩一次
+     */
+    private static class RegisterBrokerRequestBody {
+        private final TopicConfigSerializeWrapper topicConfigWrapper;
+        private final List<String> filterServerList;
+        /**
+         * 数据版本的拷贝, Topic配置变化时 topicConfigWrapper 中的数据版本会随之变化
+         */
+        private final DataVersion dataVersion = new DataVersion();
+        private byte[] body;
+        private byte[] compressedBody;
+        private byte[] versionOnlyBody;
+
+        RegisterBrokerRequestBody(final TopicConfigSerializeWrapper topicConfigWrapper, final List<String> filterServerList) {
+            this.topicConfigWrapper = topicConfigWrapper;
+            this.filterServerList = filterServerList;
+            this.dataVersion.assignNewOne(topicConfigWrapper.getDataVersion());
+        }
+
+        DataVersion getDataVersion() {
+            return this.dataVersion;
+        }
+
+        synchronized byte[] getBody() {
+            if (null == this.body) {
+                RegisterBrokerBody requestBody = new RegisterBrokerBody();
+                requestBody.setTopicConfigSerializeWrapper(this.topicConfigWrapper);
+                requestBody.setFilterServerList(this.filterServerList);
+                this.body = requestBody.encode();
+            }
+            return this.body;
+        }
+
+        synchronized byte[] getCompressedBody() throws IOException {
+            if (null == this.compressedBody) {
+                this.compressedBody = UtilAll.compress(this.getBody(), 5);
+            }
+            return this.compressedBody;
+        }
+
+        synchronized byte[] getVersionOnlyBody() {
+            if (null == this.versionOnlyBody) {
+                TopicConfigSerializeWrapper versionOnlyWrapper = new TopicConfigSerializeWrapper();
+                versionOnlyWrapper.setDataVersion(this.dataVersion);
+                RegisterBrokerBody requestBody = new RegisterBrokerBody();
+                requestBody.setTopicConfigSerializeWrapper(versionOnlyWrapper);
+                requestBody.setFilterServerList(this.filterServerList);
+                this.versionOnlyBody = requestBody.encode();
+            }
+            return this.versionOnlyBody;
+        }
+    }
+
     public void unregisterBrokerAll(
         final String clusterName,
         final String brokerAddr,
@@ -238,14 +373,24 @@ public class BrokerOuterAPI {
         throw new MQBrokerException(response.getCode(), response.getRemark());
     }
 
-    public TopicConfigSerializeWrapper getAllTopicConfig(final String addr) throws RemotingConnectException, RemotingSendRequestException,
-        RemotingTimeoutException, InterruptedException, MQBrokerException {
-        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.GET_ALL_TOPIC_CONFIG, null);
+    /**
+     * 获取Master的全部Topic配置
+     *
+     * @param addr        Master地址
+     * @param dataVersion 本地的数据版本, 为null时总是返回全部配置
+     * @return 与Master数据版本一致时返回null
+     */
+    public TopicConfigSerializeWrapper getAllTopicConfig(final String addr, final DataVersion dataVersion) throws RemotingConnectException,
+        RemotingSendRequestException, RemotingTimeoutException, RemotingCommandException, InterruptedException, MQBrokerException {
+        RemotingCommand request = createSyncMetadataRequest(RequestCode.GET_ALL_TOPIC_CONFIG, dataVersion);
 
         RemotingCommand response = this.remotingClient.invokeSync(MixAll.brokerVIPChannel(true, addr), request, 3000);
         assert response != null;
         switch (response.getCode()) {
             case ResponseCode.SUCCESS: {
+                if (Boolean.TRUE.equals(decodeSyncMetadataResponseHeader(response).getNotModified())) {
+                    return null;
+                }
                 return TopicConfigSerializeWrapper.decode(response.getBody(), TopicConfigSerializeWrapper.class);
             }
             default:
@@ -255,14 +400,33 @@ public class BrokerOuterAPI {
         throw new MQBrokerException(response.getCode(), response.getRemark());
     }
 
-    public ConsumerOffsetSerializeWrapper getAllConsumerOffset(final String addr) throws InterruptedException, RemotingTimeoutException,
-        RemotingSendRequestException, RemotingConnectException, MQBrokerException {
-        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.GET_ALL_CONSUMER_OFFSET, null);
+    /**
+     * 获取Master在指定版本之后有变化的消费进度
+     * 旧版本Master不支持增量同步, 返回全部消费进度, 此时增量的数据版本为null
+     *
+     * @param addr        Master地址
+     * @param dataVersion 已同步到的Master消费进度版本, 为null时获取全部消费进度
+     * @return 消费进度增量
+     */
+    public ConsumerOffsetIncrement getConsumerOffsetIncrement(final String addr, final DataVersion dataVersion) throws InterruptedException,
+        RemotingTimeoutException, RemotingSendRequestException, RemotingConnectException, RemotingCommandException, MQBrokerException {
+        DataVersion since = dataVersion;
+        if (null == since) {
+            // 不属于任何一次启动的版本, Master返回全量
+            since = new DataVersion();
+            since.setTimestamp(0);
+        }
+        RemotingCommand request = createSyncMetadataRequest(RequestCode.GET_ALL_CONSUMER_OFFSET, since);
         RemotingCommand response = this.remotingClient.invokeSync(addr, request, 3000);
         assert response != null;
         switch (response.getCode()) {
             case ResponseCode.SUCCESS: {
-                return ConsumerOffsetSerializeWrapper.decode(response.getBody(), ConsumerOffsetSerializeWrapper.class);
+                if (Boolean.TRUE.equals(decodeSyncMetadataResponseHeader(response).getIncremental())) {
+                    return ConsumerOffsetIncrement.decode(response.getBody());
+                }
+                ConsumerOffsetSerializeWrapper offsetWrapper =
+                    ConsumerOffsetSerializeWrapper.decode(response.getBody(), ConsumerOffsetSerializeWrapper.class);
+                return new ConsumerOffsetIncrement(null, new HashMap<String, Map<Integer, Long>>(offsetWrapper.getOffsetTable()));
             }
             default:
                 break;
@@ -287,13 +451,23 @@ public class BrokerOuterAPI {
         throw new MQBrokerException(response.getCode(), response.getRemark());
     }
 
-    public SubscriptionGroupWrapper getAllSubscriptionGroupConfig(final String addr) throws InterruptedException, RemotingTimeoutException,
-        RemotingSendRequestException, RemotingConnectException, MQBrokerException {
-        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.GET_ALL_SUBSCRIPTIONGROUP_CONFIG, null);
+    /**
+     * 获取Master的全部订阅组配置
+     *
+     * @param addr        Master地址
+     * @param dataVersion 本地的数据版本, 为null时总是返回全部配置
+     * @return 与Master数据版本一致时返回null
+     */
+    public SubscriptionGroupWrapper getAllSubscriptionGroupConfig(final String addr, final DataVersion dataVersion) throws InterruptedException,
+        RemotingTimeoutException, RemotingSendRequestException, RemotingConnectException, RemotingCommandException, MQBrokerException {
+        RemotingCommand request = createSyncMetadataRequest(RequestCode.GET_ALL_SUBSCRIPTIONGROUP_CONFIG, dataVersion);
         RemotingCommand response = this.remotingClient.invokeSync(addr, request, 3000);
         assert response != null;
         switch (response.getCode()) {
             case ResponseCode.SUCCESS: {
+                if (Boolean.TRUE.equals(decodeSyncMetadataResponseHeader(response).getNotModified())) {
+                    return null;
+                }
                 return SubscriptionGroupWrapper.decode(response.getBody(), SubscriptionGroupWrapper.class);
             }
             default:
@@ -303,6 +477,23 @@ public class BrokerOuterAPI {
         throw new MQBrokerException(response.getCode(), response.getRemark());
     }
 
+    private static RemotingCommand createSyncMetadataRequest(final int code, final DataVersion dataVersion) {
+        SyncMetadataRequestHeader requestHeader = new SyncMetadataRequestHeader();
+        if (dataVersion != null) {
+            requestHeader.setDataVersionTimestamp(dataVersion.getTimestamp());
+            requestHeader.setDataVersionCounter(dataVersion.getCounter().get());
+        }
+        return RemotingCommand.createRequestCommand(code, requestHeader);
+    }
+
+    /**
+     * 旧版本Master不返回响应头, 各字段均为null
+     */
+    private static SyncMetadataResponseHeader decodeSyncMetadataResponseHeader(final RemotingCommand response)
+        throws RemotingCommandException {
+        return (SyncMetadataResponseHeader) response.decodeCommandCustomHeader(SyncMetadataResponseHeader.class);
+    }
+
     public void registerRPCHook(RPCHook rpcHook) {
         remotingClient.registerRPCHook(rpcHook);
     }
@@ -18,6 +18,7 @@
 package org.apache.rocketmq.broker.plugin;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.protocol.heartbeat.SubscriptionData;
@@ -82,6 +83,11 @@ public abstract class AbstractPluginMessageStore implements MessageStore {
         return next.putMessage(msg);
     }
 
+    @Override
+    public List<PutMessageResult> putMessages(List<MessageExtBrokerInner> msgs) {
+        return next.putMessages(msgs);
+    }
+
     @Override
     public GetMessageResult getMessage(String group, String topic, int queueId, long offset,
         int maxMsgNums, SubscriptionData subscriptionData) {
@@ -29,11 +29,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.rocketmq.broker.BrokerController;
 import org.apache.rocketmq.broker.client.ClientChannelInfo;
 import org.apache.rocketmq.broker.client.ConsumerGroupInfo;
+import org.apache.rocketmq.broker.latency.BrokerFixedThreadPoolExecutor;
+import org.apache.rocketmq.broker.latency.QueueDelayController;
+import org.apache.rocketmq.broker.offset.ConsumerOffsetIncrement;
+import org.apache.rocketmq.common.DataVersion;
 import org.apache.rocketmq.common.MQVersion;
 import org.apache.rocketmq.common.MixAll;
 import org.apache.rocketmq.common.TopicConfig;
@@ -68,7 +73,6 @@ import org.apache.rocketmq.common.protocol.header.ConsumeMessageDirectlyResultRe
 import org.apache.rocketmq.common.protocol.header.CreateTopicRequestHeader;
 import org.apache.rocketmq.common.protocol.header.DeleteSubscriptionGroupRequestHeader;
 import org.apache.rocketmq.common.protocol.header.DeleteTopicRequestHeader;
-import org.apache.rocketmq.common.protocol.header.GetAllTopicConfigResponseHeader;
 import org.apache.rocketmq.common.protocol.header.GetBrokerConfigResponseHeader;
 import org.apache.rocketmq.common.protocol.header.GetConsumeStatsInBrokerHeader;
 import org.apache.rocketmq.common.protocol.header.GetConsumeStatsRequestHeader;
@@ -89,6 +93,8 @@ import org.apache.rocketmq.common.protocol.header.QueryTopicConsumeByWhoRequestH
 import org.apache.rocketmq.common.protocol.header.ResetOffsetRequestHeader;
 import org.apache.rocketmq.common.protocol.header.SearchOffsetRequestHeader;
 import org.apache.rocketmq.common.protocol.header.SearchOffsetResponseHeader;
+import org.apache.rocketmq.common.protocol.header.SyncMetadataRequestHeader;
+import org.apache.rocketmq.common.protocol.header.SyncMetadataResponseHeader;
 import org.apache.rocketmq.common.protocol.header.ViewBrokerStatsDataRequestHeader;
 import org.apache.rocketmq.common.protocol.header.filtersrv.RegisterFilterServerRequestHeader;
 import org.apache.rocketmq.common.protocol.header.filtersrv.RegisterFilterServerResponseHeader;
@@ -253,10 +259,18 @@ public class AdminBrokerProcessor implements NettyRequestProcessor {
         return response;
     }
 
-    private RemotingCommand getAllTopicConfig(ChannelHandlerContext ctx, RemotingCommand request) {
-        final RemotingCommand response = RemotingCommand.createResponseCommand(GetAllTopicConfigResponseHeader.class);
-        // final GetAllTopicConfigResponseHeader responseHeader =
-        // (GetAllTopicConfigResponseHeader) response.readCustomHeader();
+    private RemotingCommand getAllTopicConfig(ChannelHandlerContext ctx, RemotingCommand request) throws RemotingCommandException {
+        final RemotingCommand response = RemotingCommand.createResponseCommand(SyncMetadataResponseHeader.class);
+        final SyncMetadataResponseHeader responseHeader = (SyncMetadataResponseHeader)response.readCustomHeader();
+        final SyncMetadataRequestHeader requestHeader =
+            (SyncMetadataRequestHeader)request.decodeCommandCustomHeader(SyncMetadataRequestHeader.class);
+
+        if (this.isDataVersionSynced(requestHeader, this.brokerController.getTopicConfigManager().getDataVersion())) {
+            responseHeader.setNotModified(true);
+            response.setCode(ResponseCode.SUCCESS);
+            response.setRemark(null);
+            return response;
+        }
 
         String content = this.brokerController.getTopicConfigManager().encode();
         if (content != null && content.length() > 0) {
@@ -474,7 +488,18 @@ public class AdminBrokerProcessor implements NettyRequestProcessor {
     }
 
     private RemotingCommand getAllSubscriptionGroup(ChannelHandlerContext ctx, RemotingCommand request) throws RemotingCommandException {
-        final RemotingCommand response = RemotingCommand.createResponseCommand(null);
+        final RemotingCommand response = RemotingCommand.createResponseCommand(SyncMetadataResponseHeader.class);
+        final SyncMetadataResponseHeader responseHeader = (SyncMetadataResponseHeader)response.readCustomHeader();
+        final SyncMetadataRequestHeader requestHeader =
+            (SyncMetadataRequestHeader)request.decodeCommandCustomHeader(SyncMetadataRequestHeader.class);
+
+        if (this.isDataVersionSynced(requestHeader, this.brokerController.getSubscriptionGroupManager().getDataVersion())) {
+            responseHeader.setNotModified(true);
+            response.setCode(ResponseCode.SUCCESS);
+            response.setRemark(null);
+            return response;
+        }
+
         String content = this.brokerController.getSubscriptionGroupManager().encode();
         if (content != null && content.length() > 0) {
             try {
@@ -710,8 +735,25 @@ public class AdminBrokerProcessor implements NettyRequestProcessor {
         return response;
     }
 
-    private RemotingCommand getAllConsumerOffset(ChannelHandlerContext ctx, RemotingCommand request) {
-        final RemotingCommand response = RemotingCommand.createResponseCommand(null);
+    private RemotingCommand getAllConsumerOffset(ChannelHandlerContext ctx, RemotingCommand request) throws RemotingCommandException {
+        final RemotingCommand response = RemotingCommand.createResponseCommand(SyncMetadataResponseHeader.class);
+        final SyncMetadataResponseHeader responseHeader = (SyncMetadataResponseHeader)response.readCustomHeader();
+        final SyncMetadataRequestHeader requestHeader =
+            (SyncMetadataRequestHeader)request.decodeCommandCustomHeader(SyncMetadataRequestHeader.class);
+
+        // 携带数据版本的Slave支持增量同步, 只返回该版本之后有变化的消费进度
+        if (requestHeader.getDataVersionTimestamp() != null && requestHeader.getDataVersionCounter() != null) {
+            DataVersion since = new DataVersion();
+            since.setTimestamp(requestHeader.getDataVersionTimestamp());
+            since.getCounter().set(requestHeader.getDataVersionCounter());
+            ConsumerOffsetIncrement increment = this.brokerController.getConsumerOffsetManager().buildOffsetIncrement(since);
+
+            responseHeader.setIncremental(true);
+            response.setBody(increment.encode());
+            response.setCode(ResponseCode.SUCCESS);
+            response.setRemark(null);
+            return response;
+        }
 
         String content = this.brokerController.getConsumerOffsetManager().encode();
         if (content != null && content.length() > 0) {
@@ -737,6 +779,16 @@ public class AdminBrokerProcessor implements NettyRequestProcessor {
         return response;
     }
 
+    /**
+     * Slave上报的数据版本与当前版本一致
+     */
+    private boolean isDataVersionSynced(final SyncMetadataRequestHeader requestHeader, final DataVersion dataVersion) {
+        return requestHeader.getDataVersionTimestamp() != null
+            && requestHeader.getDataVersionCounter() != null
+            && requestHeader.getDataVersionTimestamp() == dataVersion.getTimestamp()
+            && requestHeader.getDataVersionCounter() == dataVersion.getCounter().get();
+    }
+
     private RemotingCommand getAllDelayOffset(ChannelHandlerContext ctx, RemotingCommand request) {
         final RemotingCommand response = RemotingCommand.createResponseCommand(null);
 
@@ -1173,7 +1225,13 @@ public class AdminBrokerProcessor implements NettyRequestProcessor {
         runtimeInfo.put("msgGetTotalTodayMorning", String.valueOf(this.brokerController.getBrokerStats().getMsgGetTotalTodayMorning()));
         runtimeInfo.put("msgGetTotalTodayNow", String.valueOf(this.brokerController.getBrokerStats().getMsgGetTotalTodayNow()));
 
-        runtimeInfo.put("sendThreadPoolQueueSize", String.valueOf(this.brokerController.getSendThreadPoolQueue().size()));
+        runtimeInfo.put("sendThreadPoolQueueSize", String.valueOf(this.brokerController.sendThreadPoolQueueSize()));
+        List<BlockingQueue<Runnable>> sendThreadPoolQueueList = this.brokerController.getSendThreadPoolQueueList();
+        if (sendThreadPoolQueueList.size() > 1) {
+            for (int i = 0; i < sendThreadPoolQueueList.size(); i++) {
+                runtimeInfo.put("sendThreadPoolLane" + i + "QueueSize", String.valueOf(sendThreadPoolQueueList.get(i).size()));
+            }
+        }
 
         runtimeInfo.put("sendThreadPoolQueueCapacity",
             String.valueOf(this.brokerController.getBrokerConfig().getSendThreadPoolQueueCapacity()));
@@ -1187,6 +1245,12 @@ public class AdminBrokerProcessor implements NettyRequestProcessor {
 
         runtimeInfo.put("sendThreadPoolQueueHeadWaitTimeMills", String.valueOf(this.brokerController.headSlowTimeMills4SendThreadPoolQueue()));
         runtimeInfo.put("pullThreadPoolQueueHeadWaitTimeMills", String.valueOf(this.brokerController.headSlowTimeMills4PullThreadPoolQueue()));
+        for (BrokerFixedThreadPoolExecutor executor : this.brokerController.getFixedThreadPoolExecutorList()) {
+            QueueDelayController controller = executor.getQueueDelayController();
+            runtimeInfo.put(controller.getQueueName() + "ThreadPoolQueueSojournDistribute", controller.getSojournDistributeStringInfo());
+            runtimeInfo.put(controller.getQueueName() + "ThreadPoolQueueAllowedWaitTimeMills", String.valueOf(controller.allowedWaitTimeMills()));
+            runtimeInfo.put(controller.getQueueName() + "ThreadPoolQueueShedTimes", String.valueOf(controller.getShedTimes()));
+        }
         runtimeInfo.put("earliestMessageTimeStamp", String.valueOf(this.brokerController.getMessageStore().getEarliestMessageTime()));
         runtimeInfo.put("startAcceptSendRequestTimeStamp", String.valueOf(this.brokerController.getBrokerConfig().getStartAcceptSendRequestTimeStamp()));
         if (this.brokerController.getMessageStore() instanceof DefaultMessageStore) {
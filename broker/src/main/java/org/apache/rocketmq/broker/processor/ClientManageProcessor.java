@@ -24,10 +24,12 @@ import org.apache.rocketmq.common.constant.LoggerName;
 import org.apache.rocketmq.common.constant.PermName;
 import org.apache.rocketmq.common.protocol.RequestCode;
 import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.common.protocol.header.HeartbeatRequestHeader;
 import org.apache.rocketmq.common.protocol.header.UnregisterClientRequestHeader;
 import org.apache.rocketmq.common.protocol.header.UnregisterClientResponseHeader;
 import org.apache.rocketmq.common.protocol.heartbeat.ConsumerData;
 import org.apache.rocketmq.common.protocol.heartbeat.HeartbeatData;
+import org.apache.rocketmq.common.protocol.heartbeat.HeartbeatLiteData;
 import org.apache.rocketmq.common.protocol.heartbeat.ProducerData;
 import org.apache.rocketmq.common.subscription.SubscriptionGroupConfig;
 import org.apache.rocketmq.common.sysflag.TopicSysFlag;
@@ -53,6 +55,8 @@ public class ClientManageProcessor implements NettyRequestProcessor {
         switch (request.getCode()) {
             case RequestCode.HEART_BEAT:
                 return this.heartBeat(ctx, request);
+            case RequestCode.HEART_BEAT_LITE:
+                return this.heartBeatLite(ctx, request);
             case RequestCode.UNREGISTER_CLIENT:
                 return this.unregisterClient(ctx, request);
             default:
@@ -73,15 +77,17 @@ public class ClientManageProcessor implements NettyRequestProcessor {
      * @param request
      * @return
      */
-    public RemotingCommand heartBeat(ChannelHandlerContext ctx, RemotingCommand request) {
+    public RemotingCommand heartBeat(ChannelHandlerContext ctx, RemotingCommand request) throws RemotingCommandException {
         RemotingCommand response = RemotingCommand.createResponseCommand(null);
         HeartbeatData heartbeatData = HeartbeatData.decode(request.getBody(), HeartbeatData.class);
+        HeartbeatRequestHeader requestHeader = (HeartbeatRequestHeader) request.decodeCommandCustomHeader(HeartbeatRequestHeader.class);
         ClientChannelInfo clientChannelInfo = new ClientChannelInfo(
             ctx.channel(),
             heartbeatData.getClientID(),
             request.getLanguage(),
             request.getVersion()
         );
+        clientChannelInfo.setHeartbeatFingerprint(requestHeader.getFingerprint());
 
         for (ConsumerData data : heartbeatData.getConsumerDataSet()) {
             SubscriptionGroupConfig subscriptionGroupConfig = this.brokerController.getSubscriptionGroupManager().findSubscriptionGroupConfig(data.getGroupName());
@@ -128,6 +134,38 @@ public class ClientManageProcessor implements NettyRequestProcessor {
         return response;
     }
 
+    /**
+     * 精简心跳, 客户端心跳数据未变化时只刷新存活时间
+     * 任一分组在该连接上未注册或指纹不一致时, 要求客户端发送完整心跳
+     *
+     * @param ctx
+     * @param request
+     * @return
+     */
+    public RemotingCommand heartBeatLite(ChannelHandlerContext ctx, RemotingCommand request) {
+        RemotingCommand response = RemotingCommand.createResponseCommand(null);
+        HeartbeatLiteData heartbeatLiteData = HeartbeatLiteData.decode(request.getBody(), HeartbeatLiteData.class);
+
+        boolean matched = true;
+        for (String group : heartbeatLiteData.getConsumerGroups()) {
+            matched = matched && this.brokerController.getConsumerManager().touchConsumer(group, ctx.channel(),
+                heartbeatLiteData.getFingerprint());
+        }
+        for (String group : heartbeatLiteData.getProducerGroups()) {
+            matched = matched && this.brokerController.getProducerManager().touchProducer(group, ctx.channel(),
+                heartbeatLiteData.getFingerprint());
+        }
+
+        if (!matched) {
+            response.setCode(ResponseCode.HEARTBEAT_FINGERPRINT_MISMATCH);
+            response.setRemark("heartbeat fingerprint mismatch, full heartbeat required");
+            return response;
+        }
+        response.setCode(ResponseCode.SUCCESS);
+        response.setRemark(null);
+        return response;
+    }
+
     public RemotingCommand unregisterClient(ChannelHandlerContext ctx, RemotingCommand request)
         throws RemotingCommandException {
         final RemotingCommand response =
@@ -19,17 +19,20 @@ package org.apache.rocketmq.broker.processor;
 import io.netty.channel.ChannelHandlerContext;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.rocketmq.broker.BrokerController;
 import org.apache.rocketmq.broker.client.ConsumerGroupInfo;
 import org.apache.rocketmq.common.constant.LoggerName;
 import org.apache.rocketmq.common.protocol.RequestCode;
 import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.common.protocol.body.UpdateConsumerOffsetBatchRequestBody;
 import org.apache.rocketmq.common.protocol.header.GetConsumerListByGroupRequestHeader;
 import org.apache.rocketmq.common.protocol.header.GetConsumerListByGroupResponseBody;
 import org.apache.rocketmq.common.protocol.header.GetConsumerListByGroupResponseHeader;
 import org.apache.rocketmq.common.protocol.header.QueryConsumerOffsetRequestHeader;
 import org.apache.rocketmq.common.protocol.header.QueryConsumerOffsetResponseHeader;
+import org.apache.rocketmq.common.protocol.header.UpdateConsumerOffsetBatchRequestHeader;
 import org.apache.rocketmq.common.protocol.header.UpdateConsumerOffsetRequestHeader;
 import org.apache.rocketmq.common.protocol.header.UpdateConsumerOffsetResponseHeader;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
@@ -57,6 +60,8 @@ public class ConsumerManageProcessor implements NettyRequestProcessor {
                 return this.getConsumerListByGroup(ctx, request);
             case RequestCode.UPDATE_CONSUMER_OFFSET:
                 return this.updateConsumerOffset(ctx, request);
+            case RequestCode.UPDATE_CONSUMER_OFFSET_BATCH:
+                return this.updateConsumerOffsetBatch(ctx, request);
             case RequestCode.QUERY_CONSUMER_OFFSET:
                 return this.queryConsumerOffset(ctx, request);
             default:
@@ -126,6 +131,30 @@ public class ConsumerManageProcessor implements NettyRequestProcessor {
         return response;
     }
 
+    /**
+     * 批量更新消费进度: 一个请求包含消费分组在本Broker上所有队列的进度, 每个Topic只处理一次
+     */
+    private RemotingCommand updateConsumerOffsetBatch(ChannelHandlerContext ctx, RemotingCommand request)
+        throws RemotingCommandException {
+        final RemotingCommand response = RemotingCommand.createResponseCommand(null);
+        final UpdateConsumerOffsetBatchRequestHeader requestHeader =
+            (UpdateConsumerOffsetBatchRequestHeader)request.decodeCommandCustomHeader(UpdateConsumerOffsetBatchRequestHeader.class);
+
+        if (request.getBody() != null) {
+            final String clientHost = RemotingHelper.parseChannelRemoteAddr(ctx.channel());
+            UpdateConsumerOffsetBatchRequestBody requestBody =
+                UpdateConsumerOffsetBatchRequestBody.decode(request.getBody(), UpdateConsumerOffsetBatchRequestBody.class);
+            for (Map.Entry<String, Map<Integer, Long>> entry : requestBody.getOffsetTable().entrySet()) {
+                this.brokerController.getConsumerOffsetManager().commitOffset(clientHost, requestHeader.getConsumerGroup(),
+                    entry.getKey(), entry.getValue());
+            }
+        }
+
+        response.setCode(ResponseCode.SUCCESS);
+        response.setRemark(null);
+        return response;
+    }
+
     private RemotingCommand queryConsumerOffset(ChannelHandlerContext ctx, RemotingCommand request)
         throws RemotingCommandException {
         final RemotingCommand response =
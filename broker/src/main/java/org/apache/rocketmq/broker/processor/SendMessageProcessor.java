@@ -30,6 +30,11 @@ import org.apache.rocketmq.common.message.MessageDecoder;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.protocol.RequestCode;
 import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.common.protocol.body.ConsumerSendMsgBackBatchRequestBody;
+import org.apache.rocketmq.common.protocol.body.ConsumerSendMsgBackBatchResponseBody;
+import org.apache.rocketmq.common.protocol.body.SendMessageBatchRequestBody;
+import org.apache.rocketmq.common.protocol.body.SendMessageBatchResponseBody;
+import org.apache.rocketmq.common.protocol.header.ConsumerSendMsgBackBatchRequestHeader;
 import org.apache.rocketmq.common.protocol.header.ConsumerSendMsgBackRequestHeader;
 import org.apache.rocketmq.common.protocol.header.SendMessageRequestHeader;
 import org.apache.rocketmq.common.protocol.header.SendMessageResponseHeader;
@@ -37,15 +42,21 @@ import org.apache.rocketmq.common.subscription.SubscriptionGroupConfig;
 import org.apache.rocketmq.common.sysflag.MessageSysFlag;
 import org.apache.rocketmq.common.sysflag.TopicSysFlag;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
+import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.netty.NettyRequestProcessor;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.apache.rocketmq.store.MessageExtBrokerInner;
+import org.apache.rocketmq.store.MessageStore;
 import org.apache.rocketmq.store.PutMessageResult;
+import org.apache.rocketmq.store.PutMessageStatus;
 import org.apache.rocketmq.store.config.StorePathConfigHelper;
 import org.apache.rocketmq.store.stats.BrokerStatsManager;
 
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SendMessageProcessor extends AbstractSendMessageProcessor implements NettyRequestProcessor {
 
@@ -61,6 +72,10 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
         switch (request.getCode()) {
             case RequestCode.CONSUMER_SEND_MSG_BACK:
                 return this.consumerSendMsgBack(ctx, request);
+            case RequestCode.CONSUMER_SEND_MSG_BACK_BATCH:
+                return this.consumerSendMsgBackBatch(ctx, request);
+            case RequestCode.SEND_BATCH_MESSAGE:
+                return this.sendBatchMessage(ctx, request);
             default:
                 // 解析请求
                 SendMessageRequestHeader requestHeader = parseRequestHeader(request);
@@ -79,6 +94,24 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
         }
     }
 
+    /**
+     * 在发送响应中携带Broker负载提示，Producer据此在超时发生前避开繁忙的Broker
+     *
+     * @param responseHeader 响应头
+     */
+    private void fillLoadHint(final SendMessageResponseHeader responseHeader) {
+        if (!this.brokerController.getBrokerConfig().isSendLoadHintEnable()) {
+            return;
+        }
+        final int capacity = Math.max(1, this.brokerController.getBrokerConfig().getSendThreadPoolQueueCapacity());
+        responseHeader.setSendQueueLoad((int) Math.min(100L, this.brokerController.sendThreadPoolQueueSize() * 100L / capacity));
+        // 锁持有时间超过繁忙阈值的一半即提示，早于Broker开始拒绝写入
+        final MessageStore messageStore = this.brokerController.getMessageStore();
+        final long busyTimeOutMills = this.brokerController.getMessageStoreConfig().getOsPageCacheBusyTimeOutMills();
+        responseHeader.setPageCacheBusy(messageStore.lockTimeMills() > busyTimeOutMills / 2
+            || messageStore.isTransientStorePoolDeficient());
+    }
+
     @Override
     public boolean rejectRequest() {
         return this.brokerController.getMessageStore().isOSPageCacheBusy() ||
@@ -114,39 +147,96 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
             this.executeConsumeMessageHookAfter(context);
         }
 
+        // 检查消费分组与重试Topic
+        SubscriptionGroupConfig subscriptionGroupConfig = this.checkSendBack(response, requestHeader.getGroup(), requestHeader.isUnitMode());
+        if (null == subscriptionGroupConfig) {
+            return response;
+        }
+
+        // 计算retry Topic  "%RETRY%+consumeGroup"
+        String newTopic = MixAll.getRetryTopic(requestHeader.getGroup());
+
+        // 计算队列编号（独有）  queueIdInt = 0
+        int queueIdInt = Math.abs(this.random.nextInt() % 99999999) % subscriptionGroupConfig.getRetryQueueNums();
+
+        // 最大重试次数
+        int maxReconsumeTimes = subscriptionGroupConfig.getRetryMaxTimes();
+        // V3_4_9之后的版本,可以支持自定义消息的最大消费次数,若为指定,默认为16
+        if (request.getVersion() >= MQVersion.Version.V3_4_9.ordinal()) {
+            maxReconsumeTimes = requestHeader.getMaxReconsumeTimes();
+        }
+
+        MessageExtBrokerInner msgInner = this.buildSendBackMessage(response, requestHeader.getGroup(), newTopic, queueIdInt,
+            requestHeader.getOffset(), requestHeader.getDelayLevel(), maxReconsumeTimes);
+        if (null == msgInner) {
+            return response;
+        }
+
+        // 添加消息
+        PutMessageResult putMessageResult = this.brokerController.getMessageStore().putMessage(msgInner);
+        if (putMessageResult != null) {
+            switch (putMessageResult.getPutMessageStatus()) {
+                case PUT_OK:
+                    String backTopic = msgInner.getProperty(MessageConst.PROPERTY_RETRY_TOPIC);
+                    this.brokerController.getBrokerStatsManager().incSendBackNums(requestHeader.getGroup(), backTopic);
+
+                    response.setCode(ResponseCode.SUCCESS);
+                    response.setRemark(null);
+
+                    return response;
+                default:
+                    break;
+            }
+
+            response.setCode(ResponseCode.SYSTEM_ERROR);
+            response.setRemark(putMessageResult.getPutMessageStatus().name());
+            return response;
+        }
+
+        response.setCode(ResponseCode.SYSTEM_ERROR);
+        response.setRemark("putMessageResult is null");
+        return response;
+    }
+
+    /**
+     * 发回消息的公共检查: 消费分组是否存在, Broker 与 重试Topic 是否可写
+     *
+     * @param response 检查未通过时设置响应码
+     * @param group    消费分组
+     * @param unitMode 是否单元化
+     * @return 消费分组配置; 检查未通过或无需重试时返回null
+     */
+    private SubscriptionGroupConfig checkSendBack(final RemotingCommand response, final String group, final boolean unitMode) {
         // 判断消费分组是否存在（独有）
         SubscriptionGroupConfig subscriptionGroupConfig =
-            this.brokerController.getSubscriptionGroupManager().findSubscriptionGroupConfig(requestHeader.getGroup());
+            this.brokerController.getSubscriptionGroupManager().findSubscriptionGroupConfig(group);
         if (null == subscriptionGroupConfig) {
             response.setCode(ResponseCode.SUBSCRIPTION_GROUP_NOT_EXIST);
-            response.setRemark("subscription group not exist, " + requestHeader.getGroup() + " "
+            response.setRemark("subscription group not exist, " + group + " "
                 + FAQUrl.suggestTodo(FAQUrl.SUBSCRIPTION_GROUP_NOT_EXIST));
-            return response;
+            return null;
         }
 
         // 检查 broker 是否有写入权限
         if (!PermName.isWriteable(this.brokerController.getBrokerConfig().getBrokerPermission())) {
             response.setCode(ResponseCode.NO_PERMISSION);
             response.setRemark("the broker[" + this.brokerController.getBrokerConfig().getBrokerIP1() + "] sending message is forbidden");
-            return response;
+            return null;
         }
 
         // 检查 重试队列数 是否大于0（独有）
         if (subscriptionGroupConfig.getRetryQueueNums() <= 0) {
             response.setCode(ResponseCode.SUCCESS);
             response.setRemark(null);
-            return response;
+            return null;
         }
 
         // 计算retry Topic  "%RETRY%+consumeGroup"
-        String newTopic = MixAll.getRetryTopic(requestHeader.getGroup());
-
-        // 计算队列编号（独有）  queueIdInt = 0
-        int queueIdInt = Math.abs(this.random.nextInt() % 99999999) % subscriptionGroupConfig.getRetryQueueNums();
+        String newTopic = MixAll.getRetryTopic(group);
 
         // 计算sysFlag（独有）
         int topicSysFlag = 0;
-        if (requestHeader.isUnitMode()) {
+        if (unitMode) {
             topicSysFlag = TopicSysFlag.buildSysFlag(false, true);
         }
 
@@ -158,20 +248,126 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
         if (null == topicConfig) { // 没有配置
             response.setCode(ResponseCode.SYSTEM_ERROR);
             response.setRemark("topic[" + newTopic + "] not exist");
-            return response;
+            return null;
         }
         if (!PermName.isWriteable(topicConfig.getPerm())) { // 不允许写入
             response.setCode(ResponseCode.NO_PERMISSION);
             response.setRemark(String.format("the topic[%s] sending message is forbidden", newTopic));
+            return null;
+        }
+
+        return subscriptionGroupConfig;
+    }
+
+    /**
+     * 批量发回消费失败的消息
+     * 公共检查只做一次, 所有消息通过 {@link org.apache.rocketmq.store.MessageStore#putMessages(List)} 一次写入。
+     * 响应体中返回发回成功的消息位置, 其余消息由 Consumer 自行处理。
+     *
+     * @param ctx     ctx
+     * @param request 请求
+     * @return 响应
+     * @throws RemotingCommandException 当解析请求失败时
+     */
+    private RemotingCommand consumerSendMsgBackBatch(final ChannelHandlerContext ctx, final RemotingCommand request)
+        throws RemotingCommandException {
+        final RemotingCommand response = RemotingCommand.createResponseCommand(null);
+        final ConsumerSendMsgBackBatchRequestHeader requestHeader =
+            (ConsumerSendMsgBackBatchRequestHeader)request.decodeCommandCustomHeader(ConsumerSendMsgBackBatchRequestHeader.class);
+        final ConsumerSendMsgBackBatchRequestBody requestBody = ConsumerSendMsgBackBatchRequestBody.decode(request.getBody(),
+            ConsumerSendMsgBackBatchRequestBody.class);
+        final ConsumerSendMsgBackBatchResponseBody responseBody = new ConsumerSendMsgBackBatchResponseBody();
+        final List<ConsumerSendMsgBackBatchRequestBody.SendBackEntry> entryList = requestBody.getEntryList();
+
+        // hook
+        if (this.hasConsumeMessageHook()) {
+            for (ConsumerSendMsgBackBatchRequestBody.SendBackEntry entry : entryList) {
+                if (!UtilAll.isBlank(entry.getOriginMsgId())) {
+                    ConsumeMessageContext context = new ConsumeMessageContext();
+                    context.setConsumerGroup(requestHeader.getGroup());
+                    context.setTopic(entry.getOriginTopic());
+                    context.setCommercialRcvStats(BrokerStatsManager.StatsType.SEND_BACK);
+                    context.setCommercialRcvTimes(1);
+                    context.setCommercialOwner(request.getExtFields().get(BrokerStatsManager.COMMERCIAL_OWNER));
+
+                    this.executeConsumeMessageHookAfter(context);
+                }
+            }
+        }
+
+        // 检查消费分组与重试Topic。无需重试时所有消息视为发回成功
+        final SubscriptionGroupConfig subscriptionGroupConfig = this.checkSendBack(response, requestHeader.getGroup(), requestHeader.isUnitMode());
+        if (null == subscriptionGroupConfig) {
+            if (ResponseCode.SUCCESS == response.getCode()) {
+                for (ConsumerSendMsgBackBatchRequestBody.SendBackEntry entry : entryList) {
+                    responseBody.getSendBackOKOffsetSet().add(entry.getOffset());
+                }
+                response.setBody(responseBody.encode());
+            }
             return response;
         }
 
+        final String newTopic = MixAll.getRetryTopic(requestHeader.getGroup());
+        int maxReconsumeTimes = subscriptionGroupConfig.getRetryMaxTimes();
+        if (requestHeader.getMaxReconsumeTimes() != null) {
+            maxReconsumeTimes = requestHeader.getMaxReconsumeTimes();
+        }
+
+        // 构建发回消息, 单条消息失败不影响其他消息
+        final List<MessageExtBrokerInner> msgInnerList = new ArrayList<MessageExtBrokerInner>(entryList.size());
+        final List<Long> offsetList = new ArrayList<Long>(entryList.size());
+        final RemotingCommand entryResponse = RemotingCommand.createResponseCommand(null);
+        for (ConsumerSendMsgBackBatchRequestBody.SendBackEntry entry : entryList) {
+            int queueIdInt = Math.abs(this.random.nextInt() % 99999999) % subscriptionGroupConfig.getRetryQueueNums();
+            MessageExtBrokerInner msgInner = this.buildSendBackMessage(entryResponse, requestHeader.getGroup(), newTopic, queueIdInt,
+                entry.getOffset(), entry.getDelayLevel(), maxReconsumeTimes);
+            if (null == msgInner) {
+                log.warn("consumerSendMsgBackBatch build message failed, {} {}", entry.getOffset(), entryResponse.getRemark());
+                continue;
+            }
+            msgInnerList.add(msgInner);
+            offsetList.add(entry.getOffset());
+        }
+
+        // 批量添加消息
+        if (!msgInnerList.isEmpty()) {
+            List<PutMessageResult> putMessageResults = this.brokerController.getMessageStore().putMessages(msgInnerList);
+            for (int i = 0; i < msgInnerList.size(); i++) {
+                PutMessageResult putMessageResult = putMessageResults.get(i);
+                if (putMessageResult != null && PutMessageStatus.PUT_OK == putMessageResult.getPutMessageStatus()) {
+                    String backTopic = msgInnerList.get(i).getProperty(MessageConst.PROPERTY_RETRY_TOPIC);
+                    this.brokerController.getBrokerStatsManager().incSendBackNums(requestHeader.getGroup(), backTopic);
+                    responseBody.getSendBackOKOffsetSet().add(offsetList.get(i));
+                }
+            }
+        }
+
+        response.setCode(ResponseCode.SUCCESS);
+        response.setRemark(null);
+        response.setBody(responseBody.encode());
+        return response;
+    }
+
+    /**
+     * 查询消费失败的消息, 构建发回 重试Topic 或 死信队列 的消息
+     *
+     * @param response          失败时设置响应码
+     * @param group             消费分组
+     * @param newTopic          重试Topic
+     * @param queueIdInt        重试队列编号
+     * @param offset            消息的commitLog位置
+     * @param delayLevel        延迟级别, 0 表示由Broker按重试次数决定, 小于0 表示直接进入死信队列
+     * @param maxReconsumeTimes 最大重试次数
+     * @return 发回的消息, 失败时返回null
+     */
+    private MessageExtBrokerInner buildSendBackMessage(final RemotingCommand response, final String group, String newTopic,
+        int queueIdInt, final long offset, int delayLevel, final int maxReconsumeTimes) {
         // 根据消息的commitLog Offset查询实际的MessageExt,消费失败的实际消息
-        MessageExt msgExt = this.brokerController.getMessageStore().lookMessageByOffset(requestHeader.getOffset());
+        MessageExt msgExt = this.brokerController.getMessageStore().lookMessageByOffset(offset);
         if (null == msgExt) {
             response.setCode(ResponseCode.SYSTEM_ERROR);
-            response.setRemark("look message by offset failed, " + requestHeader.getOffset());
-            return response;
+            response.setRemark("look message by offset failed, " + offset);
+            return null;
         }
 
         // 设置 PROPERTY_RETRY_TOPIC = 原始topic, 非 %RETRY%consumeGroup,msgInner通过setProperties()方法将原始消息的Properties拷贝过去
@@ -183,26 +379,19 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
         // 设置消息不等待存储完成（独有）
         msgExt.setWaitStoreMsgOK(false);
 
-        // 处理 delayLevel（独有）。
-        int delayLevel = requestHeader.getDelayLevel();
-        int maxReconsumeTimes = subscriptionGroupConfig.getRetryMaxTimes();
-        // V3_4_9之后的版本,可以支持自定义消息的最大消费次数,若为指定,默认为16
-        if (request.getVersion() >= MQVersion.Version.V3_4_9.ordinal()) {
-            maxReconsumeTimes = requestHeader.getMaxReconsumeTimes();
-        }
         // 如果超过最大消费次数或者delayLevel < 0，则topic修改成"%DLQ%" + 分组名，即加入 死信队列(Dead Letter Queue)
         if (msgExt.getReconsumeTimes() >= maxReconsumeTimes || delayLevel < 0) {
-            newTopic = MixAll.getDLQTopic(requestHeader.getGroup());
+            newTopic = MixAll.getDLQTopic(group);
             queueIdInt = Math.abs(this.random.nextInt() % 99999999) % DLQ_NUMS_PER_GROUP;
             // dlq队列只能写,不能读
-            topicConfig = this.brokerController.getTopicConfigManager().createTopicInSendMessageBackMethod(newTopic, //
+            TopicConfig topicConfig = this.brokerController.getTopicConfigManager().createTopicInSendMessageBackMethod(newTopic, //
                 DLQ_NUMS_PER_GROUP,
                 PermName.PERM_WRITE, 0
             );
             if (null == topicConfig) {
                 response.setCode(ResponseCode.SYSTEM_ERROR);
                 response.setRemark("topic[" + newTopic + "] not exist");
-                return response;
+                return null;
             }
         } else {
             if (0 == delayLevel) {
@@ -231,35 +420,8 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
         String originMsgId = MessageAccessor.getOriginMessageId(msgExt);
         MessageAccessor.setOriginMessageId(msgInner, UtilAll.isBlank(originMsgId) ? msgExt.getMsgId() : originMsgId);
 
-        // 添加消息
-        PutMessageResult putMessageResult = this.brokerController.getMessageStore().putMessage(msgInner);
-        if (putMessageResult != null) {
-            switch (putMessageResult.getPutMessageStatus()) {
-                case PUT_OK:
-                    String backTopic = msgExt.getTopic();
-                    String correctTopic = msgExt.getProperty(MessageConst.PROPERTY_RETRY_TOPIC);
-                    if (correctTopic != null) {
-                        backTopic = correctTopic;
-                    }
-
-                    this.brokerController.getBrokerStatsManager().incSendBackNums(requestHeader.getGroup(), backTopic);
-
-                    response.setCode(ResponseCode.SUCCESS);
-                    response.setRemark(null);
 
-                    return response;
-                default:
-                    break;
-            }
-
-            response.setCode(ResponseCode.SYSTEM_ERROR);
-            response.setRemark(putMessageResult.getPutMessageStatus().name());
-            return response;
-        }
-
-        response.setCode(ResponseCode.SYSTEM_ERROR);
-        response.setRemark("putMessageResult is null");
-        return response;
+        return msgInner;
     }
 
     /**
@@ -444,6 +606,7 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
                 responseHeader.setMsgId(putMessageResult.getAppendMessageResult().getMsgId());
                 responseHeader.setQueueId(queueIdInt);
                 responseHeader.setQueueOffset(putMessageResult.getAppendMessageResult().getLogicsOffset());
+                this.fillLoadHint(responseHeader);
                 doResponse(ctx, request, response);
 
                 // hook：设置发送成功到context
@@ -482,6 +645,254 @@ public class SendMessageProcessor extends AbstractSendMessageProcessor implement
         return response;
     }
 
+    /**
+     * 批量发送同一消息队列的消息
+     * 所有消息共用请求头中的Topic与队列编号, 只获取一次CommitLog追加锁; 每条消息的结果在响应体中单独返回。
+     * 每条消息建立各自的 SendMessageContext, 与单条发送一样执行 SendMessageHook。
+     *
+     * @param ctx     ctx
+     * @param request 请求
+     * @return 响应
+     * @throws RemotingCommandException 当远程调用异常
+     */
+    private RemotingCommand sendBatchMessage(final ChannelHandlerContext ctx, final RemotingCommand request)
+        throws RemotingCommandException {
+        final RemotingCommand response = RemotingCommand.createResponseCommand(SendMessageResponseHeader.class);
+        final SendMessageResponseHeader responseHeader = (SendMessageResponseHeader)response.readCustomHeader();
+        final SendMessageRequestHeader requestHeader =
+            (SendMessageRequestHeader)request.decodeCommandCustomHeader(SendMessageRequestHeader.class);
+        response.setOpaque(request.getOpaque());
+        response.addExtField(MessageConst.PROPERTY_MSG_REGION, this.brokerController.getBrokerConfig().getRegionId());
+        response.addExtField(MessageConst.PROPERTY_TRACE_SWITCH, String.valueOf(this.brokerController.getBrokerConfig().isTraceOn()));
+
+        // 如果未开始接收消息，抛出系统异常
+        @SuppressWarnings("SpellCheckingInspection")
+        final long startTimstamp = this.brokerController.getBrokerConfig().getStartAcceptSendRequestTimeStamp();
+        if (this.brokerController.getMessageStore().now() < startTimstamp) {
+            response.setCode(ResponseCode.SYSTEM_ERROR);
+            response.setRemark(String.format("broker unable to service, until %s", UtilAll.timeMillisToHumanString2(startTimstamp)));
+            return response;
+        }
+
+        // 重试消息需要按消费次数转入死信队列, 不支持批量发送
+        if (requestHeader.getTopic().startsWith(MixAll.RETRY_GROUP_TOPIC_PREFIX)) {
+            response.setCode(ResponseCode.MESSAGE_ILLEGAL);
+            response.setRemark("batch send to retry topic is not supported, " + requestHeader.getTopic());
+            return response;
+        }
+
+        // 消息配置(Topic配置）校验
+        response.setCode(-1);
+        super.msgCheck(ctx, requestHeader, response);
+        if (response.getCode() != -1) {
+            return response;
+        }
+
+        TopicConfig topicConfig = this.brokerController.getTopicConfigManager().selectTopicConfig(requestHeader.getTopic());
+        int queueIdInt = requestHeader.getQueueId();
+        if (queueIdInt < 0) {
+            queueIdInt = Math.abs(this.random.nextInt() % 99999999) % topicConfig.getWriteQueueNums();
+        }
+
+        final SendMessageBatchRequestBody requestBody = SendMessageBatchRequestBody.decode(request.getBody(),
+            this.brokerController.getMessageStoreConfig().getMaxMessageSize());
+        if (null == requestBody) {
+            response.setCode(ResponseCode.MESSAGE_ILLEGAL);
+            response.setRemark("the batch message body is illegal, maybe msg count or length not matched.");
+            return response;
+        }
+
+        final List<MessageExtBrokerInner> msgInnerList = new ArrayList<MessageExtBrokerInner>(requestBody.getEntryList().size());
+        for (SendMessageBatchRequestBody.MessageEntry entry : requestBody.getEntryList()) {
+            int sysFlag = entry.getSysFlag();
+            if (TopicFilterType.MULTI_TAG == topicConfig.getTopicFilterType()) {
+                sysFlag |= MessageSysFlag.MULTI_TAGS_FLAG;
+            }
+
+            MessageExtBrokerInner msgInner = new MessageExtBrokerInner();
+            msgInner.setTopic(requestHeader.getTopic());
+            msgInner.setBody(entry.getBody());
+            msgInner.setFlag(entry.getFlag());
+            MessageAccessor.setProperties(msgInner, MessageDecoder.string2messageProperties(entry.getProperties()));
+            msgInner.setPropertiesString(entry.getProperties());
+            msgInner.setTagsCode(MessageExtBrokerInner.tagsString2tagsCode(topicConfig.getTopicFilterType(), msgInner.getTags()));
+            msgInner.setQueueId(queueIdInt);
+            msgInner.setSysFlag(sysFlag);
+            msgInner.setBornTimestamp(entry.getBornTimestamp());
+            msgInner.setBornHost(ctx.channel().remoteAddress());
+            msgInner.setStoreHost(this.getStoreHost());
+            msgInner.setReconsumeTimes(0);
+
+            // 校验是否不允许发送事务消息
+            if (this.brokerController.getBrokerConfig().isRejectTransactionMessage()
+                && msgInner.getProperty(MessageConst.PROPERTY_TRANSACTION_PREPARED) != null) {
+                response.setCode(ResponseCode.NO_PERMISSION);
+                response.setRemark(
+                    "the broker[" + this.brokerController.getBrokerConfig().getBrokerIP1() + "] sending transaction message is forbidden");
+                return response;
+            }
+            msgInnerList.add(msgInner);
+        }
+
+        // hook：处理发送消息前逻辑, 每条消息一个上下文
+        List<SendMessageContext> contextList = null;
+        if (this.hasSendMessageHook()) {
+            contextList = new ArrayList<SendMessageContext>(msgInnerList.size());
+            for (MessageExtBrokerInner msgInner : msgInnerList) {
+                final SendMessageContext context = this.buildBatchMsgContext(ctx, requestHeader, msgInner);
+                this.executeSendMessageHookBefore(ctx, request, context);
+                // Hook可能修改消息属性
+                MessageAccessor.setProperties(msgInner, MessageDecoder.string2messageProperties(context.getMsgProps()));
+                msgInner.setPropertiesString(context.getMsgProps());
+                msgInner.setTagsCode(MessageExtBrokerInner.tagsString2tagsCode(topicConfig.getTopicFilterType(), msgInner.getTags()));
+                contextList.add(context);
+            }
+        }
+
+        // 添加消息
+        final List<PutMessageResult> putMessageResults = this.brokerController.getMessageStore().putMessages(msgInnerList);
+        final String owner = request.getExtFields().get(BrokerStatsManager.COMMERCIAL_OWNER);
+        final SendMessageBatchResponseBody responseBody = new SendMessageBatchResponseBody();
+        for (int i = 0; i < msgInnerList.size(); i++) {
+            final PutMessageResult putMessageResult = putMessageResults.get(i);
+            final SendMessageBatchResponseBody.SendResultEntry resultEntry = new SendMessageBatchResponseBody.SendResultEntry();
+            this.fillSendResultEntry(resultEntry, putMessageResult);
+            if (resultEntry.getMsgId() != null) {
+                // 统计
+                this.brokerController.getBrokerStatsManager().incTopicPutNums(requestHeader.getTopic());
+                this.brokerController.getBrokerStatsManager().incTopicPutSize(requestHeader.getTopic(),
+                    putMessageResult.getAppendMessageResult().getWroteBytes());
+                this.brokerController.getBrokerStatsManager().incBrokerPutNums();
+            }
+            responseBody.getResultList().add(resultEntry);
+
+            // hook：处理发送消息后逻辑
+            if (contextList != null) {
+                this.fillBatchMsgContext(contextList.get(i), resultEntry, putMessageResult, msgInnerList.get(i), queueIdInt, owner);
+                this.executeSendMessageHookAfter(null, contextList.get(i));
+            }
+        }
+
+        response.setCode(ResponseCode.SUCCESS);
+        response.setRemark(null);
+        response.setBody(responseBody.encode());
+        responseHeader.setQueueId(queueIdInt);
+        this.fillLoadHint(responseHeader);
+        return response;
+    }
+
+    /**
+     * 为批量中的一条消息建立上下文, 与 {@link #buildMsgContext} 一致, 属性取自该条消息
+     */
+    private SendMessageContext buildBatchMsgContext(final ChannelHandlerContext ctx,
+        final SendMessageRequestHeader requestHeader, final MessageExtBrokerInner msgInner) {
+        SendMessageContext context = new SendMessageContext();
+        context.setProducerGroup(requestHeader.getProducerGroup());
+        context.setTopic(requestHeader.getTopic());
+        context.setBodyLength(msgInner.getBody().length);
+        context.setBornHost(RemotingHelper.parseChannelRemoteAddr(ctx.channel()));
+        context.setBrokerAddr(this.brokerController.getBrokerAddr());
+        context.setBrokerRegionId(this.brokerController.getBrokerConfig().getRegionId());
+        context.setBornTimeStamp(msgInner.getBornTimestamp());
+        context.setQueueId(msgInner.getQueueId());
+
+        Map<String, String> properties = new HashMap<String, String>(msgInner.getProperties());
+        String uniqueKey = properties.get(MessageConst.PROPERTY_UNIQ_CLIENT_MESSAGE_ID_KEYIDX);
+        properties.put(MessageConst.PROPERTY_MSG_REGION, this.brokerController.getBrokerConfig().getRegionId());
+        properties.put(MessageConst.PROPERTY_TRACE_SWITCH, String.valueOf(this.brokerController.getBrokerConfig().isTraceOn()));
+        context.setMsgProps(MessageDecoder.messageProperties2String(properties));
+        context.setMsgUniqueKey(uniqueKey == null ? "" : uniqueKey);
+        return context;
+    }
+
+    /**
+     * 将批量中一条消息的存储结果设置到上下文, 与 {@link #sendMessage} 一致
+     */
+    private void fillBatchMsgContext(final SendMessageContext context, final SendMessageBatchResponseBody.SendResultEntry resultEntry,
+        final PutMessageResult putMessageResult, final MessageExtBrokerInner msgInner, final int queueId, final String owner) {
+        context.setQueueId(queueId);
+        context.setCode(resultEntry.getCode());
+        context.setErrorMsg(resultEntry.getRemark());
+        context.setCommercialOwner(owner);
+        if (resultEntry.getMsgId() != null) {
+            context.setMsgId(resultEntry.getMsgId());
+            context.setQueueOffset(resultEntry.getQueueOffset());
+
+            int commercialBaseCount = brokerController.getBrokerConfig().getCommercialBaseCount();
+            int wroteSize = putMessageResult.getAppendMessageResult().getWroteBytes();
+            int incValue = (int)Math.ceil(wroteSize / BrokerStatsManager.SIZE_PER_COUNT) * commercialBaseCount;
+
+            context.setCommercialSendStats(BrokerStatsManager.StatsType.SEND_SUCCESS);
+            context.setCommercialSendTimes(incValue);
+            context.setCommercialSendSize(wroteSize);
+        } else {
+            int wroteSize = msgInner.getBody().length;
+            int incValue = (int)Math.ceil(wroteSize / BrokerStatsManager.SIZE_PER_COUNT);
+
+            context.setCommercialSendStats(BrokerStatsManager.StatsType.SEND_FAILURE);
+            context.setCommercialSendTimes(incValue);
+            context.setCommercialSendSize(wroteSize);
+        }
+    }
+
+    /**
+     * 将单条消息的存储结果转换为响应码, 与 {@link #sendMessage} 一致; 存储成功时填充消息编号与队列位置
+     */
+    private void fillSendResultEntry(final SendMessageBatchResponseBody.SendResultEntry resultEntry,
+        final PutMessageResult putMessageResult) {
+        if (null == putMessageResult) {
+            resultEntry.setCode(ResponseCode.SYSTEM_ERROR);
+            resultEntry.setRemark("store putMessage return null");
+            return;
+        }
+
+        boolean sendOK = false;
+        switch (putMessageResult.getPutMessageStatus()) {
+            case PUT_OK:
+                resultEntry.setCode(ResponseCode.SUCCESS);
+                sendOK = true;
+                break;
+            case FLUSH_DISK_TIMEOUT:
+                resultEntry.setCode(ResponseCode.FLUSH_DISK_TIMEOUT);
+                sendOK = true;
+                break;
+            case FLUSH_SLAVE_TIMEOUT:
+                resultEntry.setCode(ResponseCode.FLUSH_SLAVE_TIMEOUT);
+                sendOK = true;
+                break;
+            case SLAVE_NOT_AVAILABLE:
+                resultEntry.setCode(ResponseCode.SLAVE_NOT_AVAILABLE);
+                sendOK = true;
+                break;
+            case CREATE_MAPEDFILE_FAILED:
+                resultEntry.setCode(ResponseCode.SYSTEM_ERROR);
+                resultEntry.setRemark("create mapped file failed, server is busy or broken.");
+                break;
+            case MESSAGE_ILLEGAL:
+            case PROPERTIES_SIZE_EXCEEDED:
+                resultEntry.setCode(ResponseCode.MESSAGE_ILLEGAL);
+                resultEntry.setRemark("the message is illegal, maybe msg body or properties length not matched.");
+                break;
+            case SERVICE_NOT_AVAILABLE:
+                resultEntry.setCode(ResponseCode.SERVICE_NOT_AVAILABLE);
+                resultEntry.setRemark("service not available now, maybe disk full, " + diskUtil() + ".");
+                break;
+            case OS_PAGECACHE_BUSY:
+                resultEntry.setCode(ResponseCode.SYSTEM_ERROR);
+                resultEntry.setRemark("[PC_SYNCHRONIZED]broker busy, start flow control for a while");
+                break;
+            default:
+                resultEntry.setCode(ResponseCode.SYSTEM_ERROR);
+                resultEntry.setRemark("UNKNOWN_ERROR");
+                break;
+        }
+
+        if (sendOK) {
+            resultEntry.setMsgId(putMessageResult.getAppendMessageResult().getMsgId());
+            resultEntry.setQueueOffset(putMessageResult.getAppendMessageResult().getLogicsOffset());
+        }
+    }
+
     public boolean hasConsumeMessageHook() {
         return consumeMessageHookList != null && !this.consumeMessageHookList.isEmpty();
     }
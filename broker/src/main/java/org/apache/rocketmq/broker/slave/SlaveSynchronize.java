@@ -17,21 +17,40 @@
 package org.apache.rocketmq.broker.slave;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.rocketmq.broker.BrokerController;
+import org.apache.rocketmq.broker.offset.ConsumerOffsetIncrement;
 import org.apache.rocketmq.broker.subscription.SubscriptionGroupManager;
+import org.apache.rocketmq.common.DataVersion;
 import org.apache.rocketmq.common.MixAll;
 import org.apache.rocketmq.common.constant.LoggerName;
-import org.apache.rocketmq.common.protocol.body.ConsumerOffsetSerializeWrapper;
 import org.apache.rocketmq.common.protocol.body.SubscriptionGroupWrapper;
 import org.apache.rocketmq.common.protocol.body.TopicConfigSerializeWrapper;
 import org.apache.rocketmq.store.config.StorePathConfigHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Slave定时从Master同步元数据
+ *
+ * Topic配置与订阅组配置携带本地数据版本, 版本未变化时Master不返回数据;
+ * 消费进度只同步上次同步之后有变化的部分, 合并到本地后由定时任务持久化。
+ * 各配置均在原有集合上更新, 同步过程中不会出现集合被清空的中间状态。
+ */
 public class SlaveSynchronize {
     private static final Logger log = LoggerFactory.getLogger(LoggerName.BROKER_LOGGER_NAME);
     private final BrokerController brokerController;
     private volatile String masterAddr = null;
+    /**
+     * 已同步到的Master消费进度版本, 为null时下次全量同步
+     */
+    private volatile DataVersion consumerOffsetVersion = null;
+    /**
+     * 最近一次写入的延迟消息进度
+     */
+    private String lastDelayOffset = null;
 
     public SlaveSynchronize(BrokerController brokerController) {
         this.brokerController = brokerController;
@@ -42,6 +61,9 @@ public class SlaveSynchronize {
     }
 
     public void setMasterAddr(String masterAddr) {
+        if (masterAddr == null || !masterAddr.equals(this.masterAddr)) {
+            this.consumerOffsetVersion = null;
+        }
         this.masterAddr = masterAddr;
     }
 
@@ -56,16 +78,15 @@ public class SlaveSynchronize {
         String masterAddrBak = this.masterAddr;
         if (masterAddrBak != null) {
             try {
-                TopicConfigSerializeWrapper topicWrapper =
-                    this.brokerController.getBrokerOuterAPI().getAllTopicConfig(masterAddrBak);
-                if (!this.brokerController.getTopicConfigManager().getDataVersion()
+                TopicConfigSerializeWrapper topicWrapper = this.brokerController.getBrokerOuterAPI()
+                    .getAllTopicConfig(masterAddrBak, this.brokerController.getTopicConfigManager().getDataVersion());
+                if (topicWrapper != null && !this.brokerController.getTopicConfigManager().getDataVersion()
                     .equals(topicWrapper.getDataVersion())) {
 
                     this.brokerController.getTopicConfigManager().getDataVersion()
                         .assignNewOne(topicWrapper.getDataVersion());
-                    this.brokerController.getTopicConfigManager().getTopicConfigTable().clear();
-                    this.brokerController.getTopicConfigManager().getTopicConfigTable()
-                        .putAll(topicWrapper.getTopicConfigTable());
+                    replaceInPlace(this.brokerController.getTopicConfigManager().getTopicConfigTable(),
+                        topicWrapper.getTopicConfigTable());
                     this.brokerController.getTopicConfigManager().persist();
 
                     log.info("Update slave topic config from master, {}", masterAddrBak);
@@ -80,12 +101,12 @@ public class SlaveSynchronize {
         String masterAddrBak = this.masterAddr;
         if (masterAddrBak != null) {
             try {
-                ConsumerOffsetSerializeWrapper offsetWrapper =
-                    this.brokerController.getBrokerOuterAPI().getAllConsumerOffset(masterAddrBak);
-                this.brokerController.getConsumerOffsetManager().getOffsetTable()
-                    .putAll(offsetWrapper.getOffsetTable());
-                this.brokerController.getConsumerOffsetManager().persist();
-                log.info("Update slave consumer offset from master, {}", masterAddrBak);
+                ConsumerOffsetIncrement increment = this.brokerController.getBrokerOuterAPI()
+                    .getConsumerOffsetIncrement(masterAddrBak, this.consumerOffsetVersion);
+                this.brokerController.getConsumerOffsetManager().applyOffsetIncrement(increment);
+                this.consumerOffsetVersion = increment.getDataVersion();
+                log.info("Update slave consumer offset from master, {}, changed: {}", masterAddrBak,
+                    increment.getOffsetTable().size());
             } catch (Exception e) {
                 log.error("SyncConsumerOffset Exception, {}", masterAddrBak, e);
             }
@@ -98,13 +119,14 @@ public class SlaveSynchronize {
             try {
                 String delayOffset =
                     this.brokerController.getBrokerOuterAPI().getAllDelayOffset(masterAddrBak);
-                if (delayOffset != null) {
+                if (delayOffset != null && !delayOffset.equals(this.lastDelayOffset)) {
 
                     String fileName =
                         StorePathConfigHelper.getDelayOffsetStorePath(this.brokerController
                             .getMessageStoreConfig().getStorePathRootDir());
                     try {
                         MixAll.string2File(delayOffset, fileName);
+                        this.lastDelayOffset = delayOffset;
                     } catch (IOException e) {
                         log.error("Persist file Exception, {}", fileName, e);
                     }
@@ -121,17 +143,16 @@ public class SlaveSynchronize {
         if (masterAddrBak != null) {
             try {
                 SubscriptionGroupWrapper subscriptionWrapper =
-                    this.brokerController.getBrokerOuterAPI()
-                        .getAllSubscriptionGroupConfig(masterAddrBak);
+                    this.brokerController.getBrokerOuterAPI().getAllSubscriptionGroupConfig(masterAddrBak,
+                        this.brokerController.getSubscriptionGroupManager().getDataVersion());
 
-                if (!this.brokerController.getSubscriptionGroupManager().getDataVersion()
+                if (subscriptionWrapper != null && !this.brokerController.getSubscriptionGroupManager().getDataVersion()
                     .equals(subscriptionWrapper.getDataVersion())) {
                     SubscriptionGroupManager subscriptionGroupManager =
                         this.brokerController.getSubscriptionGroupManager();
                     subscriptionGroupManager.getDataVersion().assignNewOne(
                         subscriptionWrapper.getDataVersion());
-                    subscriptionGroupManager.getSubscriptionGroupTable().clear();
-                    subscriptionGroupManager.getSubscriptionGroupTable().putAll(
+                    replaceInPlace(subscriptionGroupManager.getSubscriptionGroupTable(),
                         subscriptionWrapper.getSubscriptionGroupTable());
                     subscriptionGroupManager.persist();
                     log.info("Update slave Subscription Group from master, {}", masterAddrBak);
@@ -141,4 +162,22 @@ public class SlaveSynchronize {
             }
         }
     }
+
+    /**
+     * 将本地集合更新为与Master一致: 只替换有变化的条目并删除Master已不存在的条目
+     */
+    static <V> void replaceInPlace(final ConcurrentMap<String, V> local, final Map<String, V> master) {
+        for (Map.Entry<String, V> entry : master.entrySet()) {
+            if (!entry.getValue().equals(local.get(entry.getKey()))) {
+                local.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        Iterator<String> it = local.keySet().iterator();
+        while (it.hasNext()) {
+            if (!master.containsKey(it.next())) {
+                it.remove();
+            }
+        }
+    }
 }
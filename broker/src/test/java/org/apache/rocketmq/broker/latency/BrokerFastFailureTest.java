@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.broker.latency;
+
+import io.netty.channel.Channel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.remoting.netty.RequestTask;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class BrokerFastFailureTest {
+    private final BrokerConfig brokerConfig = new BrokerConfig();
+    private final BrokerFastFailure brokerFastFailure = new BrokerFastFailure(null);
+
+    @Test
+    public void testOnlySendQueueCleanedByDefault() throws Exception {
+        assertThat(brokerConfig.isAdaptiveAdmissionEnable()).isFalse();
+
+        BlockingQueue<Runnable> sendQueue = newExpiredQueue();
+        brokerFastFailure.cleanExpiredRequestInQueue(sendQueue, newController("send", false));
+        assertThat(sendQueue).isEmpty();
+
+        BlockingQueue<Runnable> pullQueue = newExpiredQueue();
+        brokerFastFailure.cleanExpiredRequestInQueue(pullQueue, newController("pull", true));
+        assertThat(pullQueue).hasSize(2);
+    }
+
+    @Test
+    public void testAllQueuesCleanedWhenAdaptiveEnabled() throws Exception {
+        brokerConfig.setAdaptiveAdmissionEnable(true);
+
+        BlockingQueue<Runnable> pullQueue = newExpiredQueue();
+        brokerFastFailure.cleanExpiredRequestInQueue(pullQueue, newController("pull", true));
+        assertThat(pullQueue).isEmpty();
+    }
+
+    private QueueDelayController newController(final String queueName, final boolean adaptiveOnly) {
+        // 等待时间为0, 队列中的请求全部超时
+        return new QueueDelayController(queueName, brokerConfig, new QueueDelayController.WaitTimeMills() {
+            @Override
+            public long get() {
+                return 0;
+            }
+        }, adaptiveOnly);
+    }
+
+    private BlockingQueue<Runnable> newExpiredQueue() {
+        BlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>();
+        for (int i = 0; i < 2; i++) {
+            RequestTask requestTask = new RequestTask(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, mock(Channel.class), RemotingCommand.createRequestCommand(0, null));
+            queue.add(new FutureTaskExt<Void>(requestTask, null));
+        }
+        return queue;
+    }
+}
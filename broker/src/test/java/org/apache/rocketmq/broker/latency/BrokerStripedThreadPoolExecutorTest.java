@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.broker.latency;
+
+import io.netty.channel.Channel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.common.protocol.RequestCode;
+import org.apache.rocketmq.remoting.netty.RequestTask;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class BrokerStripedThreadPoolExecutorTest {
+    private BrokerStripedThreadPoolExecutor executor;
+
+    @Before
+    public void init() {
+        QueueDelayController controller = new QueueDelayController("send", new BrokerConfig(), new QueueDelayController.WaitTimeMills() {
+            @Override
+            public long get() {
+                return 60 * 1000;
+            }
+        });
+        executor = new BrokerStripedThreadPoolExecutor(4, 1000, "SendMessageThread_", controller);
+    }
+
+    @After
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testOrderPreservedInQueue() throws Exception {
+        final int queueNums = 8;
+        final int msgNums = 200;
+        final List<List<Integer>> consumed = new ArrayList<List<Integer>>();
+        for (int i = 0; i < queueNums; i++) {
+            consumed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        final CountDownLatch latch = new CountDownLatch(queueNums * msgNums);
+
+        for (int seq = 0; seq < msgNums; seq++) {
+            for (int queueId = 0; queueId < queueNums; queueId++) {
+                final int q = queueId;
+                final int s = seq;
+                executor.submit(createRequestTask("FooBar", queueId, new Runnable() {
+                    @Override
+                    public void run() {
+                        consumed.get(q).add(s);
+                        latch.countDown();
+                    }
+                }));
+            }
+        }
+
+        assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        for (List<Integer> list : consumed) {
+            assertThat(list).hasSize(msgNums);
+            assertThat(list).isSorted();
+        }
+    }
+
+    @Test
+    public void testSelectLane() throws Exception {
+        RequestTask a = createRequestTask("FooBar", 1, null);
+        RequestTask b = createRequestTask("FooBar", 1, null);
+        assertThat(executor.selectLane(new FutureTaskExt<Void>(a, null)))
+            .isEqualTo(executor.selectLane(new FutureTaskExt<Void>(b, null)));
+    }
+
+    private RequestTask createRequestTask(final String topic, final int queueId, final Runnable runnable) {
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.SEND_MESSAGE_V2, null);
+        request.addExtField("b", topic);
+        request.addExtField("e", String.valueOf(queueId));
+        return new RequestTask(runnable, mock(Channel.class), request);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.broker.latency;
+
+import org.apache.rocketmq.common.BrokerConfig;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QueueDelayControllerTest {
+    private BrokerConfig brokerConfig;
+    private QueueDelayController controller;
+
+    @Before
+    public void init() {
+        brokerConfig = new BrokerConfig();
+        brokerConfig.setAdaptiveAdmissionEnable(true);
+        brokerConfig.setQueueDelayTargetMills(10);
+        brokerConfig.setQueueDelayIntervalMills(100);
+        controller = new QueueDelayController("send", brokerConfig, new QueueDelayController.WaitTimeMills() {
+            @Override
+            public long get() {
+                return 200;
+            }
+        });
+    }
+
+    @Test
+    public void testShedAfterStandingQueue() throws Exception {
+        long now = System.currentTimeMillis();
+        // 整个周期的最小排队时延都超过目标值
+        assertThat(controller.onDequeue(50, now)).isFalse();
+        assertThat(controller.onDequeue(30, now + 50)).isFalse();
+        assertThat(controller.onDequeue(40, now + 150)).isTrue();
+        assertThat(controller.isOverloaded()).isTrue();
+        assertThat(controller.allowedWaitTimeMills()).isEqualTo(10);
+        assertThat(controller.onDequeue(5, now + 160)).isFalse();
+        assertThat(controller.onDequeue(20, now + 170)).isTrue();
+        assertThat(controller.getShedTimes()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRecoverAfterQueueDrained() throws Exception {
+        long now = System.currentTimeMillis();
+        controller.onDequeue(50, now);
+        controller.onDequeue(40, now + 150);
+        assertThat(controller.isOverloaded()).isTrue();
+
+        controller.onDequeue(1, now + 200);
+        controller.onDequeue(2, now + 300);
+        assertThat(controller.isOverloaded()).isFalse();
+        assertThat(controller.allowedWaitTimeMills()).isEqualTo(200);
+    }
+
+    @Test
+    public void testFixedWaitTimeWhenDisabled() throws Exception {
+        brokerConfig.setAdaptiveAdmissionEnable(false);
+        long now = System.currentTimeMillis();
+        controller.onDequeue(50, now);
+        controller.onDequeue(40, now + 150);
+        assertThat(controller.allowedWaitTimeMills()).isEqualTo(200);
+        assertThat(controller.onDequeue(199, now + 160)).isFalse();
+        assertThat(controller.onDequeue(200, now + 170)).isTrue();
+    }
+
+    @Test
+    public void testAdaptiveOnlyNeverShedWhenDisabled() throws Exception {
+        brokerConfig.setAdaptiveAdmissionEnable(false);
+        QueueDelayController pullController = new QueueDelayController("pull", brokerConfig, new QueueDelayController.WaitTimeMills() {
+            @Override
+            public long get() {
+                return 200;
+            }
+        }, true);
+        assertThat(pullController.isShedEnabled()).isFalse();
+        assertThat(pullController.onDequeue(100000, System.currentTimeMillis())).isFalse();
+        assertThat(pullController.getShedTimes()).isEqualTo(0);
+
+        brokerConfig.setAdaptiveAdmissionEnable(true);
+        assertThat(pullController.isShedEnabled()).isTrue();
+        assertThat(pullController.onDequeue(100000, System.currentTimeMillis())).isTrue();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.broker.offset;
+
+import org.apache.rocketmq.common.DataVersion;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsumerOffsetManagerTest {
+
+    @Test
+    public void testOffsetIncrement() {
+        ConsumerOffsetManager master = new ConsumerOffsetManager();
+        master.commitOffset("127.0.0.1", "groupA", "topic", 0, 100);
+        master.commitOffset("127.0.0.1", "groupB", "topic", 1, 200);
+
+        // 首次同步返回全量
+        ConsumerOffsetIncrement increment = master.buildOffsetIncrement(null);
+        assertThat(increment.getOffsetTable()).hasSize(2);
+
+        ConsumerOffsetManager slave = new ConsumerOffsetManager();
+        slave.applyOffsetIncrement(ConsumerOffsetIncrement.decode(increment.encode()));
+        assertThat(slave.queryOffset("groupA", "topic", 0)).isEqualTo(100);
+        assertThat(slave.queryOffset("groupB", "topic", 1)).isEqualTo(200);
+
+        // 只返回上次同步之后有变化的 topic@group, 并带上其全部队列
+        DataVersion synced = increment.getDataVersion();
+        master.commitOffset("127.0.0.1", "groupB", "topic", 2, 300);
+        increment = ConsumerOffsetIncrement.decode(master.buildOffsetIncrement(synced).encode());
+        assertThat(increment.getOffsetTable()).containsOnlyKeys("topic@groupB");
+        assertThat(increment.getOffsetTable().get("topic@groupB")).hasSize(2);
+        slave.applyOffsetIncrement(increment);
+        assertThat(slave.queryOffset("groupB", "topic", 2)).isEqualTo(300);
+
+        synced = increment.getDataVersion();
+        assertThat(master.buildOffsetIncrement(synced).getOffsetTable()).isEmpty();
+
+        // Master重启后版本不匹配, 返回全量
+        DataVersion otherEpoch = new DataVersion();
+        otherEpoch.setTimestamp(synced.getTimestamp() - 1);
+        otherEpoch.getCounter().set(synced.getCounter().get());
+        assertThat(master.buildOffsetIncrement(otherEpoch).getOffsetTable()).hasSize(2);
+    }
+
+    @Test
+    public void testEncodeWithoutSyncState() {
+        ConsumerOffsetManager manager = new ConsumerOffsetManager();
+        manager.commitOffset("127.0.0.1", "group", "topic", 0, 100);
+        assertThat(manager.encode()).doesNotContain("offsetVersion").doesNotContain("offsetChangeTable");
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.rocketmq.common.protocol.RequestCode;
 import org.apache.rocketmq.common.protocol.ResponseCode;
 import org.apache.rocketmq.common.protocol.header.UnregisterClientRequestHeader;
 import org.apache.rocketmq.common.protocol.heartbeat.ConsumerData;
+import org.apache.rocketmq.common.protocol.heartbeat.HeartbeatLiteData;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.netty.NettyClientConfig;
 import org.apache.rocketmq.remoting.netty.NettyServerConfig;
@@ -108,6 +109,43 @@ public class ClientManageProcessorTest {
         assertThat(consumerGroupInfo).isNull();
     }
 
+    @Test
+    public void processRequest_HeartbeatLite() throws RemotingCommandException {
+        clientChannelInfo.setHeartbeatFingerprint(42L);
+        long lastUpdateTimestamp = clientChannelInfo.getLastUpdateTimestamp();
+
+        RemotingCommand response = clientManageProcessor.processRequest(handlerContext, createHeartbeatLiteCommand(42L));
+        assertThat(response).isNotNull();
+        assertThat(response.getCode()).isEqualTo(ResponseCode.SUCCESS);
+        assertThat(clientChannelInfo.getLastUpdateTimestamp()).isGreaterThanOrEqualTo(lastUpdateTimestamp);
+    }
+
+    @Test
+    public void processRequest_HeartbeatLiteMismatch() throws RemotingCommandException {
+        clientChannelInfo.setHeartbeatFingerprint(42L);
+
+        RemotingCommand response = clientManageProcessor.processRequest(handlerContext, createHeartbeatLiteCommand(43L));
+        assertThat(response).isNotNull();
+        assertThat(response.getCode()).isEqualTo(ResponseCode.HEARTBEAT_FINGERPRINT_MISMATCH);
+
+        brokerController.getConsumerManager().unregisterConsumer(group, clientChannelInfo, false);
+        response = clientManageProcessor.processRequest(handlerContext, createHeartbeatLiteCommand(42L));
+        assertThat(response.getCode()).isEqualTo(ResponseCode.HEARTBEAT_FINGERPRINT_MISMATCH);
+    }
+
+    private RemotingCommand createHeartbeatLiteCommand(long fingerprint) {
+        HeartbeatLiteData heartbeatLiteData = new HeartbeatLiteData();
+        heartbeatLiteData.setClientID(clientId);
+        heartbeatLiteData.setFingerprint(fingerprint);
+        heartbeatLiteData.getProducerGroups().add(group);
+        heartbeatLiteData.getConsumerGroups().add(group);
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.HEART_BEAT_LITE, null);
+        request.setLanguage(LanguageCode.JAVA);
+        request.setVersion(100);
+        request.setBody(heartbeatLiteData.encode());
+        return request;
+    }
+
     private RemotingCommand createUnRegisterProducerCommand() {
         UnregisterClientRequestHeader requestHeader = new UnregisterClientRequestHeader();
         requestHeader.setClientID(clientId);
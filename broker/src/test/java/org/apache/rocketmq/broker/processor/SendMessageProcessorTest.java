@@ -26,9 +26,12 @@ import org.apache.rocketmq.broker.mqtrace.SendMessageContext;
 import org.apache.rocketmq.broker.mqtrace.SendMessageHook;
 import org.apache.rocketmq.common.BrokerConfig;
 import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.message.MessageDecoder;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.protocol.RequestCode;
 import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.common.protocol.body.SendMessageBatchRequestBody;
+import org.apache.rocketmq.common.protocol.body.SendMessageBatchResponseBody;
 import org.apache.rocketmq.common.protocol.header.ConsumerSendMsgBackRequestHeader;
 import org.apache.rocketmq.common.protocol.header.SendMessageRequestHeader;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
@@ -45,6 +48,7 @@ import org.apache.rocketmq.store.config.MessageStoreConfig;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.invocation.InvocationOnMock;
@@ -175,6 +179,91 @@ public class SendMessageProcessorTest {
         assertThat(response.getCode()).isEqualTo(ResponseCode.SUCCESS);
     }
 
+    @Test
+    public void testProcessRequest_SendBatch() throws RemotingCommandException {
+        List<PutMessageResult> putMessageResults = new ArrayList<>();
+        putMessageResults.add(new PutMessageResult(PutMessageStatus.PUT_OK,
+            new AppendMessageResult(AppendMessageStatus.PUT_OK, 0, 100, "MSG_ID_0", 0, 10, 0)));
+        putMessageResults.add(new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, null));
+        when(messageStore.putMessages(ArgumentMatchers.<MessageExtBrokerInner>anyList())).thenReturn(putMessageResults);
+
+        List<SendMessageBatchRequestBody.MessageEntry> entryList = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            SendMessageBatchRequestBody.MessageEntry entry = new SendMessageBatchRequestBody.MessageEntry();
+            entry.setBody(new byte[] {'a'});
+            entry.setProperties("TAGS" + MessageDecoder.NAME_VALUE_SEPARATOR + "TagA");
+            entryList.add(entry);
+        }
+        RemotingCommand request = createSendMsgCommand(RequestCode.SEND_BATCH_MESSAGE);
+        request.setBody(new SendMessageBatchRequestBody(entryList).encode());
+
+        final RemotingCommand response = sendMessageProcessor.processRequest(handlerContext, request);
+        assertThat(response.getCode()).isEqualTo(ResponseCode.SUCCESS);
+        SendMessageBatchResponseBody responseBody = SendMessageBatchResponseBody.decode(response.getBody(), SendMessageBatchResponseBody.class);
+        assertThat(responseBody.getResultList()).hasSize(2);
+        assertThat(responseBody.getResultList().get(0).getCode()).isEqualTo(ResponseCode.SUCCESS);
+        assertThat(responseBody.getResultList().get(0).getMsgId()).isEqualTo("MSG_ID_0");
+        assertThat(responseBody.getResultList().get(0).getQueueOffset()).isEqualTo(10);
+        assertThat(responseBody.getResultList().get(1).getCode()).isEqualTo(ResponseCode.MESSAGE_ILLEGAL);
+    }
+
+    @Test
+    public void testProcessRequest_SendBatchIllegalBody() throws RemotingCommandException {
+        RemotingCommand request = createSendMsgCommand(RequestCode.SEND_BATCH_MESSAGE);
+        request.setBody(new byte[] {0x7F, 0, 0, 0, 'a'});
+        final RemotingCommand response = sendMessageProcessor.processRequest(handlerContext, request);
+        assertThat(response.getCode()).isEqualTo(ResponseCode.MESSAGE_ILLEGAL);
+    }
+
+    @Test
+    public void testProcessRequest_SendBatchWithHook() throws RemotingCommandException {
+        List<PutMessageResult> putMessageResults = new ArrayList<>();
+        putMessageResults.add(new PutMessageResult(PutMessageStatus.PUT_OK,
+            new AppendMessageResult(AppendMessageStatus.PUT_OK, 0, 100, "MSG_ID_0", 0, 10, 0)));
+        putMessageResults.add(new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, null));
+        when(messageStore.putMessages(ArgumentMatchers.<MessageExtBrokerInner>anyList())).thenReturn(putMessageResults);
+
+        final List<SendMessageContext> beforeContexts = new ArrayList<>();
+        final List<SendMessageContext> afterContexts = new ArrayList<>();
+        List<SendMessageHook> sendMessageHookList = new ArrayList<>();
+        sendMessageHookList.add(new SendMessageHook() {
+            @Override public String hookName() {
+                return null;
+            }
+
+            @Override public void sendMessageBefore(SendMessageContext context) {
+                beforeContexts.add(context);
+            }
+
+            @Override public void sendMessageAfter(SendMessageContext context) {
+                afterContexts.add(context);
+            }
+        });
+        sendMessageProcessor.registerSendMessageHook(sendMessageHookList);
+
+        List<SendMessageBatchRequestBody.MessageEntry> entryList = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            SendMessageBatchRequestBody.MessageEntry entry = new SendMessageBatchRequestBody.MessageEntry();
+            entry.setBody(new byte[] {'a'});
+            entry.setProperties("TAGS" + MessageDecoder.NAME_VALUE_SEPARATOR + "Tag" + i);
+            entryList.add(entry);
+        }
+        RemotingCommand request = createSendMsgCommand(RequestCode.SEND_BATCH_MESSAGE);
+        request.setBody(new SendMessageBatchRequestBody(entryList).encode());
+
+        final RemotingCommand response = sendMessageProcessor.processRequest(handlerContext, request);
+        assertThat(response.getCode()).isEqualTo(ResponseCode.SUCCESS);
+        assertThat(beforeContexts).hasSize(2);
+        assertThat(afterContexts).hasSize(2);
+        assertThat(beforeContexts.get(0).getTopic()).isEqualTo(topic);
+        assertThat(beforeContexts.get(0).getProducerGroup()).isEqualTo(group);
+        assertThat(beforeContexts.get(1).getMsgProps()).contains("Tag1");
+        assertThat(afterContexts.get(0).getCode()).isEqualTo(ResponseCode.SUCCESS);
+        assertThat(afterContexts.get(0).getMsgId()).isEqualTo("MSG_ID_0");
+        assertThat(afterContexts.get(0).getQueueOffset()).isEqualTo(10);
+        assertThat(afterContexts.get(1).getCode()).isEqualTo(ResponseCode.MESSAGE_ILLEGAL);
+    }
+
     private RemotingCommand createSendMsgCommand(int requestCode) {
         SendMessageRequestHeader requestHeader = new SendMessageRequestHeader();
         requestHeader.setProducerGroup(group);
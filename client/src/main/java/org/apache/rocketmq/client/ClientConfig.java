@@ -37,10 +37,20 @@ public class ClientConfig {
      * Pulling topic information interval from the named server
      */
     private int pollNameServerInteval = 1000 * 30;
+    /**
+     * Pull routes of all topics in batched requests carrying known route versions, so that the name server only returns
+     * the changed ones. Falls back to per-topic queries when the name server does not support it.
+     */
+    private boolean pollNameServerBatchEnable = true;
     /**
      * Heartbeat interval in microseconds with message broker
      */
     private int heartbeatBrokerInterval = 1000 * 30;
+    /**
+     * When heartbeat data is unchanged, send only its fingerprint to the broker instead of all groups and subscriptions.
+     * The broker asks for the full heartbeat when the fingerprint does not match.
+     */
+    private boolean heartbeatFingerprintEnable = true;
     /**
      * Offset persistent interval for consumer
      */
@@ -102,7 +112,9 @@ public class ClientConfig {
         this.instanceName = cc.instanceName;
         this.clientCallbackExecutorThreads = cc.clientCallbackExecutorThreads;
         this.pollNameServerInteval = cc.pollNameServerInteval;
+        this.pollNameServerBatchEnable = cc.pollNameServerBatchEnable;
         this.heartbeatBrokerInterval = cc.heartbeatBrokerInterval;
+        this.heartbeatFingerprintEnable = cc.heartbeatFingerprintEnable;
         this.persistConsumerOffsetInterval = cc.persistConsumerOffsetInterval;
         this.unitMode = cc.unitMode;
         this.unitName = cc.unitName;
@@ -116,7 +128,9 @@ public class ClientConfig {
         cc.instanceName = instanceName;
         cc.clientCallbackExecutorThreads = clientCallbackExecutorThreads;
         cc.pollNameServerInteval = pollNameServerInteval;
+        cc.pollNameServerBatchEnable = pollNameServerBatchEnable;
         cc.heartbeatBrokerInterval = heartbeatBrokerInterval;
+        cc.heartbeatFingerprintEnable = heartbeatFingerprintEnable;
         cc.persistConsumerOffsetInterval = persistConsumerOffsetInterval;
         cc.unitMode = unitMode;
         cc.unitName = unitName;
@@ -180,6 +194,22 @@ public class ClientConfig {
         this.unitMode = unitMode;
     }
 
+    public boolean isPollNameServerBatchEnable() {
+        return pollNameServerBatchEnable;
+    }
+
+    public void setPollNameServerBatchEnable(boolean pollNameServerBatchEnable) {
+        this.pollNameServerBatchEnable = pollNameServerBatchEnable;
+    }
+
+    public boolean isHeartbeatFingerprintEnable() {
+        return heartbeatFingerprintEnable;
+    }
+
+    public void setHeartbeatFingerprintEnable(boolean heartbeatFingerprintEnable) {
+        this.heartbeatFingerprintEnable = heartbeatFingerprintEnable;
+    }
+
     public boolean isVipChannelEnabled() {
         return vipChannelEnabled;
     }
@@ -192,7 +222,9 @@ public class ClientConfig {
     public String toString() {
         return "ClientConfig [namesrvAddr=" + namesrvAddr + ", clientIP=" + clientIP + ", instanceName=" + instanceName
             + ", clientCallbackExecutorThreads=" + clientCallbackExecutorThreads + ", pollNameServerInteval=" + pollNameServerInteval
-            + ", heartbeatBrokerInterval=" + heartbeatBrokerInterval + ", persistConsumerOffsetInterval="
+            + ", pollNameServerBatchEnable=" + pollNameServerBatchEnable
+            + ", heartbeatBrokerInterval=" + heartbeatBrokerInterval + ", heartbeatFingerprintEnable=" + heartbeatFingerprintEnable
+            + ", persistConsumerOffsetInterval="
             + persistConsumerOffsetInterval + ", unitMode=" + unitMode + ", unitName=" + unitName + ", vipChannelEnabled="
             + vipChannelEnabled + "]";
     }
@@ -19,6 +19,8 @@ package org.apache.rocketmq.client;
 import java.util.Set;
 import java.util.TreeSet;
 import org.apache.rocketmq.client.consumer.DefaultMQPullConsumer;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.consumer.store.RemoteBrokerOffsetStore;
 import org.apache.rocketmq.client.log.ClientLogger;
 import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
@@ -75,7 +77,12 @@ public class MQHelper {
             throw e;
         } finally {
             if (mqs != null) {
-                consumer.getDefaultMQPullConsumerImpl().getOffsetStore().persistAll(mqs);
+                OffsetStore offsetStore = consumer.getDefaultMQPullConsumerImpl().getOffsetStore();
+                if (offsetStore instanceof RemoteBrokerOffsetStore) {
+                    ((RemoteBrokerOffsetStore) offsetStore).persistAll(mqs, true);
+                } else {
+                    offsetStore.persistAll(mqs);
+                }
             }
             consumer.shutdown();
         }
@@ -167,6 +167,36 @@ public class DefaultMQPushConsumer extends ClientConfig implements MQPushConsume
      */
     private long adjustThreadPoolNumsThreshold = 100000;
 
+    /**
+     * Adjust the concurrently consume thread number between consumeThreadMin and consumeThreadMax
+     * according to the listener's consume RT, CPU usage and the consume request backlog
+     * 并发消费时根据消费耗时、CPU占用与消费请求积压在 consumeThreadMin 与 consumeThreadMax 之间自动调整消费线程数
+     */
+    private boolean consumeThreadAdaptive = false;
+
+    /**
+     * Number of lanes the messages of one queue are sharded into by sharding key when consuming orderly.
+     * Each lane is consumed by one thread at a time and keeps FIFO order, lanes of the same queue are consumed
+     * in parallel. 1 means the whole queue is consumed by one thread.
+     * 顺序消费时单个队列按分片键拆分的通道数, 同一通道内严格有序, 不同通道并行消费
+     */
+    private int consumeOrderlyLanes = 1;
+
+    /**
+     * Message property used as the sharding key of {@link #consumeOrderlyLanes}, null means message keys.
+     * Messages without the property are all put into the first lane
+     * 顺序消费分片键使用的消息属性, 为空时使用消息Keys; 没有该属性的消息全部进入第一个通道
+     */
+    private String consumeOrderlyShardingKey;
+
+    /**
+     * Release queues moved to other consumers gracefully when consuming concurrently: stop pulling, keep consuming the
+     * messages already pulled for a bounded time, and make newly assigned queues wait for the previous owner before
+     * pulling. Newly assigned queues, including those at startup, start consuming a few seconds later
+     * 并发消费时平滑释放负载均衡移走的队列, 新分配的队列等待原消费者释放后再拉取, 减少重复消费, 代价是新分配队列延迟数秒开始消费
+     */
+    private boolean releaseQueueGracefully = false;
+
     /**
      * Concurrently max span offset.it has no effect on sequential consumption
      * 并发消费消息最大允许跨度
@@ -179,6 +209,19 @@ public class DefaultMQPushConsumer extends ClientConfig implements MQPushConsume
      */
     private int pullThresholdForQueue = 1000;
 
+    /**
+     * Limit the cached message size on queue level, in MiB
+     * 单个队列最大缓存消息大小, 单位MiB, 消息体大小差异较大时避免按条数限流导致内存溢出
+     */
+    private int pullThresholdSizeForQueue = 100;
+
+    /**
+     * Limit the cached message size on topic level, in MiB, -1 means no limit.
+     * The value is divided evenly among the queues of the topic allocated to this consumer
+     * 单个Topic最大缓存消息大小, 单位MiB, 默认不限制; 按当前分配到的队列数均分后与 pullThresholdSizeForQueue 取较小值
+     */
+    private int pullThresholdSizeForTopic = -1;
+
     /**
      * Message pull Interval
      */
@@ -194,6 +237,14 @@ public class DefaultMQPushConsumer extends ClientConfig implements MQPushConsume
      */
     private int pullBatchSize = 32;
 
+    /**
+     * Max concurrent pull requests per message queue, pulling successive offsets.
+     * Results are handed to the consumer in offset order. It only takes effect on
+     * concurrently consumption with pullInterval = 0
+     * 单个队列同时在途的拉取请求数, 用于高延迟链路下提高单队列吞吐
+     */
+    private int pullPipelineDepth = 1;
+
     /**
      * Whether update subscription relationship when every pull
      */
@@ -437,6 +488,30 @@ public class DefaultMQPushConsumer extends ClientConfig implements MQPushConsume
         this.pullThresholdForQueue = pullThresholdForQueue;
     }
 
+    public int getPullPipelineDepth() {
+        return pullPipelineDepth;
+    }
+
+    public void setPullPipelineDepth(final int pullPipelineDepth) {
+        this.pullPipelineDepth = pullPipelineDepth;
+    }
+
+    public int getPullThresholdSizeForQueue() {
+        return pullThresholdSizeForQueue;
+    }
+
+    public void setPullThresholdSizeForQueue(final int pullThresholdSizeForQueue) {
+        this.pullThresholdSizeForQueue = pullThresholdSizeForQueue;
+    }
+
+    public int getPullThresholdSizeForTopic() {
+        return pullThresholdSizeForTopic;
+    }
+
+    public void setPullThresholdSizeForTopic(final int pullThresholdSizeForTopic) {
+        this.pullThresholdSizeForTopic = pullThresholdSizeForTopic;
+    }
+
     public Map<String, String> getSubscription() {
         return subscription;
     }
@@ -633,6 +708,38 @@ public class DefaultMQPushConsumer extends ClientConfig implements MQPushConsume
         this.adjustThreadPoolNumsThreshold = adjustThreadPoolNumsThreshold;
     }
 
+    public boolean isConsumeThreadAdaptive() {
+        return consumeThreadAdaptive;
+    }
+
+    public void setConsumeThreadAdaptive(boolean consumeThreadAdaptive) {
+        this.consumeThreadAdaptive = consumeThreadAdaptive;
+    }
+
+    public int getConsumeOrderlyLanes() {
+        return consumeOrderlyLanes;
+    }
+
+    public void setConsumeOrderlyLanes(int consumeOrderlyLanes) {
+        this.consumeOrderlyLanes = consumeOrderlyLanes;
+    }
+
+    public String getConsumeOrderlyShardingKey() {
+        return consumeOrderlyShardingKey;
+    }
+
+    public void setConsumeOrderlyShardingKey(String consumeOrderlyShardingKey) {
+        this.consumeOrderlyShardingKey = consumeOrderlyShardingKey;
+    }
+
+    public boolean isReleaseQueueGracefully() {
+        return releaseQueueGracefully;
+    }
+
+    public void setReleaseQueueGracefully(boolean releaseQueueGracefully) {
+        this.releaseQueueGracefully = releaseQueueGracefully;
+    }
+
     public int getMaxReconsumeTimes() {
         return maxReconsumeTimes;
     }
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.consumer;
+
+import java.util.List;
+import java.util.Set;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+/**
+ * Lite pulling consumer interface.
+ * Message queues are assigned by rebalance and messages are prefetched in background,
+ * the application polls batches of messages from all the assigned queues in its own thread.
+ * The instance is not thread safe, poll, seek and commit should be called from one thread.
+ */
+public interface LitePullConsumer {
+    /**
+     * Start the consumer
+     *
+     * @throws MQClientException
+     */
+    void start() throws MQClientException;
+
+    /**
+     * Shutdown the consumer
+     */
+    void shutdown();
+
+    /**
+     * Subscribe some topic
+     *
+     * @param topic
+     * @param subExpression subscription expression.it only support or operation such as "tag1 || tag2 || tag3" <br> if null or * expression,meaning subscribe
+     * all
+     * @throws MQClientException
+     */
+    void subscribe(final String topic, final String subExpression) throws MQClientException;
+
+    /**
+     * Unsubscribe consumption some topic
+     *
+     * @param topic message topic
+     */
+    void unsubscribe(final String topic);
+
+    /**
+     * Poll messages with the default poll timeout
+     *
+     * @return prefetched messages, empty if none is available within the timeout
+     */
+    List<MessageExt> poll();
+
+    /**
+     * Poll messages. When auto commit is enabled, the offsets of the messages returned by the previous poll are committed
+     *
+     * @param timeout the maximum time to wait for messages, in milliseconds
+     * @return prefetched messages, empty if none is available within the timeout
+     */
+    List<MessageExt> poll(final long timeout);
+
+    /**
+     * Overrides the offset the next poll of the message queue starts from, prefetched messages of the queue are discarded
+     *
+     * @param mq an assigned message queue
+     * @param offset the queue offset to consume from
+     * @throws MQClientException if the message queue is not assigned to this consumer
+     */
+    void seek(final MessageQueue mq, final long offset) throws MQClientException;
+
+    /**
+     * Commit the offsets of all the messages returned by poll and persist them to broker
+     */
+    void commitSync();
+
+    /**
+     * Get the message queues assigned to this consumer
+     *
+     * @return assigned message queues
+     */
+    Set<MessageQueue> assignment();
+}
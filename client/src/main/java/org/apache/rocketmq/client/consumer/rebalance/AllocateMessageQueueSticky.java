@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.consumer.rebalance;
+
+import org.apache.rocketmq.client.consumer.AllocateMessageQueueStrategy;
+import org.apache.rocketmq.client.log.ClientLogger;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sticky queue algorithm, minimizes queue movement when consumers join or leave
+ * 队列分配策略 - 粘性分配
+ *
+ * 各消费者独立计算分配结果, 彼此不知道对方当前持有的队列, 因此使用带容量上限的最高随机权重哈希(Rendezvous Hashing):
+ * 每个 (队列, 消费者) 组合有一个只由两者决定的权重, 按权重从高到低把队列分给未满的消费者。
+ * 每个消费者最多分到 mqAll / cidAll (有余数时部分消费者多1个) 个队列, 与平均分配同样均衡;
+ * 消费者增减时, 只有离开的消费者的队列、以及为新消费者腾出容量的少量队列会移动, 而平均分配下几乎所有队列都会移动。
+ */
+public class AllocateMessageQueueSticky implements AllocateMessageQueueStrategy {
+    private final Logger log = ClientLogger.getLog();
+
+    @Override
+    public List<MessageQueue> allocate(String consumerGroup, String currentCID, List<MessageQueue> mqAll,
+        List<String> cidAll) {
+        // 校验参数是否正确
+        if (currentCID == null || currentCID.length() < 1) {
+            throw new IllegalArgumentException("currentCID is empty");
+        }
+        if (mqAll == null || mqAll.isEmpty()) {
+            throw new IllegalArgumentException("mqAll is null or mqAll empty");
+        }
+        if (cidAll == null || cidAll.isEmpty()) {
+            throw new IllegalArgumentException("cidAll is null or cidAll empty");
+        }
+
+        List<MessageQueue> result = new ArrayList<MessageQueue>();
+        int index = cidAll.indexOf(currentCID);
+        if (index < 0) {
+            log.info("[BUG] ConsumerGroup: {} The consumerId: {} not in cidAll: {}",
+                consumerGroup,
+                currentCID,
+                cidAll);
+            return result;
+        }
+
+        int[] owners = assign(mqAll, cidAll);
+        for (int i = 0; i < owners.length; i++) {
+            if (owners[i] == index) {
+                result.add(mqAll.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 每个队列分配到的消费者下标
+     */
+    static int[] assign(final List<MessageQueue> mqAll, final List<String> cidAll) {
+        final int mqSize = mqAll.size();
+        final int cidSize = cidAll.size();
+
+        long[] mqHashes = new long[mqSize];
+        for (int i = 0; i < mqSize; i++) {
+            MessageQueue mq = mqAll.get(i);
+            mqHashes[i] = mix(mix(mq.getTopic().hashCode()) ^ mq.getBrokerName().hashCode() * 31L + mq.getQueueId());
+        }
+
+        Candidate[] candidates = new Candidate[mqSize * cidSize];
+        for (int c = 0; c < cidSize; c++) {
+            long cidHash = mix(cidAll.get(c).hashCode());
+            for (int q = 0; q < mqSize; q++) {
+                candidates[c * mqSize + q] = new Candidate(mix(mqHashes[q] ^ cidHash), q, c);
+            }
+        }
+        Arrays.sort(candidates);
+
+        int[] owners = new int[mqSize];
+        Arrays.fill(owners, -1);
+        int[] loads = new int[cidSize];
+        // 先让每个消费者分到 floor 个队列, 余下的队列再按权重分给不同的消费者各1个
+        final int floor = mqSize / cidSize;
+        if (floor > 0) {
+            fill(candidates, owners, loads, floor);
+        }
+        fill(candidates, owners, loads, floor + 1);
+        return owners;
+    }
+
+    private static void fill(final Candidate[] candidates, final int[] owners, final int[] loads, final int capacity) {
+        for (Candidate candidate : candidates) {
+            if (owners[candidate.mqIndex] < 0 && loads[candidate.cidIndex] < capacity) {
+                owners[candidate.mqIndex] = candidate.cidIndex;
+                loads[candidate.cidIndex]++;
+            }
+        }
+    }
+
+    /**
+     * 64位混淆, 保证跨JVM稳定
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    @Override
+    public String getName() {
+        return "STICKY";
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        private final long weight;
+        private final int mqIndex;
+        private final int cidIndex;
+
+        Candidate(final long weight, final int mqIndex, final int cidIndex) {
+            this.weight = weight;
+            this.mqIndex = mqIndex;
+            this.cidIndex = cidIndex;
+        }
+
+        /**
+         * 权重从高到低, 权重相同时按下标排序, 保证各消费者结果一致
+         */
+        @Override
+        public int compareTo(final Candidate o) {
+            if (this.weight != o.weight) {
+                return this.weight > o.weight ? -1 : 1;
+            }
+            if (this.mqIndex != o.mqIndex) {
+                return this.mqIndex < o.mqIndex ? -1 : 1;
+            }
+            return this.cidIndex < o.cidIndex ? -1 : (this.cidIndex == o.cidIndex ? 0 : 1);
+        }
+    }
+}
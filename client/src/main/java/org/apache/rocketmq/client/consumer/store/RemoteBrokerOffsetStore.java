@@ -24,11 +24,18 @@ import org.apache.rocketmq.client.log.ClientLogger;
 import org.apache.rocketmq.common.MixAll;
 import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.common.protocol.body.UpdateConsumerOffsetBatchRequestBody;
 import org.apache.rocketmq.common.protocol.header.QueryConsumerOffsetRequestHeader;
+import org.apache.rocketmq.common.protocol.header.UpdateConsumerOffsetBatchRequestHeader;
 import org.apache.rocketmq.common.protocol.header.UpdateConsumerOffsetRequestHeader;
+import org.apache.rocketmq.remoting.InvokeCallback;
 import org.apache.rocketmq.remoting.exception.RemotingException;
+import org.apache.rocketmq.remoting.netty.ResponseFuture;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.slf4j.Logger;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -51,6 +58,11 @@ public class RemoteBrokerOffsetStore implements OffsetStore {
      * 消费进度
      */
     private ConcurrentHashMap<MessageQueue, AtomicLong> offsetTable = new ConcurrentHashMap<>();
+    /**
+     * 不支持批量提交消费进度的Broker
+     */
+    private final Set<String/* brokerName */> batchUnsupportedBrokers =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     public RemoteBrokerOffsetStore(MQClientInstance mQClientFactory, String groupName) {
         this.mQClientFactory = mQClientFactory;
@@ -129,36 +141,75 @@ public class RemoteBrokerOffsetStore implements OffsetStore {
 
     /**
      * 持久化指定消息队列数组的消费进度到Broker，并移除非指定消息队列
+     * 定时任务调用, 异步提交, 不阻塞客户端的公共调度线程
      *
      * @param mqs 指定消息队列
      */
     @Override
     public void persistAll(Set<MessageQueue> mqs) {
+        this.persistAll(mqs, false);
+    }
+
+    /**
+     * 持久化指定消息队列数组的消费进度到Broker，并移除非指定消息队列
+     * 不属于 {@link OffsetStore} 接口, 调用方需先判断是否为 RemoteBrokerOffsetStore
+     *
+     * @param mqs 指定消息队列
+     * @param sync 是否等待Broker响应, 只在关闭消费者等需要确认进度已提交的场景使用
+     */
+    public void persistAll(Set<MessageQueue> mqs, boolean sync) {
         if (null == mqs || mqs.isEmpty()) { return; }
 
-        // 持久化消息队列
+        // 持久化消息队列, 按Broker分组后每个Broker批量提交一次
         final HashSet<MessageQueue> unusedMQ = new HashSet<>();
-        if (!mqs.isEmpty()) {
-            for (Map.Entry<MessageQueue, AtomicLong> entry : this.offsetTable.entrySet()) {
-                MessageQueue mq = entry.getKey();
-                AtomicLong offset = entry.getValue();
-                if (offset != null) {
-                    if (mqs.contains(mq)) {
-                        try {
-                            this.updateConsumeOffsetToBroker(mq, offset.get());
-                            log.info("[persistAll] Group: {} ClientId: {} updateConsumeOffsetToBroker {} {}",
-                                this.groupName,
-                                this.mQClientFactory.getClientId(),
-                                mq,
-                                offset.get());
-                        } catch (Exception e) {
-                            log.error("updateConsumeOffsetToBroker exception, " + mq.toString(), e);
-                        }
+        final Map<String/* brokerName */, Map<MessageQueue, Long>> brokerOffsetTable = new HashMap<>();
+        for (Map.Entry<MessageQueue, AtomicLong> entry : this.offsetTable.entrySet()) {
+            MessageQueue mq = entry.getKey();
+            AtomicLong offset = entry.getValue();
+            if (offset != null) {
+                if (mqs.contains(mq)) {
+                    Map<MessageQueue, Long> mqOffsets = brokerOffsetTable.get(mq.getBrokerName());
+                    if (null == mqOffsets) {
+                        mqOffsets = new HashMap<>();
+                        brokerOffsetTable.put(mq.getBrokerName(), mqOffsets);
+                    }
+                    mqOffsets.put(mq, offset.get());
+                } else {
+                    unusedMQ.add(mq);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Map<MessageQueue, Long>> entry : brokerOffsetTable.entrySet()) {
+            if (!this.batchUnsupportedBrokers.contains(entry.getKey())) {
+                try {
+                    if (sync) {
+                        this.updateConsumeOffsetBatchToBroker(entry.getKey(), entry.getValue(), null);
+                        log.info("[persistAll] Group: {} ClientId: {} updateConsumeOffsetBatchToBroker {} {}",
+                            this.groupName,
+                            this.mQClientFactory.getClientId(),
+                            entry.getKey(),
+                            entry.getValue());
                     } else {
-                        unusedMQ.add(mq);
+                        this.updateConsumeOffsetBatchToBroker(entry.getKey(), entry.getValue(),
+                            new BatchOffsetCallback(entry.getKey(), entry.getValue()));
+                    }
+                    continue;
+                } catch (MQBrokerException e) {
+                    if (ResponseCode.REQUEST_CODE_NOT_SUPPORTED != e.getResponseCode()) {
+                        log.error("updateConsumeOffsetBatchToBroker exception, " + entry.getKey(), e);
+                        continue;
                     }
+                    // 旧版本Broker不支持批量提交, 之后逐个队列提交
+                    this.batchUnsupportedBrokers.add(entry.getKey());
+                    log.warn("broker {} does not support batch offset update, fall back to one by one", entry.getKey());
+                } catch (Exception e) {
+                    log.error("updateConsumeOffsetBatchToBroker exception, " + entry.getKey(), e);
+                    continue;
                 }
             }
+
+            this.updateConsumeOffsetOneByOne(entry.getValue());
         }
 
         // 移除不适用的消息队列
@@ -170,6 +221,24 @@ public class RemoteBrokerOffsetStore implements OffsetStore {
         }
     }
 
+    /**
+     * 逐个队列以oneway方式提交消费进度, 用于不支持批量提交的Broker
+     */
+    private void updateConsumeOffsetOneByOne(final Map<MessageQueue, Long> mqOffsets) {
+        for (Map.Entry<MessageQueue, Long> mqOffset : mqOffsets.entrySet()) {
+            try {
+                this.updateConsumeOffsetToBroker(mqOffset.getKey(), mqOffset.getValue());
+                log.info("[persistAll] Group: {} ClientId: {} updateConsumeOffsetToBroker {} {}",
+                    this.groupName,
+                    this.mQClientFactory.getClientId(),
+                    mqOffset.getKey(),
+                    mqOffset.getValue());
+            } catch (Exception e) {
+                log.error("updateConsumeOffsetToBroker exception, " + mqOffset.getKey().toString(), e);
+            }
+        }
+    }
+
     /**
      * 持久化队列消费进度到Broker
      *
@@ -229,12 +298,7 @@ public class RemoteBrokerOffsetStore implements OffsetStore {
     @Override
     public void updateConsumeOffsetToBroker(MessageQueue mq, long offset, boolean isOneway) throws RemotingException,
         MQBrokerException, InterruptedException, MQClientException {
-        FindBrokerResult findBrokerResult = this.mQClientFactory.findBrokerAddressInAdmin(mq.getBrokerName());
-        if (null == findBrokerResult) {
-            // TODO Here may be heavily overhead for Name Server,need tuning
-            this.mQClientFactory.updateTopicRouteInfoFromNameServer(mq.getTopic());
-            findBrokerResult = this.mQClientFactory.findBrokerAddressInAdmin(mq.getBrokerName());
-        }
+        FindBrokerResult findBrokerResult = this.findBrokerAddressInAdmin(mq.getBrokerName(), mq.getTopic());
 
         if (findBrokerResult != null) {
             UpdateConsumerOffsetRequestHeader requestHeader = new UpdateConsumerOffsetRequestHeader();
@@ -255,6 +319,49 @@ public class RemoteBrokerOffsetStore implements OffsetStore {
         }
     }
 
+    /**
+     * 批量提交消费进度到Broker, 一个Broker只发送一个请求
+     *
+     * @param brokerName Broker名
+     * @param mqOffsets 该Broker上的队列及进度
+     * @param invokeCallback 异步提交的回调, 为null时同步等待Broker响应
+     */
+    private void updateConsumeOffsetBatchToBroker(final String brokerName, final Map<MessageQueue, Long> mqOffsets,
+        final InvokeCallback invokeCallback) throws RemotingException, MQBrokerException, InterruptedException, MQClientException {
+        UpdateConsumerOffsetBatchRequestBody requestBody = new UpdateConsumerOffsetBatchRequestBody();
+        String topic = null;
+        for (Map.Entry<MessageQueue, Long> entry : mqOffsets.entrySet()) {
+            topic = entry.getKey().getTopic();
+            requestBody.putOffset(topic, entry.getKey().getQueueId(), entry.getValue());
+        }
+
+        FindBrokerResult findBrokerResult = this.findBrokerAddressInAdmin(brokerName, topic);
+        if (findBrokerResult != null) {
+            UpdateConsumerOffsetBatchRequestHeader requestHeader = new UpdateConsumerOffsetBatchRequestHeader();
+            requestHeader.setConsumerGroup(this.groupName);
+
+            if (null == invokeCallback) {
+                this.mQClientFactory.getMQClientAPIImpl().updateConsumerOffsetBatch(
+                    findBrokerResult.getBrokerAddr(), requestHeader, requestBody, 1000 * 5);
+            } else {
+                this.mQClientFactory.getMQClientAPIImpl().updateConsumerOffsetBatchAsync(
+                    findBrokerResult.getBrokerAddr(), requestHeader, requestBody, 1000 * 5, invokeCallback);
+            }
+        } else {
+            throw new MQClientException("The broker[" + brokerName + "] not exist", null);
+        }
+    }
+
+    private FindBrokerResult findBrokerAddressInAdmin(final String brokerName, final String topic) {
+        FindBrokerResult findBrokerResult = this.mQClientFactory.findBrokerAddressInAdmin(brokerName);
+        if (null == findBrokerResult) {
+            // TODO Here may be heavily overhead for Name Server,need tuning
+            this.mQClientFactory.updateTopicRouteInfoFromNameServer(topic);
+            findBrokerResult = this.mQClientFactory.findBrokerAddressInAdmin(brokerName);
+        }
+        return findBrokerResult;
+    }
+
     /**
      * 从Broker上获取指定MessageQueue的消费Offset
      *
@@ -267,12 +374,7 @@ public class RemoteBrokerOffsetStore implements OffsetStore {
      */
     private long fetchConsumeOffsetFromBroker(MessageQueue mq) throws RemotingException, MQBrokerException,
         InterruptedException, MQClientException {
-        FindBrokerResult findBrokerResult = this.mQClientFactory.findBrokerAddressInAdmin(mq.getBrokerName());
-        if (null == findBrokerResult) {
-            // TODO Here may be heavily overhead for Name Server,need tuning
-            this.mQClientFactory.updateTopicRouteInfoFromNameServer(mq.getTopic());
-            findBrokerResult = this.mQClientFactory.findBrokerAddressInAdmin(mq.getBrokerName());
-        }
+        FindBrokerResult findBrokerResult = this.findBrokerAddressInAdmin(mq.getBrokerName(), mq.getTopic());
 
         if (findBrokerResult != null) {
             QueryConsumerOffsetRequestHeader requestHeader = new QueryConsumerOffsetRequestHeader();
@@ -286,4 +388,46 @@ public class RemoteBrokerOffsetStore implements OffsetStore {
             throw new MQClientException("The broker[" + mq.getBrokerName() + "] not exist", null);
         }
     }
+
+    /**
+     * 异步批量提交的回调, Broker不支持批量提交时改为逐个队列提交
+     */
+    private class BatchOffsetCallback implements InvokeCallback {
+        private final String brokerName;
+        private final Map<MessageQueue, Long> mqOffsets;
+
+        BatchOffsetCallback(final String brokerName, final Map<MessageQueue, Long> mqOffsets) {
+            this.brokerName = brokerName;
+            this.mqOffsets = mqOffsets;
+        }
+
+        @Override
+        public void operationComplete(ResponseFuture responseFuture) {
+            RemotingCommand response = responseFuture.getResponseCommand();
+            if (null == response) {
+                log.warn("updateConsumeOffsetBatchToBroker failed, {}, sendRequestOK: {}, timeout: {}", this.brokerName,
+                    responseFuture.isSendRequestOK(), responseFuture.isTimeout(), responseFuture.getCause());
+                return;
+            }
+
+            switch (response.getCode()) {
+                case ResponseCode.SUCCESS:
+                    log.info("[persistAll] Group: {} ClientId: {} updateConsumeOffsetBatchToBroker {} {}",
+                        RemoteBrokerOffsetStore.this.groupName,
+                        RemoteBrokerOffsetStore.this.mQClientFactory.getClientId(),
+                        this.brokerName,
+                        this.mqOffsets);
+                    break;
+                case ResponseCode.REQUEST_CODE_NOT_SUPPORTED:
+                    RemoteBrokerOffsetStore.this.batchUnsupportedBrokers.add(this.brokerName);
+                    log.warn("broker {} does not support batch offset update, fall back to one by one", this.brokerName);
+                    RemoteBrokerOffsetStore.this.updateConsumeOffsetOneByOne(this.mqOffsets);
+                    break;
+                default:
+                    log.error("updateConsumeOffsetBatchToBroker failed, {}, code: {}, remark: {}", this.brokerName,
+                        response.getCode(), response.getRemark());
+                    break;
+            }
+        }
+    }
 }
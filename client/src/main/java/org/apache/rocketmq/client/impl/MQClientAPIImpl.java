@@ -25,8 +25,10 @@ import org.apache.rocketmq.client.exception.MQBrokerException;
 import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.client.hook.SendMessageContext;
 import org.apache.rocketmq.client.impl.consumer.PullResultExt;
+import org.apache.rocketmq.client.impl.consumer.SendMessageBackCallback;
 import org.apache.rocketmq.client.impl.factory.MQClientInstance;
 import org.apache.rocketmq.client.impl.producer.DefaultMQProducerImpl;
+import org.apache.rocketmq.client.impl.producer.SendMessageBatchCallback;
 import org.apache.rocketmq.client.impl.producer.TopicPublishInfo;
 import org.apache.rocketmq.client.log.ClientLogger;
 import org.apache.rocketmq.client.producer.SendCallback;
@@ -47,6 +49,7 @@ import org.apache.rocketmq.common.protocol.header.*;
 import org.apache.rocketmq.common.protocol.header.filtersrv.RegisterMessageFilterClassRequestHeader;
 import org.apache.rocketmq.common.protocol.header.namesrv.*;
 import org.apache.rocketmq.common.protocol.heartbeat.HeartbeatData;
+import org.apache.rocketmq.common.protocol.heartbeat.HeartbeatLiteData;
 import org.apache.rocketmq.common.protocol.route.TopicRouteData;
 import org.apache.rocketmq.common.subscription.SubscriptionGroupConfig;
 import org.apache.rocketmq.remoting.InvokeCallback;
@@ -285,7 +288,7 @@ public class MQClientAPIImpl {
                     retryTimesWhenSendFailed, times, context, producer);
                 return null;
             case SYNC:
-                return this.sendMessageSync(addr, brokerName, msg, timeoutMillis, request);
+                return this.sendMessageSync(addr, brokerName, msg, timeoutMillis, request, producer);
             default:
                 assert false;
                 break;
@@ -301,6 +304,7 @@ public class MQClientAPIImpl {
      * @param msg           消息
      * @param timeoutMillis 请求最大时间
      * @param request       请求
+     * @param producer      producer
      * @return 发送结果
      * @throws RemotingException 当请求发生异常
      * @throws MQBrokerException 当Broker发生异常
@@ -311,11 +315,12 @@ public class MQClientAPIImpl {
                                        final String brokerName, //
                                        final Message msg, //
                                        final long timeoutMillis, //
-                                       final RemotingCommand request//
+                                       final RemotingCommand request, //
+                                       final DefaultMQProducerImpl producer//
     ) throws RemotingException, MQBrokerException, InterruptedException {
         RemotingCommand response = this.remotingClient.invokeSync(addr, request, timeoutMillis);
         assert response != null;
-        return this.processSendResponse(brokerName, msg, response);
+        return this.processSendResponse(brokerName, msg, response, producer);
     }
 
     // TODO 待读
@@ -340,7 +345,7 @@ public class MQClientAPIImpl {
                 if (null == sendCallback && response != null) {
 
                     try {
-                        SendResult sendResult = MQClientAPIImpl.this.processSendResponse(brokerName, msg, response);
+                        SendResult sendResult = MQClientAPIImpl.this.processSendResponse(brokerName, msg, response, producer);
                         if (context != null && sendResult != null) {
                             context.setSendResult(sendResult);
                             context.getProducer().executeSendMessageHookAfter(context);
@@ -355,7 +360,7 @@ public class MQClientAPIImpl {
 
                 if (response != null) {
                     try {
-                        SendResult sendResult = MQClientAPIImpl.this.processSendResponse(brokerName, msg, response);
+                        SendResult sendResult = MQClientAPIImpl.this.processSendResponse(brokerName, msg, response, producer);
                         assert sendResult != null;
                         if (context != null) {
                             context.setSendResult(sendResult);
@@ -451,6 +456,7 @@ public class MQClientAPIImpl {
      * @param brokerName brokerName
      * @param msg        消息
      * @param response   响应
+     * @param producer   producer，用于记录响应中携带的Broker负载提示
      * @return 发送结果
      * @throws MQBrokerException 当Broker发生异常
      * @throws RemotingCommandException 当调用发生异常
@@ -458,7 +464,8 @@ public class MQClientAPIImpl {
     private SendResult processSendResponse(//
                                            final String brokerName, //
                                            final Message msg, //
-                                           final RemotingCommand response//
+                                           final RemotingCommand response, //
+                                           final DefaultMQProducerImpl producer//
     ) throws MQBrokerException, RemotingCommandException {
         switch (response.getCode()) {
             // 发送成功
@@ -488,6 +495,9 @@ public class MQClientAPIImpl {
                 }
                 SendMessageResponseHeader responseHeader =
                     (SendMessageResponseHeader)response.decodeCommandCustomHeader(SendMessageResponseHeader.class);
+                if (producer != null) {
+                    producer.updateLoadHint(brokerName, responseHeader.getSendQueueLoad(), responseHeader.getPageCacheBusy());
+                }
                 // 发送成功消息队列
                 MessageQueue messageQueue = new MessageQueue(msg.getTopic(), brokerName, responseHeader.getQueueId());
                 // 发送结果
@@ -517,6 +527,133 @@ public class MQClientAPIImpl {
         throw new MQBrokerException(response.getCode(), response.getRemark());
     }
 
+    /**
+     * 异步批量发送同一消息队列的消息
+     * 请求成功时按响应体逐条回调每条消息的 SendCallback；请求整体失败时只回调 batchCallback，由调用方决定重试或失败
+     *
+     * @param addr          broker地址
+     * @param brokerName    brokerName
+     * @param msgs          消息
+     * @param sendCallbacks 每条消息的发送回调，与消息一一对应
+     * @param requestHeader 请求头
+     * @param requestBody   请求体
+     * @param timeoutMillis 请求超时
+     * @param batchCallback 请求整体失败回调
+     * @param producer      producer
+     * @throws RemotingException 当远程调用发生异常时
+     * @throws InterruptedException 当发生中断异常时
+     */
+    public void sendMessageBatch(
+        final String addr,
+        final String brokerName,
+        final List<Message> msgs,
+        final List<SendCallback> sendCallbacks,
+        final SendMessageRequestHeader requestHeader,
+        final SendMessageBatchRequestBody requestBody,
+        final long timeoutMillis,
+        final SendMessageBatchCallback batchCallback,
+        final DefaultMQProducerImpl producer
+    ) throws RemotingException, InterruptedException {
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.SEND_BATCH_MESSAGE, requestHeader);
+        request.setBody(requestBody.encode());
+
+        this.remotingClient.invokeAsync(addr, request, timeoutMillis, new InvokeCallback() {
+            @Override
+            public void operationComplete(ResponseFuture responseFuture) {
+                final long latency = System.currentTimeMillis() - responseFuture.getBeginTimestamp();
+                RemotingCommand response = responseFuture.getResponseCommand();
+                if (response != null) {
+                    if (ResponseCode.SUCCESS == response.getCode() && response.getBody() != null) {
+                        producer.updateFaultItem(brokerName, latency, false);
+                        try {
+                            MQClientAPIImpl.this.processSendBatchResponse(brokerName, msgs, sendCallbacks, response, producer);
+                        } catch (Exception e) {
+                            batchCallback.onException(e);
+                        }
+                    } else {
+                        producer.updateFaultItem(brokerName, latency, true);
+                        batchCallback.onException(new MQBrokerException(response.getCode(), response.getRemark()));
+                    }
+                } else {
+                    producer.updateFaultItem(brokerName, latency, true);
+                    if (!responseFuture.isSendRequestOK()) {
+                        batchCallback.onException(new MQClientException("send request failed", responseFuture.getCause()));
+                    } else if (responseFuture.isTimeout()) {
+                        batchCallback.onException(new MQClientException("wait response timeout " + responseFuture.getTimeoutMillis() + "ms",
+                            responseFuture.getCause()));
+                    } else {
+                        batchCallback.onException(new MQClientException("unknow reseaon", responseFuture.getCause()));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 处理批量发送消息结果，逐条回调
+     */
+    private void processSendBatchResponse(//
+                                          final String brokerName, //
+                                          final List<Message> msgs, //
+                                          final List<SendCallback> sendCallbacks, //
+                                          final RemotingCommand response, //
+                                          final DefaultMQProducerImpl producer//
+    ) throws RemotingCommandException {
+        SendMessageResponseHeader responseHeader =
+            (SendMessageResponseHeader)response.decodeCommandCustomHeader(SendMessageResponseHeader.class);
+        producer.updateLoadHint(brokerName, responseHeader.getSendQueueLoad(), responseHeader.getPageCacheBusy());
+        SendMessageBatchResponseBody responseBody = SendMessageBatchResponseBody.decode(response.getBody(), SendMessageBatchResponseBody.class);
+
+        String regionId = response.getExtFields().get(MessageConst.PROPERTY_MSG_REGION);
+        if (regionId == null || regionId.isEmpty()) {
+            regionId = MixAll.DEFAULT_TRACE_REGION_ID;
+        }
+        String traceOn = response.getExtFields().get(MessageConst.PROPERTY_TRACE_SWITCH);
+
+        for (int i = 0; i < msgs.size(); i++) {
+            final Message msg = msgs.get(i);
+            final SendCallback sendCallback = sendCallbacks.get(i);
+            final SendMessageBatchResponseBody.SendResultEntry resultEntry = i < responseBody.getResultList().size()
+                ? responseBody.getResultList().get(i) : null;
+            SendStatus sendStatus = null;
+            if (resultEntry != null) {
+                switch (resultEntry.getCode()) {
+                    case ResponseCode.SUCCESS:
+                        sendStatus = SendStatus.SEND_OK;
+                        break;
+                    case ResponseCode.FLUSH_DISK_TIMEOUT:
+                        sendStatus = SendStatus.FLUSH_DISK_TIMEOUT;
+                        break;
+                    case ResponseCode.FLUSH_SLAVE_TIMEOUT:
+                        sendStatus = SendStatus.FLUSH_SLAVE_TIMEOUT;
+                        break;
+                    case ResponseCode.SLAVE_NOT_AVAILABLE:
+                        sendStatus = SendStatus.SLAVE_NOT_AVAILABLE;
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            try {
+                if (sendStatus != null) {
+                    MessageQueue messageQueue = new MessageQueue(msg.getTopic(), brokerName, responseHeader.getQueueId());
+                    SendResult sendResult = new SendResult(sendStatus,
+                        MessageClientIDSetter.getUniqID(msg),
+                        resultEntry.getMsgId(), messageQueue, resultEntry.getQueueOffset());
+                    sendResult.setRegionId(regionId);
+                    sendResult.setTraceOn(!"false".equals(traceOn));
+                    sendCallback.onSuccess(sendResult);
+                } else if (resultEntry != null) {
+                    sendCallback.onException(new MQBrokerException(resultEntry.getCode(), resultEntry.getRemark()));
+                } else {
+                    sendCallback.onException(new MQBrokerException(ResponseCode.SYSTEM_ERROR, "no send result in batch response"));
+                }
+            } catch (Throwable ignored) {
+            }
+        }
+    }
+
     /**
      * 拉取消息
      *
@@ -837,6 +974,46 @@ public class MQClientAPIImpl {
         throw new MQBrokerException(response.getCode(), response.getRemark());
     }
 
+    /**
+     * 批量更新消费分组在Broker上的消费进度
+     */
+    public void updateConsumerOffsetBatch(
+        final String addr,
+        final UpdateConsumerOffsetBatchRequestHeader requestHeader,
+        final UpdateConsumerOffsetBatchRequestBody requestBody,
+        final long timeoutMillis
+    ) throws RemotingException, MQBrokerException, InterruptedException {
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.UPDATE_CONSUMER_OFFSET_BATCH, requestHeader);
+        request.setBody(requestBody.encode());
+
+        RemotingCommand response = this.remotingClient.invokeSync(MixAll.brokerVIPChannel(this.clientConfig.isVipChannelEnabled(), addr),
+            request, timeoutMillis);
+        assert response != null;
+        switch (response.getCode()) {
+            case ResponseCode.SUCCESS: {
+                return;
+            }
+            default:
+                break;
+        }
+
+        throw new MQBrokerException(response.getCode(), response.getRemark());
+    }
+
+    public void updateConsumerOffsetBatchAsync(
+        final String addr,
+        final UpdateConsumerOffsetBatchRequestHeader requestHeader,
+        final UpdateConsumerOffsetBatchRequestBody requestBody,
+        final long timeoutMillis,
+        final InvokeCallback invokeCallback
+    ) throws RemotingException, InterruptedException {
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.UPDATE_CONSUMER_OFFSET_BATCH, requestHeader);
+        request.setBody(requestBody.encode());
+
+        this.remotingClient.invokeAsync(MixAll.brokerVIPChannel(this.clientConfig.isVipChannelEnabled(), addr), request, timeoutMillis,
+            invokeCallback);
+    }
+
     public void updateConsumerOffsetOneway(//
                                            final String addr, //
                                            final UpdateConsumerOffsetRequestHeader requestHeader, //
@@ -853,7 +1030,26 @@ public class MQClientAPIImpl {
                              final HeartbeatData heartbeatData, //
                              final long timeoutMillis//
     ) throws RemotingException, MQBrokerException, InterruptedException {
-        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.HEART_BEAT, null);
+        this.sendHearbeat(addr, heartbeatData, null, timeoutMillis);
+    }
+
+    /**
+     * 发送完整心跳
+     *
+     * @param fingerprint 心跳数据指纹, Broker登记后可接受精简心跳, 为null时不登记
+     */
+    public void sendHearbeat(//
+                             final String addr, //
+                             final HeartbeatData heartbeatData, //
+                             final Long fingerprint, //
+                             final long timeoutMillis//
+    ) throws RemotingException, MQBrokerException, InterruptedException {
+        HeartbeatRequestHeader requestHeader = null;
+        if (fingerprint != null) {
+            requestHeader = new HeartbeatRequestHeader();
+            requestHeader.setFingerprint(fingerprint);
+        }
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.HEART_BEAT, requestHeader);
 
         request.setBody(heartbeatData.encode());
         RemotingCommand response = this.remotingClient.invokeSync(addr, request, timeoutMillis);
@@ -869,6 +1065,29 @@ public class MQClientAPIImpl {
         throw new MQBrokerException(response.getCode(), response.getRemark());
     }
 
+    /**
+     * 发送精简心跳
+     *
+     * @return Broker登记的心跳数据指纹一致时返回true, 否则需发送完整心跳
+     */
+    public boolean sendHeartbeatLite(final String addr, final HeartbeatLiteData heartbeatLiteData, final long timeoutMillis)
+        throws RemotingException, MQBrokerException, InterruptedException {
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.HEART_BEAT_LITE, null);
+        request.setBody(heartbeatLiteData.encode());
+        RemotingCommand response = this.remotingClient.invokeSync(addr, request, timeoutMillis);
+        assert response != null;
+        switch (response.getCode()) {
+            case ResponseCode.SUCCESS:
+                return true;
+            case ResponseCode.HEARTBEAT_FINGERPRINT_MISMATCH:
+                return false;
+            default:
+                break;
+        }
+
+        throw new MQBrokerException(response.getCode(), response.getRemark());
+    }
+
     public void unregisterClient(//
                                  final String addr, //
                                  final String clientID, //
@@ -975,6 +1194,75 @@ public class MQClientAPIImpl {
         throw new MQBrokerException(response.getCode(), response.getRemark());
     }
 
+    /**
+     * 异步批量发回消费失败的消息
+     *
+     * @param addr                 broker地址
+     * @param msgs                 消息
+     * @param consumerGroup        消费分组
+     * @param delayLevel           延迟级别
+     * @param timeoutMillis        请求超时
+     * @param maxConsumeRetryTimes 最大重试次数
+     * @param callback             回调
+     * @throws RemotingException 当远程调用发生异常时
+     * @throws InterruptedException 当发生中断异常时
+     */
+    public void consumerSendMessageBackBatch(
+        final String addr,
+        final List<MessageExt> msgs,
+        final String consumerGroup,
+        final int delayLevel,
+        final long timeoutMillis,
+        final int maxConsumeRetryTimes,
+        final SendMessageBackCallback callback
+    ) throws RemotingException, InterruptedException {
+        ConsumerSendMsgBackBatchRequestHeader requestHeader = new ConsumerSendMsgBackBatchRequestHeader();
+        requestHeader.setGroup(consumerGroup);
+        requestHeader.setMaxReconsumeTimes(maxConsumeRetryTimes);
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.CONSUMER_SEND_MSG_BACK_BATCH, requestHeader);
+
+        ConsumerSendMsgBackBatchRequestBody requestBody = new ConsumerSendMsgBackBatchRequestBody();
+        for (MessageExt msg : msgs) {
+            ConsumerSendMsgBackBatchRequestBody.SendBackEntry entry = new ConsumerSendMsgBackBatchRequestBody.SendBackEntry();
+            entry.setOffset(msg.getCommitLogOffset());
+            entry.setDelayLevel(delayLevel);
+            entry.setOriginMsgId(msg.getMsgId());
+            entry.setOriginTopic(msg.getTopic());
+            requestBody.getEntryList().add(entry);
+        }
+        request.setBody(requestBody.encode());
+
+        this.remotingClient.invokeAsync(MixAll.brokerVIPChannel(this.clientConfig.isVipChannelEnabled(), addr), request, timeoutMillis,
+            new InvokeCallback() {
+                @Override
+                public void operationComplete(ResponseFuture responseFuture) {
+                    RemotingCommand response = responseFuture.getResponseCommand();
+                    if (response != null) {
+                        if (ResponseCode.SUCCESS == response.getCode()) {
+                            Set<Long> sendBackOKOffsetSet = new HashSet<Long>();
+                            if (response.getBody() != null) {
+                                ConsumerSendMsgBackBatchResponseBody responseBody = ConsumerSendMsgBackBatchResponseBody.decode(
+                                    response.getBody(), ConsumerSendMsgBackBatchResponseBody.class);
+                                sendBackOKOffsetSet.addAll(responseBody.getSendBackOKOffsetSet());
+                            }
+                            callback.onSuccess(sendBackOKOffsetSet);
+                        } else {
+                            callback.onException(new MQBrokerException(response.getCode(), response.getRemark()));
+                        }
+                    } else {
+                        if (!responseFuture.isSendRequestOK()) {
+                            callback.onException(new MQClientException("send request failed", responseFuture.getCause()));
+                        } else if (responseFuture.isTimeout()) {
+                            callback.onException(new MQClientException("wait response timeout " + responseFuture.getTimeoutMillis() + "ms",
+                                responseFuture.getCause()));
+                        } else {
+                            callback.onException(new MQClientException("unknow reseaon", responseFuture.getCause()));
+                        }
+                    }
+                }
+            });
+    }
+
     public Set<MessageQueue> lockBatchMQ(//
                                          final String addr, //
                                          final LockBatchRequestBody requestBody, //
@@ -1256,6 +1544,36 @@ public class MQClientAPIImpl {
         throw new MQClientException(response.getCode(), response.getRemark());
     }
 
+    /**
+     * 批量获取版本有变化的Topic路由
+     *
+     * @param topicVersionTable Topic 与 已知路由版本
+     * @param timeoutMillis     超时时间
+     * @return 有变化的路由与不存在的Topic
+     */
+    public TopicRouteBatchResponseBody getTopicRouteInfoBatchFromNameServer(final HashMap<String, Long> topicVersionTable,
+        final long timeoutMillis) throws RemotingException, MQClientException, InterruptedException {
+        TopicRouteBatchRequestBody requestBody = new TopicRouteBatchRequestBody();
+        requestBody.setTopicVersionTable(topicVersionTable);
+
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.GET_ROUTEINFO_BY_TOPICS, null);
+        request.setBody(requestBody.encode());
+        RemotingCommand response = this.remotingClient.invokeSync(null, request, timeoutMillis);
+        assert response != null;
+        switch (response.getCode()) {
+            case ResponseCode.SUCCESS: {
+                byte[] body = response.getBody();
+                if (body != null) {
+                    return TopicRouteBatchResponseBody.decode(body, TopicRouteBatchResponseBody.class);
+                }
+            }
+            default:
+                break;
+        }
+
+        throw new MQClientException(response.getCode(), response.getRemark());
+    }
+
     public TopicList getTopicListFromNameServer(final long timeoutMillis)
         throws RemotingException, MQClientException, InterruptedException {
         RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.GET_ALL_TOPIC_LIST_FROM_NAMESERVER, null);
@@ -35,6 +35,9 @@ import org.apache.rocketmq.common.protocol.body.ConsumeMessageDirectlyResult;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.slf4j.Logger;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -71,6 +74,15 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
      * 清理过期消息线程池。目前线程池大小为1。
      */
     private final ScheduledExecutorService cleanExpireMsgExecutors;
+    /**
+     * 消费线程数自适应控制器, 未开启时为null
+     */
+    private final ConsumeThreadPoolController threadPoolController;
+    /**
+     * 是否支持统计线程CPU时间
+     */
+    private final boolean threadCpuTimeSupported;
+    private long lastAdjustTimestamp = System.currentTimeMillis();
 
     public ConsumeMessageConcurrentlyService(DefaultMQPushConsumerImpl defaultMQPushConsumerImpl,
                                              MessageListenerConcurrently messageListener) {
@@ -97,6 +109,30 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
 
         this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("ConsumeMessageScheduledThread_"));
         this.cleanExpireMsgExecutors = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("CleanExpireMsgScheduledThread_"));
+
+        if (this.defaultMQPushConsumer.isConsumeThreadAdaptive()) {
+            this.threadPoolController = new ConsumeThreadPoolController(this.defaultMQPushConsumer.getConsumeThreadMin(),
+                this.defaultMQPushConsumer.getConsumeThreadMax(), Runtime.getRuntime().availableProcessors());
+            this.threadCpuTimeSupported = isThreadCpuTimeSupported();
+        } else {
+            this.threadPoolController = null;
+            this.threadCpuTimeSupported = false;
+        }
+    }
+
+    private static boolean isThreadCpuTimeSupported() {
+        try {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+            if (threadMXBean.isCurrentThreadCpuTimeSupported()) {
+                if (!threadMXBean.isThreadCpuTimeEnabled()) {
+                    threadMXBean.setThreadCpuTimeEnabled(true);
+                }
+                return true;
+            }
+        } catch (Throwable e) {
+            log.warn("thread cpu time is not supported", e);
+        }
+        return false;
     }
 
     public void start() {
@@ -109,6 +145,43 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
             }
 
         }, this.defaultMQPushConsumer.getConsumeTimeout(), this.defaultMQPushConsumer.getConsumeTimeout(), TimeUnit.MINUTES);
+
+        // 每秒调整一次消费线程数
+        if (this.threadPoolController != null) {
+            this.scheduledExecutorService.scheduleAtFixedRate(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        adjustCorePoolSize();
+                    } catch (Throwable e) {
+                        log.error("adjustCorePoolSize exception", e);
+                    }
+                }
+            }, 1000, 1000, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 根据自适应控制器的结果调整消费线程数
+     */
+    private void adjustCorePoolSize() {
+        final long now = System.currentTimeMillis();
+        final long interval = now - this.lastAdjustTimestamp;
+        this.lastAdjustTimestamp = now;
+
+        double loadPerCore = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        if (loadPerCore >= 0) {
+            loadPerCore /= Runtime.getRuntime().availableProcessors();
+        }
+
+        final int corePoolSize = this.consumeExecutor.getCorePoolSize();
+        final int newCorePoolSize = this.threadPoolController.adjust(corePoolSize, this.consumeExecutor.getActiveCount(),
+            this.consumeRequestQueue.size(), interval, loadPerCore);
+        if (newCorePoolSize != corePoolSize) {
+            this.consumeExecutor.setCorePoolSize(newCorePoolSize);
+            log.info("adjust consume thread pool from {} to {}, ConsumerGroup: {}", corePoolSize, newCorePoolSize, this.consumerGroup);
+        }
     }
 
     public void shutdown() {
@@ -128,34 +201,12 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
 
     @Override
     public void incCorePoolSize() {
-        // long corePoolSize = this.consumeExecutor.getCorePoolSize();
-        // if (corePoolSize < this.defaultMQPushConsumer.getConsumeThreadMax())
-        // {
-        // this.consumeExecutor.setCorePoolSize(this.consumeExecutor.getCorePoolSize()
-        // + 1);
-        // }
-        //
-        // log.info("incCorePoolSize Concurrently from {} to {}, ConsumerGroup:
-        // {}", //
-        // corePoolSize,//
-        // this.consumeExecutor.getCorePoolSize(),//
-        // this.consumerGroup);
+        // 不按堆积量调整线程数, 开启自适应调整时由控制器负责
     }
 
     @Override
     public void decCorePoolSize() {
-        // long corePoolSize = this.consumeExecutor.getCorePoolSize();
-        // if (corePoolSize > this.defaultMQPushConsumer.getConsumeThreadMin())
-        // {
-        // this.consumeExecutor.setCorePoolSize(this.consumeExecutor.getCorePoolSize()
-        // - 1);
-        // }
-        //
-        // log.info("decCorePoolSize Concurrently from {} to {}, ConsumerGroup:
-        // {}", //
-        // corePoolSize,//
-        // this.consumeExecutor.getCorePoolSize(),//
-        // this.consumerGroup);
+        // 不按堆积量调整线程数, 开启自适应调整时由控制器负责
     }
 
     @Override
@@ -364,22 +415,20 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
                 }
                 break;
             case CLUSTERING:
-                // 发回失败消息到Broker,将失败线程内所有消息发回
-                List<MessageExt> msgBackFailed = new ArrayList<>(consumeRequest.getMsgs().size());
-                for (int i = ackIndex + 1; i < consumeRequest.getMsgs().size(); i++) {
-                    MessageExt msg = consumeRequest.getMsgs().get(i);
-                    boolean result = this.sendMessageBack(msg, context);
-                    if (!result) {
-                        msg.setReconsumeTimes(msg.getReconsumeTimes() + 1);   //重消费次数+1
-                        msgBackFailed.add(msg);
+                // 发回失败消息到Broker: 优先异步批量发回, 发回完成前消息保留在ProcessQueue中, 消费进度不会越过它们
+                if (ackIndex + 1 < consumeRequest.getMsgs().size()) {
+                    List<MessageExt> msgBack = new ArrayList<>(consumeRequest.getMsgs().subList(ackIndex + 1, consumeRequest.getMsgs().size()));
+                    if (this.sendMessageBackBatch(msgBack, context, consumeRequest.getProcessQueue(), consumeRequest.getMessageQueue())) {
+                        consumeRequest.getMsgs().removeAll(msgBack);
+                    } else {
+                        List<MessageExt> msgBackFailed = this.sendMessageBackOneByOne(msgBack, context);
+                        // 将消费失新发回Broker,若发送失败，则提交延迟消费请求,也就是一会儿后在客户端重新消费
+                        if (!msgBackFailed.isEmpty()) {
+                            consumeRequest.getMsgs().removeAll(msgBackFailed);
+                            this.submitConsumeRequestLater(msgBackFailed, consumeRequest.getProcessQueue(), consumeRequest.getMessageQueue());
+                        }
                     }
                 }
-
-                // 将消费失新发回Broker,若发送失败，则提交延迟消费请求,也就是一会儿后在客户端重新消费
-                if (!msgBackFailed.isEmpty()) {
-                    consumeRequest.getMsgs().removeAll(msgBackFailed);
-                    this.submitConsumeRequestLater(msgBackFailed, consumeRequest.getProcessQueue(), consumeRequest.getMessageQueue());
-                }
                 break;
             default:
                 break;
@@ -418,6 +467,99 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
         return false;
     }
 
+    /**
+     * 逐条同步发回消息到Broker
+     *
+     * @return 发回失败的消息, 重消费次数已+1
+     */
+    private List<MessageExt> sendMessageBackOneByOne(final List<MessageExt> msgs, final ConsumeConcurrentlyContext context) {
+        List<MessageExt> msgBackFailed = new ArrayList<>(msgs.size());
+        for (MessageExt msg : msgs) {
+            boolean result = this.sendMessageBack(msg, context);
+            if (!result) {
+                msg.setReconsumeTimes(msg.getReconsumeTimes() + 1);   //重消费次数+1
+                msgBackFailed.add(msg);
+            }
+        }
+        return msgBackFailed;
+    }
+
+    /**
+     * 异步批量发回消息到Broker
+     * 发回完成后从ProcessQueue移除成功发回的消息并更新消费进度; Broker未接受的消息及请求异常时, 在消费线程池中逐条发回
+     *
+     * @return 是否已发起批量请求, 返回false时由调用方逐条发回
+     */
+    private boolean sendMessageBackBatch(final List<MessageExt> msgs, final ConsumeConcurrentlyContext context,
+        final ProcessQueue processQueue, final MessageQueue messageQueue) {
+        int delayLevel = context.getDelayLevelWhenNextConsume();  // == 0 ,默认延迟级别由Broker控制
+        try {
+            return this.defaultMQPushConsumerImpl.sendMessageBackBatch(msgs, delayLevel, context.getMessageQueue().getBrokerName(),
+                new SendMessageBackCallback() {
+                    @Override
+                    public void onSuccess(Set<Long> sendBackOKOffsetSet) {
+                        List<MessageExt> msgBackOK = new ArrayList<>(msgs.size());
+                        List<MessageExt> msgBackFailed = new ArrayList<>();
+                        for (MessageExt msg : msgs) {
+                            if (sendBackOKOffsetSet.contains(msg.getCommitLogOffset())) {
+                                msgBackOK.add(msg);
+                            } else {
+                                msgBackFailed.add(msg);
+                            }
+                        }
+                        ConsumeMessageConcurrentlyService.this.removeMessageAndUpdateOffset(msgBackOK, processQueue, messageQueue);
+                        if (!msgBackFailed.isEmpty()) {
+                            ConsumeMessageConcurrentlyService.this.sendMessageBackLater(msgBackFailed, context, processQueue, messageQueue);
+                        }
+                    }
+
+                    @Override
+                    public void onException(Throwable e) {
+                        log.warn("sendMessageBackBatch exception, group: " + ConsumeMessageConcurrentlyService.this.consumerGroup
+                            + " size: " + msgs.size() + ", send back one by one", e);
+                        ConsumeMessageConcurrentlyService.this.sendMessageBackLater(msgs, context, processQueue, messageQueue);
+                    }
+                });
+        } catch (Exception e) {
+            log.warn("sendMessageBackBatch exception, group: " + this.consumerGroup + " size: " + msgs.size(), e);
+        }
+        return false;
+    }
+
+    /**
+     * 在消费线程池中逐条发回消息, 不阻塞网络回调线程
+     */
+    private void sendMessageBackLater(final List<MessageExt> msgs, final ConsumeConcurrentlyContext context,
+        final ProcessQueue processQueue, final MessageQueue messageQueue) {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                List<MessageExt> msgBackFailed = ConsumeMessageConcurrentlyService.this.sendMessageBackOneByOne(msgs, context);
+                List<MessageExt> msgBackOK = new ArrayList<>(msgs);
+                msgBackOK.removeAll(msgBackFailed);
+                ConsumeMessageConcurrentlyService.this.removeMessageAndUpdateOffset(msgBackOK, processQueue, messageQueue);
+                if (!msgBackFailed.isEmpty()) {
+                    ConsumeMessageConcurrentlyService.this.submitConsumeRequestLater(msgBackFailed, processQueue, messageQueue);
+                }
+            }
+        };
+        try {
+            this.consumeExecutor.submit(task);
+        } catch (RejectedExecutionException e) {
+            this.scheduledExecutorService.schedule(task, 5000, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void removeMessageAndUpdateOffset(final List<MessageExt> msgs, final ProcessQueue processQueue, final MessageQueue messageQueue) {
+        if (msgs.isEmpty()) {
+            return;
+        }
+        long offset = processQueue.removeMessage(msgs);
+        if (offset >= 0 && !processQueue.isDropped()) {
+            this.defaultMQPushConsumerImpl.getOffsetStore().updateOffset(messageQueue, offset, true);
+        }
+    }
+
     /**
      * 提交延迟消费请求
      *
@@ -512,6 +654,10 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
             }
 
             long beginTimestamp = System.currentTimeMillis();
+            final ConsumeThreadPoolController controller = ConsumeMessageConcurrentlyService.this.threadPoolController;
+            final long beginNanos = controller != null ? System.nanoTime() : 0;
+            final long beginCpuNanos = ConsumeMessageConcurrentlyService.this.threadCpuTimeSupported
+                ? ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() : -1;
             boolean hasException = false;
             ConsumeReturnType returnType = ConsumeReturnType.SUCCESS; // 消费返回结果类型
             try {
@@ -535,6 +681,11 @@ public class ConsumeMessageConcurrentlyService implements ConsumeMessageService
                 hasException = true;
             }
 
+            if (controller != null) {
+                final long cpuNanos = beginCpuNanos >= 0 ? ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() - beginCpuNanos : -1;
+                controller.record(msgs.size(), System.nanoTime() - beginNanos, cpuNanos);
+            }
+
             // 解析消费返回结果类型
             long consumeRT = System.currentTimeMillis() - beginTimestamp;
             if (null == status) {
@@ -39,6 +39,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
 
 public class ConsumeMessageOrderlyService implements ConsumeMessageService {
 
@@ -52,6 +53,10 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
     private final ThreadPoolExecutor consumeExecutor;
     private final String consumerGroup;
     private final MessageQueueLock messageQueueLock = new MessageQueueLock();
+    /**
+     * 按通道顺序消费时的通道选择器, 整队列顺序消费时为null
+     */
+    private final OrderlyLaneSelector laneSelector;
     private final ScheduledExecutorService scheduledExecutorService;
     private volatile boolean stopped = false;
 
@@ -76,6 +81,13 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
             new ThreadFactoryImpl("ConsumeMessageThread_"));
 
         this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("ConsumeMessageScheduledThread_"));
+
+        if (this.defaultMQPushConsumer.getConsumeOrderlyLanes() > 1) {
+            this.laneSelector = new OrderlyLaneSelector(this.defaultMQPushConsumer.getConsumeOrderlyLanes(),
+                this.defaultMQPushConsumer.getConsumeOrderlyShardingKey());
+        } else {
+            this.laneSelector = null;
+        }
     }
 
     public void start() {
@@ -186,7 +198,7 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
 
     /**
      * 当 dispathToConsume=true 时提交消费请求,不指定拉取的消息,仅指明MessageQueue,ProcessQueue
-     * 因此,这个消费请求会一直消费,直到{@link ProcessQueue#msgTreeMap}里没有消息
+     * 因此,这个消费请求会一直消费,直到{@link ProcessQueue}里没有可取的消息
      * 可能出现这种情况,消息消费的速度慢于拉取的速度,那么一个消费请求会一直持续消费
      * 也就是一个线程一直维持着消费消息,不释放MessageQueue的{@link MessageQueueLock}锁
      * 其他线程干瞪眼等待
@@ -201,9 +213,17 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                                      final ProcessQueue processQueue,
                                      final MessageQueue messageQueue,
                                      final boolean dispathToConsume) {
-        if (dispathToConsume) {
-            ConsumeRequest consumeRequest = new ConsumeRequest(processQueue, messageQueue);
-            this.consumeExecutor.submit(consumeRequest);
+        if (null == this.laneSelector) {
+            if (dispathToConsume) {
+                this.consumeExecutor.submit(new ConsumeRequest(processQueue, messageQueue, ConsumeRequest.WHOLE_QUEUE));
+            }
+        } else {
+            // 按通道顺序消费, 只为空闲的通道提交消费请求, 每个通道同一时间只有一个消费请求
+            for (int lane = 0; lane < this.laneSelector.getLaneCount(); lane++) {
+                if (processQueue.activateLane(lane, this.laneSelector.getLaneCount())) {
+                    this.consumeExecutor.submit(new ConsumeRequest(processQueue, messageQueue, lane));
+                }
+            }
         }
     }
 
@@ -224,14 +244,27 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
      * @param delayMills
      */
     public void tryLockLaterAndReconsume(final MessageQueue mq, final ProcessQueue processQueue, final long delayMills) {
+        this.tryLockLaterAndReconsume(mq, processQueue, ConsumeRequest.WHOLE_QUEUE, delayMills);
+    }
+
+    /**
+     * 同{@link #tryLockLaterAndReconsume(MessageQueue, ProcessQueue, long)}, 只重新提交指定通道的消费请求
+     *
+     * @param mq
+     * @param processQueue
+     * @param lane         通道, 为{@link ConsumeRequest#WHOLE_QUEUE}时提交整个队列
+     * @param delayMills
+     */
+    private void tryLockLaterAndReconsume(final MessageQueue mq, final ProcessQueue processQueue, final int lane,
+        final long delayMills) {
         this.scheduledExecutorService.schedule(new Runnable() {
             @Override
             public void run() {
                 boolean lockOK = ConsumeMessageOrderlyService.this.lockOneMQ(mq);
                 if (lockOK) {
-                    ConsumeMessageOrderlyService.this.submitConsumeRequestLater(processQueue, mq, 10);
+                    ConsumeMessageOrderlyService.this.submitConsumeRequestLater(processQueue, mq, lane, 10);
                 } else {
-                    ConsumeMessageOrderlyService.this.submitConsumeRequestLater(processQueue, mq, 3000);
+                    ConsumeMessageOrderlyService.this.submitConsumeRequestLater(processQueue, mq, lane, 3000);
                 }
             }
         }, delayMills, TimeUnit.MILLISECONDS);
@@ -257,10 +290,12 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
      *
      * @param processQueue      消息处理队列
      * @param messageQueue      消息队列
+     * @param lane              通道, 为{@link ConsumeRequest#WHOLE_QUEUE}时提交整个队列(所有通道)
      * @param suspendTimeMillis 延迟时长
      */
     private void submitConsumeRequestLater(final ProcessQueue processQueue,
                                            final MessageQueue messageQueue,
+                                           final int lane,
                                            final long suspendTimeMillis
     ) {
         long timeMillis = suspendTimeMillis;
@@ -278,7 +313,11 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
 
             @Override
             public void run() {
-                ConsumeMessageOrderlyService.this.submitConsumeRequest(null, processQueue, messageQueue, true);
+                if (ConsumeRequest.WHOLE_QUEUE == lane) {
+                    ConsumeMessageOrderlyService.this.submitConsumeRequest(null, processQueue, messageQueue, true);
+                } else {
+                    ConsumeMessageOrderlyService.this.consumeExecutor.submit(new ConsumeRequest(processQueue, messageQueue, lane));
+                }
             }
         }, timeMillis, TimeUnit.MILLISECONDS);
     }
@@ -306,7 +345,7 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                     log.warn("the message queue consume result is illegal, we think you want to ack these message {}", consumeRequest.getMessageQueue());
                 case SUCCESS:
                     // 提交消息已消费成功到消息处理队列
-                    commitOffset = consumeRequest.getProcessQueue().commit();
+                    commitOffset = this.commit(consumeRequest);
                     // 统计
                     this.getConsumerStatsManager().incConsumeOKTPS(consumerGroup, consumeRequest.getMessageQueue().getTopic(), msgs.size());
                     break;
@@ -315,14 +354,14 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                     this.getConsumerStatsManager().incConsumeFailedTPS(consumerGroup, consumeRequest.getMessageQueue().getTopic(), msgs.size());
                     // 统计是否对这些消息重消费,只要重消费次数未达到最大值,都会返回true
                     if (checkReconsumeTimes(msgs)) {
-                        // 设置消息重新消费,将{@link #msgTreeMapTemp}里的消息重新放回{@link #msgTreeMap},这样重新消费时就能再次消费这些消息
-                        consumeRequest.getProcessQueue().makeMessageToCosumeAgain(msgs);
+                        // 设置消息重新消费,将消息移出{@link ProcessQueue#msgTreeMapTemp},这样重新消费时就能再次消费这些消息
+                        this.makeMessageToCosumeAgain(msgs, consumeRequest);
                         // 提交延迟消费请求,在1S后重新开启消费
                         this.submitConsumeRequestLater(consumeRequest.getProcessQueue(), consumeRequest.getMessageQueue(),
-                            context.getSuspendCurrentQueueTimeMillis());
+                            consumeRequest.getLane(), context.getSuspendCurrentQueueTimeMillis());
                         continueConsume = false;
                     } else {
-                        commitOffset = consumeRequest.getProcessQueue().commit();
+                        commitOffset = this.commit(consumeRequest);
                     }
                     break;
                 default:
@@ -335,14 +374,15 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                     break;
                 case COMMIT:
                     // 提交消息已消费成功到消息处理队列
-                    commitOffset = consumeRequest.getProcessQueue().commit();
+                    commitOffset = this.commit(consumeRequest);
                     break;
                 case ROLLBACK:
                     // 设置消息重新消费
-                    consumeRequest.getProcessQueue().rollback();
+                    this.rollback(consumeRequest);
                     this.submitConsumeRequestLater(//
                         consumeRequest.getProcessQueue(), //
                         consumeRequest.getMessageQueue(), //
+                        consumeRequest.getLane(), //
                         context.getSuspendCurrentQueueTimeMillis());
                     continueConsume = false;
                     break;
@@ -350,11 +390,12 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                     this.getConsumerStatsManager().incConsumeFailedTPS(consumerGroup, consumeRequest.getMessageQueue().getTopic(), msgs.size());
                     if (checkReconsumeTimes(msgs)) {
                         // 设置消息重新消费
-                        consumeRequest.getProcessQueue().makeMessageToCosumeAgain(msgs);
+                        this.makeMessageToCosumeAgain(msgs, consumeRequest);
                         // 提交延迟消费请求
                         this.submitConsumeRequestLater(//
                             consumeRequest.getProcessQueue(), //
                             consumeRequest.getMessageQueue(), //
+                            consumeRequest.getLane(), //
                             context.getSuspendCurrentQueueTimeMillis());
                         continueConsume = false;
                     }
@@ -372,6 +413,32 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
         return continueConsume;
     }
 
+    /**
+     * 提交消费中的消息, 按通道消费时只提交该通道的消息, 进度为所有通道中最小未确认的消息位置
+     */
+    private long commit(final ConsumeRequest consumeRequest) {
+        if (ConsumeRequest.WHOLE_QUEUE == consumeRequest.getLane()) {
+            return consumeRequest.getProcessQueue().commit();
+        }
+        return consumeRequest.getProcessQueue().commit(consumeRequest.getLane(), this.laneSelector);
+    }
+
+    private void rollback(final ConsumeRequest consumeRequest) {
+        if (ConsumeRequest.WHOLE_QUEUE == consumeRequest.getLane()) {
+            consumeRequest.getProcessQueue().rollback();
+        } else {
+            consumeRequest.getProcessQueue().rollback(consumeRequest.getLane(), this.laneSelector);
+        }
+    }
+
+    private void makeMessageToCosumeAgain(final List<MessageExt> msgs, final ConsumeRequest consumeRequest) {
+        if (ConsumeRequest.WHOLE_QUEUE == consumeRequest.getLane()) {
+            consumeRequest.getProcessQueue().makeMessageToCosumeAgain(msgs);
+        } else {
+            consumeRequest.getProcessQueue().makeMessageToCosumeAgain(msgs, consumeRequest.getLane());
+        }
+    }
+
     public ConsumerStatsManager getConsumerStatsManager() {
         return this.defaultMQPushConsumerImpl.getConsumerStatsManager();
     }
@@ -444,6 +511,10 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
      * 消费请求
      */
     class ConsumeRequest implements Runnable {
+        /**
+         * 整队列顺序消费
+         */
+        static final int WHOLE_QUEUE = -1;
 
         /**
          * 消息处理队列
@@ -453,10 +524,19 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
          * 消息队列
          */
         private final MessageQueue messageQueue;
+        /**
+         * 通道, 整队列顺序消费时为{@link #WHOLE_QUEUE}
+         */
+        private final int lane;
 
-        public ConsumeRequest(ProcessQueue processQueue, MessageQueue messageQueue) {
+        public ConsumeRequest(ProcessQueue processQueue, MessageQueue messageQueue, int lane) {
             this.processQueue = processQueue;
             this.messageQueue = messageQueue;
+            this.lane = lane;
+        }
+
+        public int getLane() {
+            return lane;
         }
 
         public ProcessQueue getProcessQueue() {
@@ -474,8 +554,9 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                 return;
             }
 
-            // 获得 Consumer 消息队列锁
-            final Object objLock = messageQueueLock.fetchLockObject(this.messageQueue);
+            // 获得 Consumer 消息队列锁, 按通道消费时为通道锁
+            final Object objLock = WHOLE_QUEUE == this.lane ? messageQueueLock.fetchLockObject(this.messageQueue)
+                : messageQueueLock.fetchLockObject(this.messageQueue, this.lane, laneSelector.getLaneCount());
             synchronized (objLock) {
                 // (广播模式) || (集群模式 && Broker消息队列锁有效)
                 if (MessageModel.BROADCASTING.equals(ConsumeMessageOrderlyService.this.defaultMQPushConsumerImpl.messageModel())
@@ -493,21 +574,21 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                         if (MessageModel.CLUSTERING.equals(ConsumeMessageOrderlyService.this.defaultMQPushConsumerImpl.messageModel())
                             && !this.processQueue.isLocked()) {
                             log.warn("the message queue not locked, so consume later, {}", this.messageQueue);
-                            ConsumeMessageOrderlyService.this.tryLockLaterAndReconsume(this.messageQueue, this.processQueue, 10);
+                            ConsumeMessageOrderlyService.this.tryLockLaterAndReconsume(this.messageQueue, this.processQueue, this.lane, 10);
                             break;
                         }
                         // ProcessQueue锁过期(30S)，向Broker请求锁定相应的MessageQueue,成功了锁定ProcessQueue,然后再次消费
                         if (MessageModel.CLUSTERING.equals(ConsumeMessageOrderlyService.this.defaultMQPushConsumerImpl.messageModel())
                             && this.processQueue.isLockExpired()) {
                             log.warn("the message queue lock expired, so consume later, {}", this.messageQueue);
-                            ConsumeMessageOrderlyService.this.tryLockLaterAndReconsume(this.messageQueue, this.processQueue, 10);
+                            ConsumeMessageOrderlyService.this.tryLockLaterAndReconsume(this.messageQueue, this.processQueue, this.lane, 10);
                             break;
                         }
 
                         // 当前轮次消费时间超过连续时长，默认：60s，提交延迟消费请求。默认情况下，每消费1分钟休息10ms。
                         long interval = System.currentTimeMillis() - beginTime;
                         if (interval > MAX_TIME_CONSUME_CONTINUOUSLY) {
-                            ConsumeMessageOrderlyService.this.submitConsumeRequestLater(processQueue, messageQueue, 10);
+                            ConsumeMessageOrderlyService.this.submitConsumeRequestLater(processQueue, messageQueue, this.lane, 10);
                             break;
                         }
 
@@ -515,11 +596,15 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                         final int consumeBatchSize = ConsumeMessageOrderlyService.this.defaultMQPushConsumer.getConsumeMessageBatchMaxSize();
 
                         //按顺序提取msgTreeMap里的相应数量消息至msgTreeMapTemp临时集合中,此举会删除msgTreeMap里的那些消息，也就是这些消息目前只在临时集合msgTreeMapTemp中
-                        List<MessageExt> msgs = this.processQueue.takeMessags(consumeBatchSize);
+                        List<MessageExt> msgs = WHOLE_QUEUE == this.lane ? this.processQueue.takeMessags(consumeBatchSize)
+                            : this.processQueue.takeMessags(consumeBatchSize, this.lane, laneSelector);
                         if (!msgs.isEmpty()) {
                             final ConsumeOrderlyContext context = new ConsumeOrderlyContext(this.messageQueue);
 
                             ConsumeOrderlyStatus status = null;
+                            // 按通道消费时各通道共享消费锁, 负载均衡释放队列时等待所有通道
+                            final Lock lockConsume = WHOLE_QUEUE == this.lane ? this.processQueue.getLockConsume()
+                                : this.processQueue.getLockConsumeShared();
 
                             // Hook：before
                             ConsumeMessageContext consumeMessageContext = null;
@@ -540,7 +625,7 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                             ConsumeReturnType returnType = ConsumeReturnType.SUCCESS;
                             boolean hasException = false;
                             try {
-                                this.processQueue.getLockConsume().lock(); // 获取队列消费锁
+                                lockConsume.lock(); // 获取队列消费锁
 
                                 if (this.processQueue.isDropped()) {
                                     log.warn("consumeMessage, the message queue not be able to consume, because it's dropped. {}",
@@ -557,7 +642,7 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                                     messageQueue);
                                 hasException = true;
                             } finally {
-                                this.processQueue.getLockConsume().unlock(); // 释放队列消费锁
+                                lockConsume.unlock(); // 释放队列消费锁
                             }
 
                             if (null == status || ConsumeOrderlyStatus.ROLLBACK == status || ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT == status) {
@@ -612,7 +697,7 @@ public class ConsumeMessageOrderlyService implements ConsumeMessageService {
                         return;
                     }
 
-                    ConsumeMessageOrderlyService.this.tryLockLaterAndReconsume(this.messageQueue, this.processQueue, 100);
+                    ConsumeMessageOrderlyService.this.tryLockLaterAndReconsume(this.messageQueue, this.processQueue, this.lane, 100);
                 }
             }
         }
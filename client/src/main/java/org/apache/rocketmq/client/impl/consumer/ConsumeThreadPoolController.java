@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 并发消费线程数自适应控制器
+ *
+ * 每个调整周期根据以下指标计算消费线程池的核心线程数:
+ * 1. 消费线程池是否饱和(活跃线程数等于线程数且有排队的消费请求);
+ * 2. 监听器的CPU占用比例(CPU时间 / 耗时), 按 线程数 = CPU核数 * 目标利用率 / CPU占用比例 估算CPU上限,
+ *    I/O密集的监听器CPU占用比例低, 上限高; CPU密集的监听器上限接近CPU核数;
+ * 3. 系统负载, 每核负载过高时不再增加线程;
+ * 4. 吞吐量, 增加线程后吞吐量没有明显提升时回退并暂停增加。
+ */
+public class ConsumeThreadPoolController {
+    /**
+     * 目标CPU利用率
+     */
+    private static final double TARGET_CPU_UTILIZATION = 0.8;
+    /**
+     * 每核负载超过该值时不再增加线程
+     */
+    private static final double MAX_LOAD_PER_CORE = 1.5;
+    /**
+     * 增加线程后吞吐量提升低于该比例时视为无效
+     */
+    private static final double MIN_THROUGHPUT_GAIN = 0.05;
+    /**
+     * 增加线程无效后暂停增加的周期数
+     */
+    private static final int HOLD_PERIODS_AFTER_USELESS_GROW = 10;
+
+    private final int threadMin;
+    private final int threadMax;
+    private final int processors;
+
+    /**
+     * 本周期消费的消息数
+     */
+    private final AtomicLong consumeCount = new AtomicLong(0);
+    /**
+     * 本周期监听器耗时, 单位纳秒
+     */
+    private final AtomicLong consumeWallNanos = new AtomicLong(0);
+    /**
+     * 本周期监听器CPU时间, 单位纳秒。不支持线程CPU时间时为 -1
+     */
+    private final AtomicLong consumeCpuNanos = new AtomicLong(0);
+
+    private double lastThroughput = -1;
+    private boolean lastGrew = false;
+    private int lastPoolSize = -1;
+    private int holdPeriods = 0;
+
+    public ConsumeThreadPoolController(final int threadMin, final int threadMax, final int processors) {
+        this.threadMin = threadMin;
+        this.threadMax = threadMax;
+        this.processors = processors;
+    }
+
+    /**
+     * 记录一次监听器调用
+     *
+     * @param msgCount  消息数
+     * @param wallNanos 耗时
+     * @param cpuNanos  CPU时间, 不支持时传 -1
+     */
+    public void record(final int msgCount, final long wallNanos, final long cpuNanos) {
+        this.consumeCount.addAndGet(msgCount);
+        this.consumeWallNanos.addAndGet(wallNanos);
+        if (cpuNanos >= 0) {
+            this.consumeCpuNanos.addAndGet(cpuNanos);
+        } else {
+            this.consumeCpuNanos.set(-1);
+        }
+    }
+
+    /**
+     * 计算新的线程数, 由单个调度线程周期性调用
+     *
+     * @param poolSize        当前核心线程数
+     * @param activeCount     正在执行消费的线程数
+     * @param backlog         排队等待线程的消费请求数
+     * @param intervalMillis  距上次调用的时间
+     * @param loadPerCore     每核系统负载, 不可用时传负数
+     * @return 新的核心线程数
+     */
+    public int adjust(final int poolSize, final int activeCount, final long backlog, final long intervalMillis,
+        final double loadPerCore) {
+        final long count = this.consumeCount.getAndSet(0);
+        final long wallNanos = this.consumeWallNanos.getAndSet(0);
+        final long cpuNanos = this.consumeCpuNanos.get();
+        if (cpuNanos > 0) {
+            this.consumeCpuNanos.addAndGet(-cpuNanos);
+        }
+        final double throughput = intervalMillis > 0 ? count * 1000.0 / intervalMillis : 0;
+
+        final int cpuLimit = this.cpuLimit(wallNanos, cpuNanos);
+        int target = poolSize;
+
+        final boolean saturated = activeCount >= poolSize && backlog > 0;
+        if (poolSize > cpuLimit) {
+            // CPU密集的监听器线程过多, 直接收缩到CPU上限
+            target = cpuLimit;
+        } else if (this.lastGrew && this.lastPoolSize == poolSize && this.lastThroughput > 0
+            && throughput < this.lastThroughput * (1 + MIN_THROUGHPUT_GAIN)) {
+            // 上次增加线程没有带来吞吐量提升, 回退并暂停增加
+            target = poolSize - growStep(poolSize);
+            this.holdPeriods = HOLD_PERIODS_AFTER_USELESS_GROW;
+        } else if (saturated) {
+            if (this.holdPeriods <= 0 && (loadPerCore < 0 || loadPerCore < MAX_LOAD_PER_CORE)) {
+                target = Math.min(poolSize + growStep(poolSize), cpuLimit);
+            }
+        } else if (activeCount < poolSize / 2) {
+            // 空闲线程过多, 逐步收缩
+            target = Math.max(poolSize - 1, activeCount + 1);
+        }
+
+        if (this.holdPeriods > 0) {
+            this.holdPeriods--;
+        }
+
+        target = Math.max(this.threadMin, Math.min(this.threadMax, target));
+        this.lastGrew = target > poolSize;
+        this.lastPoolSize = target;
+        this.lastThroughput = throughput;
+        return target;
+    }
+
+    /**
+     * 每次增加约1/4的线程
+     */
+    private static int growStep(final int poolSize) {
+        return Math.max(1, poolSize / 4);
+    }
+
+    /**
+     * 按监听器CPU占用比例估算线程数上限
+     */
+    int cpuLimit(final long wallNanos, final long cpuNanos) {
+        if (wallNanos <= 0 || cpuNanos < 0) {
+            return this.threadMax;
+        }
+
+        final double cpuRatio = Math.min(1.0, (double) cpuNanos / wallNanos);
+        if (cpuRatio <= 0) {
+            return this.threadMax;
+        }
+
+        final double limit = this.processors * TARGET_CPU_UTILIZATION / cpuRatio;
+        return (int) Math.max(1, Math.min(this.threadMax, Math.ceil(limit)));
+    }
+}
@@ -0,0 +1,713 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.client.Validators;
+import org.apache.rocketmq.client.consumer.DefaultLitePullConsumer;
+import org.apache.rocketmq.client.consumer.PullCallback;
+import org.apache.rocketmq.client.consumer.PullResult;
+import org.apache.rocketmq.client.consumer.store.LocalFileOffsetStore;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.consumer.store.ReadOffsetType;
+import org.apache.rocketmq.client.consumer.store.RemoteBrokerOffsetStore;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.impl.CommunicationMode;
+import org.apache.rocketmq.client.impl.MQClientManager;
+import org.apache.rocketmq.client.impl.factory.MQClientInstance;
+import org.apache.rocketmq.client.log.ClientLogger;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.ServiceState;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.apache.rocketmq.common.filter.FilterAPI;
+import org.apache.rocketmq.common.help.FAQUrl;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.body.ConsumerRunningInfo;
+import org.apache.rocketmq.common.protocol.body.ProcessQueueInfo;
+import org.apache.rocketmq.common.protocol.heartbeat.ConsumeType;
+import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
+import org.apache.rocketmq.common.protocol.heartbeat.SubscriptionData;
+import org.apache.rocketmq.common.sysflag.PullSysFlag;
+import org.apache.rocketmq.remoting.RPCHook;
+import org.slf4j.Logger;
+
+/**
+ * Lite pull 消费者实现
+ *
+ * 负载均衡分配到队列后, 由拉取线程池对每个队列循环异步长轮询拉取消息, 结果暂存在 ProcessQueue 中并放入缓存队列,
+ * {@link #poll(long)} 只从缓存队列取消息, 不在调用线程上发起网络请求。每个队列缓存的消息数超过
+ * pullThresholdForQueue 时暂停该队列的预取。
+ *
+ * 消费进度: poll 返回的消息从 ProcessQueue 移除后, 其后的位置记为待提交进度;
+ * 开启 autoCommit 时在下一次 poll 时提交到 OffsetStore, 否则由 {@link #commitSync()} 提交。
+ *
+ * 每个队列的拉取状态带有版本号, {@link #seek(MessageQueue, long)} 递增版本号,
+ * 之后返回的旧版本拉取结果与缓存队列中的旧版本消息都会被丢弃。
+ */
+public class DefaultLitePullConsumerImpl implements MQConsumerInner {
+    /**
+     * 队列被流控时的重试间隔
+     */
+    private static final long PULL_TIME_DELAY_MILLS_WHEN_FLOW_CONTROL = 50;
+
+    private final Logger log = ClientLogger.getLog();
+    private final DefaultLitePullConsumer defaultLitePullConsumer;
+    private final long consumerStartTimestamp = System.currentTimeMillis();
+    private final RPCHook rpcHook;
+    private volatile ServiceState serviceState = ServiceState.CREATE_JUST;
+    private MQClientInstance mQClientFactory;
+    private PullAPIWrapper pullAPIWrapper;
+    private OffsetStore offsetStore;
+    private RebalanceImpl rebalanceImpl = new RebalanceLitePullImpl(this);
+    /**
+     * 正在预取的队列
+     */
+    private final ConcurrentHashMap<MessageQueue, MessageQueueState> messageQueueStateTable =
+        new ConcurrentHashMap<MessageQueue, MessageQueueState>();
+    /**
+     * 已拉取、等待 poll 的消息
+     */
+    private final LinkedBlockingQueue<ConsumeRequest> consumeRequestCache = new LinkedBlockingQueue<ConsumeRequest>();
+    /**
+     * 已 poll、尚未提交的消费进度
+     */
+    private final ConcurrentHashMap<MessageQueue, Long> uncommittedOffsetTable = new ConcurrentHashMap<MessageQueue, Long>();
+    private ScheduledExecutorService pullExecutor;
+
+    public DefaultLitePullConsumerImpl(final DefaultLitePullConsumer defaultLitePullConsumer, final RPCHook rpcHook) {
+        this.defaultLitePullConsumer = defaultLitePullConsumer;
+        this.rpcHook = rpcHook;
+    }
+
+    public void start() throws MQClientException {
+        switch (this.serviceState) {
+            case CREATE_JUST:
+                this.serviceState = ServiceState.START_FAILED;
+
+                this.checkConfig();
+
+                if (this.defaultLitePullConsumer.getMessageModel() == MessageModel.CLUSTERING) {
+                    this.defaultLitePullConsumer.changeInstanceNameToPID();
+                }
+
+                this.mQClientFactory = MQClientManager.getInstance().getAndCreateMQClientInstance(this.defaultLitePullConsumer, this.rpcHook);
+
+                this.rebalanceImpl.setConsumerGroup(this.defaultLitePullConsumer.getConsumerGroup());
+                this.rebalanceImpl.setMessageModel(this.defaultLitePullConsumer.getMessageModel());
+                this.rebalanceImpl.setAllocateMessageQueueStrategy(this.defaultLitePullConsumer.getAllocateMessageQueueStrategy());
+                this.rebalanceImpl.setmQClientFactory(this.mQClientFactory);
+
+                this.pullAPIWrapper = new PullAPIWrapper(//
+                    mQClientFactory, //
+                    this.defaultLitePullConsumer.getConsumerGroup(), isUnitMode());
+
+                switch (this.defaultLitePullConsumer.getMessageModel()) {
+                    case BROADCASTING:
+                        this.offsetStore = new LocalFileOffsetStore(this.mQClientFactory, this.defaultLitePullConsumer.getConsumerGroup());
+                        break;
+                    case CLUSTERING:
+                        this.offsetStore = new RemoteBrokerOffsetStore(this.mQClientFactory, this.defaultLitePullConsumer.getConsumerGroup());
+                        break;
+                    default:
+                        break;
+                }
+                this.offsetStore.load();
+
+                this.pullExecutor = Executors.newScheduledThreadPool(this.defaultLitePullConsumer.getPullThreadNums(),
+                    new ThreadFactoryImpl("LitePullThread_"));
+
+                boolean registerOK = mQClientFactory.registerConsumer(this.defaultLitePullConsumer.getConsumerGroup(), this);
+                if (!registerOK) {
+                    this.serviceState = ServiceState.CREATE_JUST;
+                    this.pullExecutor.shutdown();
+
+                    throw new MQClientException("The consumer group[" + this.defaultLitePullConsumer.getConsumerGroup()
+                        + "] has been created before, specify another name please." + FAQUrl.suggestTodo(FAQUrl.GROUP_NAME_DUPLICATE_URL),
+                        null);
+                }
+
+                mQClientFactory.start();
+                log.info("the consumer [{}] start OK", this.defaultLitePullConsumer.getConsumerGroup());
+                this.serviceState = ServiceState.RUNNING;
+                break;
+            case RUNNING:
+            case START_FAILED:
+            case SHUTDOWN_ALREADY:
+                throw new MQClientException("The LitePullConsumer service state not OK, maybe started once, "//
+                    + this.serviceState//
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_SERVICE_NOT_OK),
+                    null);
+            default:
+                break;
+        }
+
+        for (String topic : this.rebalanceImpl.getSubscriptionInner().keySet()) {
+            this.mQClientFactory.updateTopicRouteInfoFromNameServer(topic);
+        }
+        this.mQClientFactory.sendHeartbeatToAllBrokerWithLock();
+        this.mQClientFactory.rebalanceImmediately();
+    }
+
+    public void shutdown() {
+        switch (this.serviceState) {
+            case CREATE_JUST:
+                break;
+            case RUNNING:
+                if (this.defaultLitePullConsumer.isAutoCommit()) {
+                    this.commitPolledOffsets();
+                }
+                this.pullExecutor.shutdown();
+                this.persistConsumerOffset(true);
+                this.mQClientFactory.unregisterConsumer(this.defaultLitePullConsumer.getConsumerGroup());
+                this.mQClientFactory.shutdown();
+                this.rebalanceImpl.destroy();
+                this.consumeRequestCache.clear();
+                log.info("the consumer [{}] shutdown OK", this.defaultLitePullConsumer.getConsumerGroup());
+                this.serviceState = ServiceState.SHUTDOWN_ALREADY;
+                break;
+            case SHUTDOWN_ALREADY:
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void checkConfig() throws MQClientException {
+        Validators.checkGroup(this.defaultLitePullConsumer.getConsumerGroup());
+
+        if (this.defaultLitePullConsumer.getConsumerGroup().equals(MixAll.DEFAULT_CONSUMER_GROUP)) {
+            throw new MQClientException(
+                "consumerGroup can not equal "//
+                    + MixAll.DEFAULT_CONSUMER_GROUP //
+                    + ", please specify another one."//
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL), //
+                null);
+        }
+
+        if (null == this.defaultLitePullConsumer.getMessageModel()) {
+            throw new MQClientException(
+                "messageModel is null" //
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL), //
+                null);
+        }
+
+        if (null == this.defaultLitePullConsumer.getAllocateMessageQueueStrategy()) {
+            throw new MQClientException(
+                "allocateMessageQueueStrategy is null" //
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL), //
+                null);
+        }
+
+        if (this.defaultLitePullConsumer.getPullBatchSize() < 1 || this.defaultLitePullConsumer.getPollBatchSize() < 1
+            || this.defaultLitePullConsumer.getPullThreadNums() < 1) {
+            throw new MQClientException(
+                "pullBatchSize, pollBatchSize and pullThreadNums must be positive" //
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL), //
+                null);
+        }
+
+        if (this.defaultLitePullConsumer.getConsumerTimeoutMillisWhenSuspend() < this.defaultLitePullConsumer.getBrokerSuspendMaxTimeMillis()) {
+            throw new MQClientException(
+                "Long polling mode, the consumer consumerTimeoutMillisWhenSuspend must greater than brokerSuspendMaxTimeMillis" //
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL), //
+                null);
+        }
+    }
+
+    private void makeSureStateOK() {
+        if (this.serviceState != ServiceState.RUNNING) {
+            throw new IllegalStateException("The consumer service state not OK, "//
+                + this.serviceState//
+                + FAQUrl.suggestTodo(FAQUrl.CLIENT_SERVICE_NOT_OK));
+        }
+    }
+
+    public void subscribe(final String topic, final String subExpression) throws MQClientException {
+        try {
+            SubscriptionData subscriptionData = FilterAPI.buildSubscriptionData(this.defaultLitePullConsumer.getConsumerGroup(), //
+                topic, subExpression);
+            this.rebalanceImpl.getSubscriptionInner().put(topic, subscriptionData);
+        } catch (Exception e) {
+            throw new MQClientException("subscription exception", e);
+        }
+
+        if (this.serviceState == ServiceState.RUNNING) {
+            this.mQClientFactory.updateTopicRouteInfoFromNameServer(topic);
+            this.mQClientFactory.sendHeartbeatToAllBrokerWithLock();
+            this.mQClientFactory.rebalanceImmediately();
+        }
+    }
+
+    /**
+     * 取消订阅并立即停止该Topic下所有队列的预取
+     */
+    public void unsubscribe(final String topic) {
+        this.rebalanceImpl.getSubscriptionInner().remove(topic);
+
+        Iterator<Map.Entry<MessageQueue, ProcessQueue>> it = this.rebalanceImpl.getProcessQueueTable().entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<MessageQueue, ProcessQueue> next = it.next();
+            if (next.getKey().getTopic().equals(topic)) {
+                next.getValue().setDropped(true);
+                this.removeMessageQueue(next.getKey(), next.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 从缓存队列中取消息, 至多等待 timeout 毫秒
+     *
+     * 每次返回若干队列的完整拉取批次, 累计消息数达到 pollBatchSize 后不再继续取, 因此返回的消息数可能略多于 pollBatchSize。
+     *
+     * @param timeout 等待时间, 单位毫秒
+     * @return 消息列表, 超时返回空列表
+     */
+    public List<MessageExt> poll(final long timeout) {
+        this.makeSureStateOK();
+        if (this.defaultLitePullConsumer.isAutoCommit()) {
+            this.commitPolledOffsets();
+        }
+
+        final List<MessageExt> result = new ArrayList<MessageExt>();
+        final long endTime = System.currentTimeMillis() + timeout;
+        try {
+            // 取到的消息可能全部因 seek 或队列被移除而失效, 此时在剩余时间内继续等待
+            while (result.isEmpty()) {
+                long remain = endTime - System.currentTimeMillis();
+                if (remain <= 0) {
+                    break;
+                }
+
+                ConsumeRequest consumeRequest = this.consumeRequestCache.poll(remain, TimeUnit.MILLISECONDS);
+                if (null == consumeRequest) {
+                    break;
+                }
+                while (consumeRequest != null) {
+                    this.takeMessages(consumeRequest, result);
+                    if (result.size() >= this.defaultLitePullConsumer.getPollBatchSize()) {
+                        break;
+                    }
+                    consumeRequest = this.consumeRequestCache.poll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    private void takeMessages(final ConsumeRequest consumeRequest, final List<MessageExt> result) {
+        final MessageQueueState state = consumeRequest.getState();
+        synchronized (state) {
+            if (consumeRequest.getGeneration() != state.generation || state.pq.isDropped()) {
+                return;
+            }
+
+            long offset = state.pq.removeMessage(consumeRequest.getMsgs());
+            if (offset >= 0) {
+                this.uncommittedOffsetTable.put(state.mq, offset);
+            }
+        }
+        result.addAll(consumeRequest.getMsgs());
+    }
+
+    /**
+     * 将已 poll 的消费进度提交到 OffsetStore, 由定时任务或 {@link #commitSync()} 持久化
+     */
+    private void commitPolledOffsets() {
+        for (Map.Entry<MessageQueue, Long> entry : this.uncommittedOffsetTable.entrySet()) {
+            MessageQueue mq = entry.getKey();
+            Long offset = entry.getValue();
+            if (this.uncommittedOffsetTable.remove(mq, offset) && this.messageQueueStateTable.containsKey(mq)) {
+                this.offsetStore.updateOffset(mq, offset, false);
+            }
+        }
+    }
+
+    /**
+     * 提交已 poll 的消费进度并同步持久化到Broker
+     */
+    public void commitSync() {
+        this.makeSureStateOK();
+        this.commitPolledOffsets();
+        Set<MessageQueue> mqs = new HashSet<MessageQueue>(this.rebalanceImpl.getProcessQueueTable().keySet());
+        if (this.offsetStore instanceof RemoteBrokerOffsetStore) {
+            ((RemoteBrokerOffsetStore) this.offsetStore).persistAll(mqs, true);
+        } else {
+            this.offsetStore.persistAll(mqs);
+        }
+    }
+
+    /**
+     * 重置队列的消费位置, 丢弃该队列已预取的消息, 下一次拉取从 offset 开始
+     */
+    public void seek(final MessageQueue mq, final long offset) throws MQClientException {
+        this.makeSureStateOK();
+        final MessageQueueState state = this.messageQueueStateTable.get(mq);
+        if (null == state) {
+            throw new MQClientException("The message queue is not in assigned list, message queue: " + mq, null);
+        }
+        if (offset < 0) {
+            throw new MQClientException("offset < 0", null);
+        }
+
+        synchronized (state) {
+            state.generation++;
+            state.nextOffset = offset;
+            state.pq.clear();
+            this.uncommittedOffsetTable.remove(mq);
+        }
+        this.offsetStore.updateOffset(mq, offset, false);
+    }
+
+    public Set<MessageQueue> assignment() {
+        return new HashSet<MessageQueue>(this.rebalanceImpl.getProcessQueueTable().keySet());
+    }
+
+    /**
+     * 负载均衡分配到新队列, 开始预取
+     */
+    void startPrefetch(final PullRequest pullRequest) {
+        MessageQueueState state = new MessageQueueState(pullRequest.getMessageQueue(), pullRequest.getProcessQueue(),
+            pullRequest.getNextOffset());
+        this.messageQueueStateTable.put(state.mq, state);
+        this.executePull(state, 0);
+    }
+
+    /**
+     * 队列不再分配给当前消费者, 停止预取并持久化消费进度
+     */
+    void removeMessageQueue(final MessageQueue mq, final ProcessQueue pq) {
+        final MessageQueueState state = this.messageQueueStateTable.get(mq);
+        if (state != null && state.pq == pq) {
+            this.messageQueueStateTable.remove(mq, state);
+            synchronized (state) {
+                Long offset = this.uncommittedOffsetTable.remove(mq);
+                if (offset != null && this.defaultLitePullConsumer.isAutoCommit()) {
+                    this.offsetStore.updateOffset(mq, offset, false);
+                }
+            }
+        }
+        this.offsetStore.persist(mq);
+        this.offsetStore.removeOffset(mq);
+    }
+
+    private void executePull(final MessageQueueState state, final long delay) {
+        if (state.pq.isDropped()) {
+            return;
+        }
+
+        try {
+            this.pullExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    pullMessage(state);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("executePull exception, the consumer may be shutdown, {}", state.mq);
+        }
+    }
+
+    private void pullMessage(final MessageQueueState state) {
+        final ProcessQueue pq = state.pq;
+        if (pq.isDropped()) {
+            log.info("the message queue not be able to poll, because it's dropped. {}", state.mq);
+            return;
+        }
+        pq.setLastPullTimestamp(System.currentTimeMillis());
+
+        if (pq.getMsgCount().get() > this.defaultLitePullConsumer.getPullThresholdForQueue()) {
+            this.executePull(state, PULL_TIME_DELAY_MILLS_WHEN_FLOW_CONTROL);
+            return;
+        }
+
+        final SubscriptionData subscriptionData = this.rebalanceImpl.getSubscriptionInner().get(state.mq.getTopic());
+        if (null == subscriptionData) {
+            this.executePull(state, this.defaultLitePullConsumer.getPullTimeDelayMillsWhenException());
+            log.warn("find the consumer's subscription failed, {}", state.mq);
+            return;
+        }
+
+        final long offset;
+        final long generation;
+        synchronized (state) {
+            offset = state.nextOffset;
+            generation = state.generation;
+        }
+
+        PullCallback pullCallback = new PullCallback() {
+            @Override
+            public void onSuccess(PullResult pullResult) {
+                pullResult = DefaultLitePullConsumerImpl.this.pullAPIWrapper.processPullResult(state.mq, pullResult, subscriptionData);
+                onPullResult(state, generation, pullResult);
+            }
+
+            @Override
+            public void onException(Throwable e) {
+                if (!state.mq.getTopic().startsWith(MixAll.RETRY_GROUP_TOPIC_PREFIX)) {
+                    log.warn("execute the pull request exception", e);
+                }
+                executePull(state, DefaultLitePullConsumerImpl.this.defaultLitePullConsumer.getPullTimeDelayMillsWhenException());
+            }
+        };
+
+        try {
+            this.pullAPIWrapper.pullKernelImpl(//
+                state.mq, // 1
+                subscriptionData.getSubString(), // 2
+                subscriptionData.getSubVersion(), // 3
+                offset, // 4
+                this.defaultLitePullConsumer.getPullBatchSize(), // 5
+                PullSysFlag.buildSysFlag(false, true, true, false), // 6
+                0, // 7
+                this.defaultLitePullConsumer.getBrokerSuspendMaxTimeMillis(), // 8
+                this.defaultLitePullConsumer.getConsumerTimeoutMillisWhenSuspend(), // 9
+                CommunicationMode.ASYNC, // 10
+                pullCallback // 11
+            );
+        } catch (Exception e) {
+            log.error("pullKernelImpl exception", e);
+            this.executePull(state, this.defaultLitePullConsumer.getPullTimeDelayMillsWhenException());
+        }
+    }
+
+    private void onPullResult(final MessageQueueState state, final long generation, final PullResult pullResult) {
+        synchronized (state) {
+            // seek 之后返回的旧拉取结果直接丢弃, 下一次从新位置拉取
+            if (generation == state.generation && !state.pq.isDropped()) {
+                switch (pullResult.getPullStatus()) {
+                    case FOUND:
+                        state.nextOffset = pullResult.getNextBeginOffset();
+                        List<MessageExt> msgs = pullResult.getMsgFoundList();
+                        if (msgs != null && !msgs.isEmpty()) {
+                            state.pq.putMessage(msgs);
+                            this.consumeRequestCache.offer(new ConsumeRequest(msgs, state, generation));
+                        }
+                        break;
+                    case NO_NEW_MSG:
+                    case NO_MATCHED_MSG:
+                        state.nextOffset = pullResult.getNextBeginOffset();
+                        break;
+                    case OFFSET_ILLEGAL:
+                        log.warn("the pull request offset illegal, {} {}", state.mq, pullResult);
+                        state.nextOffset = pullResult.getNextBeginOffset();
+                        this.offsetStore.updateOffset(state.mq, state.nextOffset, false);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        this.executePull(state, 0);
+    }
+
+    @Override
+    public String groupName() {
+        return this.defaultLitePullConsumer.getConsumerGroup();
+    }
+
+    @Override
+    public MessageModel messageModel() {
+        return this.defaultLitePullConsumer.getMessageModel();
+    }
+
+    @Override
+    public ConsumeType consumeType() {
+        return ConsumeType.CONSUME_ACTIVELY;
+    }
+
+    @Override
+    public ConsumeFromWhere consumeFromWhere() {
+        return this.defaultLitePullConsumer.getConsumeFromWhere();
+    }
+
+    @Override
+    public Set<SubscriptionData> subscriptions() {
+        return new HashSet<SubscriptionData>(this.rebalanceImpl.getSubscriptionInner().values());
+    }
+
+    @Override
+    public void doRebalance() {
+        if (this.rebalanceImpl != null) {
+            this.rebalanceImpl.doRebalance(false);
+        }
+    }
+
+    @Override
+    public void persistConsumerOffset() {
+        this.persistConsumerOffset(false);
+    }
+
+    /**
+     * @param sync 是否等待Broker确认, 关闭消费者时同步提交, 定时任务异步提交
+     */
+    private void persistConsumerOffset(final boolean sync) {
+        try {
+            this.makeSureStateOK();
+            Set<MessageQueue> mqs = new HashSet<MessageQueue>(this.rebalanceImpl.getProcessQueueTable().keySet());
+            if (this.offsetStore instanceof RemoteBrokerOffsetStore) {
+                ((RemoteBrokerOffsetStore) this.offsetStore).persistAll(mqs, sync);
+            } else {
+                this.offsetStore.persistAll(mqs);
+            }
+        } catch (Exception e) {
+            log.error("group: " + this.defaultLitePullConsumer.getConsumerGroup() + " persistConsumerOffset exception", e);
+        }
+    }
+
+    @Override
+    public void updateTopicSubscribeInfo(String topic, Set<MessageQueue> info) {
+        Map<String, SubscriptionData> subTable = this.rebalanceImpl.getSubscriptionInner();
+        if (subTable != null) {
+            if (subTable.containsKey(topic)) {
+                this.rebalanceImpl.getTopicSubscribeInfoTable().put(topic, info);
+            }
+        }
+    }
+
+    @Override
+    public boolean isSubscribeTopicNeedUpdate(String topic) {
+        Map<String, SubscriptionData> subTable = this.rebalanceImpl.getSubscriptionInner();
+        if (subTable != null) {
+            if (subTable.containsKey(topic)) {
+                return !this.rebalanceImpl.topicSubscribeInfoTable.containsKey(topic);
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isUnitMode() {
+        return this.defaultLitePullConsumer.isUnitMode();
+    }
+
+    @Override
+    public ConsumerRunningInfo consumerRunningInfo() {
+        ConsumerRunningInfo info = new ConsumerRunningInfo();
+
+        Properties prop = MixAll.object2Properties(this.defaultLitePullConsumer);
+        prop.put(ConsumerRunningInfo.PROP_CONSUMER_START_TIMESTAMP, String.valueOf(this.consumerStartTimestamp));
+        info.setProperties(prop);
+
+        info.getSubscriptionSet().addAll(this.subscriptions());
+
+        for (Map.Entry<MessageQueue, ProcessQueue> next : this.rebalanceImpl.getProcessQueueTable().entrySet()) {
+            MessageQueue mq = next.getKey();
+            ProcessQueueInfo pqinfo = new ProcessQueueInfo();
+            pqinfo.setCommitOffset(this.offsetStore.readOffset(mq, ReadOffsetType.MEMORY_FIRST_THEN_STORE));
+            next.getValue().fillProcessQueueInfo(pqinfo);
+            info.getMqTable().put(mq, pqinfo);
+        }
+        return info;
+    }
+
+    public DefaultLitePullConsumer getDefaultLitePullConsumer() {
+        return defaultLitePullConsumer;
+    }
+
+    public OffsetStore getOffsetStore() {
+        return offsetStore;
+    }
+
+    public void setOffsetStore(OffsetStore offsetStore) {
+        this.offsetStore = offsetStore;
+    }
+
+    public PullAPIWrapper getPullAPIWrapper() {
+        return pullAPIWrapper;
+    }
+
+    public void setPullAPIWrapper(PullAPIWrapper pullAPIWrapper) {
+        this.pullAPIWrapper = pullAPIWrapper;
+    }
+
+    public ServiceState getServiceState() {
+        return serviceState;
+    }
+
+    public void setServiceState(ServiceState serviceState) {
+        this.serviceState = serviceState;
+    }
+
+    public long getConsumerStartTimestamp() {
+        return consumerStartTimestamp;
+    }
+
+    public RebalanceImpl getRebalanceImpl() {
+        return rebalanceImpl;
+    }
+
+    /**
+     * 单个队列的预取状态, 在本对象锁内读写
+     */
+    static class MessageQueueState {
+        private final MessageQueue mq;
+        private final ProcessQueue pq;
+        private long nextOffset;
+        private long generation = 0;
+
+        MessageQueueState(final MessageQueue mq, final ProcessQueue pq, final long nextOffset) {
+            this.mq = mq;
+            this.pq = pq;
+            this.nextOffset = nextOffset;
+        }
+    }
+
+    /**
+     * 一次拉取结果
+     */
+    static class ConsumeRequest {
+        private final List<MessageExt> msgs;
+        private final MessageQueueState state;
+        private final long generation;
+
+        ConsumeRequest(final List<MessageExt> msgs, final MessageQueueState state, final long generation) {
+            this.msgs = msgs;
+            this.state = state;
+            this.generation = generation;
+        }
+
+        List<MessageExt> getMsgs() {
+            return msgs;
+        }
+
+        MessageQueueState getState() {
+            return state;
+        }
+
+        long getGeneration() {
+            return generation;
+        }
+    }
+}
@@ -310,12 +310,23 @@ public class DefaultMQPullConsumerImpl implements MQConsumerInner {
 
     @Override
     public void persistConsumerOffset() {
+        this.persistConsumerOffset(false);
+    }
+
+    /**
+     * @param sync 是否等待Broker确认, 关闭消费者时同步提交, 定时任务异步提交
+     */
+    private void persistConsumerOffset(final boolean sync) {
         try {
             this.makeSureStateOK();
             Set<MessageQueue> mqs = new HashSet<MessageQueue>();
             Set<MessageQueue> allocateMq = this.rebalanceImpl.getProcessQueueTable().keySet();
             mqs.addAll(allocateMq);
-            this.offsetStore.persistAll(mqs);
+            if (this.offsetStore instanceof RemoteBrokerOffsetStore) {
+                ((RemoteBrokerOffsetStore) this.offsetStore).persistAll(mqs, sync);
+            } else {
+                this.offsetStore.persistAll(mqs);
+            }
         } catch (Exception e) {
             log.error("group: " + this.defaultMQPullConsumer.getConsumerGroup() + " persistConsumerOffset exception", e);
         }
@@ -515,7 +526,7 @@ public class DefaultMQPullConsumerImpl implements MQConsumerInner {
             case CREATE_JUST:
                 break;
             case RUNNING:
-                this.persistConsumerOffset();
+                this.persistConsumerOffset(true);
                 this.mQClientFactory.unregisterConsumer(this.defaultMQPullConsumer.getConsumerGroup());
                 this.mQClientFactory.shutdown();
                 log.info("the consumer [{}] shutdown OK", this.defaultMQPullConsumer.getConsumerGroup());
@@ -21,6 +21,7 @@ import org.apache.rocketmq.client.Validators;
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
 import org.apache.rocketmq.client.consumer.PullCallback;
 import org.apache.rocketmq.client.consumer.PullResult;
+import org.apache.rocketmq.client.consumer.PullStatus;
 import org.apache.rocketmq.client.consumer.listener.MessageListener;
 import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
 import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
@@ -49,6 +50,7 @@ import org.apache.rocketmq.common.protocol.body.ConsumeStatus;
 import org.apache.rocketmq.common.protocol.body.ConsumerRunningInfo;
 import org.apache.rocketmq.common.protocol.body.ProcessQueueInfo;
 import org.apache.rocketmq.common.protocol.body.QueueTimeSpan;
+import org.apache.rocketmq.common.protocol.ResponseCode;
 import org.apache.rocketmq.common.protocol.heartbeat.ConsumeType;
 import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
 import org.apache.rocketmq.common.protocol.heartbeat.SubscriptionData;
@@ -130,6 +132,19 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
      *
      */
     private long flowControlTimes2 = 0;
+    /**
+     * this.defaultMQPushConsumer.getPullThresholdSizeForQueue()
+     */
+    private long flowControlTimes3 = 0;
+    /**
+     * 按 pullThresholdSizeForTopic 均分后的单队列缓存大小上限, 单位MiB
+     */
+    private final ConcurrentHashMap<String/* topic */, Integer> pullThresholdSizeForQueueTable = new ConcurrentHashMap<String, Integer>();
+    /**
+     * 不支持批量发回消息的Broker
+     */
+    private final Set<String/* brokerName */> sendBackBatchUnsupportedBrokers =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     public DefaultMQPushConsumerImpl(DefaultMQPushConsumer defaultMQPushConsumer, RPCHook rpcHook) {
         this.defaultMQPushConsumer = defaultMQPushConsumer;
@@ -229,6 +244,11 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
             log.info("the pull request[{}] is dropped.", pullRequest.toString());
             return;
         }
+        // 队列平滑释放中, 不再拉取
+        if (processQueue.isReleasing()) {
+            log.info("the pull request[{}] is releasing.", pullRequest.toString());
+            return;
+        }
 
         // 设置队列最后拉取消息时间
         pullRequest.getProcessQueue().setLastPullTimestamp(System.currentTimeMillis());
@@ -257,7 +277,20 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
             if ((flowControlTimes1++ % 1000) == 0) {
                 log.warn(
                     "the consumer message buffer is full, so do flow control, minOffset={}, maxOffset={}, size={}, pullRequest={}, flowControlTimes={}",
-                    processQueue.getMsgTreeMap().firstKey(), processQueue.getMsgTreeMap().lastKey(), size, pullRequest, flowControlTimes1);
+                    processQueue.getMsgMinOffset(), processQueue.getMsgMaxOffset(), size, pullRequest, flowControlTimes1);
+            }
+            return;
+        }
+
+        // 判断是否超过最大缓存消息大小。默认单队列最大100MiB
+        long cachedMessageSizeInMiB = processQueue.getMsgSize().get() / (1024 * 1024);
+        if (cachedMessageSizeInMiB > this.pullThresholdSizeForQueue(pullRequest.getMessageQueue().getTopic())) {
+            this.executePullRequestLater(pullRequest, PULL_TIME_DELAY_MILLS_WHEN_FLOW_CONTROL);
+            if ((flowControlTimes3++ % 1000) == 0) {
+                log.warn(
+                    "the cached message size exceeds the threshold {} MiB, so do flow control, minOffset={}, maxOffset={}, count={}, size={} MiB, pullRequest={}, flowControlTimes={}",
+                    this.pullThresholdSizeForQueue(pullRequest.getMessageQueue().getTopic()), processQueue.getMsgMinOffset(),
+                    processQueue.getMsgMaxOffset(), size, cachedMessageSizeInMiB, pullRequest, flowControlTimes3);
             }
             return;
         }
@@ -268,7 +301,7 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
                 if ((flowControlTimes2++ % 1000) == 0) {
                     log.warn(
                         "the queue's messages, span too long, so do flow control, minOffset={}, maxOffset={}, maxSpan={}, pullRequest={}, flowControlTimes={}",
-                        processQueue.getMsgTreeMap().firstKey(), processQueue.getMsgTreeMap().lastKey(), processQueue.getMaxSpan(),
+                        processQueue.getMsgMinOffset(), processQueue.getMsgMaxOffset(), processQueue.getMaxSpan(),
                         pullRequest, flowControlTimes2);
                 }
                 return;
@@ -387,34 +420,7 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
                             DefaultMQPushConsumerImpl.this.executePullRequestImmediately(pullRequest);
                             break;
                         case OFFSET_ILLEGAL:
-                            log.warn("the pull request offset illegal, {} {}", //
-                                pullRequest.toString(), pullResult.toString());
-                            // 设置下次拉取消息队列位置
-                            pullRequest.setNextOffset(pullResult.getNextBeginOffset());
-
-                            // 设置消息处理队列为dropped
-                            pullRequest.getProcessQueue().setDropped(true);
-
-                            // 提交延迟任务，进行消费处理队列移除
-                            DefaultMQPushConsumerImpl.this.executeTaskLater(new Runnable() {
-
-                                @Override
-                                public void run() {
-                                    try {
-                                        // 更新消费进度，同步消费进度到Broker
-                                        DefaultMQPushConsumerImpl.this.offsetStore.updateOffset(pullRequest.getMessageQueue(),
-                                            pullRequest.getNextOffset(), false);
-                                        DefaultMQPushConsumerImpl.this.offsetStore.persist(pullRequest.getMessageQueue());
-
-                                        // 移除消费处理队列
-                                        DefaultMQPushConsumerImpl.this.rebalanceImpl.removeProcessQueue(pullRequest.getMessageQueue());
-
-                                        log.warn("fix the pull request offset, {}", pullRequest);
-                                    } catch (Throwable e) {
-                                        log.error("executeTaskLater Exception", e);
-                                    }
-                                }
-                            }, 10000);
+                            DefaultMQPushConsumerImpl.this.fixOffsetIllegal(pullRequest, pullResult);
                             break;
                         default:
                             break;
@@ -457,6 +463,12 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
         // 计算拉取消息系统标识
         int sysFlag = PullSysFlag.buildSysFlag(commitOffsetEnable, true, subExpression != null, classFilter);
 
+        // 流水线拉取: 同一队列同时发起多个拉取请求
+        if (this.isPullPipelined()) {
+            this.pullMessagePipelined(pullRequest, subscriptionData, subExpression, sysFlag, commitOffsetValue);
+            return;
+        }
+
         // 执行拉取。如果拉取请求发生异常时，提交延迟拉取消息请求。
         try {
             this.pullAPIWrapper.pullKernelImpl(//
@@ -478,6 +490,244 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
         }
     }
 
+    /**
+     * 拉取位置非法时, 丢弃处理队列并在延迟后修正消费进度
+     */
+    private void fixOffsetIllegal(final PullRequest pullRequest, final PullResult pullResult) {
+        log.warn("the pull request offset illegal, {} {}", //
+            pullRequest.toString(), pullResult.toString());
+        // 设置下次拉取消息队列位置
+        pullRequest.setNextOffset(pullResult.getNextBeginOffset());
+
+        // 设置消息处理队列为dropped
+        pullRequest.getProcessQueue().setDropped(true);
+
+        // 提交延迟任务，进行消费处理队列移除
+        this.executeTaskLater(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    // 更新消费进度，同步消费进度到Broker
+                    DefaultMQPushConsumerImpl.this.offsetStore.updateOffset(pullRequest.getMessageQueue(),
+                        pullRequest.getNextOffset(), false);
+                    DefaultMQPushConsumerImpl.this.offsetStore.persist(pullRequest.getMessageQueue());
+
+                    // 移除消费处理队列
+                    DefaultMQPushConsumerImpl.this.rebalanceImpl.removeProcessQueue(pullRequest.getMessageQueue());
+
+                    log.warn("fix the pull request offset, {}", pullRequest);
+                } catch (Throwable e) {
+                    log.error("executeTaskLater Exception", e);
+                }
+            }
+        }, 10000);
+    }
+
+    /**
+     * 顺序消费需要在拉取前校验队列锁, 设置了拉取间隔时流水线也没有意义, 这两种情况仍使用单请求拉取
+     */
+    private boolean isPullPipelined() {
+        return this.defaultMQPushConsumer.getPullPipelineDepth() > 1
+            && !this.consumeOrderly
+            && this.defaultMQPushConsumer.getPullInterval() <= 0;
+    }
+
+    /**
+     * 流水线拉取
+     * 在流控允许的范围内为队列预留多个槽位并发起拉取, PullRequest 随后停在流水线中,
+     * 由按序处理完拉取结果的回调重新放回 PullMessageService。
+     */
+    private void pullMessagePipelined(final PullRequest pullRequest, final SubscriptionData subscriptionData,
+        final String subExpression, final int sysFlag, final long commitOffsetValue) {
+        PullPipeline pipeline = pullRequest.getPullPipeline();
+        if (null == pipeline) {
+            pipeline = new PullPipeline();
+            pullRequest.setPullPipeline(pipeline);
+        }
+
+        final int batchSize = this.defaultMQPushConsumer.getPullBatchSize();
+        final long remainCapacity = this.defaultMQPushConsumer.getPullThresholdForQueue() - pullRequest.getProcessQueue().getMsgCount().get();
+        List<PullPipeline.Slot> slots;
+        synchronized (pipeline) {
+            pipeline.setParked(false);
+            slots = pipeline.reserve(pullRequest.getNextOffset(), this.defaultMQPushConsumer.getPullPipelineDepth(), batchSize, remainCapacity);
+        }
+
+        boolean exceptionOccurred = false;
+        for (final PullPipeline.Slot slot : slots) {
+            try {
+                this.pullAPIWrapper.pullKernelImpl(//
+                    pullRequest.getMessageQueue(), // 1
+                    subExpression, // 2
+                    subscriptionData.getSubVersion(), // 3
+                    slot.getOffset(), // 4
+                    batchSize, // 5
+                    sysFlag, // 6
+                    commitOffsetValue, // 7
+                    BROKER_SUSPEND_MAX_TIME_MILLIS, // 8
+                    CONSUMER_TIMEOUT_MILLIS_WHEN_SUSPEND, // 9
+                    CommunicationMode.ASYNC, // 10
+                    new PullCallback() {
+                        @Override
+                        public void onSuccess(PullResult pullResult) {
+                            pullResult = DefaultMQPushConsumerImpl.this.pullAPIWrapper.processPullResult(pullRequest.getMessageQueue(),
+                                pullResult, subscriptionData);
+                            DefaultMQPushConsumerImpl.this.onPipelinedPullComplete(pullRequest, slot, pullResult, null);
+                        }
+
+                        @Override
+                        public void onException(Throwable e) {
+                            DefaultMQPushConsumerImpl.this.onPipelinedPullComplete(pullRequest, slot, null, e);
+                        }
+                    }// 11
+                );
+            } catch (Exception e) {
+                log.error("pullKernelImpl exception", e);
+                this.onPipelinedPullComplete(pullRequest, slot, null, e);
+                exceptionOccurred = true;
+            }
+        }
+
+        synchronized (pipeline) {
+            if (exceptionOccurred && pipeline.inflightSize() == 0) {
+                this.executePullRequestLater(pullRequest, PULL_TIME_DELAY_MILLS_WHEN_EXCEPTION);
+                return;
+            }
+            pipeline.setParked(true);
+            this.wakeUpPipelineIfNeeded(pullRequest, pipeline);
+        }
+    }
+
+    /**
+     * 槽位完成后, 按发起顺序处理队首所有已完成的槽位
+     */
+    private void onPipelinedPullComplete(final PullRequest pullRequest, final PullPipeline.Slot slot, final PullResult pullResult,
+        final Throwable exception) {
+        final PullPipeline pipeline = pullRequest.getPullPipeline();
+        final ProcessQueue processQueue = pullRequest.getProcessQueue();
+        synchronized (pipeline) {
+            if (!pipeline.contains(slot)) {
+                // 流水线已被重置, 忽略迟到的结果
+                return;
+            }
+            slot.complete(pullResult, exception);
+
+            PullPipeline.Slot head;
+            while ((head = pipeline.pollCompleted()) != null) {
+                if (processQueue.isDropped()) {
+                    pipeline.reset();
+                    return;
+                }
+
+                if (!this.processPipelinedPullResult(pullRequest, head)) {
+                    return;
+                }
+            }
+
+            this.wakeUpPipelineIfNeeded(pullRequest, pipeline);
+        }
+    }
+
+    /**
+     * 处理一个按序到达的槽位结果
+     *
+     * @return 是否继续处理后续槽位
+     */
+    private boolean processPipelinedPullResult(final PullRequest pullRequest, final PullPipeline.Slot slot) {
+        final PullPipeline pipeline = pullRequest.getPullPipeline();
+        final ProcessQueue processQueue = pullRequest.getProcessQueue();
+        final long cursor = pullRequest.getNextOffset();
+        final PullResult pullResult = slot.getPullResult();
+
+        if (slot.getOffset() > cursor) {
+            // 前一个槽位返回的消息少于 pullBatchSize(如受 broker 单次传输大小限制), 与本槽位之间存在空洞,
+            // 丢弃本槽位及之后的在途槽位, 从已提交位置重新拉取
+            pipeline.reset();
+            if (pipeline.isParked()) {
+                pipeline.setParked(false);
+                this.executePullRequestImmediately(pullRequest);
+            }
+            return false;
+        }
+
+        boolean failed = pullResult == null;
+        if (!failed && PullStatus.OFFSET_ILLEGAL == pullResult.getPullStatus()) {
+            if (slot.getOffset() == cursor) {
+                // 与单请求拉取相同的位置非法, 按原有逻辑修正
+                pipeline.reset();
+                this.fixOffsetIllegal(pullRequest, pullResult);
+                return false;
+            }
+            // 预取位置越界, 视为失败, 从已提交位置重新拉取
+            failed = true;
+        }
+
+        if (failed) {
+            if (slot.getException() != null && !pullRequest.getMessageQueue().getTopic().startsWith(MixAll.RETRY_GROUP_TOPIC_PREFIX)) {
+                log.warn("execute the pipelined pull request exception", slot.getException());
+            }
+            pipeline.reset();
+            if (pipeline.isParked()) {
+                pipeline.setParked(false);
+                this.executePullRequestLater(pullRequest, PULL_TIME_DELAY_MILLS_WHEN_EXCEPTION);
+            }
+            return false;
+        }
+
+        pipeline.updateMaxOffset(pullResult.getMaxOffset());
+        switch (pullResult.getPullStatus()) {
+            case FOUND:
+                this.getConsumerStatsManager().incPullRT(pullRequest.getConsumerGroup(),
+                    pullRequest.getMessageQueue().getTopic(), System.currentTimeMillis() - slot.getBeginTimestamp());
+
+                // 槽位之间可能因过滤而重叠, 只提交已提交位置之后的消息
+                List<MessageExt> msgList = pullResult.getMsgFoundList();
+                if (msgList != null && !msgList.isEmpty() && msgList.get(0).getQueueOffset() < cursor) {
+                    List<MessageExt> msgListInOrder = new ArrayList<MessageExt>(msgList.size());
+                    for (MessageExt msg : msgList) {
+                        if (msg.getQueueOffset() >= cursor) {
+                            msgListInOrder.add(msg);
+                        }
+                    }
+                    msgList = msgListInOrder;
+                }
+
+                if (msgList != null && !msgList.isEmpty()) {
+                    this.getConsumerStatsManager().incPullTPS(pullRequest.getConsumerGroup(),
+                        pullRequest.getMessageQueue().getTopic(), msgList.size());
+
+                    boolean dispathToConsume = processQueue.putMessage(msgList);
+                    this.consumeMessageService.submitConsumeRequest(msgList, processQueue, pullRequest.getMessageQueue(), dispathToConsume);
+                }
+                pullRequest.setNextOffset(Math.max(cursor, pullResult.getNextBeginOffset()));
+                break;
+            case NO_NEW_MSG:
+            case NO_MATCHED_MSG:
+                pullRequest.setNextOffset(Math.max(cursor, pullResult.getNextBeginOffset()));
+                this.correctTagsOffset(pullRequest);
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * PullRequest 停在流水线中且可以发起新的槽位时, 将其放回 PullMessageService
+     */
+    private void wakeUpPipelineIfNeeded(final PullRequest pullRequest, final PullPipeline pipeline) {
+        if (!pipeline.isParked()) {
+            return;
+        }
+
+        final long remainCapacity = this.defaultMQPushConsumer.getPullThresholdForQueue() - pullRequest.getProcessQueue().getMsgCount().get();
+        if (pipeline.canIssue(this.defaultMQPushConsumer.getPullPipelineDepth(), this.defaultMQPushConsumer.getPullBatchSize(), remainCapacity)) {
+            pipeline.setParked(false);
+            this.executePullRequestImmediately(pullRequest);
+        }
+    }
+
     /**
      * 校验Consumer是否处于运行{@link ServiceState#RUNNING}状态。
      *
@@ -590,6 +840,42 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
         }
     }
 
+    /**
+     * 异步批量发回消息到 brokerName 对应的Master
+     *
+     * @return 是否已发起请求; Broker 地址未知或 Broker 不支持批量发回时返回false, 由调用方逐条发回
+     */
+    public boolean sendMessageBackBatch(final List<MessageExt> msgs, final int delayLevel, final String brokerName,
+        final SendMessageBackCallback callback) throws RemotingException, InterruptedException {
+        if (null == brokerName || this.sendBackBatchUnsupportedBrokers.contains(brokerName)) {
+            return false;
+        }
+
+        String brokerAddr = this.mQClientFactory.findBrokerAddressInPublish(brokerName);
+        if (null == brokerAddr) {
+            return false;
+        }
+
+        this.mQClientFactory.getMQClientAPIImpl().consumerSendMessageBackBatch(brokerAddr, msgs,
+            this.defaultMQPushConsumer.getConsumerGroup(), delayLevel, 5000, getMaxReconsumeTimes(), new SendMessageBackCallback() {
+                @Override
+                public void onSuccess(Set<Long> sendBackOKOffsetSet) {
+                    callback.onSuccess(sendBackOKOffsetSet);
+                }
+
+                @Override
+                public void onException(Throwable e) {
+                    // 旧版本Broker不支持批量发回, 之后直接逐条发回
+                    if (e instanceof MQBrokerException && ResponseCode.REQUEST_CODE_NOT_SUPPORTED == ((MQBrokerException) e).getResponseCode()) {
+                        DefaultMQPushConsumerImpl.this.sendBackBatchUnsupportedBrokers.add(brokerName);
+                        log.warn("broker {} does not support batch send back, fall back to one by one", brokerName);
+                    }
+                    callback.onException(e);
+                }
+            });
+        return true;
+    }
+
     /**
      * 如果当前消费者未指定消息的最大消费次数,则使用默认的值：16
      * RocketMQ在一定版本后可以自定义最大消费次数
@@ -611,7 +897,7 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
                 break;
             case RUNNING:
                 this.consumeMessageService.shutdown();
-                this.persistConsumerOffset();
+                this.persistConsumerOffset(true);
                 this.mQClientFactory.unregisterConsumer(this.defaultMQPushConsumer.getConsumerGroup());
                 this.mQClientFactory.shutdown();
                 log.info("the consumer [{}] shutdown OK", this.defaultMQPushConsumer.getConsumerGroup());
@@ -850,6 +1136,23 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
                 null);
         }
 
+        // pullThresholdSizeForQueue
+        if (this.defaultMQPushConsumer.getPullThresholdSizeForQueue() < 1 || this.defaultMQPushConsumer.getPullThresholdSizeForQueue() > 1024) {
+            throw new MQClientException(
+                "pullThresholdSizeForQueue Out of range [1, 1024]"
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL),
+                null);
+        }
+
+        // pullThresholdSizeForTopic
+        if (this.defaultMQPushConsumer.getPullThresholdSizeForTopic() != -1
+            && (this.defaultMQPushConsumer.getPullThresholdSizeForTopic() < 1 || this.defaultMQPushConsumer.getPullThresholdSizeForTopic() > 102400)) {
+            throw new MQClientException(
+                "pullThresholdSizeForTopic Out of range [1, 102400]"
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL),
+                null);
+        }
+
         // pullInterval
         if (this.defaultMQPushConsumer.getPullInterval() < 0 || this.defaultMQPushConsumer.getPullInterval() > 65535) {
             throw new MQClientException(
@@ -874,6 +1177,22 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
                     + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL),
                 null);
         }
+
+        // pullPipelineDepth
+        if (this.defaultMQPushConsumer.getPullPipelineDepth() < 1 || this.defaultMQPushConsumer.getPullPipelineDepth() > 16) {
+            throw new MQClientException(
+                "pullPipelineDepth Out of range [1, 16]"
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL),
+                null);
+        }
+
+        // consumeOrderlyLanes
+        if (this.defaultMQPushConsumer.getConsumeOrderlyLanes() < 1 || this.defaultMQPushConsumer.getConsumeOrderlyLanes() > 64) {
+            throw new MQClientException(
+                "consumeOrderlyLanes Out of range [1, 64]"
+                    + FAQUrl.suggestTodo(FAQUrl.CLIENT_PARAMETER_CHECK_URL),
+                null);
+        }
     }
 
     /**
@@ -1068,13 +1387,24 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
 
     @Override
     public void persistConsumerOffset() {
+        this.persistConsumerOffset(false);
+    }
+
+    /**
+     * @param sync 是否等待Broker确认, 关闭消费者时同步提交, 定时任务异步提交
+     */
+    private void persistConsumerOffset(final boolean sync) {
         try {
             this.makeSureStateOK();
             Set<MessageQueue> mqs = new HashSet<MessageQueue>();
             Set<MessageQueue> allocateMq = this.rebalanceImpl.getProcessQueueTable().keySet();
             mqs.addAll(allocateMq);
 
-            this.offsetStore.persistAll(mqs);
+            if (this.offsetStore instanceof RemoteBrokerOffsetStore) {
+                ((RemoteBrokerOffsetStore) this.offsetStore).persistAll(mqs, sync);
+            } else {
+                this.offsetStore.persistAll(mqs);
+            }
         } catch (Exception e) {
             log.error("group: " + this.defaultMQPushConsumer.getConsumerGroup() + " persistConsumerOffset exception", e);
         }
@@ -1107,6 +1437,32 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
         return this.defaultMQPushConsumer.isUnitMode();
     }
 
+    /**
+     * 队列分配变化时, 按 pullThresholdSizeForTopic 重新计算该Topic下单队列的缓存大小上限
+     *
+     * @param topic      Topic
+     * @param queueCount 当前分配到的队列数
+     */
+    public void updatePullThresholdSizeForQueue(final String topic, final int queueCount) {
+        final int sizeForTopic = this.defaultMQPushConsumer.getPullThresholdSizeForTopic();
+        if (sizeForTopic == -1 || queueCount <= 0) {
+            this.pullThresholdSizeForQueueTable.remove(topic);
+            return;
+        }
+
+        int newVal = Math.max(1, sizeForTopic / queueCount);
+        Integer prev = this.pullThresholdSizeForQueueTable.put(topic, newVal);
+        if (prev == null || prev != newVal) {
+            log.info("The pullThresholdSizeForQueue of topic {} is changed from {} to {}", topic, prev, newVal);
+        }
+    }
+
+    private int pullThresholdSizeForQueue(final String topic) {
+        final int sizeForQueue = this.defaultMQPushConsumer.getPullThresholdSizeForQueue();
+        Integer sizeDivided = this.pullThresholdSizeForQueueTable.get(topic);
+        return sizeDivided != null ? Math.min(sizeForQueue, sizeDivided) : sizeForQueue;
+    }
+
     @Override
     public ConsumerRunningInfo consumerRunningInfo() {
         ConsumerRunningInfo info = new ConsumerRunningInfo();
@@ -1116,6 +1472,15 @@ public class DefaultMQPushConsumerImpl implements MQConsumerInner {
         prop.put(ConsumerRunningInfo.PROP_CONSUME_ORDERLY, String.valueOf(this.consumeOrderly));
         prop.put(ConsumerRunningInfo.PROP_THREADPOOL_CORE_SIZE, String.valueOf(this.consumeMessageService.getCorePoolSize()));
         prop.put(ConsumerRunningInfo.PROP_CONSUMER_START_TIMESTAMP, String.valueOf(this.consumerStartTimestamp));
+        prop.put(ConsumerRunningInfo.PROP_QUEUE_COUNT_FLOW_CONTROL_TIMES, String.valueOf(this.flowControlTimes1));
+        prop.put(ConsumerRunningInfo.PROP_QUEUE_SPAN_FLOW_CONTROL_TIMES, String.valueOf(this.flowControlTimes2));
+        prop.put(ConsumerRunningInfo.PROP_QUEUE_SIZE_FLOW_CONTROL_TIMES, String.valueOf(this.flowControlTimes3));
+
+        long cachedMsgSize = 0;
+        for (ProcessQueue pq : this.rebalanceImpl.getProcessQueueTable().values()) {
+            cachedMsgSize += pq.getMsgSize().get();
+        }
+        prop.put(ConsumerRunningInfo.PROP_CACHED_MSG_SIZE, String.valueOf(cachedMsgSize));
 
         info.setProperties(prop);
 
@@ -27,6 +27,10 @@ import org.apache.rocketmq.common.message.MessageQueue;
 public class MessageQueueLock {
 
     private ConcurrentHashMap<MessageQueue, Object> mqLockTable = new ConcurrentHashMap<MessageQueue, Object>();
+    /**
+     * 按通道顺序消费时每个队列各通道的锁
+     */
+    private ConcurrentHashMap<MessageQueue, Object[]> laneLockTable = new ConcurrentHashMap<MessageQueue, Object[]>();
 
     public Object fetchLockObject(final MessageQueue mq) {
         Object objLock = this.mqLockTable.get(mq);
@@ -39,4 +43,26 @@ public class MessageQueueLock {
         }
         return objLock;
     }
+
+    /**
+     * 获取队列指定通道的锁, 同一通道同一时间只有一个线程消费
+     *
+     * @param mq        消息队列
+     * @param lane      通道
+     * @param laneCount 通道数, 同一消费者固定不变
+     */
+    public Object fetchLockObject(final MessageQueue mq, final int lane, final int laneCount) {
+        Object[] laneLocks = this.laneLockTable.get(mq);
+        if (null == laneLocks) {
+            laneLocks = new Object[laneCount];
+            for (int i = 0; i < laneCount; i++) {
+                laneLocks[i] = new Object();
+            }
+            Object[] prevLocks = this.laneLockTable.putIfAbsent(mq, laneLocks);
+            if (prevLocks != null) {
+                laneLocks = prevLocks;
+            }
+        }
+        return laneLocks[lane];
+    }
 }
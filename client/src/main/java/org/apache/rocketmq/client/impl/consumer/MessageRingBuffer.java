@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.rocketmq.common.message.MessageExt;
+
+/**
+ * ProcessQueue 的消息环形缓冲区
+ *
+ * 消息按拉取顺序(即队列位置递增顺序)追加, 每条消息占用一个序号, 槽位为序号对容量取模。
+ * 每个槽位有一个确认位, 确认后 {@link #head} 越过连续已确认的槽位, head 处消息的队列位置即可提交的消费进度。
+ *
+ * 追加、扩容、清空由调用方串行执行; {@link #ack(long)} 与读取方法不加锁, 可被多个消费线程并发调用。
+ * Broker 端按 Tag 过滤后队列位置可能不连续, 因此按序号而不是按队列位置分配槽位, 确认时通过二分查找定位。
+ */
+class MessageRingBuffer {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private volatile Segment segment = new Segment(INITIAL_CAPACITY, 0);
+    /**
+     * 最小未确认消息序号
+     */
+    private final AtomicLong head = new AtomicLong(0);
+    /**
+     * 最后追加消息的队列位置
+     */
+    private volatile long lastOffset = -1;
+
+    /**
+     * 追加消息, 调用方保证串行且队列位置递增
+     */
+    void append(final MessageExt msg) {
+        Segment seg = this.segment;
+        final long seq = seg.tail;
+        if (seq - this.head.get() >= seg.capacity()) {
+            seg = this.grow(seg);
+        }
+
+        final int slot = seg.slot(seq);
+        seg.offsets.set(slot, msg.getQueueOffset());
+        seg.msgs.set(slot, msg);
+        seg.clearAck(slot);
+        this.lastOffset = msg.getQueueOffset();
+        seg.tail = seq + 1;
+    }
+
+    /**
+     * 容量翻倍。先复制再发布新的分段, 发布后把复制期间在旧分段上完成的确认合并到新分段。
+     * 之后在旧分段上确认的线程会发现分段已变更, 并在新分段上重试。
+     */
+    private Segment grow(final Segment old) {
+        final long from = this.head.get();
+        final Segment seg = new Segment(old.capacity() << 1, old.tail);
+        for (long seq = from; seq < old.tail; seq++) {
+            final int oldSlot = old.slot(seq);
+            final int slot = seg.slot(seq);
+            seg.offsets.set(slot, old.offsets.get(oldSlot));
+            seg.msgs.set(slot, old.msgs.get(oldSlot));
+            if (old.isAcked(oldSlot)) {
+                seg.setAck(slot);
+            }
+        }
+        this.segment = seg;
+
+        for (long seq = from; seq < old.tail; seq++) {
+            final int oldSlot = old.slot(seq);
+            if (old.isAcked(oldSlot)) {
+                final int slot = seg.slot(seq);
+                seg.setAck(slot);
+                seg.msgs.set(slot, null);
+            }
+        }
+        this.advanceHead();
+        return seg;
+    }
+
+    /**
+     * 确认消息
+     *
+     * @param offset 队列位置
+     * @return 是否由本次调用完成确认; 消息不存在或已确认时返回false
+     */
+    boolean ack(final long offset) {
+        boolean acked = false;
+        boolean firstAttempt = true;
+        Segment seg = this.segment;
+        for (;;) {
+            final int slot = this.locate(seg, offset);
+            if (slot >= 0 && seg.setAck(slot)) {
+                seg.msgs.set(slot, null);
+                acked |= firstAttempt;
+            }
+
+            final Segment current = this.segment;
+            if (current == seg) {
+                break;
+            }
+            seg = current;
+            firstAttempt = false;
+        }
+
+        this.advanceHead();
+        return acked;
+    }
+
+    /**
+     * 在 [head, tail) 内二分查找队列位置对应的槽位。
+     * head 之前的槽位可能被复用, 若查找期间 head 或分段发生变化则重试。
+     */
+    private int locate(final Segment seg, final long offset) {
+        for (;;) {
+            final long h = this.head.get();
+            long low = h;
+            long high = seg.tail - 1;
+            while (low <= high) {
+                final long mid = (low + high) >>> 1;
+                final int slot = seg.slot(mid);
+                final long midOffset = seg.offsets.get(slot);
+                if (midOffset < offset) {
+                    low = mid + 1;
+                } else if (midOffset > offset) {
+                    high = mid - 1;
+                } else {
+                    return slot;
+                }
+            }
+
+            if (this.head.get() == h || seg != this.segment) {
+                return -1;
+            }
+        }
+    }
+
+    private void advanceHead() {
+        for (;;) {
+            final Segment seg = this.segment;
+            final long h = this.head.get();
+            if (h >= seg.tail || !seg.isAcked(seg.slot(h))) {
+                if (seg == this.segment) {
+                    return;
+                }
+                continue;
+            }
+            this.head.compareAndSet(h, h + 1);
+        }
+    }
+
+    /**
+     * @return 最小未确认消息的队列位置; 全部确认时为最后追加位置 + 1; 从未追加时为 -1
+     */
+    long committableOffset() {
+        for (;;) {
+            final Segment seg = this.segment;
+            final long h = this.head.get();
+            if (h >= seg.tail) {
+                final long last = this.lastOffset;
+                if (seg == this.segment && this.head.get() >= seg.tail) {
+                    return last < 0 ? -1 : last + 1;
+                }
+                continue;
+            }
+
+            final long offset = seg.offsets.get(seg.slot(h));
+            if (this.head.get() == h && seg == this.segment) {
+                return offset;
+            }
+        }
+    }
+
+    /**
+     * @return 最小未确认消息, 不存在时返回null
+     */
+    MessageExt first() {
+        for (;;) {
+            final Segment seg = this.segment;
+            final long h = this.head.get();
+            if (h >= seg.tail) {
+                return null;
+            }
+
+            final MessageExt msg = seg.msgs.get(seg.slot(h));
+            if (this.head.get() == h && seg == this.segment) {
+                return msg;
+            }
+        }
+    }
+
+    long getLastOffset() {
+        return lastOffset;
+    }
+
+    long getHead() {
+        return this.head.get();
+    }
+
+    long getTail() {
+        return this.segment.tail;
+    }
+
+    /**
+     * 获取序号对应的未确认消息, 调用方需持有写入锁
+     */
+    MessageExt get(final long seq) {
+        final Segment seg = this.segment;
+        final int slot = seg.slot(seq);
+        return seg.isAcked(slot) ? null : seg.msgs.get(slot);
+    }
+
+    /**
+     * 清空, 调用方需持有写入锁。序号继续递增, 并发的确认不会误命中新追加的消息。
+     */
+    void clear() {
+        final long tail = this.segment.tail;
+        this.segment = new Segment(INITIAL_CAPACITY, tail);
+        this.head.set(tail);
+        this.lastOffset = -1;
+    }
+
+    int capacity() {
+        return this.segment.capacity();
+    }
+
+    private static final class Segment {
+        private final int mask;
+        private final AtomicLongArray offsets;
+        private final AtomicReferenceArray<MessageExt> msgs;
+        /**
+         * 确认位图, 每个槽位1位
+         */
+        private final AtomicLongArray ackBits;
+        /**
+         * 下一条消息序号, 仅写入线程修改
+         */
+        private volatile long tail;
+
+        Segment(final int capacity, final long tail) {
+            this.mask = capacity - 1;
+            this.offsets = new AtomicLongArray(capacity);
+            this.msgs = new AtomicReferenceArray<MessageExt>(capacity);
+            this.ackBits = new AtomicLongArray((capacity + 63) >>> 6);
+            this.tail = tail;
+        }
+
+        int capacity() {
+            return this.mask + 1;
+        }
+
+        int slot(final long seq) {
+            return (int) (seq & this.mask);
+        }
+
+        boolean isAcked(final int slot) {
+            return (this.ackBits.get(slot >>> 6) & (1L << slot)) != 0;
+        }
+
+        /**
+         * @return 是否由本次调用置位
+         */
+        boolean setAck(final int slot) {
+            final int index = slot >>> 6;
+            final long bit = 1L << slot;
+            for (;;) {
+                final long word = this.ackBits.get(index);
+                if ((word & bit) != 0) {
+                    return false;
+                }
+                if (this.ackBits.compareAndSet(index, word, word | bit)) {
+                    return true;
+                }
+            }
+        }
+
+        void clearAck(final int slot) {
+            final int index = slot >>> 6;
+            final long bit = 1L << slot;
+            for (;;) {
+                final long word = this.ackBits.get(index);
+                if ((word & bit) == 0 || this.ackBits.compareAndSet(index, word, word & ~bit)) {
+                    return;
+                }
+            }
+        }
+    }
+}
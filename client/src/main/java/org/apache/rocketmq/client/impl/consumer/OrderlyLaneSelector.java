@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import org.apache.rocketmq.common.message.MessageExt;
+
+/**
+ * 顺序消费通道选择器
+ *
+ * 按分片键的哈希将同一队列的消息分配到固定的通道, 相同分片键的消息总在同一通道内。
+ * 分片键为空的消息全部进入通道0, 彼此之间仍保持队列顺序。
+ */
+public class OrderlyLaneSelector {
+    private final int laneCount;
+    /**
+     * 分片键使用的消息属性, 为空时使用消息Keys
+     */
+    private final String shardingKey;
+
+    public OrderlyLaneSelector(final int laneCount, final String shardingKey) {
+        this.laneCount = laneCount;
+        this.shardingKey = shardingKey;
+    }
+
+    public int select(final MessageExt msg) {
+        String key = null == this.shardingKey ? msg.getKeys() : msg.getProperty(this.shardingKey);
+        if (null == key || key.isEmpty()) {
+            return 0;
+        }
+        return (key.hashCode() & Integer.MAX_VALUE) % this.laneCount;
+    }
+
+    public int getLaneCount() {
+        return laneCount;
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.rocketmq.client.impl.consumer;
 
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
 import org.apache.rocketmq.client.log.ClientLogger;
+import org.apache.rocketmq.common.message.LazyMessageClientExt;
 import org.apache.rocketmq.common.message.MessageAccessor;
 import org.apache.rocketmq.common.message.MessageConst;
 import org.apache.rocketmq.common.message.MessageExt;
@@ -25,9 +26,10 @@ import org.apache.rocketmq.common.protocol.body.ProcessQueueInfo;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -56,38 +58,72 @@ public class ProcessQueue {
      */
     private final static long PULL_MAX_IDLE_TIME = Long.parseLong(System.getProperty("rocketmq.client.pull.pullMaxIdleTime", "120000"));
 
+    /**
+     * 负载均衡后队列分给其他消费者时, 停止拉取并等待已拉取消息消费完成的最长时间，默认5s
+     */
+    public final static long REBALANCE_RELEASE_MAX_TIME = Long.parseLong(System.getProperty("rocketmq.client.rebalance.releaseMaxTime", "5000"));
+
+    private final static int RELEASE_STATE_NONE = 0;
+    private final static int RELEASE_STATE_RELEASING = 1;
+    private final static int RELEASE_STATE_RELEASED = 2;
+
     private final Logger log = ClientLogger.getLog();
     /**
-     * 消息映射读写锁
+     * 写入锁
+     * 保护消息追加、清空、{@link #msgTreeMapTemp}及顺序消费的取出/提交/回滚。并发消费确认消息({@link #removeMessage(List)})不加锁。
      */
-    private final ReadWriteLock lockTreeMap = new ReentrantReadWriteLock();
+    private final Lock lockTreeMap = new ReentrantLock();
     /**
-     * 消息映射,消费者将拉取到的消息存入此集合中,消费时从此获取
-     * key：消息队列位置
+     * 消息环形缓冲区,消费者将拉取到的消息存入其中,消费时从此获取
      */
-    private final TreeMap<Long, MessageExt> msgTreeMap = new TreeMap<>();
+    private final MessageRingBuffer msgBuffer = new MessageRingBuffer();
     /**
      * 消息数
      */
     private final AtomicLong msgCount = new AtomicLong();
+    /**
+     * 消息体总大小, 单位字节
+     */
+    private final AtomicLong msgSize = new AtomicLong();
     /**
      * 消费锁
+     * 整队列顺序消费时持有写锁; 按通道顺序消费时各通道持有读锁, 彼此并行, 负载均衡释放队列时仍可通过写锁等待所有通道
      */
-    private final Lock lockConsume = new ReentrantLock();
+    private final ReadWriteLock lockConsume = new ReentrantReadWriteLock();
     /**
      * 消息映射临时存储（消费中的消息）
      */
     private final TreeMap<Long, MessageExt> msgTreeMapTemp = new TreeMap<>();
+    /**
+     * 顺序消费下一次取消息的起始序号
+     */
+    private long takeSequence = 0;
+    /**
+     * 按通道顺序消费时各通道下一次取消息的起始序号
+     */
+    private long[] laneTakeSequences = new long[0];
+    /**
+     * 按通道顺序消费时各通道是否已有消费请求在执行或等待执行, 每个通道同一时间只保留一个消费请求
+     */
+    private boolean[] laneActive = new boolean[0];
     private final AtomicLong tryUnlockTimes = new AtomicLong(0);
     /**
      * 添加消息最大队列位置
      */
-    private volatile long queueOffsetMax = 0L;
+    private volatile long queueOffsetMax = -1L;
     /**
      * 是否丢弃
      * 丢弃后，队列不进行处理
      */
     private volatile boolean dropped = false;
+    /**
+     * 平滑释放状态
+     */
+    private final AtomicInteger releaseState = new AtomicInteger(RELEASE_STATE_NONE);
+    /**
+     * 开始平滑释放的时间
+     */
+    private volatile long releaseTimestamp = 0;
     /**
      * 最后拉取时间
      */
@@ -141,25 +177,13 @@ public class ProcessQueue {
         }
 
         // 循环移除消息
-        int loop = msgTreeMap.size() < 16 ? msgTreeMap.size() : 16; // 每次循环最多移除16条
-        for (int i = 0; i < loop; i++) {
+        for (int i = 0; i < 16; i++) { // 每次循环最多移除16条
             // 获取第一条消息。判断是否超时，若不超时，则结束循环
-            MessageExt msg = null;
-            try {
-                this.lockTreeMap.readLock().lockInterruptibly();
-                try {
-                    if (!msgTreeMap.isEmpty() && System.currentTimeMillis() -
-                        Long.parseLong(MessageAccessor.getConsumeStartTimeStamp(msgTreeMap.firstEntry().getValue()))
-                        > pushConsumer.getConsumeTimeout() * 60 * 1000) {
-                        msg = msgTreeMap.firstEntry().getValue();
-                    } else {
-                        break;
-                    }
-                } finally {
-                    this.lockTreeMap.readLock().unlock();
-                }
-            } catch (InterruptedException e) {
-                log.error("getExpiredMsg exception", e);
+            MessageExt msg = this.msgBuffer.first();
+            if (null == msg || System.currentTimeMillis() -
+                Long.parseLong(MessageAccessor.getConsumeStartTimeStamp(msg))
+                <= pushConsumer.getConsumeTimeout() * 60 * 1000) {
+                break;
             }
 
             try {
@@ -169,21 +193,9 @@ public class ProcessQueue {
                     msg.getStoreHost(), msg.getQueueId(), msg.getQueueOffset());
 
                 // 判断此时消息是否依然是第一条，若是，则进行移除
-                try {
-                    this.lockTreeMap.writeLock().lockInterruptibly();
-                    try {
-                        if (!msgTreeMap.isEmpty() && msg.getQueueOffset() == msgTreeMap.firstKey()) {
-                            try {
-                                msgTreeMap.remove(msgTreeMap.firstKey());
-                            } catch (Exception e) {
-                                log.error("send expired msg exception", e);
-                            }
-                        }
-                    } finally {
-                        this.lockTreeMap.writeLock().unlock();
-                    }
-                } catch (InterruptedException e) {
-                    log.error("getExpiredMsg exception", e);
+                if (this.msgBuffer.first() == msg && this.msgBuffer.ack(msg.getQueueOffset())) {
+                    msgCount.decrementAndGet();
+                    msgSize.addAndGet(0 - bodyLength(msg));
                 }
             } catch (Exception e) {
                 log.error("send expired msg exception", e);
@@ -202,21 +214,22 @@ public class ProcessQueue {
     public boolean putMessage(final List<MessageExt> msgs) {
         boolean dispatchToConsume = false;
         try {
-            this.lockTreeMap.writeLock().lockInterruptibly();
+            this.lockTreeMap.lockInterruptibly();
             try {
-                // 添加消息
+                // 添加消息。消息按队列位置递增追加, 不大于已添加最大位置的消息视为重复
                 int validMsgCnt = 0;
                 for (MessageExt msg : msgs) {
-                    MessageExt old = msgTreeMap.put(msg.getQueueOffset(), msg);
-                    if (null == old) {
+                    if (msg.getQueueOffset() > this.queueOffsetMax) {
+                        this.msgBuffer.append(msg);
                         validMsgCnt++;
                         this.queueOffsetMax = msg.getQueueOffset();
+                        msgSize.addAndGet(bodyLength(msg));
                     }
                 }
                 msgCount.addAndGet(validMsgCnt);
 
                 // 计算是否正在消费, 上一批次的消息是否消费完 consuming=true：还没完; consuming=false: 消费完了
-                if (!msgTreeMap.isEmpty() && !this.consuming) {
+                if (this.msgCount.get() > this.msgTreeMapTemp.size() && !this.consuming) {
                     dispatchToConsume = true;
                     this.consuming = true;
                 }
@@ -233,7 +246,7 @@ public class ProcessQueue {
                     }
                 }
             } finally {
-                this.lockTreeMap.writeLock().unlock();
+                this.lockTreeMap.unlock();
             }
         } catch (InterruptedException e) {
             log.error("putMessage exception", e);
@@ -248,22 +261,30 @@ public class ProcessQueue {
      * @return 消息跨度
      */
     public long getMaxSpan() {
-        try {
-            this.lockTreeMap.readLock().lockInterruptibly();
-            try {
-                if (!this.msgTreeMap.isEmpty()) {
-                    return this.msgTreeMap.lastKey() - this.msgTreeMap.firstKey();
-                }
-            } finally {
-                this.lockTreeMap.readLock().unlock();
+        if (this.msgCount.get() > 0) {
+            long minOffset = this.msgBuffer.committableOffset();
+            if (minOffset >= 0 && minOffset <= this.queueOffsetMax) {
+                return this.queueOffsetMax - minOffset;
             }
-        } catch (InterruptedException e) {
-            log.error("getMaxSpan exception", e);
         }
 
         return 0;
     }
 
+    /**
+     * @return 最小未消费完成的消息队列位置, 没有消息时返回 -1
+     */
+    public long getMsgMinOffset() {
+        return this.msgCount.get() > 0 ? this.msgBuffer.committableOffset() : -1;
+    }
+
+    /**
+     * @return 已添加消息的最大队列位置
+     */
+    public long getMsgMaxOffset() {
+        return this.queueOffsetMax;
+    }
+
     /**
      * 移除消息，并返回第一条消息队列位置
      *
@@ -272,31 +293,22 @@ public class ProcessQueue {
      */
     public long removeMessage(final List<MessageExt> msgs) {
         long result = -1;
-        final long now = System.currentTimeMillis();
+        this.lastConsumeTimestamp = System.currentTimeMillis();
         try {
-            this.lockTreeMap.writeLock().lockInterruptibly();
-            this.lastConsumeTimestamp = now;
-            try {
-                if (!msgTreeMap.isEmpty()) {
-                    result = this.queueOffsetMax + 1; // 这里+1的原因是：如果msgTreeMap为空时，下一条获得的消息位置为queueOffsetMax+1
-
-                    // 移除消息
-                    int removedCnt = 0;
-                    for (MessageExt msg : msgs) {
-                        MessageExt prev = msgTreeMap.remove(msg.getQueueOffset());
-                        if (prev != null) {
-                            removedCnt--;
-                        }
-                    }
-                    msgCount.addAndGet(removedCnt);  //删除消息时减小msgCount大小
-
-                    if (!msgTreeMap.isEmpty()) {
-                        result = msgTreeMap.firstKey();
-                    }
+            // 移除消息, 在确认位图上置位, 不加锁
+            int removedCnt = 0;
+            long removedSize = 0;
+            for (MessageExt msg : msgs) {
+                if (this.msgBuffer.ack(msg.getQueueOffset())) {
+                    removedCnt--;
+                    removedSize -= bodyLength(msg);
                 }
-            } finally {
-                this.lockTreeMap.writeLock().unlock();
             }
+            msgCount.addAndGet(removedCnt); //删除消息时减小msgCount大小
+            msgSize.addAndGet(removedSize);
+
+            // 最小未确认消息位置; 全部确认时为 queueOffsetMax + 1
+            result = this.msgBuffer.committableOffset();
         } catch (Throwable t) {
             log.error("removeMessage exception", t);
         }
@@ -304,14 +316,21 @@ public class ProcessQueue {
         return result;
     }
 
-    public TreeMap<Long, MessageExt> getMsgTreeMap() {
-        return msgTreeMap;
-    }
-
     public AtomicLong getMsgCount() {
         return msgCount;
     }
 
+    public AtomicLong getMsgSize() {
+        return msgSize;
+    }
+
+    private static int bodyLength(final MessageExt msg) {
+        if (msg instanceof LazyMessageClientExt) {
+            return ((LazyMessageClientExt) msg).getBodyLength();
+        }
+        return msg.getBody() != null ? msg.getBody().length : 0;
+    }
+
     public boolean isDropped() {
         return dropped;
     }
@@ -320,6 +339,47 @@ public class ProcessQueue {
         this.dropped = dropped;
     }
 
+    /**
+     * 是否正在平滑释放: 不再拉取消息, 已拉取的消息继续消费并提交进度
+     */
+    public boolean isReleasing() {
+        return this.releaseState.get() != RELEASE_STATE_NONE;
+    }
+
+    /**
+     * 开始平滑释放
+     *
+     * @return 是否由本次调用开始
+     */
+    public boolean markReleasing() {
+        if (this.releaseState.compareAndSet(RELEASE_STATE_NONE, RELEASE_STATE_RELEASING)) {
+            this.releaseTimestamp = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 已拉取的消息已全部消费完, 或等待超过{@link #REBALANCE_RELEASE_MAX_TIME}
+     */
+    public boolean isReleaseReady() {
+        return this.msgCount.get() <= 0 || this.isReleaseExpired();
+    }
+
+    /**
+     * 平滑释放已超过{@link #REBALANCE_RELEASE_MAX_TIME}, 新消费者可能已开始消费, 不能再提交消费进度
+     */
+    public boolean isReleaseExpired() {
+        return System.currentTimeMillis() - this.releaseTimestamp > REBALANCE_RELEASE_MAX_TIME;
+    }
+
+    /**
+     * 结束平滑释放, 多个线程同时调用时只有一个返回true, 由其丢弃并移除队列
+     */
+    public boolean finishRelease() {
+        return this.releaseState.compareAndSet(RELEASE_STATE_RELEASING, RELEASE_STATE_RELEASED);
+    }
+
     public boolean isLocked() {
         return locked;
     }
@@ -334,12 +394,12 @@ public class ProcessQueue {
      */
     public void rollback() {
         try {
-            this.lockTreeMap.writeLock().lockInterruptibly();
+            this.lockTreeMap.lockInterruptibly();
             try {
-                this.msgTreeMap.putAll(this.msgTreeMapTemp);
                 this.msgTreeMapTemp.clear();
+                this.takeSequence = this.msgBuffer.getHead();
             } finally {
-                this.lockTreeMap.writeLock().unlock();
+                this.lockTreeMap.unlock();
             }
         } catch (InterruptedException e) {
             log.error("rollback exception", e);
@@ -353,12 +413,19 @@ public class ProcessQueue {
      */
     public long commit() {
         try {
-            this.lockTreeMap.writeLock().lockInterruptibly();
+            this.lockTreeMap.lockInterruptibly();
             try {
                 // 消费进度
                 Long offset = this.msgTreeMapTemp.lastKey();
 
-                msgCount.addAndGet(this.msgTreeMapTemp.size() * (-1));
+                int removedCnt = 0;
+                for (MessageExt msg : this.msgTreeMapTemp.values()) {
+                    if (this.msgBuffer.ack(msg.getQueueOffset())) {
+                        removedCnt--;
+                        msgSize.addAndGet(0 - bodyLength(msg));
+                    }
+                }
+                msgCount.addAndGet(removedCnt);
 
                 this.msgTreeMapTemp.clear();
 
@@ -367,7 +434,7 @@ public class ProcessQueue {
                     return offset + 1;
                 }
             } finally {
-                this.lockTreeMap.writeLock().unlock();
+                this.lockTreeMap.unlock();
             }
         } catch (InterruptedException e) {
             log.error("commit exception", e);
@@ -377,21 +444,21 @@ public class ProcessQueue {
     }
 
     /**
-     * 将{@link #msgTreeMapTemp}里的消息重新放回{@link #msgTreeMap},这样重新消费时就能再次消费这些消息
+     * 将消息移出{@link #msgTreeMapTemp},并从最小未确认消息开始重新取消息,这样重新消费时就能再次消费这些消息
      * 逻辑类似于{@link #rollback()}
      *
      * @param msgs 消息
      */
     public void makeMessageToCosumeAgain(List<MessageExt> msgs) {
         try {
-            this.lockTreeMap.writeLock().lockInterruptibly();
+            this.lockTreeMap.lockInterruptibly();
             try {
                 for (MessageExt msg : msgs) {
                     this.msgTreeMapTemp.remove(msg.getQueueOffset());
-                    this.msgTreeMap.put(msg.getQueueOffset(), msg);
                 }
+                this.takeSequence = this.msgBuffer.getHead();
             } finally {
-                this.lockTreeMap.writeLock().unlock();
+                this.lockTreeMap.unlock();
             }
         } catch (InterruptedException e) {
             log.error("makeMessageToCosumeAgain exception", e);
@@ -399,10 +466,10 @@ public class ProcessQueue {
     }
 
     /**
-     * 按顺序依次弹出TreeMap的第一条消息,直到凑满batchSize
-     * 弹出一条TreeMap就删除这条，然后重构,在弹出过程中会持有TreeMap的写锁,阻止TreeMap的写入
+     * 按顺序依次取出未确认且不在{@link #msgTreeMapTemp}中的消息,直到凑满batchSize
+     * 取出过程中持有写入锁,阻止消息写入
      * 将得到的消息集合放入{@link #msgTreeMapTemp}
-     * 当msgTreeMap里面没有消息时,重置{@link #consuming = false},也就是说现有的消息都消费完了
+     * 当没有可取的消息时,重置{@link #consuming = false},也就是说现有的消息都消费完了
      *
      * @param batchSize 条数
      * @return 消息
@@ -411,26 +478,25 @@ public class ProcessQueue {
         List<MessageExt> result = new ArrayList<>(batchSize);
         final long now = System.currentTimeMillis();
         try {
-            this.lockTreeMap.writeLock().lockInterruptibly();
+            this.lockTreeMap.lockInterruptibly();
             this.lastConsumeTimestamp = now;
             try {
-                if (!this.msgTreeMap.isEmpty()) {
-                    for (int i = 0; i < batchSize; i++) {
-                        Map.Entry<Long, MessageExt> entry = this.msgTreeMap.pollFirstEntry();
-                        if (entry != null) {
-                            result.add(entry.getValue());
-                            msgTreeMapTemp.put(entry.getKey(), entry.getValue());
-                        } else {
-                            break;
-                        }
+                long seq = Math.max(this.takeSequence, this.msgBuffer.getHead());
+                final long tail = this.msgBuffer.getTail();
+                for (; seq < tail && result.size() < batchSize; seq++) {
+                    MessageExt msg = this.msgBuffer.get(seq);
+                    if (msg != null && !msgTreeMapTemp.containsKey(msg.getQueueOffset())) {
+                        result.add(msg);
+                        msgTreeMapTemp.put(msg.getQueueOffset(), msg);
                     }
                 }
-                //标识ProcessQueue里的msgTreeMap已经没有消息了,上一次拉取的消息已经消费完了
+                this.takeSequence = seq;
+                //标识ProcessQueue里已经没有可取的消息了,上一次拉取的消息已经消费完了
                 if (result.isEmpty()) {
                     consuming = false;
                 }
             } finally {
-                this.lockTreeMap.writeLock().unlock();
+                this.lockTreeMap.unlock();
             }
         } catch (InterruptedException e) {
             log.error("take Messages exception", e);
@@ -439,13 +505,176 @@ public class ProcessQueue {
         return result;
     }
 
+    /**
+     * 按通道取消息: 按顺序取出属于该通道、未确认且不在{@link #msgTreeMapTemp}中的消息,直到凑满batchSize
+     * 同一通道同一时间只由一个线程消费, 因此该通道起始序号之前的消息要么已确认, 要么在消费中
+     *
+     * @param batchSize 条数
+     * @param lane      通道
+     * @param selector  通道选择器
+     * @return 消息
+     */
+    public List<MessageExt> takeMessags(final int batchSize, final int lane, final OrderlyLaneSelector selector) {
+        List<MessageExt> result = new ArrayList<>(batchSize);
+        final long now = System.currentTimeMillis();
+        try {
+            this.lockTreeMap.lockInterruptibly();
+            this.lastConsumeTimestamp = now;
+            try {
+                this.ensureLanes(selector.getLaneCount());
+                long seq = Math.max(this.laneTakeSequences[lane], this.msgBuffer.getHead());
+                long nextSeq = seq;
+                final long tail = this.msgBuffer.getTail();
+                for (; seq < tail && result.size() < batchSize; seq++) {
+                    MessageExt msg = this.msgBuffer.get(seq);
+                    if (msg != null && selector.select(msg) == lane && !msgTreeMapTemp.containsKey(msg.getQueueOffset())) {
+                        result.add(msg);
+                        msgTreeMapTemp.put(msg.getQueueOffset(), msg);
+                    }
+                    nextSeq = seq + 1;
+                }
+                this.laneTakeSequences[lane] = nextSeq;
+                // 只结束本通道的消费请求, 其他通道可能仍在消费
+                if (result.isEmpty()) {
+                    this.laneActive[lane] = false;
+                }
+            } finally {
+                this.lockTreeMap.unlock();
+            }
+        } catch (InterruptedException e) {
+            log.error("take Messages exception", e);
+        }
+
+        return result;
+    }
+
+    /**
+     * 通道没有消费请求时将其标记为活跃, 调用方随后为该通道提交消费请求。
+     * 通道在取不到消息时才重新变为空闲, 判断与取消息都在{@link #lockTreeMap}内完成, 不会丢失新写入的消息
+     *
+     * @param lane      通道
+     * @param laneCount 通道数
+     * @return 是否需要提交该通道的消费请求
+     */
+    public boolean activateLane(final int lane, final int laneCount) {
+        try {
+            this.lockTreeMap.lockInterruptibly();
+            try {
+                this.ensureLanes(laneCount);
+                if (this.laneActive[lane]) {
+                    return false;
+                }
+                this.laneActive[lane] = true;
+                return true;
+            } finally {
+                this.lockTreeMap.unlock();
+            }
+        } catch (InterruptedException e) {
+            log.error("activateLane exception", e);
+        }
+        return false;
+    }
+
+    private void ensureLanes(final int laneCount) {
+        if (this.laneTakeSequences.length != laneCount) {
+            this.laneTakeSequences = new long[laneCount];
+            this.laneActive = new boolean[laneCount];
+        }
+    }
+
+    /**
+     * 提交通道内消费中的消息已消费成功, 返回所有通道中最小未确认的消息队列位置作为消费进度
+     *
+     * @param lane     通道
+     * @param selector 通道选择器
+     * @return 消费进度
+     */
+    public long commit(final int lane, final OrderlyLaneSelector selector) {
+        try {
+            this.lockTreeMap.lockInterruptibly();
+            try {
+                int removedCnt = 0;
+                for (Iterator<MessageExt> it = this.msgTreeMapTemp.values().iterator(); it.hasNext(); ) {
+                    MessageExt msg = it.next();
+                    if (selector.select(msg) != lane) {
+                        continue;
+                    }
+                    it.remove();
+                    if (this.msgBuffer.ack(msg.getQueueOffset())) {
+                        removedCnt--;
+                        msgSize.addAndGet(0 - bodyLength(msg));
+                    }
+                }
+                msgCount.addAndGet(removedCnt);
+
+                return this.msgBuffer.committableOffset();
+            } finally {
+                this.lockTreeMap.unlock();
+            }
+        } catch (InterruptedException e) {
+            log.error("commit exception", e);
+        }
+
+        return -1;
+    }
+
+    /**
+     * 回滚通道内消费中的消息, 下次从最小未确认消息开始重新取该通道的消息
+     *
+     * @param lane     通道
+     * @param selector 通道选择器
+     */
+    public void rollback(final int lane, final OrderlyLaneSelector selector) {
+        try {
+            this.lockTreeMap.lockInterruptibly();
+            try {
+                for (Iterator<MessageExt> it = this.msgTreeMapTemp.values().iterator(); it.hasNext(); ) {
+                    if (selector.select(it.next()) == lane) {
+                        it.remove();
+                    }
+                }
+                if (lane < this.laneTakeSequences.length) {
+                    this.laneTakeSequences[lane] = this.msgBuffer.getHead();
+                }
+            } finally {
+                this.lockTreeMap.unlock();
+            }
+        } catch (InterruptedException e) {
+            log.error("rollback exception", e);
+        }
+    }
+
+    /**
+     * 将通道内的消息移出{@link #msgTreeMapTemp}, 下次从最小未确认消息开始重新取该通道的消息
+     *
+     * @param msgs 消息
+     * @param lane 通道
+     */
+    public void makeMessageToCosumeAgain(final List<MessageExt> msgs, final int lane) {
+        try {
+            this.lockTreeMap.lockInterruptibly();
+            try {
+                for (MessageExt msg : msgs) {
+                    this.msgTreeMapTemp.remove(msg.getQueueOffset());
+                }
+                if (lane < this.laneTakeSequences.length) {
+                    this.laneTakeSequences[lane] = this.msgBuffer.getHead();
+                }
+            } finally {
+                this.lockTreeMap.unlock();
+            }
+        } catch (InterruptedException e) {
+            log.error("makeMessageToCosumeAgain exception", e);
+        }
+    }
+
     public boolean hasTempMessage() {
         try {
-            this.lockTreeMap.readLock().lockInterruptibly();
+            this.lockTreeMap.lockInterruptibly();
             try {
-                return !this.msgTreeMap.isEmpty();
+                return this.msgCount.get() > this.msgTreeMapTemp.size();
             } finally {
-                this.lockTreeMap.readLock().unlock();
+                this.lockTreeMap.unlock();
             }
         } catch (InterruptedException e) {
         }
@@ -455,14 +684,16 @@ public class ProcessQueue {
 
     public void clear() {
         try {
-            this.lockTreeMap.writeLock().lockInterruptibly();
+            this.lockTreeMap.lockInterruptibly();
             try {
-                this.msgTreeMap.clear();
+                this.msgBuffer.clear();
                 this.msgTreeMapTemp.clear();
                 this.msgCount.set(0);
-                this.queueOffsetMax = 0L;
+                this.msgSize.set(0);
+                this.queueOffsetMax = -1L;
+                this.laneTakeSequences = new long[0];
             } finally {
-                this.lockTreeMap.writeLock().unlock();
+                this.lockTreeMap.unlock();
             }
         } catch (InterruptedException e) {
             log.error("rollback exception", e);
@@ -478,7 +709,14 @@ public class ProcessQueue {
     }
 
     public Lock getLockConsume() {
-        return lockConsume;
+        return lockConsume.writeLock();
+    }
+
+    /**
+     * @return 按通道顺序消费时使用的共享消费锁
+     */
+    public Lock getLockConsumeShared() {
+        return lockConsume.readLock();
     }
 
     public long getLastPullTimestamp() {
@@ -507,12 +745,14 @@ public class ProcessQueue {
 
     public void fillProcessQueueInfo(final ProcessQueueInfo info) {
         try {
-            this.lockTreeMap.readLock().lockInterruptibly();
-
-            if (!this.msgTreeMap.isEmpty()) {
-                info.setCachedMsgMinOffset(this.msgTreeMap.firstKey());
-                info.setCachedMsgMaxOffset(this.msgTreeMap.lastKey());
-                info.setCachedMsgCount(this.msgTreeMap.size());
+            this.lockTreeMap.lockInterruptibly();
+
+            int cachedMsgCount = (int) this.msgCount.get() - this.msgTreeMapTemp.size();
+            if (cachedMsgCount > 0) {
+                info.setCachedMsgMinOffset(this.msgBuffer.committableOffset());
+                info.setCachedMsgMaxOffset(this.queueOffsetMax);
+                info.setCachedMsgCount(cachedMsgCount);
+                info.setCachedMsgSizeInMiB((int) (this.msgSize.get() / (1024 * 1024)));
             }
 
             if (!this.msgTreeMapTemp.isEmpty()) {
@@ -530,7 +770,7 @@ public class ProcessQueue {
             info.setLastConsumeTimestamp(this.lastConsumeTimestamp);
         } catch (Exception e) {
         } finally {
-            this.lockTreeMap.readLock().unlock();
+            this.lockTreeMap.unlock();
         }
     }
 
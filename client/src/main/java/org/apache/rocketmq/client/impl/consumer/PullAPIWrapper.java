@@ -48,6 +48,13 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class PullAPIWrapper {
 
+    /**
+     * 是否延迟解析拉取到的消息, 消息体、属性等字段在首次访问时才解析, 被Tag过滤掉的消息不再解析
+     * 默认关闭: 未解析的消息会持有整个拉取响应的字节数组, 且拉取后立即写入的位置属性会触发属性解析,
+     * 只适合Tag过滤比例高、消息处理快的场景
+     */
+    private static final boolean PULL_LAZY_DECODE = Boolean.parseBoolean(System.getProperty("rocketmq.client.pull.lazyDecode", "false"));
+
     private final Logger log = ClientLogger.getLog();
     private final MQClientInstance mQClientFactory;
     private final String consumerGroup;
@@ -97,7 +104,7 @@ public class PullAPIWrapper {
         if (PullStatus.FOUND == pullResult.getPullStatus()) {
             // 解析消息
             ByteBuffer byteBuffer = ByteBuffer.wrap(pullResultExt.getMessageBinary());
-            List<MessageExt> msgList = MessageDecoder.decodes(byteBuffer);
+            List<MessageExt> msgList = PULL_LAZY_DECODE ? MessageDecoder.clientDecodesLazily(byteBuffer) : MessageDecoder.decodes(byteBuffer);
 
             // 根据消息tagCode匹配合适消息
             List<MessageExt> msgListFilterAgain = msgList;
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import org.apache.rocketmq.client.consumer.PullResult;
+
+/**
+ * 单个消息队列的流水线拉取状态
+ *
+ * 同一队列同时存在多个拉取请求(槽位), 按 pullBatchSize 间隔依次拉取后续位置的消息。
+ * 拉取结果按槽位发起顺序重新排列后再提交给 ProcessQueue, 保证消息按队列位置有序。
+ * 前一个槽位返回的消息不足 pullBatchSize 时, 后续槽位与已提交位置之间存在空洞, 由调用方丢弃并重新拉取。
+ * 只在已知的队列最大位置之前发起预取, 追上队列尾部后退化为单请求长轮询。
+ * 所有方法在调用方持有本对象锁的前提下访问。
+ */
+public class PullPipeline {
+    /**
+     * 按发起顺序排列的槽位
+     */
+    private final LinkedList<Slot> slots = new LinkedList<Slot>();
+    /**
+     * 下一个槽位的拉取位置
+     */
+    private long nextIssueOffset = -1;
+    /**
+     * 最近一次拉取结果返回的队列最大位置
+     */
+    private long maxOffset = -1;
+    /**
+     * PullRequest 是否停在流水线中等待唤醒, 而不在 PullMessageService 的队列里
+     */
+    private boolean parked = false;
+
+    /**
+     * 预留新的槽位
+     *
+     * @param cursor         已按序提交的位置, 即 PullRequest#nextOffset
+     * @param depth          最大槽位数
+     * @param batchSize      每个槽位拉取的消息数
+     * @param remainCapacity 在 pullThresholdForQueue 限制下还能缓存的消息数
+     * @return 本次新增的槽位
+     */
+    List<Slot> reserve(final long cursor, final int depth, final int batchSize, final long remainCapacity) {
+        if (this.slots.isEmpty() || this.nextIssueOffset < cursor) {
+            this.nextIssueOffset = cursor;
+        }
+
+        List<Slot> result = new ArrayList<Slot>(depth);
+        while (this.canIssue(depth, batchSize, remainCapacity)) {
+            Slot slot = new Slot(this.nextIssueOffset);
+            this.slots.add(slot);
+            result.add(slot);
+            this.nextIssueOffset += batchSize;
+        }
+        return result;
+    }
+
+    /**
+     * 队列为空时总是允许发起一个请求, 由调用方的流控判断兜底;
+     * 否则只在队列最大位置之前、且缓存容量足够容纳所有在途请求时继续预取
+     */
+    boolean canIssue(final int depth, final int batchSize, final long remainCapacity) {
+        if (this.slots.isEmpty()) {
+            return true;
+        }
+        return this.slots.size() < depth
+            && this.nextIssueOffset < this.maxOffset
+            && (long) (this.slots.size() + 1) * batchSize <= remainCapacity;
+    }
+
+    /**
+     * 取出队首已完成的槽位, 调用方按返回顺序处理
+     */
+    Slot pollCompleted() {
+        Slot head = this.slots.peekFirst();
+        if (head != null && head.isCompleted()) {
+            return this.slots.pollFirst();
+        }
+        return null;
+    }
+
+    /**
+     * 丢弃所有在途槽位, 迟到的结果将被忽略
+     */
+    void reset() {
+        this.slots.clear();
+        this.nextIssueOffset = -1;
+    }
+
+    boolean contains(final Slot slot) {
+        return this.slots.contains(slot);
+    }
+
+    void updateMaxOffset(final long maxOffset) {
+        this.maxOffset = maxOffset;
+    }
+
+    int inflightSize() {
+        return this.slots.size();
+    }
+
+    boolean isParked() {
+        return parked;
+    }
+
+    void setParked(final boolean parked) {
+        this.parked = parked;
+    }
+
+    /**
+     * 一个在途的拉取请求
+     */
+    static class Slot {
+        private final long offset;
+        private final long beginTimestamp = System.currentTimeMillis();
+        private PullResult pullResult;
+        private Throwable exception;
+        private boolean completed = false;
+
+        Slot(final long offset) {
+            this.offset = offset;
+        }
+
+        void complete(final PullResult pullResult, final Throwable exception) {
+            this.pullResult = pullResult;
+            this.exception = exception;
+            this.completed = true;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        long getBeginTimestamp() {
+            return beginTimestamp;
+        }
+
+        PullResult getPullResult() {
+            return pullResult;
+        }
+
+        Throwable getException() {
+            return exception;
+        }
+
+        boolean isCompleted() {
+            return completed;
+        }
+    }
+}
@@ -42,6 +42,10 @@ public class PullRequest {
      * 当前ProcessQueue是否第一次锁定
      */
     private boolean lockedFirst = false;
+    /**
+     * 流水线拉取状态, 仅在 pullPipelineDepth > 1 时使用
+     */
+    private PullPipeline pullPipeline;
 
     public boolean isLockedFirst() {
         return lockedFirst;
@@ -51,6 +55,14 @@ public class PullRequest {
         this.lockedFirst = lockedFirst;
     }
 
+    public PullPipeline getPullPipeline() {
+        return pullPipeline;
+    }
+
+    public void setPullPipeline(PullPipeline pullPipeline) {
+        this.pullPipeline = pullPipeline;
+    }
+
     public String getConsumerGroup() {
         return consumerGroup;
     }
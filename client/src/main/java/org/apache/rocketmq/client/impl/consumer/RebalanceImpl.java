@@ -386,6 +386,9 @@ public abstract class RebalanceImpl {
 
             if (mq.getTopic().equals(topic)) {
                 if (!mqSet.contains(mq)) { // 不再属于自己的队列
+                    if (this.releaseGracefully(mq, pq)) { // 平滑释放中, 已拉取的消息消费完后再移除
+                        continue;
+                    }
                     pq.setDropped(true);   //设置此队列被丢弃,不会再PullMessage
                     if (this.removeUnnecessaryMessageQueue(mq, pq)) {
                         it.remove();
@@ -416,6 +419,9 @@ public abstract class RebalanceImpl {
         List<PullRequest> pullRequestList = new ArrayList<>();
         for (MessageQueue mq : mqSet) {
             if (!this.processQueueTable.containsKey(mq)) {
+                if (this.waitPreviousOwner(mq)) {                           // 等待原消费者平滑释放后再读取消费进度
+                    continue;
+                }
                 if (isOrder && !this.lock(mq)) {                            // 顺序消息锁定消息队列,锁定失败则等待下次负载均衡再试
                     log.warn("doRebalance, {}, add a new mq failed, {}, because lock failed", consumerGroup, mq);
                     continue;
@@ -452,6 +458,27 @@ public abstract class RebalanceImpl {
 
     public abstract void messageQueueChanged(final String topic, final Set<MessageQueue> mqAll, final Set<MessageQueue> mqDivided);
 
+    /**
+     * 平滑释放不再属于自己的队列
+     *
+     * @param mq 消息队列
+     * @param pq 消息处理队列
+     * @return true: 队列释放中或已被释放, 本次负载均衡不移除; false: 立即丢弃并移除
+     */
+    protected boolean releaseGracefully(final MessageQueue mq, final ProcessQueue pq) {
+        return false;
+    }
+
+    /**
+     * 新分配的队列是否需要等待原消费者平滑释放
+     *
+     * @param mq 消息队列
+     * @return true: 本次负载均衡不添加该队列
+     */
+    protected boolean waitPreviousOwner(final MessageQueue mq) {
+        return false;
+    }
+
     public abstract boolean removeUnnecessaryMessageQueue(final MessageQueue mq, final ProcessQueue pq);
 
     public abstract ConsumeType consumeType();
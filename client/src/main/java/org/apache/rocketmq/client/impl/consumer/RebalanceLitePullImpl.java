@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.List;
+import java.util.Set;
+import org.apache.rocketmq.client.consumer.store.ReadOffsetType;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.heartbeat.ConsumeType;
+
+/**
+ * Lite pull 消费者的负载均衡: 分配到新队列时开始预取, 移除队列时停止预取并持久化消费进度
+ */
+public class RebalanceLitePullImpl extends RebalanceImpl {
+    private final DefaultLitePullConsumerImpl defaultLitePullConsumerImpl;
+
+    public RebalanceLitePullImpl(DefaultLitePullConsumerImpl defaultLitePullConsumerImpl) {
+        super(null, null, null, null);
+        this.defaultLitePullConsumerImpl = defaultLitePullConsumerImpl;
+    }
+
+    @Override
+    public void messageQueueChanged(String topic, Set<MessageQueue> mqAll, Set<MessageQueue> mqDivided) {
+    }
+
+    @Override
+    public boolean removeUnnecessaryMessageQueue(MessageQueue mq, ProcessQueue pq) {
+        this.defaultLitePullConsumerImpl.removeMessageQueue(mq, pq);
+        return true;
+    }
+
+    @Override
+    public ConsumeType consumeType() {
+        return ConsumeType.CONSUME_ACTIVELY;
+    }
+
+    @Override
+    public void removeDirtyOffset(final MessageQueue mq) {
+        this.defaultLitePullConsumerImpl.getOffsetStore().removeOffset(mq);
+    }
+
+    /**
+     * Broker上有消费进度时从该进度开始, 否则按 consumeFromWhere 决定
+     */
+    @Override
+    public long computePullFromWhere(MessageQueue mq) {
+        long lastOffset = this.defaultLitePullConsumerImpl.getOffsetStore().readOffset(mq, ReadOffsetType.READ_FROM_STORE);
+        if (lastOffset >= 0) {
+            return lastOffset;
+        }
+        if (lastOffset != -1) {
+            return -1;
+        }
+
+        try {
+            switch (this.defaultLitePullConsumerImpl.getDefaultLitePullConsumer().getConsumeFromWhere()) {
+                case CONSUME_FROM_FIRST_OFFSET:
+                    return 0L;
+                case CONSUME_FROM_TIMESTAMP:
+                    long timestamp = UtilAll.parseDate(this.defaultLitePullConsumerImpl.getDefaultLitePullConsumer().getConsumeTimestamp(),
+                        UtilAll.YYYY_MMDD_HHMMSS).getTime();
+                    return this.mQClientFactory.getMQAdminImpl().searchOffset(mq, timestamp);
+                default:
+                    // 重试队列从0开始消费
+                    if (mq.getTopic().startsWith(MixAll.RETRY_GROUP_TOPIC_PREFIX)) {
+                        return 0L;
+                    }
+                    return this.mQClientFactory.getMQAdminImpl().maxOffset(mq);
+            }
+        } catch (MQClientException e) {
+            log.warn("computePullFromWhere exception, {}", mq, e);
+            return -1;
+        }
+    }
+
+    @Override
+    public void dispatchPullRequest(List<PullRequest> pullRequestList) {
+        for (PullRequest pullRequest : pullRequestList) {
+            this.defaultLitePullConsumerImpl.startPrefetch(pullRequest);
+            log.info("doRebalance, {}, start prefetch {}", consumerGroup, pullRequest);
+        }
+    }
+}
@@ -30,11 +30,21 @@ import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 public class RebalancePushImpl extends RebalanceImpl {
 
     private final static long UNLOCK_DELAY_TIME_MILLS = Long.parseLong(System.getProperty("rocketmq.client.unlockDelayTimeMills", "20000"));
+    /**
+     * 新分配的队列等待原消费者平滑释放的时间, 在释放上限之外留出原消费者提交最终进度的时间
+     */
+    private final static long TAKE_OVER_WAIT_MILLS = ProcessQueue.REBALANCE_RELEASE_MAX_TIME + 1000;
+    /**
+     * 等待原消费者释放的新分配队列 => 首次分配时间
+     */
+    private final ConcurrentMap<MessageQueue, Long> takeOverTable = new ConcurrentHashMap<>();
     /**
      * Consumer
      */
@@ -52,6 +62,94 @@ public class RebalancePushImpl extends RebalanceImpl {
 
     @Override
     public void messageQueueChanged(String topic, Set<MessageQueue> mqAll, Set<MessageQueue> mqDivided) {
+        // 分配到的队列数变化后, 重新均分Topic级别的缓存大小上限
+        this.defaultMQPushConsumerImpl.updatePullThresholdSizeForQueue(topic, mqDivided.size());
+    }
+
+    /**
+     * 并发消费时平滑释放队列: 停止拉取并先持久化消费进度, 已拉取的消息继续消费,
+     * 全部消费完成后再丢弃并移除队列, 新消费者等待{@link #TAKE_OVER_WAIT_MILLS}后再读取进度, 减少重复消费。
+     * 超过{@link ProcessQueue#REBALANCE_RELEASE_MAX_TIME}时新消费者可能已开始消费, 立即丢弃且不再提交进度。
+     * 顺序消费依赖Broker队列锁的释放, 不平滑释放。
+     */
+    @Override
+    protected boolean releaseGracefully(final MessageQueue mq, final ProcessQueue pq) {
+        if (!this.isReleaseGracefullyEnabled() || pq.isDropped()) {
+            return false;
+        }
+
+        if (pq.markReleasing()) {
+            this.defaultMQPushConsumerImpl.getOffsetStore().persist(mq);
+            log.info("doRebalance, {}, release mq gracefully, {}, msgCount={}", consumerGroup, mq, pq.getMsgCount().get());
+            this.checkReleaseLater(mq, pq);
+        }
+        // 由 checkReleaseLater 结束释放并移除队列
+        return true;
+    }
+
+    private void checkReleaseLater(final MessageQueue mq, final ProcessQueue pq) {
+        this.mQClientFactory.getScheduledExecutorService().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!pq.isReleaseReady()) {
+                    RebalancePushImpl.this.checkReleaseLater(mq, pq);
+                    return;
+                }
+
+                if (pq.finishRelease()) {
+                    pq.setDropped(true);
+                    if (pq.isReleaseExpired()) {
+                        // 已交给新消费者, 不能用旧进度覆盖新消费者提交的进度
+                        RebalancePushImpl.this.defaultMQPushConsumerImpl.getOffsetStore().removeOffset(mq);
+                        RebalancePushImpl.this.processQueueTable.remove(mq, pq);
+                        log.warn("release mq gracefully expired, {}, remove mq without persisting offset, {}, msgCount={}",
+                            consumerGroup, mq, pq.getMsgCount().get());
+                    } else if (RebalancePushImpl.this.removeUnnecessaryMessageQueue(mq, pq)) {
+                        RebalancePushImpl.this.processQueueTable.remove(mq, pq);
+                        log.info("release mq gracefully done, {}, remove unnecessary mq, {}, msgCount={}", consumerGroup, mq,
+                            pq.getMsgCount().get());
+                    }
+                    // 队列可能在释放期间又分配给自己, 尽快重新负载均衡
+                    RebalancePushImpl.this.mQClientFactory.rebalanceImmediately();
+                }
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 新分配的队列可能正被原消费者平滑释放, 等待{@link #TAKE_OVER_WAIT_MILLS}后再读取消费进度并拉取。
+     * 等待期间队列被重新分配走后遗留的记录超过两个等待周期视为过期, 再次分配时重新等待。
+     */
+    @Override
+    protected boolean waitPreviousOwner(final MessageQueue mq) {
+        if (!this.isReleaseGracefullyEnabled()) {
+            return false;
+        }
+
+        final long now = System.currentTimeMillis();
+        final Long assignTimestamp = this.takeOverTable.get(mq);
+        if (null == assignTimestamp || now - assignTimestamp > TAKE_OVER_WAIT_MILLS * 2) {
+            this.takeOverTable.put(mq, now);
+            log.info("doRebalance, {}, wait for the previous owner to release mq, {}", consumerGroup, mq);
+            this.mQClientFactory.getScheduledExecutorService().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    RebalancePushImpl.this.mQClientFactory.rebalanceImmediately();
+                }
+            }, TAKE_OVER_WAIT_MILLS, TimeUnit.MILLISECONDS);
+            return true;
+        }
+
+        if (now - assignTimestamp < TAKE_OVER_WAIT_MILLS) {
+            return true;
+        }
+        this.takeOverTable.remove(mq);
+        return false;
+    }
+
+    private boolean isReleaseGracefullyEnabled() {
+        return this.defaultMQPushConsumerImpl.getDefaultMQPushConsumer().isReleaseQueueGracefully()
+            && !this.defaultMQPushConsumerImpl.isConsumeOrderly();
     }
 
     /**
@@ -96,7 +194,7 @@ public class RebalancePushImpl extends RebalanceImpl {
     }
 
     /**
-     * {@link ProcessQueue#hasTempMessage()}也就是{@link ProcessQueue#msgTreeMap}里有消息
+     * {@link ProcessQueue#hasTempMessage()}也就是{@link ProcessQueue}里有未取出的消息
      * 因为已经设置了{@link ProcessQueue#dropped = true},所以不会再消费msgTreeMap里的剩余消息
      * 但需要等待之前已消费消息的结果处理完,提交最后的消费进度等,最后才释放MessageQueue的分布式锁,延迟20S释放
      *
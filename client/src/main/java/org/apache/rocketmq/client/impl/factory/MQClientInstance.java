@@ -35,8 +35,11 @@ import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.constant.PermName;
 import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.ResponseCode;
 import org.apache.rocketmq.common.protocol.body.ConsumeMessageDirectlyResult;
 import org.apache.rocketmq.common.protocol.body.ConsumerRunningInfo;
+import org.apache.rocketmq.common.protocol.body.TopicRouteBatchRequestBody;
+import org.apache.rocketmq.common.protocol.body.TopicRouteBatchResponseBody;
 import org.apache.rocketmq.common.protocol.heartbeat.*;
 import org.apache.rocketmq.common.protocol.route.BrokerData;
 import org.apache.rocketmq.common.protocol.route.QueueData;
@@ -44,6 +47,7 @@ import org.apache.rocketmq.common.protocol.route.TopicRouteData;
 import org.apache.rocketmq.remoting.RPCHook;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.exception.RemotingException;
+import org.apache.rocketmq.remoting.exception.RemotingTimeoutException;
 import org.apache.rocketmq.remoting.netty.NettyClientConfig;
 import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.slf4j.Logger;
@@ -63,6 +67,14 @@ import java.util.concurrent.locks.ReentrantLock;
 public class MQClientInstance {
 
     private final static long LOCK_TIMEOUT_MILLIS = 3000;
+    /**
+     * 批量获取路由时每个请求包含的Topic数
+     */
+    private final static int ROUTE_BATCH_SIZE = 256;
+    /**
+     * Namesrv不支持批量获取路由后, 间隔多久再次尝试
+     */
+    private final static long ROUTE_BATCH_RETRY_INTERVAL_MILLIS = 1000 * 60 * 10;
     private final Logger log = ClientLogger.getLog();
     private final ClientConfig clientConfig;
     private final int instanceIndex;
@@ -87,6 +99,23 @@ public class MQClientInstance {
      * Topic 和 Topic路由数据 Map
      */
     private final ConcurrentHashMap<String/* Topic */, TopicRouteData> topicRouteTable = new ConcurrentHashMap<>();
+    /**
+     * Topic 与 {@link #topicRouteTable} 中路由对应的Namesrv路由版本, 单个Topic更新路由时移除
+     */
+    private final ConcurrentHashMap<String/* Topic */, Long> topicRouteVersionTable = new ConcurrentHashMap<>();
+    /**
+     * 最近一次发现Namesrv不支持批量获取路由的时间
+     */
+    private volatile long routeBatchUnsupportedTimestamp = 0;
+    /**
+     * Broker地址 与 最近一次完整心跳成功时的心跳数据指纹
+     */
+    private final ConcurrentHashMap<String/* Broker Addr */, Long> heartbeatFingerprintTable = new ConcurrentHashMap<>();
+    /**
+     * 不支持精简心跳的Broker地址
+     */
+    private final Set<String/* Broker Addr */> heartbeatLiteUnsupportedBrokers =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private final Lock lockNamesrv = new ReentrantLock();
     private final Lock lockHeartbeat = new ReentrantLock();
     /**
@@ -392,12 +421,76 @@ public class MQClientInstance {
                 }
             }
         }
-        // 逐个topic更新
+        // 批量更新, 失败时逐个topic更新
+        if (this.clientConfig.isPollNameServerBatchEnable()
+            && System.currentTimeMillis() - this.routeBatchUnsupportedTimestamp > ROUTE_BATCH_RETRY_INTERVAL_MILLIS
+            && this.updateTopicRouteInfoFromNameServerBatch(topicList)) {
+            return;
+        }
         for (String topic : topicList) {
             this.updateTopicRouteInfoFromNameServer(topic);
         }
     }
 
+    /**
+     * 批量更新 Topic路由信息, 请求中携带已知的路由版本, Namesrv只返回版本变化的路由
+     *
+     * @param topics Topic集合
+     * @return 是否全部请求成功
+     */
+    private boolean updateTopicRouteInfoFromNameServerBatch(final Set<String> topics) {
+        final List<String> topicList = new ArrayList<String>(topics);
+        for (int from = 0; from < topicList.size(); from += ROUTE_BATCH_SIZE) {
+            final HashMap<String, Long> topicVersionTable = new HashMap<String, Long>();
+            for (String topic : topicList.subList(from, Math.min(from + ROUTE_BATCH_SIZE, topicList.size()))) {
+                Long version = this.topicRouteVersionTable.get(topic);
+                if (null == version || !this.topicRouteTable.containsKey(topic) || this.isNeedUpdateTopicRouteInfo(topic)) {
+                    version = TopicRouteBatchRequestBody.UNKNOWN_VERSION;
+                }
+                topicVersionTable.put(topic, version);
+            }
+
+            TopicRouteBatchResponseBody responseBody;
+            try {
+                responseBody = this.mQClientAPIImpl.getTopicRouteInfoBatchFromNameServer(topicVersionTable, 1000 * 3);
+            } catch (Exception e) {
+                // 旧版本Namesrv对未知请求不返回响应, 表现为超时
+                if (e instanceof RemotingTimeoutException
+                    || e instanceof MQClientException && ((MQClientException) e).getResponseCode() == ResponseCode.REQUEST_CODE_NOT_SUPPORTED) {
+                    this.routeBatchUnsupportedTimestamp = System.currentTimeMillis();
+                }
+                log.warn("updateTopicRouteInfoFromNameServerBatch Exception, fallback to update one by one", e);
+                return false;
+            }
+
+            try {
+                if (this.lockNamesrv.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    try {
+                        for (Entry<String, TopicRouteData> entry : responseBody.getTopicRouteTable().entrySet()) {
+                            this.updateTopicRouteData(entry.getKey(), entry.getValue());
+                            Long version = responseBody.getTopicVersionTable().get(entry.getKey());
+                            if (version != null) {
+                                this.topicRouteVersionTable.put(entry.getKey(), version);
+                            }
+                        }
+                    } finally {
+                        this.lockNamesrv.unlock();
+                    }
+                } else {
+                    log.warn("updateTopicRouteInfoFromNameServerBatch tryLock timeout {}ms", LOCK_TIMEOUT_MILLIS);
+                }
+            } catch (InterruptedException e) {
+                log.warn("updateTopicRouteInfoFromNameServerBatch Exception", e);
+            }
+
+            if (!responseBody.getNotExistTopics().isEmpty()) {
+                log.warn("updateTopicRouteInfoFromNameServerBatch, topic route not exist in name server, {}",
+                    responseBody.getNotExistTopics());
+            }
+        }
+        return true;
+    }
+
     /**
      * 将被关闭连接的Broker从{@link #brokerAddrTable}移除
      * 也就是清空${@link #brokerAddrTable} 里不在 ${@link #topicRouteTable} 的元素
@@ -540,6 +633,10 @@ public class MQClientInstance {
             return;
         }
 
+        final boolean fingerprintEnable = this.clientConfig.isHeartbeatFingerprintEnable();
+        final long fingerprint = fingerprintEnable ? heartbeatData.computeFingerprint() : 0;
+        HeartbeatLiteData heartbeatLiteData = null;
+
         long times = this.storeTimesTotal.getAndIncrement();
         Iterator<Entry<String, HashMap<Long, String>>> it = this.brokerAddrTable.entrySet().iterator();
         while (it.hasNext()) {
@@ -558,7 +655,21 @@ public class MQClientInstance {
                         }
 
                         try {
-                            this.mQClientAPIImpl.sendHearbeat(addr, heartbeatData, 3000);
+                            boolean lite = false;
+                            if (fingerprintEnable && Long.valueOf(fingerprint).equals(this.heartbeatFingerprintTable.get(addr))
+                                && !this.heartbeatLiteUnsupportedBrokers.contains(addr)) {
+                                if (null == heartbeatLiteData) {
+                                    heartbeatLiteData = this.prepareHeartbeatLiteData(heartbeatData, fingerprint);
+                                }
+                                lite = this.sendHeartbeatLite(addr, heartbeatLiteData);
+                            }
+                            if (!lite) {
+                                this.heartbeatFingerprintTable.remove(addr);
+                                this.mQClientAPIImpl.sendHearbeat(addr, heartbeatData, fingerprintEnable ? fingerprint : null, 3000);
+                                if (fingerprintEnable) {
+                                    this.heartbeatFingerprintTable.put(addr, fingerprint);
+                                }
+                            }
                             if (times % 20 == 0) {
                                 log.info("send heart beat to broker[{} {} {}] success", brokerName, id, addr);
                                 log.info(heartbeatData.toString());
@@ -637,46 +748,9 @@ public class MQClientInstance {
                         topicRouteData = this.mQClientAPIImpl.getTopicRouteInfoFromNameServer(topic, 1000 * 3);
                     }
                     if (topicRouteData != null) {
-                        TopicRouteData old = this.topicRouteTable.get(topic);
-                        boolean changed = topicRouteDataIsChange(old, topicRouteData);
-                        if (!changed) {
-                            changed = this.isNeedUpdateTopicRouteInfo(topic);
-                        } else {
-                            log.info("the topic[{}] route info changed, old[{}] ,new[{}]", topic, old, topicRouteData);
-                        }
-
-                        if (changed) {
-                            // 克隆对象的原因：topicRouteData会被设置到下面的publishInfo/subscribeInfo
-                            TopicRouteData cloneTopicRouteData = topicRouteData.cloneTopicRouteData();
-
-                            // 更新 Broker 地址相关信息,当某个Broker心跳超时后,会被从BrokerData的brokerAddrs中移除(由Namesrv定时操作)
-                            // Namesrv存在Slave的BrokerData,所以brokerAddrTable含有Slave的brokerAddr
-                            for (BrokerData bd : topicRouteData.getBrokerDatas()) {
-                                this.brokerAddrTable.put(bd.getBrokerName(), bd.getBrokerAddrs());
-                            }
-
-                            // 更新生产者里的TopicPublishInfo,Slave在注册Broker时不会生成QueueData,但会生成BrokerData
-                            TopicPublishInfo publishInfo = topicRouteData2TopicPublishInfo(topic, topicRouteData);
-                            publishInfo.setHaveTopicRouterInfo(true);
-                            for (Entry<String, MQProducerInner> entry : this.producerTable.entrySet()) {
-                                MQProducerInner impl = entry.getValue();
-                                if (impl != null) {
-                                    impl.updateTopicPublishInfo(topic, publishInfo);
-                                }
-                            }
-
-                            // 更新订阅者(消费者)里的队列信息,Slave在注册Broker时不会生成QueueData,但会生成BrokerData
-                            Set<MessageQueue> subscribeInfo = topicRouteData2TopicSubscribeInfo(topic, topicRouteData);
-                            for (Entry<String, MQConsumerInner> entry : this.consumerTable.entrySet()) {
-                                MQConsumerInner impl = entry.getValue();
-                                if (impl != null) {
-                                    impl.updateTopicSubscribeInfo(topic, subscribeInfo);
-                                }
-                            }
-                            log.info("topicRouteTable.put TopicRouteData[{}]", cloneTopicRouteData);
-                            this.topicRouteTable.put(topic, cloneTopicRouteData);
-                            return true;
-                        }
+                        // 版本未知, 下次批量更新时获取完整路由
+                        this.topicRouteVersionTable.remove(topic);
+                        return this.updateTopicRouteData(topic, topicRouteData);
                     } else {
                         log.warn("updateTopicRouteInfoFromNameServer, getTopicRouteInfoFromNameServer return null, Topic: {}", topic);
                     }
@@ -697,6 +771,57 @@ public class MQClientInstance {
         return false;
     }
 
+    /**
+     * 路由有变化时更新Broker地址、生产者发布信息与消费者订阅信息, 需持有 {@link #lockNamesrv}
+     *
+     * @param topic          Topic
+     * @param topicRouteData 路由信息
+     * @return 是否更新
+     */
+    private boolean updateTopicRouteData(final String topic, final TopicRouteData topicRouteData) {
+        TopicRouteData old = this.topicRouteTable.get(topic);
+        boolean changed = topicRouteDataIsChange(old, topicRouteData);
+        if (!changed) {
+            changed = this.isNeedUpdateTopicRouteInfo(topic);
+        } else {
+            log.info("the topic[{}] route info changed, old[{}] ,new[{}]", topic, old, topicRouteData);
+        }
+
+        if (changed) {
+            // 克隆对象的原因：topicRouteData会被设置到下面的publishInfo/subscribeInfo
+            TopicRouteData cloneTopicRouteData = topicRouteData.cloneTopicRouteData();
+
+            // 更新 Broker 地址相关信息,当某个Broker心跳超时后,会被从BrokerData的brokerAddrs中移除(由Namesrv定时操作)
+            // Namesrv存在Slave的BrokerData,所以brokerAddrTable含有Slave的brokerAddr
+            for (BrokerData bd : topicRouteData.getBrokerDatas()) {
+                this.brokerAddrTable.put(bd.getBrokerName(), bd.getBrokerAddrs());
+            }
+
+            // 更新生产者里的TopicPublishInfo,Slave在注册Broker时不会生成QueueData,但会生成BrokerData
+            TopicPublishInfo publishInfo = topicRouteData2TopicPublishInfo(topic, topicRouteData);
+            publishInfo.setHaveTopicRouterInfo(true);
+            for (Entry<String, MQProducerInner> entry : this.producerTable.entrySet()) {
+                MQProducerInner impl = entry.getValue();
+                if (impl != null) {
+                    impl.updateTopicPublishInfo(topic, publishInfo);
+                }
+            }
+
+            // 更新订阅者(消费者)里的队列信息,Slave在注册Broker时不会生成QueueData,但会生成BrokerData
+            Set<MessageQueue> subscribeInfo = topicRouteData2TopicSubscribeInfo(topic, topicRouteData);
+            for (Entry<String, MQConsumerInner> entry : this.consumerTable.entrySet()) {
+                MQConsumerInner impl = entry.getValue();
+                if (impl != null) {
+                    impl.updateTopicSubscribeInfo(topic, subscribeInfo);
+                }
+            }
+            log.info("topicRouteTable.put TopicRouteData[{}]", cloneTopicRouteData);
+            this.topicRouteTable.put(topic, cloneTopicRouteData);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * 封装Client要发送的心跳数据
      * 生产者仅需要groupName
@@ -740,6 +865,38 @@ public class MQClientInstance {
         return heartbeatData;
     }
 
+    private HeartbeatLiteData prepareHeartbeatLiteData(final HeartbeatData heartbeatData, final long fingerprint) {
+        HeartbeatLiteData heartbeatLiteData = new HeartbeatLiteData();
+        heartbeatLiteData.setClientID(heartbeatData.getClientID());
+        heartbeatLiteData.setFingerprint(fingerprint);
+        for (ProducerData producerData : heartbeatData.getProducerDataSet()) {
+            heartbeatLiteData.getProducerGroups().add(producerData.getGroupName());
+        }
+        for (ConsumerData consumerData : heartbeatData.getConsumerDataSet()) {
+            heartbeatLiteData.getConsumerGroups().add(consumerData.getGroupName());
+        }
+        return heartbeatLiteData;
+    }
+
+    /**
+     * 发送精简心跳
+     *
+     * @return 是否被Broker接受, 否则需发送完整心跳
+     */
+    private boolean sendHeartbeatLite(final String addr, final HeartbeatLiteData heartbeatLiteData)
+        throws RemotingException, InterruptedException, MQBrokerException {
+        try {
+            return this.mQClientAPIImpl.sendHeartbeatLite(addr, heartbeatLiteData, 3000);
+        } catch (MQBrokerException e) {
+            if (ResponseCode.REQUEST_CODE_NOT_SUPPORTED == e.getResponseCode()) {
+                log.info("broker[{}] not support lite heartbeat, send full heartbeat instead", addr);
+                this.heartbeatLiteUnsupportedBrokers.add(addr);
+                return false;
+            }
+            throw e;
+        }
+    }
+
     private boolean isBrokerInNameServer(final String brokerAddr) {
         Iterator<Entry<String, TopicRouteData>> it = this.topicRouteTable.entrySet().iterator();
         while (it.hasNext()) {
@@ -1228,6 +1385,9 @@ public class MQClientInstance {
         } else if (impl != null && impl instanceof DefaultMQPullConsumerImpl) {
             DefaultMQPullConsumerImpl consumer = (DefaultMQPullConsumerImpl)impl;
             return consumer.getOffsetStore().cloneOffsetTable(topic);
+        } else if (impl != null && impl instanceof DefaultLitePullConsumerImpl) {
+            DefaultLitePullConsumerImpl consumer = (DefaultLitePullConsumerImpl)impl;
+            return consumer.getOffsetStore().cloneOffsetTable(topic);
         } else {
             return Collections.EMPTY_MAP;
         }
@@ -33,10 +33,12 @@ import org.apache.rocketmq.client.log.ClientLogger;
 import org.apache.rocketmq.client.producer.*;
 import org.apache.rocketmq.common.MixAll;
 import org.apache.rocketmq.common.ServiceState;
-import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.common.compression.CompressionCodecFactory;
+import org.apache.rocketmq.common.compression.CompressionType;
 import org.apache.rocketmq.common.help.FAQUrl;
 import org.apache.rocketmq.common.message.*;
 import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.common.protocol.body.SendMessageBatchRequestBody;
 import org.apache.rocketmq.common.protocol.header.CheckTransactionStateRequestHeader;
 import org.apache.rocketmq.common.protocol.header.EndTransactionRequestHeader;
 import org.apache.rocketmq.common.protocol.header.SendMessageRequestHeader;
@@ -46,6 +48,7 @@ import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.exception.RemotingConnectException;
 import org.apache.rocketmq.remoting.exception.RemotingException;
 import org.apache.rocketmq.remoting.exception.RemotingTimeoutException;
+import org.apache.rocketmq.remoting.exception.RemotingTooMuchRequestException;
 import org.slf4j.Logger;
 
 import java.io.IOException;
@@ -80,6 +83,14 @@ public class DefaultMQProducerImpl implements MQProducerInner {
      * MQBroker可用性策略
      */
     private MQFaultStrategy mqFaultStrategy = new MQFaultStrategy();
+    /**
+     * 异步发送消息累积器，开启 autoBatchEnable 时创建
+     */
+    private ProduceAccumulator produceAccumulator;
+    /**
+     * 不支持批量发送的Broker(旧版本)，发往这些Broker的消息逐条发送
+     */
+    private final Set<String> batchUnsupportedBrokers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     public DefaultMQProducerImpl(final DefaultMQProducer defaultMQProducer) {
         this(defaultMQProducer, null);
@@ -153,6 +164,11 @@ public class DefaultMQProducerImpl implements MQProducerInner {
                     mQClientFactory.start();
                 }
 
+                if (this.defaultMQProducer.isAutoBatchEnable()) {
+                    this.produceAccumulator = new ProduceAccumulator(this, this.defaultMQProducer);
+                    this.produceAccumulator.start();
+                }
+
                 log.info("the producer [{}] start OK. sendMessageWithVIPChannel={}", this.defaultMQProducer.getProducerGroup(),
                 this.defaultMQProducer.isSendMessageWithVIPChannel());
 
@@ -203,6 +219,9 @@ public class DefaultMQProducerImpl implements MQProducerInner {
             case CREATE_JUST:
                 break;
             case RUNNING:
+                if (this.produceAccumulator != null) {
+                    this.produceAccumulator.shutdown();
+                }
                 this.mQClientFactory.unregisterProducer(this.defaultMQProducer.getProducerGroup());
                 if (shutdownFactory) {
                     this.mQClientFactory.shutdown();
@@ -464,6 +483,9 @@ public class DefaultMQProducerImpl implements MQProducerInner {
      */
     public void send(Message msg, SendCallback sendCallback, long timeout)
         throws MQClientException, RemotingException, InterruptedException {
+        if (this.appendToAccumulator(msg, sendCallback, timeout)) {
+            return;
+        }
         try {
             this.sendDefaultImpl(msg, CommunicationMode.ASYNC, sendCallback, timeout);
         } catch (MQBrokerException e) {
@@ -471,6 +493,143 @@ public class DefaultMQProducerImpl implements MQProducerInner {
         }
     }
 
+    /**
+     * 将异步发送的消息加入累积器
+     * 事务消息、重试消息、注册了Hook、或选中的Broker不支持批量发送时不累积，返回false由调用方逐条发送
+     *
+     * @param msg          消息
+     * @param sendCallback 发送回调
+     * @param timeout      发送消息请求超时时间
+     * @return 是否已加入累积器
+     * @throws MQClientException 当Client发生异常
+     */
+    private boolean appendToAccumulator(final Message msg, final SendCallback sendCallback, final long timeout)
+        throws MQClientException {
+        if (null == this.produceAccumulator || this.hasSendMessageHook() || this.hasCheckForbiddenHook()) {
+            return false;
+        }
+        if (Boolean.parseBoolean(msg.getProperty(MessageConst.PROPERTY_TRANSACTION_PREPARED))
+            || msg.getTopic().startsWith(MixAll.RETRY_GROUP_TOPIC_PREFIX)) {
+            return false;
+        }
+
+        this.makeSureStateOK();
+        Validators.checkMessage(msg, this.defaultMQProducer);
+        MessageQueue mq = this.produceAccumulator.getStickyQueue(msg.getTopic());
+        if (null == mq) {
+            TopicPublishInfo topicPublishInfo = this.tryToFindTopicPublishInfo(msg.getTopic());
+            if (null == topicPublishInfo || !topicPublishInfo.ok()) {
+                return false;
+            }
+            mq = this.selectOneMessageQueue(topicPublishInfo, null);
+            if (null == mq) {
+                return false;
+            }
+            mq = this.produceAccumulator.putStickyQueue(msg.getTopic(), mq);
+        }
+        if (this.batchUnsupportedBrokers.contains(mq.getBrokerName())) {
+            return false;
+        }
+
+        MessageClientIDSetter.setUniqID(msg);
+        SendMessageBatchRequestBody.MessageEntry entry = new SendMessageBatchRequestBody.MessageEntry();
+        byte[] prevBody = msg.getBody();
+        try {
+            int sysFlag = this.tryToCompressMessage(msg, 0);
+            entry.setFlag(msg.getFlag());
+            entry.setSysFlag(sysFlag);
+            entry.setBornTimestamp(System.currentTimeMillis());
+            entry.setBody(msg.getBody());
+            entry.setProperties(MessageDecoder.messageProperties2String(msg.getProperties()));
+        } finally {
+            msg.setBody(prevBody);
+        }
+        this.produceAccumulator.append(mq, msg, entry, sendCallback, timeout);
+        return true;
+    }
+
+    /**
+     * 发送累积器中同一消息队列的一批消息，异常通过每条消息的 SendCallback 回调
+     *
+     * @param mq        消息队列
+     * @param msgs      消息
+     * @param entries   消息在批量请求中的编码
+     * @param callbacks 每条消息的发送回调
+     * @param timeout   发送消息请求超时时间
+     */
+    void sendBatchKernelImpl(final MessageQueue mq,
+                             final List<Message> msgs,
+                             final List<SendMessageBatchRequestBody.MessageEntry> entries,
+                             final List<SendCallback> callbacks,
+                             final long timeout) {
+        String brokerAddr = this.mQClientFactory.findBrokerAddressInPublish(mq.getBrokerName());
+        if (null == brokerAddr) {
+            tryToFindTopicPublishInfo(mq.getTopic());
+            brokerAddr = this.mQClientFactory.findBrokerAddressInPublish(mq.getBrokerName());
+        }
+        if (null == brokerAddr) {
+            this.onSendBatchException(mq, msgs, callbacks, timeout,
+                new MQClientException("The broker[" + mq.getBrokerName() + "] not exist", null));
+            return;
+        }
+        brokerAddr = MixAll.brokerVIPChannel(this.defaultMQProducer.isSendMessageWithVIPChannel(), brokerAddr);
+
+        SendMessageRequestHeader requestHeader = new SendMessageRequestHeader();
+        requestHeader.setProducerGroup(this.defaultMQProducer.getProducerGroup());
+        requestHeader.setTopic(mq.getTopic());
+        requestHeader.setDefaultTopic(this.defaultMQProducer.getCreateTopicKey());
+        requestHeader.setDefaultTopicQueueNums(this.defaultMQProducer.getDefaultTopicQueueNums());
+        requestHeader.setQueueId(mq.getQueueId());
+        requestHeader.setSysFlag(0);
+        requestHeader.setBornTimestamp(System.currentTimeMillis());
+        requestHeader.setFlag(0);
+        requestHeader.setReconsumeTimes(0);
+        requestHeader.setUnitMode(this.isUnitMode());
+
+        try {
+            this.mQClientFactory.getMQClientAPIImpl().sendMessageBatch(brokerAddr, mq.getBrokerName(), msgs, callbacks, requestHeader,
+                new SendMessageBatchRequestBody(entries), timeout, new SendMessageBatchCallback() {
+                    @Override
+                    public void onException(Throwable e) {
+                        DefaultMQProducerImpl.this.onSendBatchException(mq, msgs, callbacks, timeout, e);
+                    }
+                }, this);
+        } catch (Exception e) {
+            this.updateFaultItem(mq.getBrokerName(), 3000, true);
+            this.onSendBatchException(mq, msgs, callbacks, timeout, e);
+        }
+    }
+
+    /**
+     * 批量请求整体失败：Broker不支持批量发送或网络异常时逐条重新发送，其余异常直接回调失败
+     */
+    private void onSendBatchException(final MessageQueue mq, final List<Message> msgs, final List<SendCallback> callbacks,
+        final long timeout, final Throwable e) {
+        boolean unsupported = e instanceof MQBrokerException
+            && ((MQBrokerException) e).getResponseCode() == ResponseCode.REQUEST_CODE_NOT_SUPPORTED;
+        if (unsupported && this.batchUnsupportedBrokers.add(mq.getBrokerName())) {
+            log.warn("broker[{}] does not support batch send, send messages one by one", mq.getBrokerName());
+        }
+        boolean resend = unsupported || (!(e instanceof MQBrokerException) && !(e instanceof RemotingTooMuchRequestException)
+            && !(e instanceof InterruptedException) && this.defaultMQProducer.getRetryTimesWhenSendAsyncFailed() > 0);
+
+        for (int i = 0; i < msgs.size(); i++) {
+            final SendCallback sendCallback = callbacks.get(i);
+            try {
+                if (resend) {
+                    this.sendDefaultImpl(msgs.get(i), CommunicationMode.ASYNC, sendCallback, timeout);
+                } else {
+                    sendCallback.onException(e);
+                }
+            } catch (Throwable ex) {
+                try {
+                    sendCallback.onException(ex);
+                } catch (Throwable ignored) {
+                }
+            }
+        }
+    }
+
     /**
      * 根据 TopicPublishInfo 和 brokerName 获取消息队列
      *
@@ -493,6 +652,17 @@ public class DefaultMQProducerImpl implements MQProducerInner {
         this.mqFaultStrategy.updateFaultItem(brokerName, currentLatency, isolation);
     }
 
+    /**
+     * 更新 Broker 在发送响应中携带的负载提示
+     *
+     * @param brokerName    brokerName
+     * @param sendQueueLoad 发送线程池队列使用率(百分比)
+     * @param pageCacheBusy PageCache是否繁忙
+     */
+    public void updateLoadHint(final String brokerName, final Integer sendQueueLoad, final Boolean pageCacheBusy) {
+        this.mqFaultStrategy.updateLoadHint(brokerName, sendQueueLoad, pageCacheBusy);
+    }
+
     /**
      * 发送消息。
      * 1. 获取消息路由信息
@@ -716,10 +886,7 @@ public class DefaultMQProducerImpl implements MQProducerInner {
                 // 设置uniqID,填充入Properties
                 MessageClientIDSetter.setUniqID(msg);
                 // 消息压缩
-                int sysFlag = 0;
-                if (this.tryToCompressMessage(msg)) {
-                    sysFlag |= MessageSysFlag.COMPRESSED_FLAG;
-                }
+                int sysFlag = this.tryToCompressMessage(msg, 0);
                 // 事务
                 final String tranMsg = msg.getProperty(MessageConst.PROPERTY_TRANSACTION_PREPARED);
                 if (tranMsg != null && Boolean.parseBoolean(tranMsg)) {
@@ -855,15 +1022,19 @@ public class DefaultMQProducerImpl implements MQProducerInner {
         return mQClientFactory;
     }
 
-    private boolean tryToCompressMessage(final Message msg) {
+    /**
+     * @return 压缩后的系统标记, 未压缩时返回原值
+     */
+    private int tryToCompressMessage(final Message msg, final int sysFlag) {
         byte[] body = msg.getBody();
         if (body != null) {
             if (body.length >= this.defaultMQProducer.getCompressMsgBodyOverHowmuch()) {
                 try {
-                    byte[] data = UtilAll.compress(body, zipCompressLevel);
+                    final CompressionType compressionType = this.defaultMQProducer.getCompressionType();
+                    byte[] data = CompressionCodecFactory.getCodec(compressionType).compress(body, zipCompressLevel, msg.getTopic());
                     if (data != null) {
                         msg.setBody(data);
-                        return true;
+                        return MessageSysFlag.setCompressionType(sysFlag | MessageSysFlag.COMPRESSED_FLAG, compressionType.getType());
                     }
                 } catch (IOException e) {
                     log.error("tryToCompressMessage exception", e);
@@ -872,7 +1043,7 @@ public class DefaultMQProducerImpl implements MQProducerInner {
             }
         }
 
-        return false;
+        return sysFlag;
     }
 
     public boolean hasCheckForbiddenHook() {
@@ -1257,4 +1428,12 @@ public class DefaultMQProducerImpl implements MQProducerInner {
     public void setSendLatencyFaultEnable(final boolean sendLatencyFaultEnable) {
         this.mqFaultStrategy.setSendLatencyFaultEnable(sendLatencyFaultEnable);
     }
+
+    public boolean isSendLoadAwareEnable() {
+        return this.mqFaultStrategy.isSendLoadAwareEnable();
+    }
+
+    public void setSendLoadAwareEnable(final boolean sendLoadAwareEnable) {
+        this.mqFaultStrategy.setSendLoadAwareEnable(sendLoadAwareEnable);
+    }
 }
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.producer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.rocketmq.client.log.ClientLogger;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.common.ThreadFactoryImpl;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.body.SendMessageBatchRequestBody;
+import org.slf4j.Logger;
+
+/**
+ * 异步发送消息累积器
+ *
+ * 异步发送的消息按消息队列累积, 消息数达到 autoBatchMaxMessages、消息体达到 autoBatchMaxBytes
+ * 或最早一条消息等待超过 autoBatchLingerMillis 时, 作为一个批量请求发送, 每条消息的 SendCallback 各自回调。
+ * 同一Topic在一个批量发出前固定使用同一个消息队列(粘性队列), 避免消息分散到所有队列导致批量过小。
+ */
+public class ProduceAccumulator {
+    private final Logger log = ClientLogger.getLog();
+    private final DefaultMQProducerImpl producer;
+    private final DefaultMQProducer defaultMQProducer;
+    /**
+     * 消息队列的累积缓冲
+     */
+    private final ConcurrentHashMap<MessageQueue, QueueBuffer> bufferTable = new ConcurrentHashMap<MessageQueue, QueueBuffer>();
+    /**
+     * Topic 当前累积使用的消息队列
+     */
+    private final ConcurrentHashMap<String/* topic */, MessageQueue> stickyQueueTable = new ConcurrentHashMap<String, MessageQueue>();
+    private final ScheduledExecutorService scheduledExecutorService =
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactoryImpl("ProduceAccumulatorThread_"));
+
+    public ProduceAccumulator(final DefaultMQProducerImpl producer, final DefaultMQProducer defaultMQProducer) {
+        this.producer = producer;
+        this.defaultMQProducer = defaultMQProducer;
+    }
+
+    public void start() {
+        final long period = Math.max(1, this.defaultMQProducer.getAutoBatchLingerMillis() / 2);
+        this.scheduledExecutorService.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ProduceAccumulator.this.flushExpired();
+                } catch (Throwable e) {
+                    log.error("ProduceAccumulator flushExpired exception", e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止定时发送, 并发出所有已累积的消息
+     */
+    public void shutdown() {
+        this.scheduledExecutorService.shutdown();
+        try {
+            this.scheduledExecutorService.awaitTermination(1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ignored) {
+        }
+        for (Map.Entry<MessageQueue, QueueBuffer> entry : this.bufferTable.entrySet()) {
+            this.send(entry.getKey(), entry.getValue().drain());
+        }
+    }
+
+    /**
+     * @param topic Topic
+     * @return Topic 当前累积使用的消息队列, 没有时返回null
+     */
+    public MessageQueue getStickyQueue(final String topic) {
+        return this.stickyQueueTable.get(topic);
+    }
+
+    /**
+     * 设置 Topic 累积使用的消息队列, 已存在时返回已有的消息队列
+     */
+    public MessageQueue putStickyQueue(final String topic, final MessageQueue mq) {
+        final MessageQueue prev = this.stickyQueueTable.putIfAbsent(topic, mq);
+        return prev != null ? prev : mq;
+    }
+
+    /**
+     * 累积一条消息, 达到批量上限时在当前线程发出
+     *
+     * @param mq           消息队列
+     * @param msg          消息
+     * @param entry        消息在批量请求中的编码
+     * @param sendCallback 发送回调
+     * @param timeout      发送超时
+     */
+    public void append(final MessageQueue mq, final Message msg, final SendMessageBatchRequestBody.MessageEntry entry,
+        final SendCallback sendCallback, final long timeout) {
+        QueueBuffer buffer = this.bufferTable.get(mq);
+        if (null == buffer) {
+            buffer = new QueueBuffer();
+            QueueBuffer prev = this.bufferTable.putIfAbsent(mq, buffer);
+            if (prev != null) {
+                buffer = prev;
+            }
+        }
+
+        final Batch batch = buffer.add(msg, entry, sendCallback, timeout,
+            this.defaultMQProducer.getAutoBatchMaxMessages(), this.defaultMQProducer.getAutoBatchMaxBytes());
+        this.send(mq, batch);
+    }
+
+    void flushExpired() {
+        final long now = System.currentTimeMillis();
+        final long linger = this.defaultMQProducer.getAutoBatchLingerMillis();
+        for (Map.Entry<MessageQueue, QueueBuffer> entry : this.bufferTable.entrySet()) {
+            this.send(entry.getKey(), entry.getValue().drainIfExpired(now, linger));
+        }
+    }
+
+    private void send(final MessageQueue mq, final Batch batch) {
+        if (null == batch) {
+            return;
+        }
+        // 批量发出后, 下一条消息重新选择消息队列
+        this.stickyQueueTable.remove(mq.getTopic(), mq);
+        this.producer.sendBatchKernelImpl(mq, batch.msgs, batch.entries, batch.callbacks, batch.timeout);
+    }
+
+    /**
+     * 单个消息队列的累积缓冲
+     */
+    static class QueueBuffer {
+        private Batch batch;
+
+        /**
+         * @return 达到批量上限时返回取出的批量, 否则返回null
+         */
+        synchronized Batch add(final Message msg, final SendMessageBatchRequestBody.MessageEntry entry,
+            final SendCallback sendCallback, final long timeout, final int maxMessages, final int maxBytes) {
+            if (null == this.batch) {
+                this.batch = new Batch(System.currentTimeMillis(), timeout);
+            }
+            this.batch.msgs.add(msg);
+            this.batch.entries.add(entry);
+            this.batch.callbacks.add(sendCallback);
+            this.batch.bytes += entry.getBody().length;
+            this.batch.timeout = Math.min(this.batch.timeout, timeout);
+
+            if (this.batch.msgs.size() >= maxMessages || this.batch.bytes >= maxBytes) {
+                return this.drain();
+            }
+            return null;
+        }
+
+        synchronized Batch drainIfExpired(final long now, final long linger) {
+            if (this.batch != null && now - this.batch.firstAppendTimestamp >= linger) {
+                return this.drain();
+            }
+            return null;
+        }
+
+        synchronized Batch drain() {
+            final Batch result = this.batch;
+            this.batch = null;
+            return result;
+        }
+    }
+
+    /**
+     * 一次批量请求的消息
+     */
+    static class Batch {
+        private final List<Message> msgs = new ArrayList<Message>();
+        private final List<SendMessageBatchRequestBody.MessageEntry> entries = new ArrayList<SendMessageBatchRequestBody.MessageEntry>();
+        private final List<SendCallback> callbacks = new ArrayList<SendCallback>();
+        private final long firstAppendTimestamp;
+        private long timeout;
+        private int bytes;
+
+        Batch(final long firstAppendTimestamp, final long timeout) {
+            this.firstAppendTimestamp = firstAppendTimestamp;
+            this.timeout = timeout;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.latency;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Broker负载跟踪
+ *
+ * 按Broker维护发送耗时的指数加权移动平均(EWMA)，并记录Broker在发送响应中携带的负载提示。
+ * 负载提示只在 {@link #HINT_EXPIRE_MILLS} 内有效，过期后Broker会重新按耗时参与选择，
+ * 避免一次繁忙后长期得不到流量。
+ */
+public class BrokerLoadTracker {
+    /**
+     * EWMA平滑系数，越大越偏向最近一次耗时
+     */
+    static final double EWMA_ALPHA = 0.3;
+    /**
+     * 负载提示有效时长
+     */
+    static final long HINT_EXPIRE_MILLS = 3000;
+    /**
+     * PageCache繁忙时的耗时惩罚
+     */
+    static final long PAGE_CACHE_BUSY_PENALTY = 1000;
+
+    /**
+     * key：brokerName
+     */
+    private final ConcurrentHashMap<String, LoadItem> loadItemTable = new ConcurrentHashMap<>(16);
+
+    /**
+     * 更新发送耗时
+     *
+     * @param brokerName brokerName
+     * @param latency    发送耗时
+     */
+    public void updateLatency(final String brokerName, final long latency) {
+        this.getOrCreate(brokerName).updateLatency(latency);
+    }
+
+    /**
+     * 更新Broker负载提示
+     *
+     * @param brokerName    brokerName
+     * @param sendQueueLoad 发送线程池队列使用率(百分比)
+     * @param pageCacheBusy PageCache是否繁忙
+     */
+    public void updateLoadHint(final String brokerName, final Integer sendQueueLoad, final Boolean pageCacheBusy) {
+        if (sendQueueLoad == null && pageCacheBusy == null) {
+            return;
+        }
+        this.getOrCreate(brokerName).updateLoadHint(
+            sendQueueLoad == null ? 0 : sendQueueLoad,
+            pageCacheBusy != null && pageCacheBusy);
+    }
+
+    /**
+     * 计算Broker的负载得分，越小越好。未知的Broker得分为0，优先被尝试
+     *
+     * @param brokerName brokerName
+     * @return 得分
+     */
+    public long score(final String brokerName) {
+        final LoadItem loadItem = this.loadItemTable.get(brokerName);
+        if (loadItem == null) {
+            return 0;
+        }
+        return loadItem.score(System.currentTimeMillis());
+    }
+
+    public void remove(final String brokerName) {
+        this.loadItemTable.remove(brokerName);
+    }
+
+    private LoadItem getOrCreate(final String brokerName) {
+        LoadItem loadItem = this.loadItemTable.get(brokerName);
+        if (loadItem == null) {
+            loadItem = new LoadItem();
+            LoadItem old = this.loadItemTable.putIfAbsent(brokerName, loadItem);
+            if (old != null) {
+                loadItem = old;
+            }
+        }
+        return loadItem;
+    }
+
+    @Override
+    public String toString() {
+        return "BrokerLoadTracker{" +
+            "loadItemTable=" + loadItemTable +
+            '}';
+    }
+
+    /**
+     * 单个Broker的负载信息
+     */
+    static class LoadItem {
+        /**
+         * 发送耗时EWMA，小于0表示尚无样本
+         */
+        private double ewmaLatency = -1;
+        /**
+         * 发送线程池队列使用率(百分比)
+         */
+        private int sendQueueLoad;
+        private boolean pageCacheBusy;
+        private long hintTimestamp;
+
+        synchronized void updateLatency(final long latency) {
+            if (this.ewmaLatency < 0) {
+                this.ewmaLatency = latency;
+            } else {
+                this.ewmaLatency += EWMA_ALPHA * (latency - this.ewmaLatency);
+            }
+        }
+
+        synchronized void updateLoadHint(final int sendQueueLoad, final boolean pageCacheBusy) {
+            this.sendQueueLoad = Math.max(0, Math.min(100, sendQueueLoad));
+            this.pageCacheBusy = pageCacheBusy;
+            this.hintTimestamp = System.currentTimeMillis();
+        }
+
+        /**
+         * 得分 = 耗时EWMA × (1 + 队列使用率 / 25) + PageCache繁忙惩罚，队列半满时得分约为空闲时的3倍
+         */
+        synchronized long score(final long now) {
+            // 至少按1ms计算，使负载提示对耗时极低的Broker同样生效
+            double score = Math.max(1, this.ewmaLatency);
+            if (now - this.hintTimestamp < HINT_EXPIRE_MILLS) {
+                score *= 1 + this.sendQueueLoad / 25.0;
+                if (this.pageCacheBusy) {
+                    score += PAGE_CACHE_BUSY_PENALTY;
+                }
+            }
+            return (long) score;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "LoadItem{" +
+                "ewmaLatency=" + ewmaLatency +
+                ", sendQueueLoad=" + sendQueueLoad +
+                ", pageCacheBusy=" + pageCacheBusy +
+                ", hintTimestamp=" + hintTimestamp +
+                '}';
+        }
+    }
+}
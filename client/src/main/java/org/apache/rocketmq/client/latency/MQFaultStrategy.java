@@ -22,6 +22,9 @@ import org.apache.rocketmq.client.log.ClientLogger;
 import org.apache.rocketmq.common.message.MessageQueue;
 import org.slf4j.Logger;
 
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
 /**
  * MQ故障策略
  */
@@ -38,6 +41,14 @@ public class MQFaultStrategy {
      * 发送消息延迟容错开关
      */
     private boolean sendLatencyFaultEnable = false;
+    /**
+     * Broker负载跟踪，维护每个Broker的发送耗时EWMA与负载提示
+     */
+    private final BrokerLoadTracker brokerLoadTracker = new BrokerLoadTracker();
+    /**
+     * 按负载选择队列开关：随机取两个队列，选择负载得分较低的一个(power-of-two-choices)
+     */
+    private boolean sendLoadAwareEnable = false;
     /**
      * 延迟级别数组
      */
@@ -56,6 +67,12 @@ public class MQFaultStrategy {
      * @return 消息队列
      */
     public MessageQueue selectOneMessageQueue(final TopicPublishInfo tpInfo, final String lastBrokerName) {
+        if (this.sendLoadAwareEnable) {
+            final MessageQueue mq = this.selectByLoad(tpInfo, lastBrokerName);
+            if (mq != null) {
+                return mq;
+            }
+        }
         if (this.sendLatencyFaultEnable) {  //如果开启了延迟容错机制，默认未开启
             try {
                 //循环所有MessageQueue
@@ -97,6 +114,56 @@ public class MQFaultStrategy {
         return tpInfo.selectOneMessageQueue(lastBrokerName);
     }
 
+    /**
+     * 按负载选择消息队列：随机取两个不同的队列，选择所在Broker负载得分较低的一个
+     * 重试时(lastBrokerName != null)避开上次失败的Broker，开启延迟容错时避开不可用的Broker
+     *
+     * @param tpInfo         Topic发布信息
+     * @param lastBrokerName 上次发送的brokerName
+     * @return 消息队列，两个候选都需要避开时返回null，由调用方按原策略选择
+     */
+    private MessageQueue selectByLoad(final TopicPublishInfo tpInfo, final String lastBrokerName) {
+        final List<MessageQueue> messageQueueList = tpInfo.getMessageQueueList();
+        final int size = messageQueueList.size();
+        if (size == 0) {
+            return null;
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int first = random.nextInt(size);
+        final MessageQueue a = messageQueueList.get(first);
+        if (size == 1) {
+            return a;
+        }
+        final MessageQueue b = messageQueueList.get((first + 1 + random.nextInt(size - 1)) % size);
+
+        final boolean aExcluded = this.isExcluded(a.getBrokerName(), lastBrokerName);
+        final boolean bExcluded = this.isExcluded(b.getBrokerName(), lastBrokerName);
+        if (aExcluded || bExcluded) {
+            return aExcluded ? (bExcluded ? null : b) : a;
+        }
+        return this.brokerLoadTracker.score(b.getBrokerName()) < this.brokerLoadTracker.score(a.getBrokerName()) ? b : a;
+    }
+
+    private boolean isExcluded(final String brokerName, final String lastBrokerName) {
+        if (brokerName.equals(lastBrokerName)) {
+            return true;
+        }
+        return this.sendLatencyFaultEnable && !this.latencyFaultTolerance.isAvailable(brokerName);
+    }
+
+    /**
+     * 更新Broker在发送响应中携带的负载提示
+     *
+     * @param brokerName    brokerName
+     * @param sendQueueLoad 发送线程池队列使用率(百分比)
+     * @param pageCacheBusy PageCache是否繁忙
+     */
+    public void updateLoadHint(final String brokerName, final Integer sendQueueLoad, final Boolean pageCacheBusy) {
+        if (this.sendLoadAwareEnable) {
+            this.brokerLoadTracker.updateLoadHint(brokerName, sendQueueLoad, pageCacheBusy);
+        }
+    }
+
     /**
      * 更新延迟容错信息
      *
@@ -105,6 +172,9 @@ public class MQFaultStrategy {
      * @param isolation      是否隔离。当开启隔离时，默认延迟为30000,不可用时间为600秒。目前主要用于发送消息异常时
      */
     public void updateFaultItem(final String brokerName, final long currentLatency, boolean isolation) {
+        if (this.sendLoadAwareEnable) {
+            this.brokerLoadTracker.updateLatency(brokerName, isolation ? Math.max(currentLatency, 30000) : currentLatency);
+        }
         if (this.sendLatencyFaultEnable) {
             long duration = computeNotAvailableDuration(isolation ? 30000 : currentLatency);
             this.latencyFaultTolerance.updateFaultItem(brokerName, currentLatency, duration);
@@ -149,4 +219,12 @@ public class MQFaultStrategy {
     public void setSendLatencyFaultEnable(final boolean sendLatencyFaultEnable) {
         this.sendLatencyFaultEnable = sendLatencyFaultEnable;
     }
+
+    public boolean isSendLoadAwareEnable() {
+        return sendLoadAwareEnable;
+    }
+
+    public void setSendLoadAwareEnable(final boolean sendLoadAwareEnable) {
+        this.sendLoadAwareEnable = sendLoadAwareEnable;
+    }
 }
@@ -22,6 +22,7 @@ import org.apache.rocketmq.client.exception.MQBrokerException;
 import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.client.impl.producer.DefaultMQProducerImpl;
 import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.compression.CompressionType;
 import org.apache.rocketmq.common.message.*;
 import org.apache.rocketmq.remoting.RPCHook;
 import org.apache.rocketmq.remoting.exception.RemotingException;
@@ -86,6 +87,13 @@ public class DefaultMQProducer extends ClientConfig implements MQProducer {
      */
     private int compressMsgBodyOverHowmuch = 1024 * 4;
 
+    /**
+     * Algorithm used to compress message body. Consumers must be able to decode the chosen type, so switch away from
+     * {@link CompressionType#ZLIB} only after all consumers of the topic are upgraded. {@link CompressionType#ZLIB_DICT}
+     * requires the same dictionary registered on both sides.
+     */
+    private CompressionType compressionType = CompressionType.ZLIB;
+
     /**
      * Maximum number of retry to perform internally before claiming sending failure in synchronous mode.
      * </p>
@@ -113,6 +121,27 @@ public class DefaultMQProducer extends ClientConfig implements MQProducer {
      */
     private int maxMessageSize = 1024 * 1024 * 4; // 4M
 
+    /**
+     * Accumulate asynchronous sends per message queue and deliver them to broker in one batch request.
+     * Sends are not batched when send message hooks or check forbidden hooks are registered.
+     */
+    private boolean autoBatchEnable = false;
+
+    /**
+     * Flush a message queue's accumulated messages once this many messages are buffered.
+     */
+    private int autoBatchMaxMessages = 64;
+
+    /**
+     * Flush a message queue's accumulated messages once their bodies reach this many bytes.
+     */
+    private int autoBatchMaxBytes = 1024 * 128;
+
+    /**
+     * Maximum time in milliseconds a message waits in the accumulator before being flushed.
+     */
+    private int autoBatchLingerMillis = 5;
+
     /**
      * Default constructor.
      */
@@ -609,6 +638,14 @@ public class DefaultMQProducer extends ClientConfig implements MQProducer {
         this.compressMsgBodyOverHowmuch = compressMsgBodyOverHowmuch;
     }
 
+    public CompressionType getCompressionType() {
+        return compressionType;
+    }
+
+    public void setCompressionType(CompressionType compressionType) {
+        this.compressionType = compressionType;
+    }
+
     public DefaultMQProducerImpl getDefaultMQProducerImpl() {
         return defaultMQProducerImpl;
     }
@@ -677,6 +714,49 @@ public class DefaultMQProducer extends ClientConfig implements MQProducer {
         this.defaultMQProducerImpl.setSendLatencyFaultEnable(sendLatencyFaultEnable);
     }
 
+    public boolean isSendLoadAwareEnable() {
+        return this.defaultMQProducerImpl.isSendLoadAwareEnable();
+    }
+
+    /**
+     * 开启后按Broker发送耗时EWMA与Broker负载提示，随机二选一选择消息队列
+     */
+    public void setSendLoadAwareEnable(final boolean sendLoadAwareEnable) {
+        this.defaultMQProducerImpl.setSendLoadAwareEnable(sendLoadAwareEnable);
+    }
+
+    public boolean isAutoBatchEnable() {
+        return autoBatchEnable;
+    }
+
+    public void setAutoBatchEnable(final boolean autoBatchEnable) {
+        this.autoBatchEnable = autoBatchEnable;
+    }
+
+    public int getAutoBatchMaxMessages() {
+        return autoBatchMaxMessages;
+    }
+
+    public void setAutoBatchMaxMessages(final int autoBatchMaxMessages) {
+        this.autoBatchMaxMessages = autoBatchMaxMessages;
+    }
+
+    public int getAutoBatchMaxBytes() {
+        return autoBatchMaxBytes;
+    }
+
+    public void setAutoBatchMaxBytes(final int autoBatchMaxBytes) {
+        this.autoBatchMaxBytes = autoBatchMaxBytes;
+    }
+
+    public int getAutoBatchLingerMillis() {
+        return autoBatchLingerMillis;
+    }
+
+    public void setAutoBatchLingerMillis(final int autoBatchLingerMillis) {
+        this.autoBatchLingerMillis = autoBatchLingerMillis;
+    }
+
     public int getRetryTimesWhenSendAsyncFailed() {
         return retryTimesWhenSendAsyncFailed;
     }
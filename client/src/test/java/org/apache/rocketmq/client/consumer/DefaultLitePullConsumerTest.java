@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.consumer;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.rocketmq.client.consumer.store.ReadOffsetType;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.impl.CommunicationMode;
+import org.apache.rocketmq.client.impl.FindBrokerResult;
+import org.apache.rocketmq.client.impl.MQClientAPIImpl;
+import org.apache.rocketmq.client.impl.consumer.DefaultLitePullConsumerImpl;
+import org.apache.rocketmq.client.impl.consumer.PullAPIWrapper;
+import org.apache.rocketmq.client.impl.consumer.PullResultExt;
+import org.apache.rocketmq.client.impl.consumer.RebalanceLitePullImpl;
+import org.apache.rocketmq.client.impl.factory.MQClientInstance;
+import org.apache.rocketmq.common.message.MessageClientExt;
+import org.apache.rocketmq.common.message.MessageDecoder;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.header.PullMessageRequestHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultLitePullConsumerTest {
+    private static final long MAX_OFFSET = 1024 + 3;
+
+    @Mock
+    private MQClientAPIImpl mQClientAPIImpl;
+    private MQClientInstance mQClientFactory;
+    private DefaultLitePullConsumer litePullConsumer;
+    private String consumerGroup;
+    private String topic = "FooBar";
+    private String brokerName = "BrokerA";
+    private MessageQueue messageQueue = new MessageQueue(topic, brokerName, 0);
+
+    @Before
+    public void init() throws Exception {
+        consumerGroup = "FooBarGroup" + System.currentTimeMillis();
+        litePullConsumer = new DefaultLitePullConsumer(consumerGroup);
+        litePullConsumer.setNamesrvAddr("127.0.0.1:9876");
+        litePullConsumer.setAutoCommit(true);
+
+        DefaultLitePullConsumerImpl litePullConsumerImpl = litePullConsumer.getDefaultLitePullConsumerImpl();
+        RebalanceLitePullImpl rebalanceImpl = spy(new RebalanceLitePullImpl(litePullConsumerImpl));
+        Field field = DefaultLitePullConsumerImpl.class.getDeclaredField("rebalanceImpl");
+        field.setAccessible(true);
+        field.set(litePullConsumerImpl, rebalanceImpl);
+        litePullConsumer.subscribe(topic, "*");
+        litePullConsumer.start();
+
+        field = DefaultLitePullConsumerImpl.class.getDeclaredField("mQClientFactory");
+        field.setAccessible(true);
+        mQClientFactory = spy((MQClientInstance) field.get(litePullConsumerImpl));
+        field.set(litePullConsumerImpl, mQClientFactory);
+
+        field = MQClientInstance.class.getDeclaredField("mQClientAPIImpl");
+        field.setAccessible(true);
+        field.set(mQClientFactory, mQClientAPIImpl);
+
+        litePullConsumerImpl.setPullAPIWrapper(new PullAPIWrapper(mQClientFactory, consumerGroup, false));
+        rebalanceImpl.setmQClientFactory(mQClientFactory);
+
+        when(mQClientAPIImpl.pullMessage(anyString(), any(PullMessageRequestHeader.class),
+            anyLong(), any(CommunicationMode.class), nullable(PullCallback.class)))
+            .thenAnswer(new Answer<Object>() {
+                @Override public Object answer(InvocationOnMock mock) throws Throwable {
+                    PullMessageRequestHeader requestHeader = mock.getArgument(1);
+                    PullResult pullResult;
+                    if (requestHeader.getQueueOffset() < MAX_OFFSET) {
+                        pullResult = createPullResult(requestHeader, PullStatus.FOUND,
+                            Collections.singletonList(createMessage(requestHeader.getQueueOffset())));
+                    } else {
+                        // 模拟Broker长轮询挂起
+                        Thread.sleep(50);
+                        pullResult = createPullResult(requestHeader, PullStatus.NO_NEW_MSG, new ArrayList<MessageExt>());
+                    }
+                    ((PullCallback) mock.getArgument(4)).onSuccess(pullResult);
+                    return null;
+                }
+            });
+
+        doReturn(new FindBrokerResult("127.0.0.1:10911", false)).when(mQClientFactory).findBrokerAddressInSubscribe(anyString(), anyLong(), anyBoolean());
+        doReturn(Collections.singletonList(mQClientFactory.getClientId())).when(mQClientFactory).findConsumerIdList(anyString(), anyString());
+        doReturn(1024L).when(rebalanceImpl).computePullFromWhere(any(MessageQueue.class));
+        Set<MessageQueue> messageQueueSet = new HashSet<>();
+        messageQueueSet.add(messageQueue);
+        litePullConsumerImpl.updateTopicSubscribeInfo(topic, messageQueueSet);
+        litePullConsumerImpl.doRebalance();
+    }
+
+    @After
+    public void terminate() {
+        litePullConsumer.shutdown();
+    }
+
+    @Test
+    public void testPoll_AutoCommit() throws Exception {
+        assertThat(litePullConsumer.assignment()).containsExactly(messageQueue);
+
+        List<MessageExt> msgs = pollAll(3);
+        assertThat(msgs.get(0).getQueueOffset()).isEqualTo(1024);
+        assertThat(msgs.get(2).getQueueOffset()).isEqualTo(1026);
+        assertThat(msgs.get(0).getBody()).isEqualTo(new byte[] {'a'});
+
+        // 上一次 poll 的消费进度在下一次 poll 时提交
+        assertThat(litePullConsumer.getDefaultLitePullConsumerImpl().getOffsetStore().readOffset(messageQueue, ReadOffsetType.READ_FROM_MEMORY))
+            .isLessThan(MAX_OFFSET);
+        assertThat(litePullConsumer.poll(100)).isEmpty();
+        assertThat(litePullConsumer.getDefaultLitePullConsumerImpl().getOffsetStore().readOffset(messageQueue, ReadOffsetType.READ_FROM_MEMORY))
+            .isEqualTo(MAX_OFFSET);
+    }
+
+    @Test
+    public void testSeek() throws Exception {
+        pollAll(3);
+
+        litePullConsumer.seek(messageQueue, 1025);
+        assertThat(litePullConsumer.getDefaultLitePullConsumerImpl().getOffsetStore().readOffset(messageQueue, ReadOffsetType.READ_FROM_MEMORY))
+            .isEqualTo(1025);
+
+        List<MessageExt> msgs = pollAll(2);
+        assertThat(msgs.get(0).getQueueOffset()).isEqualTo(1025);
+        assertThat(msgs.get(1).getQueueOffset()).isEqualTo(1026);
+    }
+
+    @Test(expected = MQClientException.class)
+    public void testSeek_NotAssigned() throws Exception {
+        litePullConsumer.seek(new MessageQueue(topic, brokerName, 1), 0);
+    }
+
+    private List<MessageExt> pollAll(int expected) {
+        List<MessageExt> result = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (result.size() < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("poll timeout, got " + result.size() + " messages");
+            }
+            result.addAll(litePullConsumer.poll(100));
+        }
+        assertThat(result).hasSize(expected);
+        return result;
+    }
+
+    private MessageExt createMessage(long queueOffset) {
+        MessageClientExt messageClientExt = new MessageClientExt();
+        messageClientExt.setTopic(topic);
+        messageClientExt.setQueueId(0);
+        messageClientExt.setQueueOffset(queueOffset);
+        messageClientExt.setMsgId("123");
+        messageClientExt.setBody(new byte[] {'a'});
+        messageClientExt.setOffsetMsgId("234");
+        messageClientExt.setBornHost(new InetSocketAddress(8080));
+        messageClientExt.setStoreHost(new InetSocketAddress(8080));
+        return messageClientExt;
+    }
+
+    private PullResultExt createPullResult(PullMessageRequestHeader requestHeader, PullStatus pullStatus, List<MessageExt> messageExtList) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (MessageExt messageExt : messageExtList) {
+            outputStream.write(MessageDecoder.encode(messageExt, false));
+        }
+        return new PullResultExt(pullStatus, requestHeader.getQueueOffset() + messageExtList.size(), 123, 2048, messageExtList, 0, outputStream.toByteArray());
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
@@ -199,6 +200,61 @@ public class DefaultMQPushConsumerTest {
         assertThat(messageExts[0].getBody()).isEqualTo(new byte[] {'a'});
     }
 
+    @Test
+    public void testPullMessage_PipelinedShortBatchWithoutGap() throws Exception {
+        final int expectCount = 100;
+        final Set<Long> consumedOffsets = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final CountDownLatch countDownLatch = new CountDownLatch(1);
+        pushConsumer.getDefaultMQPushConsumerImpl().setConsumeMessageService(new ConsumeMessageConcurrentlyService(pushConsumer.getDefaultMQPushConsumerImpl(), new MessageListenerConcurrently() {
+            @Override public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs,
+                ConsumeConcurrentlyContext context) {
+                for (MessageExt msg : msgs) {
+                    if (msg.getQueueId() == 1) {
+                        consumedOffsets.add(msg.getQueueOffset());
+                    }
+                }
+                if (consumedOffsets.size() >= expectCount) {
+                    countDownLatch.countDown();
+                }
+                return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+            }
+        }));
+        pushConsumer.setPullInterval(0);
+        pushConsumer.setPullPipelineDepth(4);
+        pushConsumer.setPullBatchSize(32);
+
+        // 每次拉取只返回一条消息, 远少于 pullBatchSize
+        when(mQClientFactory.getMQClientAPIImpl().pullMessage(anyString(), any(PullMessageRequestHeader.class),
+            anyLong(), any(CommunicationMode.class), nullable(PullCallback.class)))
+            .thenAnswer(new Answer<Object>() {
+                @Override public Object answer(InvocationOnMock mock) throws Throwable {
+                    PullMessageRequestHeader requestHeader = mock.getArgument(1);
+                    MessageClientExt messageClientExt = new MessageClientExt();
+                    messageClientExt.setTopic(topic);
+                    messageClientExt.setQueueId(requestHeader.getQueueId());
+                    messageClientExt.setQueueOffset(requestHeader.getQueueOffset());
+                    messageClientExt.setMsgId("123");
+                    messageClientExt.setBody(new byte[] {'a'});
+                    messageClientExt.setOffsetMsgId("234");
+                    messageClientExt.setBornHost(new InetSocketAddress(8080));
+                    messageClientExt.setStoreHost(new InetSocketAddress(8080));
+                    PullResult pullResult = createPullResult(requestHeader, PullStatus.FOUND, Collections.<MessageExt>singletonList(messageClientExt));
+                    ((PullCallback) mock.getArgument(4)).onSuccess(pullResult);
+                    return pullResult;
+                }
+            });
+
+        // 使用重平衡未分配的队列, 避免与重平衡发起的拉取混在一起
+        PullRequest pullRequest = createPullRequest();
+        pullRequest.getMessageQueue().setQueueId(1);
+        mQClientFactory.getPullMessageService().executePullRequestImmediately(pullRequest);
+        assertThat(countDownLatch.await(10, TimeUnit.SECONDS)).isTrue();
+
+        for (long offset = 1024; offset < 1024 + expectCount; offset++) {
+            assertThat(consumedOffsets).contains(offset);
+        }
+    }
+
     private PullRequest createPullRequest() {
         PullRequest pullRequest = new PullRequest();
         pullRequest.setConsumerGroup(consumerGroup);
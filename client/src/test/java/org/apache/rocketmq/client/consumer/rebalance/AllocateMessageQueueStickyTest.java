@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.consumer.rebalance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.rocketmq.client.consumer.AllocateMessageQueueStrategy;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AllocateMessageQueueStickyTest {
+    private final AllocateMessageQueueStrategy strategy = new AllocateMessageQueueSticky();
+
+    @Test
+    public void testAllocateBalanced() {
+        for (int mqSize : new int[] {1, 5, 16, 33}) {
+            for (int cidSize : new int[] {1, 3, 8, 40}) {
+                List<MessageQueue> mqAll = createMessageQueueList(mqSize);
+                List<String> cidAll = createConsumerIdList(cidSize);
+                Map<MessageQueue, String> allocation = allocateAll(mqAll, cidAll);
+                // 每个队列恰好分给一个消费者, 且各消费者队列数相差不超过1
+                assertThat(allocation).hasSize(mqSize);
+                int min = Integer.MAX_VALUE;
+                int max = 0;
+                for (String cid : cidAll) {
+                    int size = strategy.allocate("group", cid, mqAll, cidAll).size();
+                    min = Math.min(min, size);
+                    max = Math.max(max, size);
+                }
+                assertThat(max - min).isLessThanOrEqualTo(1);
+            }
+        }
+    }
+
+    @Test
+    public void testConsumerLeaveAndJoin() {
+        List<MessageQueue> mqAll = createMessageQueueList(64);
+        List<String> cidAll = createConsumerIdList(10);
+        Map<MessageQueue, String> before = allocateAll(mqAll, cidAll);
+
+        // 一个消费者离开: 其他消费者持有的队列尽量不动
+        String leaving = cidAll.remove(3);
+        Map<MessageQueue, String> after = allocateAll(mqAll, cidAll);
+        int moved = 0;
+        for (MessageQueue mq : mqAll) {
+            if (!before.get(mq).equals(leaving) && !before.get(mq).equals(after.get(mq))) {
+                moved++;
+            }
+        }
+        assertThat(moved).isLessThanOrEqualTo(8);
+
+        // 消费者重新加入后恢复到原分配附近
+        cidAll.add(3, leaving);
+        Map<MessageQueue, String> rejoin = allocateAll(mqAll, cidAll);
+        int changed = 0;
+        for (MessageQueue mq : mqAll) {
+            if (!before.get(mq).equals(rejoin.get(mq))) {
+                changed++;
+            }
+        }
+        assertThat(changed).isEqualTo(0);
+    }
+
+    private Map<MessageQueue, String> allocateAll(List<MessageQueue> mqAll, List<String> cidAll) {
+        Map<MessageQueue, String> allocation = new HashMap<MessageQueue, String>();
+        Set<MessageQueue> seen = new HashSet<MessageQueue>();
+        for (String cid : cidAll) {
+            for (MessageQueue mq : strategy.allocate("group", cid, mqAll, cidAll)) {
+                assertThat(seen.add(mq)).isTrue();
+                allocation.put(mq, cid);
+            }
+        }
+        return allocation;
+    }
+
+    private List<String> createConsumerIdList(int size) {
+        List<String> consumerIdList = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            consumerIdList.add("CID_PREFIX" + i);
+        }
+        return consumerIdList;
+    }
+
+    private List<MessageQueue> createMessageQueueList(int size) {
+        List<MessageQueue> messageQueueList = new ArrayList<MessageQueue>(size);
+        for (int i = 0; i < size; i++) {
+            MessageQueue mq = new MessageQueue("topic", "brokerName" + i % 4, i / 4);
+            messageQueueList.add(mq);
+        }
+        return messageQueueList;
+    }
+}
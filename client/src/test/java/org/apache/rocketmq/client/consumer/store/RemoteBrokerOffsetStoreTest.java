@@ -18,18 +18,26 @@ package org.apache.rocketmq.client.consumer.store;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 import org.apache.rocketmq.client.ClientConfig;
 import org.apache.rocketmq.client.exception.MQBrokerException;
 import org.apache.rocketmq.client.impl.FindBrokerResult;
 import org.apache.rocketmq.client.impl.MQClientAPIImpl;
 import org.apache.rocketmq.client.impl.factory.MQClientInstance;
 import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.common.protocol.body.UpdateConsumerOffsetBatchRequestBody;
 import org.apache.rocketmq.common.protocol.header.QueryConsumerOffsetRequestHeader;
+import org.apache.rocketmq.common.protocol.header.UpdateConsumerOffsetBatchRequestHeader;
 import org.apache.rocketmq.common.protocol.header.UpdateConsumerOffsetRequestHeader;
+import org.apache.rocketmq.remoting.InvokeCallback;
 import org.apache.rocketmq.remoting.exception.RemotingException;
+import org.apache.rocketmq.remoting.netty.ResponseFuture;
+import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -41,6 +49,9 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -95,7 +106,7 @@ public class RemoteBrokerOffsetStoreTest {
 
     @Test
     public void testReadOffset_Success() throws Exception {
-        OffsetStore offsetStore = new RemoteBrokerOffsetStore(mQClientFactory, group);
+        RemoteBrokerOffsetStore offsetStore = new RemoteBrokerOffsetStore(mQClientFactory, group);
         final MessageQueue messageQueue = new MessageQueue(topic, brokerName, 3);
 
         doAnswer(new Answer() {
@@ -118,12 +129,92 @@ public class RemoteBrokerOffsetStoreTest {
         offsetStore.persist(messageQueue);
         assertThat(offsetStore.readOffset(messageQueue, ReadOffsetType.READ_FROM_STORE)).isEqualTo(1023);
 
+        doAnswer(new Answer() {
+            @Override public Object answer(InvocationOnMock mock) throws Throwable {
+                UpdateConsumerOffsetBatchRequestBody requestBody = mock.getArgument(2);
+                when(mqClientAPI.queryConsumerOffset(anyString(), any(QueryConsumerOffsetRequestHeader.class), anyLong()))
+                    .thenReturn(requestBody.getOffsetTable().get(topic).get(messageQueue.getQueueId()));
+                return null;
+            }
+        }).when(mqClientAPI).updateConsumerOffsetBatch(any(String.class), any(UpdateConsumerOffsetBatchRequestHeader.class),
+            any(UpdateConsumerOffsetBatchRequestBody.class), any(Long.class));
+
         offsetStore.updateOffset(messageQueue, 1025, false);
-        offsetStore.persistAll(new HashSet<>(Collections.singletonList(messageQueue)));
+        offsetStore.persistAll(new HashSet<>(Collections.singletonList(messageQueue)), true);
         assertThat(offsetStore.readOffset(messageQueue, ReadOffsetType.READ_FROM_STORE)).isEqualTo(1025);
     }
 
+    @Test
+    public void testPersistAll_Batch() throws Exception {
+        RemoteBrokerOffsetStore offsetStore = new RemoteBrokerOffsetStore(mQClientFactory, group);
+        Set<MessageQueue> mqs = new HashSet<>();
+        for (int i = 0; i < 8; i++) {
+            MessageQueue messageQueue = new MessageQueue(topic, brokerName, i);
+            offsetStore.updateOffset(messageQueue, 100 + i, false);
+            mqs.add(messageQueue);
+        }
+
+        offsetStore.persistAll(mqs, true);
+
+        ArgumentCaptor<UpdateConsumerOffsetBatchRequestBody> bodyCaptor = ArgumentCaptor.forClass(UpdateConsumerOffsetBatchRequestBody.class);
+        verify(mqClientAPI, times(1)).updateConsumerOffsetBatch(anyString(), any(UpdateConsumerOffsetBatchRequestHeader.class),
+            bodyCaptor.capture(), anyLong());
+        verify(mqClientAPI, never()).updateConsumerOffsetOneway(anyString(), any(UpdateConsumerOffsetRequestHeader.class), anyLong());
+        assertThat(bodyCaptor.getValue().getOffsetTable().get(topic)).hasSize(8).containsEntry(3, 103L);
+    }
+
+    @Test
+    public void testPersistAll_BatchNotSupported() throws Exception {
+        RemoteBrokerOffsetStore offsetStore = new RemoteBrokerOffsetStore(mQClientFactory, group);
+        Set<MessageQueue> mqs = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            MessageQueue messageQueue = new MessageQueue(topic, brokerName, i);
+            offsetStore.updateOffset(messageQueue, 100 + i, false);
+            mqs.add(messageQueue);
+        }
+        doThrow(new MQBrokerException(ResponseCode.REQUEST_CODE_NOT_SUPPORTED, ""))
+            .when(mqClientAPI).updateConsumerOffsetBatch(anyString(), any(UpdateConsumerOffsetBatchRequestHeader.class),
+            any(UpdateConsumerOffsetBatchRequestBody.class), anyLong());
+
+        offsetStore.persistAll(mqs, true);
+        offsetStore.persistAll(mqs, true);
+
+        // 只尝试一次批量提交, 之后逐个队列提交
+        verify(mqClientAPI, times(1)).updateConsumerOffsetBatch(anyString(), any(UpdateConsumerOffsetBatchRequestHeader.class),
+            any(UpdateConsumerOffsetBatchRequestBody.class), anyLong());
+        verify(mqClientAPI, times(8)).updateConsumerOffsetOneway(anyString(), any(UpdateConsumerOffsetRequestHeader.class), anyLong());
+    }
 
+    @Test
+    public void testPersistAll_Async() throws Exception {
+        OffsetStore offsetStore = new RemoteBrokerOffsetStore(mQClientFactory, group);
+        Set<MessageQueue> mqs = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            MessageQueue messageQueue = new MessageQueue(topic, brokerName, i);
+            offsetStore.updateOffset(messageQueue, 100 + i, false);
+            mqs.add(messageQueue);
+        }
+
+        // 定时持久化不等待Broker响应
+        offsetStore.persistAll(mqs);
+
+        ArgumentCaptor<InvokeCallback> callbackCaptor = ArgumentCaptor.forClass(InvokeCallback.class);
+        verify(mqClientAPI, times(1)).updateConsumerOffsetBatchAsync(anyString(), any(UpdateConsumerOffsetBatchRequestHeader.class),
+            any(UpdateConsumerOffsetBatchRequestBody.class), anyLong(), callbackCaptor.capture());
+        verify(mqClientAPI, never()).updateConsumerOffsetBatch(anyString(), any(UpdateConsumerOffsetBatchRequestHeader.class),
+            any(UpdateConsumerOffsetBatchRequestBody.class), anyLong());
+
+        // 异步响应表明Broker不支持批量提交时逐个队列补交, 之后不再尝试批量提交
+        ResponseFuture responseFuture = new ResponseFuture(0, 3000, null, null);
+        responseFuture.setResponseCommand(RemotingCommand.createResponseCommand(ResponseCode.REQUEST_CODE_NOT_SUPPORTED, ""));
+        callbackCaptor.getValue().operationComplete(responseFuture);
+        verify(mqClientAPI, times(4)).updateConsumerOffsetOneway(anyString(), any(UpdateConsumerOffsetRequestHeader.class), anyLong());
+
+        offsetStore.persistAll(mqs);
+        verify(mqClientAPI, times(1)).updateConsumerOffsetBatchAsync(anyString(), any(UpdateConsumerOffsetBatchRequestHeader.class),
+            any(UpdateConsumerOffsetBatchRequestBody.class), anyLong(), any(InvokeCallback.class));
+        verify(mqClientAPI, times(8)).updateConsumerOffsetOneway(anyString(), any(UpdateConsumerOffsetRequestHeader.class), anyLong());
+    }
 
     @Test
     public void testRemoveOffset() throws Exception {
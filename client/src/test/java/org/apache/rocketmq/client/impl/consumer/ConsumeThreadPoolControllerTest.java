@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.List;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsumeThreadPoolControllerTest {
+
+    @Test
+    public void testGrowForIoBoundListener() {
+        ConsumeThreadPoolController controller = new ConsumeThreadPoolController(4, 64, 4);
+        // 监听器 1% 的时间占用CPU, 线程池饱和且有积压
+        controller.record(100, 100000000L, 1000000L);
+        int size = controller.adjust(4, 4, 100, 1000, 0.1);
+        assertThat(size).isEqualTo(5);
+
+        // 吞吐量提升后继续增加
+        controller.record(200, 100000000L, 1000000L);
+        size = controller.adjust(size, size, 100, 1000, 0.1);
+        assertThat(size).isEqualTo(6);
+    }
+
+    @Test
+    public void testShrinkForCpuBoundListener() {
+        ConsumeThreadPoolController controller = new ConsumeThreadPoolController(1, 64, 4);
+        // 监听器几乎全部时间占用CPU
+        controller.record(100, 100000000L, 100000000L);
+        int size = controller.adjust(32, 32, 100, 1000, 0.5);
+        assertThat(size).isEqualTo(4);
+    }
+
+    @Test
+    public void testBackOffWhenGrowDoesNotHelp() {
+        ConsumeThreadPoolController controller = new ConsumeThreadPoolController(4, 64, 4);
+        controller.record(100, 100000000L, 1000000L);
+        int size = controller.adjust(8, 8, 100, 1000, 0.1);
+        assertThat(size).isEqualTo(10);
+
+        // 吞吐量没有提升, 回退并暂停增加
+        controller.record(100, 100000000L, 1000000L);
+        size = controller.adjust(size, size, 100, 1000, 0.1);
+        assertThat(size).isEqualTo(8);
+
+        controller.record(100, 100000000L, 1000000L);
+        assertThat(controller.adjust(size, size, 100, 1000, 0.1)).isEqualTo(8);
+    }
+
+    @Test
+    public void testNoGrowUnderHighLoad() {
+        ConsumeThreadPoolController controller = new ConsumeThreadPoolController(4, 64, 4);
+        controller.record(100, 100000000L, -1);
+        assertThat(controller.adjust(8, 8, 100, 1000, 3.0)).isEqualTo(8);
+    }
+
+    @Test
+    public void testShrinkWhenIdle() {
+        ConsumeThreadPoolController controller = new ConsumeThreadPoolController(4, 64, 4);
+        assertThat(controller.adjust(20, 2, 0, 1000, 0.1)).isEqualTo(19);
+        assertThat(controller.adjust(4, 0, 0, 1000, 0.1)).isEqualTo(4);
+    }
+
+    @Test
+    public void testIncDecCorePoolSizeKeepSize() {
+        // 堆积量触发的增减不改变线程数, 自适应模式下由控制器负责
+        assertThat(incDecCorePoolSize(false)).isEqualTo(20);
+        assertThat(incDecCorePoolSize(true)).isEqualTo(20);
+    }
+
+    private static int incDecCorePoolSize(final boolean adaptive) {
+        DefaultMQPushConsumer consumer = new DefaultMQPushConsumer("FooBarGroup");
+        consumer.setConsumeThreadAdaptive(adaptive);
+        ConsumeMessageConcurrentlyService service = new ConsumeMessageConcurrentlyService(consumer.getDefaultMQPushConsumerImpl(),
+            new MessageListenerConcurrently() {
+                @Override
+                public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> msgs, ConsumeConcurrentlyContext context) {
+                    return ConsumeConcurrentlyStatus.CONSUME_SUCCESS;
+                }
+            });
+        try {
+            service.incCorePoolSize();
+            service.incCorePoolSize();
+            service.decCorePoolSize();
+            return service.getCorePoolSize();
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageRingBufferTest {
+
+    @Test
+    public void testCommittableOffsetWithGaps() {
+        MessageRingBuffer buffer = new MessageRingBuffer();
+        assertThat(buffer.committableOffset()).isEqualTo(-1);
+
+        // 过滤后的队列位置不连续
+        buffer.append(createMessage(10));
+        buffer.append(createMessage(20));
+        buffer.append(createMessage(30));
+        assertThat(buffer.committableOffset()).isEqualTo(10);
+
+        assertThat(buffer.ack(20)).isTrue();
+        assertThat(buffer.committableOffset()).isEqualTo(10);
+        assertThat(buffer.ack(20)).isFalse();
+        assertThat(buffer.ack(25)).isFalse();
+
+        assertThat(buffer.ack(10)).isTrue();
+        assertThat(buffer.committableOffset()).isEqualTo(30);
+        assertThat(buffer.first().getQueueOffset()).isEqualTo(30);
+
+        assertThat(buffer.ack(30)).isTrue();
+        assertThat(buffer.committableOffset()).isEqualTo(31);
+        assertThat(buffer.first()).isNull();
+    }
+
+    @Test
+    public void testGrowWhileHeadIsPending() {
+        MessageRingBuffer buffer = new MessageRingBuffer();
+        int count = buffer.capacity() * 3;
+        for (int i = 0; i < count; i++) {
+            buffer.append(createMessage(i));
+            if (i > 0) {
+                buffer.ack(i);
+            }
+        }
+        assertThat(buffer.capacity()).isGreaterThanOrEqualTo(count);
+        assertThat(buffer.committableOffset()).isEqualTo(0);
+
+        assertThat(buffer.ack(0)).isTrue();
+        assertThat(buffer.committableOffset()).isEqualTo(count);
+    }
+
+    @Test
+    public void testClear() {
+        MessageRingBuffer buffer = new MessageRingBuffer();
+        buffer.append(createMessage(0));
+        buffer.clear();
+        assertThat(buffer.committableOffset()).isEqualTo(-1);
+        assertThat(buffer.ack(0)).isFalse();
+
+        buffer.append(createMessage(5));
+        assertThat(buffer.committableOffset()).isEqualTo(5);
+    }
+
+    @Test
+    public void testConcurrentAck() throws Exception {
+        final MessageRingBuffer buffer = new MessageRingBuffer();
+        final int total = 20000;
+        final List<Long> offsets = new ArrayList<Long>(total);
+        for (long i = 0; i < total; i++) {
+            offsets.add(i * 2);
+        }
+        Collections.shuffle(offsets);
+
+        final int threads = 8;
+        final AtomicInteger acked = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final int appended = total / 2;
+        for (int i = 0; i < appended; i++) {
+            buffer.append(createMessage(i * 2));
+        }
+
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = index; i < total; i += threads) {
+                        long offset = offsets.get(i);
+                        while (offset / 2 >= appended && buffer.getTail() <= offset / 2) {
+                            Thread.yield();
+                        }
+                        if (buffer.ack(offset)) {
+                            acked.incrementAndGet();
+                        }
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+
+        // 确认的同时继续追加并触发扩容
+        for (int i = appended; i < total; i++) {
+            buffer.append(createMessage(i * 2));
+        }
+        latch.await();
+
+        assertThat(acked.get()).isEqualTo(total);
+        assertThat(buffer.committableOffset()).isEqualTo((total - 1) * 2 + 1);
+    }
+
+    private static MessageExt createMessage(long offset) {
+        MessageExt msg = new MessageExt();
+        msg.setQueueOffset(offset);
+        return msg;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.protocol.body.ProcessQueueInfo;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProcessQueueTest {
+
+    @Test
+    public void testCachedMessageSize() {
+        ProcessQueue pq = new ProcessQueue();
+        pq.putMessage(createMessageList(100));
+        assertThat(pq.getMsgCount().get()).isEqualTo(100);
+        assertThat(pq.getMsgSize().get()).isEqualTo(100 * 123);
+
+        // 重复拉取的消息不重复计算
+        pq.putMessage(createMessageList(10));
+        assertThat(pq.getMsgSize().get()).isEqualTo(100 * 123);
+
+        pq.removeMessage(createMessageList(10));
+        assertThat(pq.getMsgSize().get()).isEqualTo(90 * 123);
+
+        ProcessQueueInfo info = new ProcessQueueInfo();
+        pq.fillProcessQueueInfo(info);
+        assertThat(info.getCachedMsgCount()).isEqualTo(90);
+
+        pq.clear();
+        assertThat(pq.getMsgSize().get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testCachedMessageSizeOrderly() {
+        ProcessQueue pq = new ProcessQueue();
+        pq.putMessage(createMessageList(100));
+
+        pq.takeMessags(30);
+        assertThat(pq.getMsgSize().get()).isEqualTo(100 * 123);
+
+        pq.commit();
+        assertThat(pq.getMsgCount().get()).isEqualTo(70);
+        assertThat(pq.getMsgSize().get()).isEqualTo(70 * 123);
+    }
+
+    @Test
+    public void testRemoveMessageReturnsLowestPendingOffset() {
+        ProcessQueue pq = new ProcessQueue();
+        List<MessageExt> msgs = createMessageList(10);
+        pq.putMessage(msgs);
+        assertThat(pq.getMaxSpan()).isEqualTo(9);
+
+        assertThat(pq.removeMessage(msgs.subList(5, 10))).isEqualTo(0);
+        assertThat(pq.getMsgCount().get()).isEqualTo(5);
+        assertThat(pq.removeMessage(msgs.subList(0, 5))).isEqualTo(10);
+        assertThat(pq.getMsgCount().get()).isEqualTo(0);
+        assertThat(pq.getMaxSpan()).isEqualTo(0);
+    }
+
+    @Test
+    public void testConsumeAgainOrderly() {
+        ProcessQueue pq = new ProcessQueue();
+        assertThat(pq.putMessage(createMessageList(10))).isTrue();
+
+        List<MessageExt> taken = pq.takeMessags(4);
+        assertThat(taken).hasSize(4);
+        assertThat(taken.get(0).getQueueOffset()).isEqualTo(0);
+
+        // 重新消费时再次取出同一批消息
+        pq.makeMessageToCosumeAgain(taken);
+        taken = pq.takeMessags(4);
+        assertThat(taken.get(0).getQueueOffset()).isEqualTo(0);
+        assertThat(pq.commit()).isEqualTo(4);
+
+        taken = pq.takeMessags(4);
+        assertThat(taken.get(0).getQueueOffset()).isEqualTo(4);
+        pq.rollback();
+        assertThat(pq.hasTempMessage()).isTrue();
+        taken = pq.takeMessags(100);
+        assertThat(taken).hasSize(6);
+        assertThat(pq.commit()).isEqualTo(10);
+
+        assertThat(pq.takeMessags(4)).isEmpty();
+        assertThat(pq.hasTempMessage()).isFalse();
+        assertThat(pq.getMsgCount().get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testLaneOrderly() {
+        OrderlyLaneSelector selector = new OrderlyLaneSelector(2, null);
+        ProcessQueue pq = new ProcessQueue();
+        List<MessageExt> msgs = createMessageList(10);
+        // 分片键在两个通道之间交替
+        String[] keys = new String[2];
+        for (int i = 0; keys[0] == null || keys[1] == null; i++) {
+            MessageExt probe = new MessageExt();
+            probe.setKeys("key" + i);
+            keys[selector.select(probe)] = "key" + i;
+        }
+        for (MessageExt msg : msgs) {
+            msg.setKeys(keys[(int) (msg.getQueueOffset() % 2)]);
+        }
+        pq.putMessage(msgs);
+
+        List<MessageExt> lane0 = pq.takeMessags(2, 0, selector);
+        List<MessageExt> lane1 = pq.takeMessags(2, 1, selector);
+        assertThat(lane0).extracting("queueOffset").containsExactly(0L, 2L);
+        assertThat(lane1).extracting("queueOffset").containsExactly(1L, 3L);
+
+        // 通道1先提交, 消费进度不能越过通道0未确认的消息
+        assertThat(pq.commit(1, selector)).isEqualTo(0);
+        lane1 = pq.takeMessags(10, 1, selector);
+        assertThat(lane1).extracting("queueOffset").containsExactly(5L, 7L, 9L);
+
+        // 通道0重新消费时按原顺序再次取出
+        pq.makeMessageToCosumeAgain(lane0, 0);
+        lane0 = pq.takeMessags(10, 0, selector);
+        assertThat(lane0).extracting("queueOffset").containsExactly(0L, 2L, 4L, 6L, 8L);
+        assertThat(pq.commit(0, selector)).isEqualTo(5);
+        assertThat(pq.commit(1, selector)).isEqualTo(10);
+        assertThat(pq.getMsgCount().get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testActivateLane() {
+        OrderlyLaneSelector selector = new OrderlyLaneSelector(2, null);
+        ProcessQueue pq = new ProcessQueue();
+        pq.putMessage(createMessageList(4));
+
+        // 每个通道同一时间只有一个消费请求
+        assertThat(pq.activateLane(0, 2)).isTrue();
+        assertThat(pq.activateLane(0, 2)).isFalse();
+        assertThat(pq.activateLane(1, 2)).isTrue();
+
+        // 通道1取不到消息只结束通道1, 通道0仍在消费
+        pq.takeMessags(10, 1, selector);
+        assertThat(pq.takeMessags(10, 1, selector)).isEmpty();
+        assertThat(pq.activateLane(0, 2)).isFalse();
+        assertThat(pq.activateLane(1, 2)).isTrue();
+    }
+
+    @Test
+    public void testRelease() {
+        ProcessQueue pq = new ProcessQueue();
+        List<MessageExt> msgs = createMessageList(10);
+        pq.putMessage(msgs);
+
+        assertThat(pq.isReleasing()).isFalse();
+        assertThat(pq.markReleasing()).isTrue();
+        assertThat(pq.markReleasing()).isFalse();
+        assertThat(pq.isReleasing()).isTrue();
+        // 已拉取的消息未消费完
+        assertThat(pq.isReleaseReady()).isFalse();
+
+        pq.removeMessage(msgs);
+        assertThat(pq.isReleaseReady()).isTrue();
+        assertThat(pq.finishRelease()).isTrue();
+        assertThat(pq.finishRelease()).isFalse();
+    }
+
+    private List<MessageExt> createMessageList(int count) {
+        List<MessageExt> messageExtList = new ArrayList<MessageExt>();
+        for (int i = 0; i < count; i++) {
+            MessageExt messageExt = new MessageExt();
+            messageExt.setQueueOffset(i);
+            messageExt.setBody(new byte[123]);
+            messageExtList.add(messageExt);
+        }
+        return messageExtList;
+    }
+}
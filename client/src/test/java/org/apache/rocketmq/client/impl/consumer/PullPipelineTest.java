@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PullPipelineTest {
+
+    @Test
+    public void testReserveStopsAtMaxOffset() {
+        PullPipeline pipeline = new PullPipeline();
+        // 队列最大位置未知时只发起一个请求
+        List<PullPipeline.Slot> slots = pipeline.reserve(0, 4, 32, 1000);
+        assertThat(slots).hasSize(1);
+        assertThat(slots.get(0).getOffset()).isEqualTo(0);
+
+        pipeline.updateMaxOffset(100);
+        slots = pipeline.reserve(0, 4, 32, 1000);
+        assertThat(slots).hasSize(3);
+        assertThat(slots.get(0).getOffset()).isEqualTo(32);
+        assertThat(slots.get(1).getOffset()).isEqualTo(64);
+        assertThat(slots.get(2).getOffset()).isEqualTo(96);
+        assertThat(pipeline.inflightSize()).isEqualTo(4);
+        assertThat(pipeline.canIssue(8, 32, 1000)).isFalse();
+    }
+
+    @Test
+    public void testReserveBoundedByCapacity() {
+        PullPipeline pipeline = new PullPipeline();
+        pipeline.updateMaxOffset(10000);
+        List<PullPipeline.Slot> slots = pipeline.reserve(0, 8, 32, 100);
+        // 在途请求最多缓存 3 * 32 <= 100 条消息
+        assertThat(slots).hasSize(3);
+    }
+
+    @Test
+    public void testPollCompletedInOrder() {
+        PullPipeline pipeline = new PullPipeline();
+        pipeline.updateMaxOffset(10000);
+        List<PullPipeline.Slot> slots = pipeline.reserve(0, 3, 32, 1000);
+        assertThat(slots).hasSize(3);
+
+        slots.get(1).complete(null, null);
+        assertThat(pipeline.pollCompleted()).isNull();
+
+        slots.get(0).complete(null, null);
+        assertThat(pipeline.pollCompleted()).isSameAs(slots.get(0));
+        assertThat(pipeline.pollCompleted()).isSameAs(slots.get(1));
+        assertThat(pipeline.pollCompleted()).isNull();
+        assertThat(pipeline.contains(slots.get(2))).isTrue();
+    }
+
+    @Test
+    public void testReset() {
+        PullPipeline pipeline = new PullPipeline();
+        pipeline.updateMaxOffset(10000);
+        List<PullPipeline.Slot> slots = pipeline.reserve(0, 3, 32, 1000);
+        pipeline.reset();
+        assertThat(pipeline.inflightSize()).isEqualTo(0);
+        assertThat(pipeline.contains(slots.get(0))).isFalse();
+
+        // 重置后从新的已提交位置重新发起
+        slots = pipeline.reserve(50, 2, 32, 1000);
+        assertThat(slots.get(0).getOffset()).isEqualTo(50);
+        assertThat(slots.get(1).getOffset()).isEqualTo(82);
+    }
+}
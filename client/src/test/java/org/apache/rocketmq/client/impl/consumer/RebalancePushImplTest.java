@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.consumer;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
+import org.apache.rocketmq.client.consumer.store.OffsetStore;
+import org.apache.rocketmq.client.impl.factory.MQClientInstance;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.heartbeat.MessageModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RebalancePushImplTest {
+    private final MessageQueue mq = new MessageQueue("FooBar", "BrokerA", 0);
+    private DefaultMQPushConsumer pushConsumer;
+    private OffsetStore offsetStore;
+    private ScheduledExecutorService scheduledExecutorService;
+    private RebalancePushImpl rebalancePush;
+
+    @Before
+    public void init() {
+        pushConsumer = new DefaultMQPushConsumer("FooBarGroup");
+        offsetStore = mock(OffsetStore.class);
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+        DefaultMQPushConsumerImpl pushConsumerImpl = mock(DefaultMQPushConsumerImpl.class);
+        when(pushConsumerImpl.getDefaultMQPushConsumer()).thenReturn(pushConsumer);
+        when(pushConsumerImpl.getOffsetStore()).thenReturn(offsetStore);
+        MQClientInstance mQClientFactory = mock(MQClientInstance.class);
+        when(mQClientFactory.getScheduledExecutorService()).thenReturn(scheduledExecutorService);
+
+        rebalancePush = new RebalancePushImpl("FooBarGroup", MessageModel.CLUSTERING, null, mQClientFactory, pushConsumerImpl);
+    }
+
+    @After
+    public void terminate() {
+        scheduledExecutorService.shutdown();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        ProcessQueue pq = new ProcessQueue();
+        assertThat(rebalancePush.releaseGracefully(mq, pq)).isFalse();
+        assertThat(pq.isReleasing()).isFalse();
+        assertThat(rebalancePush.waitPreviousOwner(mq)).isFalse();
+    }
+
+    @Test
+    public void testWaitPreviousOwner() {
+        pushConsumer.setReleaseQueueGracefully(true);
+        assertThat(rebalancePush.waitPreviousOwner(mq)).isTrue();
+        assertThat(rebalancePush.waitPreviousOwner(mq)).isTrue();
+    }
+
+    @Test
+    public void testReleaseDrained() throws Exception {
+        pushConsumer.setReleaseQueueGracefully(true);
+        ProcessQueue pq = new ProcessQueue();
+        List<MessageExt> msgs = createMessageList(4);
+        pq.putMessage(msgs);
+        rebalancePush.getProcessQueueTable().put(mq, pq);
+
+        assertThat(rebalancePush.releaseGracefully(mq, pq)).isTrue();
+        verify(offsetStore, times(1)).persist(mq);
+
+        // 消费完成后在交接期限内提交最终进度
+        pq.removeMessage(msgs);
+        verify(offsetStore, timeout(3000)).removeOffset(mq);
+        verify(offsetStore, times(2)).persist(mq);
+        assertThat(pq.isDropped()).isTrue();
+        assertThat(rebalancePush.getProcessQueueTable()).doesNotContainKey(mq);
+    }
+
+    @Test
+    public void testReleaseExpiredWithoutPersist() throws Exception {
+        pushConsumer.setReleaseQueueGracefully(true);
+        ProcessQueue pq = new ProcessQueue();
+        pq.putMessage(createMessageList(4));
+        rebalancePush.getProcessQueueTable().put(mq, pq);
+
+        assertThat(rebalancePush.releaseGracefully(mq, pq)).isTrue();
+        Field field = ProcessQueue.class.getDeclaredField("releaseTimestamp");
+        field.setAccessible(true);
+        field.set(pq, System.currentTimeMillis() - ProcessQueue.REBALANCE_RELEASE_MAX_TIME - 1);
+
+        // 超过交接期限后新消费者可能已开始消费, 只丢弃不再提交进度
+        verify(offsetStore, timeout(3000)).removeOffset(mq);
+        verify(offsetStore, times(1)).persist(mq);
+        assertThat(pq.isDropped()).isTrue();
+        assertThat(rebalancePush.getProcessQueueTable()).doesNotContainKey(mq);
+        assertThat(rebalancePush.releaseGracefully(mq, pq)).isFalse();
+    }
+
+    private List<MessageExt> createMessageList(int count) {
+        List<MessageExt> messageExtList = new ArrayList<MessageExt>();
+        for (int i = 0; i < count; i++) {
+            MessageExt messageExt = new MessageExt();
+            messageExt.setQueueOffset(i);
+            messageExt.setBody(new byte[123]);
+            messageExtList.add(messageExt);
+        }
+        return messageExtList;
+    }
+}
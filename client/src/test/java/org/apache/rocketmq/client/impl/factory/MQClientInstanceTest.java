@@ -16,26 +16,47 @@
  */
 package org.apache.rocketmq.client.impl.factory;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.apache.rocketmq.client.ClientConfig;
 import org.apache.rocketmq.client.admin.MQAdminExtInner;
 import org.apache.rocketmq.client.exception.MQBrokerException;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.impl.MQClientAPIImpl;
 import org.apache.rocketmq.client.impl.MQClientManager;
 import org.apache.rocketmq.client.impl.consumer.MQConsumerInner;
 import org.apache.rocketmq.client.impl.producer.DefaultMQProducerImpl;
 import org.apache.rocketmq.client.impl.producer.TopicPublishInfo;
+import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.common.protocol.body.TopicRouteBatchRequestBody;
+import org.apache.rocketmq.common.protocol.body.TopicRouteBatchResponseBody;
+import org.apache.rocketmq.common.protocol.heartbeat.HeartbeatData;
+import org.apache.rocketmq.common.protocol.heartbeat.HeartbeatLiteData;
 import org.apache.rocketmq.common.protocol.route.BrokerData;
 import org.apache.rocketmq.common.protocol.route.QueueData;
 import org.apache.rocketmq.common.protocol.route.TopicRouteData;
 import org.apache.rocketmq.remoting.exception.RemotingException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class MQClientInstanceTest {
@@ -74,6 +95,114 @@ public class MQClientInstanceTest {
         assertThat(topicPublishInfo.getMessageQueueList().size()).isEqualTo(4);
     }
 
+    @Test
+    public void testUpdateTopicRouteInfoBatch() throws Exception {
+        MQClientInstance instance = new MQClientInstance(new ClientConfig(), 0, "BatchRouteClient");
+        MQClientAPIImpl mQClientAPIImpl = mock(MQClientAPIImpl.class);
+        Field field = MQClientInstance.class.getDeclaredField("mQClientAPIImpl");
+        field.setAccessible(true);
+        field.set(instance, mQClientAPIImpl);
+        DefaultMQProducerImpl producer = mock(DefaultMQProducerImpl.class);
+        when(producer.getPublishTopicList()).thenReturn(Collections.singleton(topic));
+        instance.registerProducer(group, producer);
+
+        TopicRouteBatchResponseBody changed = new TopicRouteBatchResponseBody();
+        changed.getTopicRouteTable().put(topic, createTopicRouteData());
+        changed.getTopicVersionTable().put(topic, 10L);
+        ArgumentCaptor<HashMap> versionCaptor = ArgumentCaptor.forClass(HashMap.class);
+        when(mQClientAPIImpl.getTopicRouteInfoBatchFromNameServer(versionCaptor.capture(), anyLong()))
+            .thenReturn(changed, new TopicRouteBatchResponseBody());
+
+        Method method = MQClientInstance.class.getDeclaredMethod("updateTopicRouteInfoFromNameServer");
+        method.setAccessible(true);
+        method.invoke(instance);
+        method.invoke(instance);
+
+        assertThat(versionCaptor.getAllValues().get(0).get(topic)).isEqualTo(TopicRouteBatchRequestBody.UNKNOWN_VERSION);
+        assertThat(versionCaptor.getAllValues().get(1).get(topic)).isEqualTo(10L);
+        verify(producer, times(1)).updateTopicPublishInfo(eq(topic), any(TopicPublishInfo.class));
+        verify(mQClientAPIImpl, never()).getTopicRouteInfoFromNameServer(anyString(), anyLong());
+    }
+
+    @Test
+    public void testUpdateTopicRouteInfoBatchNotSupported() throws Exception {
+        MQClientInstance instance = new MQClientInstance(new ClientConfig(), 0, "BatchRouteClient");
+        MQClientAPIImpl mQClientAPIImpl = mock(MQClientAPIImpl.class);
+        Field field = MQClientInstance.class.getDeclaredField("mQClientAPIImpl");
+        field.setAccessible(true);
+        field.set(instance, mQClientAPIImpl);
+        DefaultMQProducerImpl producer = mock(DefaultMQProducerImpl.class);
+        when(producer.getPublishTopicList()).thenReturn(Collections.singleton(topic));
+        instance.registerProducer(group, producer);
+
+        when(mQClientAPIImpl.getTopicRouteInfoBatchFromNameServer(ArgumentMatchers.<HashMap<String, Long>>any(), anyLong()))
+            .thenThrow(new MQClientException(ResponseCode.REQUEST_CODE_NOT_SUPPORTED, "not supported"));
+        when(mQClientAPIImpl.getTopicRouteInfoFromNameServer(anyString(), anyLong())).thenReturn(createTopicRouteData());
+
+        Method method = MQClientInstance.class.getDeclaredMethod("updateTopicRouteInfoFromNameServer");
+        method.setAccessible(true);
+        method.invoke(instance);
+        method.invoke(instance);
+
+        // 不支持批量获取后, 一段时间内直接逐个获取
+        verify(mQClientAPIImpl, times(1)).getTopicRouteInfoBatchFromNameServer(ArgumentMatchers.<HashMap<String, Long>>any(), anyLong());
+        verify(mQClientAPIImpl, times(2)).getTopicRouteInfoFromNameServer(eq(topic), anyLong());
+        verify(producer, times(1)).updateTopicPublishInfo(eq(topic), any(TopicPublishInfo.class));
+    }
+
+    @Test
+    public void testSendHeartbeatLite() throws Exception {
+        MQClientInstance instance = new MQClientInstance(new ClientConfig(), 0, "HeartbeatLiteClient");
+        MQClientAPIImpl mQClientAPIImpl = mock(MQClientAPIImpl.class);
+        Field field = MQClientInstance.class.getDeclaredField("mQClientAPIImpl");
+        field.setAccessible(true);
+        field.set(instance, mQClientAPIImpl);
+        instance.registerProducer(group, mock(DefaultMQProducerImpl.class));
+        String addr = "127.0.0.1:10911";
+        HashMap<Long, String> brokerAddrs = new HashMap<>();
+        brokerAddrs.put(0L, addr);
+        Field brokerAddrTableField = MQClientInstance.class.getDeclaredField("brokerAddrTable");
+        brokerAddrTableField.setAccessible(true);
+        ((Map<String, HashMap<Long, String>>) brokerAddrTableField.get(instance)).put("BrokerA", brokerAddrs);
+
+        when(mQClientAPIImpl.sendHeartbeatLite(eq(addr), any(HeartbeatLiteData.class), anyLong())).thenReturn(true, false);
+
+        // 首次完整心跳, 之后数据未变化发送精简心跳, Broker指纹不一致时再发送完整心跳
+        instance.sendHeartbeatToAllBrokerWithLock();
+        instance.sendHeartbeatToAllBrokerWithLock();
+        instance.sendHeartbeatToAllBrokerWithLock();
+
+        verify(mQClientAPIImpl, times(2)).sendHearbeat(eq(addr), any(HeartbeatData.class), ArgumentMatchers.<Long>any(), anyLong());
+        verify(mQClientAPIImpl, times(2)).sendHeartbeatLite(eq(addr), any(HeartbeatLiteData.class), anyLong());
+
+        // 旧版本Broker不支持精简心跳, 此后只发送完整心跳
+        when(mQClientAPIImpl.sendHeartbeatLite(eq(addr), any(HeartbeatLiteData.class), anyLong()))
+            .thenThrow(new MQBrokerException(ResponseCode.REQUEST_CODE_NOT_SUPPORTED, "not supported"));
+        instance.sendHeartbeatToAllBrokerWithLock();
+        instance.sendHeartbeatToAllBrokerWithLock();
+
+        verify(mQClientAPIImpl, times(4)).sendHearbeat(eq(addr), any(HeartbeatData.class), ArgumentMatchers.<Long>any(), anyLong());
+        verify(mQClientAPIImpl, times(3)).sendHeartbeatLite(eq(addr), any(HeartbeatLiteData.class), anyLong());
+    }
+
+    private TopicRouteData createTopicRouteData() {
+        TopicRouteData topicRouteData = new TopicRouteData();
+        topicRouteData.setFilterServerTable(new HashMap<String, List<String>>());
+        BrokerData brokerData = new BrokerData();
+        brokerData.setBrokerName("BrokerA");
+        HashMap<Long, String> brokerAddrs = new HashMap<>();
+        brokerAddrs.put(0L, "127.0.0.1:10911");
+        brokerData.setBrokerAddrs(brokerAddrs);
+        topicRouteData.setBrokerDatas(new ArrayList<>(Collections.singletonList(brokerData)));
+        QueueData queueData = new QueueData();
+        queueData.setBrokerName("BrokerA");
+        queueData.setPerm(6);
+        queueData.setReadQueueNums(4);
+        queueData.setWriteQueueNums(4);
+        topicRouteData.setQueueDatas(new ArrayList<>(Collections.singletonList(queueData)));
+        return topicRouteData;
+    }
+
     @Test
     public void testRegisterProducer() {
         boolean flag = mqClientInstance.registerProducer(group, mock(DefaultMQProducerImpl.class));
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.impl.producer;
+
+import java.util.List;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendCallback;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.apache.rocketmq.common.protocol.body.SendMessageBatchRequestBody;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProduceAccumulatorTest {
+    @Mock
+    private DefaultMQProducerImpl producerImpl;
+    @Mock
+    private SendCallback sendCallback;
+    private DefaultMQProducer producer;
+    private ProduceAccumulator produceAccumulator;
+    private MessageQueue mq = new MessageQueue("FooBar", "BrokerA", 0);
+
+    @Before
+    public void init() {
+        producer = new DefaultMQProducer("FooBarGroup");
+        producer.setAutoBatchMaxMessages(3);
+        producer.setAutoBatchMaxBytes(1024);
+        producer.setAutoBatchLingerMillis(50);
+        produceAccumulator = new ProduceAccumulator(producerImpl, producer);
+    }
+
+    @After
+    public void terminate() {
+        produceAccumulator.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFlushByCount() {
+        for (int i = 0; i < 4; i++) {
+            append(new byte[10]);
+        }
+
+        ArgumentCaptor<List> msgs = ArgumentCaptor.forClass(List.class);
+        verify(producerImpl, times(1)).sendBatchKernelImpl(eq(mq), msgs.capture(),
+            ArgumentMatchers.<SendMessageBatchRequestBody.MessageEntry>anyList(), ArgumentMatchers.<SendCallback>anyList(), anyLong());
+        assertThat(msgs.getValue()).hasSize(3);
+    }
+
+    @Test
+    public void testFlushByBytes() {
+        append(new byte[600]);
+        verify(producerImpl, never()).sendBatchKernelImpl(any(MessageQueue.class), ArgumentMatchers.<Message>anyList(),
+            ArgumentMatchers.<SendMessageBatchRequestBody.MessageEntry>anyList(), ArgumentMatchers.<SendCallback>anyList(), anyLong());
+        append(new byte[600]);
+        verify(producerImpl, times(1)).sendBatchKernelImpl(eq(mq), ArgumentMatchers.<Message>anyList(),
+            ArgumentMatchers.<SendMessageBatchRequestBody.MessageEntry>anyList(), ArgumentMatchers.<SendCallback>anyList(), anyLong());
+    }
+
+    @Test
+    public void testFlushByLinger() {
+        produceAccumulator.start();
+        append(new byte[10]);
+        verify(producerImpl, timeout(1000).times(1)).sendBatchKernelImpl(eq(mq), ArgumentMatchers.<Message>anyList(),
+            ArgumentMatchers.<SendMessageBatchRequestBody.MessageEntry>anyList(), ArgumentMatchers.<SendCallback>anyList(), anyLong());
+    }
+
+    @Test
+    public void testStickyQueue() {
+        assertThat(produceAccumulator.putStickyQueue(mq.getTopic(), mq)).isEqualTo(mq);
+        assertThat(produceAccumulator.putStickyQueue(mq.getTopic(), new MessageQueue("FooBar", "BrokerB", 0))).isEqualTo(mq);
+
+        // 批量发出后重新选择消息队列
+        for (int i = 0; i < 3; i++) {
+            append(new byte[10]);
+        }
+        assertThat(produceAccumulator.getStickyQueue(mq.getTopic())).isNull();
+    }
+
+    private void append(final byte[] body) {
+        Message msg = new Message(mq.getTopic(), body);
+        SendMessageBatchRequestBody.MessageEntry entry = new SendMessageBatchRequestBody.MessageEntry();
+        entry.setBody(body);
+        produceAccumulator.append(mq, msg, entry, sendCallback, 3000);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.client.latency;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.rocketmq.client.impl.producer.TopicPublishInfo;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MQFaultStrategyTest {
+    private static final int SELECT_TIMES = 2000;
+    private MQFaultStrategy mqFaultStrategy;
+    private TopicPublishInfo topicPublishInfo;
+    private String brokerName = "BrokerA";
+    private String anotherBrokerName = "BrokerB";
+
+    @Before
+    public void init() {
+        mqFaultStrategy = new MQFaultStrategy();
+        mqFaultStrategy.setSendLoadAwareEnable(true);
+
+        List<MessageQueue> messageQueueList = new ArrayList<MessageQueue>();
+        for (int i = 0; i < 4; i++) {
+            messageQueueList.add(new MessageQueue("TopicTest", brokerName, i));
+            messageQueueList.add(new MessageQueue("TopicTest", anotherBrokerName, i));
+        }
+        topicPublishInfo = new TopicPublishInfo();
+        topicPublishInfo.setMessageQueueList(messageQueueList);
+    }
+
+    @Test
+    public void testSelectByLatency() {
+        mqFaultStrategy.updateFaultItem(brokerName, 10, false);
+        mqFaultStrategy.updateFaultItem(anotherBrokerName, 200, false);
+
+        // 两个候选都落在慢Broker上的概率为 4/8 * 3/7
+        assertThat(countSelected(brokerName, null)).isGreaterThan(SELECT_TIMES * 7 / 10);
+    }
+
+    @Test
+    public void testSelectByLoadHint() {
+        mqFaultStrategy.updateFaultItem(brokerName, 10, false);
+        mqFaultStrategy.updateFaultItem(anotherBrokerName, 200, false);
+        mqFaultStrategy.updateLoadHint(brokerName, 50, true);
+
+        assertThat(countSelected(anotherBrokerName, null)).isGreaterThan(SELECT_TIMES * 7 / 10);
+    }
+
+    @Test
+    public void testSelectAvoidLastBroker() {
+        mqFaultStrategy.updateFaultItem(brokerName, 10, false);
+        mqFaultStrategy.updateFaultItem(anotherBrokerName, 200, false);
+
+        assertThat(countSelected(anotherBrokerName, brokerName)).isEqualTo(SELECT_TIMES);
+    }
+
+    @Test
+    public void testLoadAwareDisabled() {
+        mqFaultStrategy.setSendLoadAwareEnable(false);
+        mqFaultStrategy.updateFaultItem(brokerName, 10, false);
+        mqFaultStrategy.updateFaultItem(anotherBrokerName, 200, false);
+
+        // 默认按顺序轮流发送
+        assertThat(countSelected(brokerName, null)).isEqualTo(SELECT_TIMES / 2);
+    }
+
+    private int countSelected(final String expectedBrokerName, final String lastBrokerName) {
+        int count = 0;
+        for (int i = 0; i < SELECT_TIMES; i++) {
+            MessageQueue mq = mqFaultStrategy.selectOneMessageQueue(topicPublishInfo, lastBrokerName);
+            if (mq.getBrokerName().equals(expectedBrokerName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
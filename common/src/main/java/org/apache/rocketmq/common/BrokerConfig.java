@@ -52,6 +52,10 @@ public class BrokerConfig {
     private String messageStorePlugIn = "";
 
     private int sendMessageThreadPoolNums = 1; //16 + Runtime.getRuntime().availableProcessors() * 4;
+    /**
+     * 发送消息线程池是否按 topic + queueId 分为 sendMessageThreadPoolNums 个单线程通道, 保证同一队列内的顺序
+     */
+    private boolean sendMessageThreadPoolStriped = false;
     private int pullMessageThreadPoolNums = 16 + Runtime.getRuntime().availableProcessors() * 2;
     private int adminBrokerThreadPoolNums = 16;
     private int clientManageThreadPoolNums = 32;
@@ -92,6 +96,10 @@ public class BrokerConfig {
     // TODO 疑问：这个是干啥的
     private String regionId = MixAll.DEFAULT_TRACE_REGION_ID;
     private int registerBrokerTimeoutMills = 6000;
+    /**
+     * 向支持的Namesrv注册时, Topic配置未变化则只上报数据版本, 否则压缩请求体
+     */
+    private boolean registerBrokerCompactEnable = true;
 
     private boolean slaveReadEnable = false;
 
@@ -99,6 +107,27 @@ public class BrokerConfig {
     private long consumerFallbehindThreshold = 1024L * 1024 * 1024 * 16;
 
     private long waitTimeMillsInSendQueue = 200;
+    private long waitTimeMillsInPullQueue = 5 * 1000;
+    private long waitTimeMillsInHeartbeatQueue = 31 * 1000;
+    private long waitTimeMillsInConsumerManageQueue = 31 * 1000;
+    private long waitTimeMillsInAdminQueue = 60 * 1000;
+
+    /**
+     * 是否根据排队时延自适应收紧各请求队列的等待时间
+     */
+    private boolean adaptiveAdmissionEnable = false;
+    /**
+     * 排队时延目标值, 一个统计周期内最小排队时延超过该值即认为过载
+     */
+    private long queueDelayTargetMills = 10;
+    /**
+     * 排队时延统计周期
+     */
+    private long queueDelayIntervalMills = 100;
+    /**
+     * 是否在发送响应中携带负载提示(发送队列使用率、PageCache繁忙)，供Producer按负载选择Broker
+     */
+    private boolean sendLoadHintEnable = true;
     /**
      * 开始接收请求时间
      * TODO 疑问：什么时候设置的
@@ -141,6 +170,70 @@ public class BrokerConfig {
         this.waitTimeMillsInSendQueue = waitTimeMillsInSendQueue;
     }
 
+    public long getWaitTimeMillsInPullQueue() {
+        return waitTimeMillsInPullQueue;
+    }
+
+    public void setWaitTimeMillsInPullQueue(final long waitTimeMillsInPullQueue) {
+        this.waitTimeMillsInPullQueue = waitTimeMillsInPullQueue;
+    }
+
+    public long getWaitTimeMillsInHeartbeatQueue() {
+        return waitTimeMillsInHeartbeatQueue;
+    }
+
+    public void setWaitTimeMillsInHeartbeatQueue(final long waitTimeMillsInHeartbeatQueue) {
+        this.waitTimeMillsInHeartbeatQueue = waitTimeMillsInHeartbeatQueue;
+    }
+
+    public long getWaitTimeMillsInConsumerManageQueue() {
+        return waitTimeMillsInConsumerManageQueue;
+    }
+
+    public void setWaitTimeMillsInConsumerManageQueue(final long waitTimeMillsInConsumerManageQueue) {
+        this.waitTimeMillsInConsumerManageQueue = waitTimeMillsInConsumerManageQueue;
+    }
+
+    public long getWaitTimeMillsInAdminQueue() {
+        return waitTimeMillsInAdminQueue;
+    }
+
+    public void setWaitTimeMillsInAdminQueue(final long waitTimeMillsInAdminQueue) {
+        this.waitTimeMillsInAdminQueue = waitTimeMillsInAdminQueue;
+    }
+
+    public boolean isAdaptiveAdmissionEnable() {
+        return adaptiveAdmissionEnable;
+    }
+
+    public void setAdaptiveAdmissionEnable(final boolean adaptiveAdmissionEnable) {
+        this.adaptiveAdmissionEnable = adaptiveAdmissionEnable;
+    }
+
+    public boolean isSendLoadHintEnable() {
+        return sendLoadHintEnable;
+    }
+
+    public void setSendLoadHintEnable(final boolean sendLoadHintEnable) {
+        this.sendLoadHintEnable = sendLoadHintEnable;
+    }
+
+    public long getQueueDelayTargetMills() {
+        return queueDelayTargetMills;
+    }
+
+    public void setQueueDelayTargetMills(final long queueDelayTargetMills) {
+        this.queueDelayTargetMills = queueDelayTargetMills;
+    }
+
+    public long getQueueDelayIntervalMills() {
+        return queueDelayIntervalMills;
+    }
+
+    public void setQueueDelayIntervalMills(final long queueDelayIntervalMills) {
+        this.queueDelayIntervalMills = queueDelayIntervalMills;
+    }
+
     public long getConsumerFallbehindThreshold() {
         return consumerFallbehindThreshold;
     }
@@ -173,6 +266,14 @@ public class BrokerConfig {
         this.registerBrokerTimeoutMills = registerBrokerTimeoutMills;
     }
 
+    public boolean isRegisterBrokerCompactEnable() {
+        return registerBrokerCompactEnable;
+    }
+
+    public void setRegisterBrokerCompactEnable(boolean registerBrokerCompactEnable) {
+        this.registerBrokerCompactEnable = registerBrokerCompactEnable;
+    }
+
     public String getRegionId() {
         return regionId;
     }
@@ -277,6 +378,14 @@ public class BrokerConfig {
         this.sendMessageThreadPoolNums = sendMessageThreadPoolNums;
     }
 
+    public boolean isSendMessageThreadPoolStriped() {
+        return sendMessageThreadPoolStriped;
+    }
+
+    public void setSendMessageThreadPoolStriped(boolean sendMessageThreadPoolStriped) {
+        this.sendMessageThreadPoolStriped = sendMessageThreadPoolStriped;
+    }
+
     public int getPullMessageThreadPoolNums() {
         return pullMessageThreadPoolNums;
     }
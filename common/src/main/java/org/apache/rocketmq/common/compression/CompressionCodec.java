@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.compression;
+
+import java.io.IOException;
+
+/**
+ * 消息体压缩算法
+ * 解压时只能获得消息体与压缩类型, 解压所需的其他信息(如字典编号)需写入压缩结果中
+ */
+public interface CompressionCodec {
+    /**
+     * @return 压缩类型编号, 取值 0 ~ {@link org.apache.rocketmq.common.sysflag.MessageSysFlag#COMPRESSION_TYPE_MAX}
+     */
+    int getType();
+
+    /**
+     * @param src   原始消息体
+     * @param level 压缩级别, 不支持级别的算法忽略该参数
+     * @param topic 消息Topic
+     * @return 压缩后的消息体
+     */
+    byte[] compress(final byte[] src, final int level, final String topic) throws IOException;
+
+    byte[] decompress(final byte[] src) throws IOException;
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.compression;
+
+import java.io.IOException;
+import org.apache.rocketmq.common.sysflag.MessageSysFlag;
+
+/**
+ * 压缩算法注册表, 按压缩类型编号查找压缩算法
+ * 默认注册 {@link CompressionType} 中的所有算法, 可通过 {@link #register(CompressionCodec)} 替换或扩展
+ */
+public class CompressionCodecFactory {
+    private static final CompressionCodec[] CODECS = new CompressionCodec[MessageSysFlag.COMPRESSION_TYPE_MAX + 1];
+
+    static {
+        register(new ZlibCompressionCodec());
+        register(new Lz4CompressionCodec());
+        register(new ZlibDictionaryCompressionCodec());
+    }
+
+    public static synchronized void register(final CompressionCodec codec) {
+        if (codec.getType() < 0 || codec.getType() > MessageSysFlag.COMPRESSION_TYPE_MAX) {
+            throw new IllegalArgumentException("compression type out of range: " + codec.getType());
+        }
+        CODECS[codec.getType()] = codec;
+    }
+
+    public static CompressionCodec getCodec(final CompressionType compressionType) {
+        return getCodec(compressionType.getType());
+    }
+
+    public static CompressionCodec getCodec(final int type) {
+        final CompressionCodec codec = type >= 0 && type < CODECS.length ? CODECS[type] : null;
+        if (null == codec) {
+            throw new IllegalArgumentException("unknown compression type: " + type);
+        }
+        return codec;
+    }
+
+    /**
+     * 按消息系统标记中的压缩类型解压消息体
+     *
+     * @param sysFlag 消息系统标记
+     * @param body    压缩的消息体
+     * @return 解压后的消息体
+     */
+    public static byte[] decompress(final int sysFlag, final byte[] body) throws IOException {
+        final int type = MessageSysFlag.getCompressionType(sysFlag);
+        try {
+            return getCodec(type).decompress(body);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.compression;
+
+/**
+ * 消息体压缩类型, 编号写入 {@link org.apache.rocketmq.common.sysflag.MessageSysFlag} 的压缩类型位
+ */
+public enum CompressionType {
+    /**
+     * java.util.zip Deflater, 与旧版本客户端兼容
+     */
+    ZLIB(0),
+    /**
+     * LZ4块格式, 压缩率低于ZLIB, 压缩与解压速度快数倍
+     */
+    LZ4(1),
+    /**
+     * 使用按Topic预置字典的Deflater, 适合大量结构相似的小消息
+     */
+    ZLIB_DICT(2);
+
+    private final int type;
+
+    CompressionType(final int type) {
+        this.type = type;
+    }
+
+    public int getType() {
+        return type;
+    }
+}
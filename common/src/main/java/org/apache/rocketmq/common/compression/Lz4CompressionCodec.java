@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * LZ4块格式压缩, 纯Java实现
+ *
+ * 压缩结果为 原始长度(4字节, 大端) + LZ4块。压缩使用单个哈希表的贪心匹配,
+ * 不做Deflater的熵编码, 以较低的压缩率换取数倍的压缩与解压速度。
+ */
+public class Lz4CompressionCodec implements CompressionCodec {
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_LOG = 12;
+    /**
+     * 最后一个匹配必须在结尾前 MFLIMIT 字节之前开始
+     */
+    private static final int MF_LIMIT = 12;
+    /**
+     * 块的最后 LAST_LITERALS 字节总是字面量
+     */
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_DISTANCE = 65535;
+    private static final int RUN_MASK = 15;
+    /**
+     * LZ4块的最大压缩比, 每个输入字节最多展开为255字节
+     */
+    private static final int MAX_EXPANSION = 255;
+
+    @Override
+    public int getType() {
+        return CompressionType.LZ4.getType();
+    }
+
+    @Override
+    public byte[] compress(final byte[] src, final int level, final String topic) throws IOException {
+        final int length = src.length;
+        final byte[] dest = new byte[4 + length + length / 255 + 16];
+        writeIntBE(dest, 0, length);
+        int op = 4;
+        int anchor = 0;
+
+        if (length > MF_LIMIT) {
+            final int[] hashTable = new int[1 << HASH_LOG];
+            Arrays.fill(hashTable, -1);
+            final int matchLimit = length - LAST_LITERALS;
+            final int limit = length - MF_LIMIT;
+            int ip = 0;
+            while (ip < limit) {
+                final int sequence = readInt(src, ip);
+                final int h = hash(sequence);
+                int ref = hashTable[h];
+                hashTable[h] = ip;
+                if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                    ip++;
+                    continue;
+                }
+
+                // 向前扩展匹配
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+                // 向后扩展匹配
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    matchLength++;
+                }
+
+                op = writeSequence(dest, op, src, anchor, ip - anchor, ip - ref, matchLength);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+
+        op = writeLiterals(dest, op, src, anchor, length - anchor);
+        final byte[] result = new byte[op];
+        System.arraycopy(dest, 0, result, 0, op);
+        return result;
+    }
+
+    @Override
+    public byte[] decompress(final byte[] src) throws IOException {
+        try {
+            final int length = readIntBE(src, 0);
+            // 原始长度来自消息内容, 校验后再分配, 避免伪造的长度导致分配超大数组
+            if (length < 0 || length > (long) (src.length - 4) * MAX_EXPANSION) {
+                throw new IOException("malformed lz4 block, illegal length " + length + " for " + src.length + " bytes");
+            }
+            final byte[] dest = new byte[length];
+            int ip = 4;
+            int op = 0;
+            while (ip < src.length) {
+                final int token = src[ip++] & 0xFF;
+
+                int literalLength = token >>> 4;
+                if (literalLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLength += b;
+                    }
+                    while (b == 255);
+                }
+                System.arraycopy(src, ip, dest, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (ip >= src.length) {
+                    break;
+                }
+
+                final int offset = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    }
+                    while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+
+                int ref = op - offset;
+                if (offset == 0 || ref < 0) {
+                    throw new IOException("malformed lz4 block, offset " + offset + " at " + ip);
+                }
+                // 匹配区域可能与输出重叠, 逐字节复制
+                for (int i = 0; i < matchLength; i++) {
+                    dest[op++] = dest[ref++];
+                }
+            }
+
+            if (op != length) {
+                throw new IOException("malformed lz4 block, decompressed " + op + " bytes, expected " + length);
+            }
+            return dest;
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("malformed lz4 block", e);
+        }
+    }
+
+    private static int writeSequence(final byte[] dest, int op, final byte[] src, final int literalOffset, final int literalLength,
+        final int offset, final int matchLength) {
+        final int tokenPosition = op++;
+        int token = writeLength(literalLength) << 4;
+        op = writeLengthExtension(dest, op, literalLength);
+        System.arraycopy(src, literalOffset, dest, op, literalLength);
+        op += literalLength;
+
+        dest[op++] = (byte) offset;
+        dest[op++] = (byte) (offset >>> 8);
+
+        token |= writeLength(matchLength - MIN_MATCH);
+        op = writeLengthExtension(dest, op, matchLength - MIN_MATCH);
+        dest[tokenPosition] = (byte) token;
+        return op;
+    }
+
+    private static int writeLiterals(final byte[] dest, int op, final byte[] src, final int literalOffset, final int literalLength) {
+        dest[op++] = (byte) (writeLength(literalLength) << 4);
+        op = writeLengthExtension(dest, op, literalLength);
+        System.arraycopy(src, literalOffset, dest, op, literalLength);
+        return op + literalLength;
+    }
+
+    private static int writeLength(final int length) {
+        return length >= RUN_MASK ? RUN_MASK : length;
+    }
+
+    private static int writeLengthExtension(final byte[] dest, int op, final int length) {
+        if (length >= RUN_MASK) {
+            int remain = length - RUN_MASK;
+            while (remain >= 255) {
+                dest[op++] = (byte) 255;
+                remain -= 255;
+            }
+            dest[op++] = (byte) remain;
+        }
+        return op;
+    }
+
+    private static int hash(final int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(final byte[] buf, final int i) {
+        return (buf[i] & 0xFF) | ((buf[i + 1] & 0xFF) << 8) | ((buf[i + 2] & 0xFF) << 16) | ((buf[i + 3] & 0xFF) << 24);
+    }
+
+    private static int readIntBE(final byte[] buf, final int i) {
+        return ((buf[i] & 0xFF) << 24) | ((buf[i + 1] & 0xFF) << 16) | ((buf[i + 2] & 0xFF) << 8) | (buf[i + 3] & 0xFF);
+    }
+
+    private static void writeIntBE(final byte[] buf, final int i, final int value) {
+        buf[i] = (byte) (value >>> 24);
+        buf[i + 1] = (byte) (value >>> 16);
+        buf[i + 2] = (byte) (value >>> 8);
+        buf[i + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.compression;
+
+import java.io.IOException;
+import org.apache.rocketmq.common.UtilAll;
+
+public class ZlibCompressionCodec implements CompressionCodec {
+    @Override
+    public int getType() {
+        return CompressionType.ZLIB.getType();
+    }
+
+    @Override
+    public byte[] compress(final byte[] src, final int level, final String topic) throws IOException {
+        return UtilAll.compress(src, level);
+    }
+
+    @Override
+    public byte[] decompress(final byte[] src) throws IOException {
+        return UtilAll.uncompress(src);
+    }
+}
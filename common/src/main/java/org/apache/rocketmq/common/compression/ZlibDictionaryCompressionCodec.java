@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 使用按Topic预置字典的Deflater压缩
+ *
+ * 小消息自身的重复内容很少, 预置由同类消息训练出的字典后, 消息中与字典相同的片段可直接引用字典。
+ * 字典编号(Adler-32)写在zlib头中, 解压时按编号查找字典, 因此Producer与Consumer需注册相同的字典。
+ * Topic未注册字典时等同于普通zlib压缩。
+ */
+public class ZlibDictionaryCompressionCodec implements CompressionCodec {
+    /**
+     * Deflater 窗口大小, 超过的字典内容无法被引用
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+    private static final int SHINGLE_SIZE = 8;
+
+    private final ConcurrentHashMap<String/* topic */, byte[]> topicDictionaryTable = new ConcurrentHashMap<String, byte[]>();
+    private final ConcurrentHashMap<Integer/* adler32 */, byte[]> dictionaryTable = new ConcurrentHashMap<Integer, byte[]>();
+
+    @Override
+    public int getType() {
+        return CompressionType.ZLIB_DICT.getType();
+    }
+
+    /**
+     * 注册Topic的压缩字典, Consumer只需注册字典用于解压
+     *
+     * @param topic      Topic, 为null时只用于解压
+     * @param dictionary 字典
+     */
+    public void registerDictionary(final String topic, final byte[] dictionary) {
+        final Adler32 adler32 = new Adler32();
+        adler32.update(dictionary);
+        this.dictionaryTable.put((int) adler32.getValue(), dictionary);
+        if (topic != null) {
+            this.topicDictionaryTable.put(topic, dictionary);
+        }
+    }
+
+    public void unregisterDictionary(final String topic) {
+        this.topicDictionaryTable.remove(topic);
+    }
+
+    @Override
+    public byte[] compress(final byte[] src, final int level, final String topic) throws IOException {
+        final Deflater deflater = new Deflater(level);
+        try {
+            final byte[] dictionary = topic != null ? this.topicDictionaryTable.get(topic) : null;
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(src);
+            deflater.finish();
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, src.length / 2));
+            final byte[] buffer = new byte[Math.max(64, Math.min(src.length, 8192))];
+            while (!deflater.finished()) {
+                int len = deflater.deflate(buffer);
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(final byte[] src) throws IOException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(src);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(src.length * 2);
+            final byte[] buffer = new byte[Math.max(64, Math.min(src.length * 4, 8192))];
+            while (!inflater.finished()) {
+                int len = inflater.inflate(buffer);
+                if (len > 0) {
+                    out.write(buffer, 0, len);
+                } else if (inflater.needsDictionary()) {
+                    final byte[] dictionary = this.dictionaryTable.get(inflater.getAdler());
+                    if (null == dictionary) {
+                        throw new IOException("compression dictionary not registered, adler32 " + inflater.getAdler());
+                    }
+                    inflater.setDictionary(dictionary);
+                } else if (inflater.needsInput()) {
+                    throw new IOException("truncated compressed body");
+                }
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 由样本消息训练字典
+     *
+     * 统计每个 {@value #SHINGLE_SIZE} 字节片段出现在多少条样本中, 按样本包含的公共片段数排序,
+     * 依次选取样本拼接为字典, 公共片段最多的样本放在字典末尾(距离越近的引用编码越短)。
+     *
+     * @param samples 样本消息体
+     * @param maxSize 字典最大字节数, 不超过 {@link #MAX_DICTIONARY_SIZE}
+     * @return 字典
+     */
+    public static byte[] trainDictionary(final List<byte[]> samples, final int maxSize) {
+        final int dictionarySize = Math.min(maxSize, MAX_DICTIONARY_SIZE);
+        final Map<String, Integer> shingleCountTable = new HashMap<String, Integer>();
+        for (byte[] sample : samples) {
+            for (String shingle : shingles(sample)) {
+                Integer count = shingleCountTable.get(shingle);
+                shingleCountTable.put(shingle, count == null ? 1 : count + 1);
+            }
+        }
+
+        final List<byte[]> candidates = new ArrayList<byte[]>(samples);
+        final Map<byte[], Integer> scoreTable = new HashMap<byte[], Integer>();
+        for (byte[] sample : candidates) {
+            int score = 0;
+            for (String shingle : shingles(sample)) {
+                score += shingleCountTable.get(shingle) - 1;
+            }
+            scoreTable.put(sample, score);
+        }
+        Collections.sort(candidates, new Comparator<byte[]>() {
+            @Override
+            public int compare(byte[] o1, byte[] o2) {
+                return scoreTable.get(o2) - scoreTable.get(o1);
+            }
+        });
+
+        final List<byte[]> selected = new ArrayList<byte[]>();
+        int size = 0;
+        for (byte[] sample : candidates) {
+            if (scoreTable.get(sample) <= 0 || size + sample.length > dictionarySize) {
+                continue;
+            }
+            selected.add(sample);
+            size += sample.length;
+        }
+
+        final byte[] dictionary = new byte[size];
+        int position = size;
+        for (byte[] sample : selected) {
+            position -= sample.length;
+            System.arraycopy(sample, 0, dictionary, position, sample.length);
+        }
+        return dictionary;
+    }
+
+    private static Set<String> shingles(final byte[] sample) {
+        final Set<String> shingles = new HashSet<String>();
+        for (int i = 0; i + SHINGLE_SIZE <= sample.length; i++) {
+            shingles.add(new String(sample, i, SHINGLE_SIZE, StandardCharsets.ISO_8859_1));
+        }
+        return shingles;
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.message;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * 延迟解析的客户端消息
+ *
+ * 定长字段与Topic在构造时解析, 消息体、属性、bornHost/storeHost、offsetMsgId 均在首次访问时才从拉取结果的字节数组中解析。
+ * 属性未解析前, {@link #getProperty(String)} 直接在原始字节上查找单个属性, 不构建HashMap,
+ * 客户端按Tag过滤时只需解析TAGS属性。全部字段解析完成后释放对原始字节数组的引用。
+ *
+ * @see MessageDecoder#clientDecodesLazily(ByteBuffer)
+ */
+public class LazyMessageClientExt extends MessageClientExt {
+    private static final long serialVersionUID = -1457263582196612416L;
+
+    private transient byte[] buffer;
+    private final int bornHostPosition;
+    private final int storeHostPosition;
+    private final int bodyPosition;
+    private final int bodyLength;
+    private final int propertiesPosition;
+    private final int propertiesLength;
+
+    private boolean bodyDecoded;
+    private boolean propertiesDecoded;
+    private boolean bornHostDecoded;
+    private boolean storeHostDecoded;
+    private boolean offsetMsgIdDecoded;
+
+    LazyMessageClientExt(final byte[] buffer, final int bornHostPosition, final int storeHostPosition,
+        final int bodyPosition, final int bodyLength, final int propertiesPosition, final int propertiesLength) {
+        this.buffer = buffer;
+        this.bornHostPosition = bornHostPosition;
+        this.storeHostPosition = storeHostPosition;
+        this.bodyPosition = bodyPosition;
+        this.bodyLength = bodyLength;
+        this.propertiesPosition = propertiesPosition;
+        this.propertiesLength = propertiesLength;
+        this.bodyDecoded = bodyLength <= 0;
+        this.propertiesDecoded = propertiesLength <= 0;
+    }
+
+    @Override
+    public byte[] getBody() {
+        this.ensureBody();
+        return super.getBody();
+    }
+
+    @Override
+    public void setBody(byte[] body) {
+        synchronized (this) {
+            this.bodyDecoded = true;
+            super.setBody(body);
+            this.releaseBufferIfDecoded();
+        }
+    }
+
+    /**
+     * 获取消息体长度, 未解码时直接返回编码中的长度, 不触发消息体拷贝
+     */
+    public synchronized int getBodyLength() {
+        if (!this.bodyDecoded) {
+            return this.bodyLength;
+        }
+        final byte[] body = super.getBody();
+        return body != null ? body.length : 0;
+    }
+
+    private synchronized void ensureBody() {
+        if (!this.bodyDecoded) {
+            byte[] body = new byte[this.bodyLength];
+            System.arraycopy(this.buffer, this.bodyPosition, body, 0, this.bodyLength);
+            this.bodyDecoded = true;
+            super.setBody(body);
+            this.releaseBufferIfDecoded();
+        }
+    }
+
+    @Override
+    public String getProperty(final String name) {
+        synchronized (this) {
+            if (!this.propertiesDecoded) {
+                return this.peekProperty(name);
+            }
+        }
+        return super.getProperty(name);
+    }
+
+    @Override
+    public Map<String, String> getProperties() {
+        this.ensureProperties();
+        return super.getProperties();
+    }
+
+    @Override
+    void setProperties(Map<String, String> properties) {
+        synchronized (this) {
+            this.propertiesDecoded = true;
+            super.setProperties(properties);
+            this.releaseBufferIfDecoded();
+        }
+    }
+
+    @Override
+    void putProperty(final String name, final String value) {
+        this.ensureProperties();
+        super.putProperty(name, value);
+    }
+
+    @Override
+    void clearProperty(final String name) {
+        this.ensureProperties();
+        super.clearProperty(name);
+    }
+
+    private synchronized void ensureProperties() {
+        if (!this.propertiesDecoded) {
+            String propertiesString = new String(this.buffer, this.propertiesPosition, this.propertiesLength, MessageDecoder.CHARSET_UTF8);
+            this.propertiesDecoded = true;
+            super.setProperties(MessageDecoder.string2messageProperties(propertiesString));
+            this.releaseBufferIfDecoded();
+        }
+    }
+
+    /**
+     * 在原始属性字节上查找单个属性, 结果与 {@link MessageDecoder#string2messageProperties(String)} 一致
+     */
+    private String peekProperty(final String name) {
+        final byte[] nameBytes = name.getBytes(MessageDecoder.CHARSET_UTF8);
+        final int end = this.propertiesPosition + this.propertiesLength;
+        String value = null;
+        int itemBegin = this.propertiesPosition;
+        while (itemBegin < end) {
+            int itemEnd = itemBegin;
+            while (itemEnd < end && this.buffer[itemEnd] != MessageDecoder.PROPERTY_SEPARATOR) {
+                itemEnd++;
+            }
+
+            if (this.matchName(nameBytes, itemBegin, itemEnd)) {
+                int valueBegin = itemBegin + nameBytes.length + 1;
+                boolean valid = valueBegin < itemEnd;
+                for (int i = valueBegin; i < itemEnd && valid; i++) {
+                    valid = this.buffer[i] != MessageDecoder.NAME_VALUE_SEPARATOR;
+                }
+                // 与解析为HashMap时一致: 后出现的同名属性覆盖前者, 格式不合法的属性被忽略
+                if (valid) {
+                    value = new String(this.buffer, valueBegin, itemEnd - valueBegin, MessageDecoder.CHARSET_UTF8);
+                }
+            }
+            itemBegin = itemEnd + 1;
+        }
+        return value;
+    }
+
+    private boolean matchName(final byte[] nameBytes, final int itemBegin, final int itemEnd) {
+        if (itemEnd - itemBegin <= nameBytes.length
+            || this.buffer[itemBegin + nameBytes.length] != MessageDecoder.NAME_VALUE_SEPARATOR) {
+            return false;
+        }
+        for (int i = 0; i < nameBytes.length; i++) {
+            if (this.buffer[itemBegin + i] != nameBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public SocketAddress getBornHost() {
+        this.ensureBornHost();
+        return super.getBornHost();
+    }
+
+    @Override
+    public void setBornHost(SocketAddress bornHost) {
+        synchronized (this) {
+            this.bornHostDecoded = true;
+            super.setBornHost(bornHost);
+            this.releaseBufferIfDecoded();
+        }
+    }
+
+    @Override
+    public String getBornHostString() {
+        this.ensureBornHost();
+        return super.getBornHostString();
+    }
+
+    @Override
+    public String getBornHostNameString() {
+        this.ensureBornHost();
+        return super.getBornHostNameString();
+    }
+
+    @Override
+    public ByteBuffer getBornHostBytes() {
+        return this.getBornHostBytes(ByteBuffer.allocate(8));
+    }
+
+    @Override
+    public synchronized ByteBuffer getBornHostBytes(ByteBuffer byteBuffer) {
+        if (!this.bornHostDecoded) {
+            return this.hostBytes(this.bornHostPosition, byteBuffer);
+        }
+        return super.getBornHostBytes(byteBuffer);
+    }
+
+    private synchronized void ensureBornHost() {
+        if (!this.bornHostDecoded) {
+            SocketAddress bornHost = this.decodeHost(this.bornHostPosition);
+            this.bornHostDecoded = true;
+            super.setBornHost(bornHost);
+            this.releaseBufferIfDecoded();
+        }
+    }
+
+    @Override
+    public SocketAddress getStoreHost() {
+        this.ensureStoreHost();
+        return super.getStoreHost();
+    }
+
+    @Override
+    public void setStoreHost(SocketAddress storeHost) {
+        synchronized (this) {
+            this.storeHostDecoded = true;
+            super.setStoreHost(storeHost);
+            this.releaseBufferIfDecoded();
+        }
+    }
+
+    @Override
+    public ByteBuffer getStoreHostBytes() {
+        return this.getStoreHostBytes(ByteBuffer.allocate(8));
+    }
+
+    @Override
+    public synchronized ByteBuffer getStoreHostBytes(ByteBuffer byteBuffer) {
+        if (!this.storeHostDecoded) {
+            return this.hostBytes(this.storeHostPosition, byteBuffer);
+        }
+        return super.getStoreHostBytes(byteBuffer);
+    }
+
+    private synchronized void ensureStoreHost() {
+        if (!this.storeHostDecoded) {
+            SocketAddress storeHost = this.decodeHost(this.storeHostPosition);
+            this.storeHostDecoded = true;
+            super.setStoreHost(storeHost);
+            this.releaseBufferIfDecoded();
+        }
+    }
+
+    private ByteBuffer hostBytes(final int position, final ByteBuffer byteBuffer) {
+        byteBuffer.put(this.buffer, position, 8);
+        byteBuffer.flip();
+        return byteBuffer;
+    }
+
+    private SocketAddress decodeHost(final int position) {
+        byte[] host = new byte[4];
+        System.arraycopy(this.buffer, position, host, 0, 4);
+        int port = ByteBuffer.wrap(this.buffer, position + 4, 4).getInt();
+        try {
+            return new InetSocketAddress(InetAddress.getByAddress(host), port);
+        } catch (UnknownHostException e) {
+            // 4字节地址不会抛出该异常
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String getOffsetMsgId() {
+        this.ensureOffsetMsgId();
+        return super.getOffsetMsgId();
+    }
+
+    @Override
+    public void setOffsetMsgId(String offsetMsgId) {
+        synchronized (this) {
+            this.offsetMsgIdDecoded = true;
+            super.setOffsetMsgId(offsetMsgId);
+        }
+    }
+
+    private synchronized void ensureOffsetMsgId() {
+        if (!this.offsetMsgIdDecoded) {
+            ByteBuffer byteBufferMsgId = ByteBuffer.allocate(MessageDecoder.MSG_ID_LENGTH);
+            String msgId = MessageDecoder.createMessageId(byteBufferMsgId, this.getStoreHostBytes(), this.getCommitLogOffset());
+            this.offsetMsgIdDecoded = true;
+            super.setOffsetMsgId(msgId);
+        }
+    }
+
+    /**
+     * 解析全部字段
+     */
+    public void decodeAll() {
+        this.ensureBody();
+        this.ensureProperties();
+        this.ensureBornHost();
+        this.ensureStoreHost();
+        this.ensureOffsetMsgId();
+    }
+
+    private void releaseBufferIfDecoded() {
+        if (this.bodyDecoded && this.propertiesDecoded && this.bornHostDecoded && this.storeHostDecoded) {
+            if (!this.offsetMsgIdDecoded) {
+                this.ensureOffsetMsgId();
+            }
+            this.buffer = null;
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        this.decodeAll();
+        out.defaultWriteObject();
+    }
+
+    @Override
+    public String toString() {
+        this.decodeAll();
+        return super.toString();
+    }
+}
@@ -18,7 +18,6 @@ package org.apache.rocketmq.common.message;
 
 import java.io.Serializable;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
 public class Message implements Serializable {
@@ -30,7 +29,7 @@ public class Message implements Serializable {
     private String topic;
     private int flag;
     /**
-     * 拓展字段
+     * 拓展字段, 默认使用紧凑的 {@link MessageProperties}
      */
     private Map<String, String> properties;
     /**
@@ -73,7 +72,7 @@ public class Message implements Serializable {
 
     void putProperty(final String name, final String value) {
         if (null == this.properties) {
-            this.properties = new HashMap<String, String>();
+            this.properties = new MessageProperties();
         }
 
         this.properties.put(name, value);
@@ -99,7 +98,7 @@ public class Message implements Serializable {
 
     public String getProperty(final String name) {
         if (null == this.properties) {
-            this.properties = new HashMap<String, String>();
+            this.properties = new MessageProperties();
         }
 
         return this.properties.get(name);
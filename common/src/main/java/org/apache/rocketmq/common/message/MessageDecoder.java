@@ -17,6 +17,7 @@
 package org.apache.rocketmq.common.message;
 
 import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.common.compression.CompressionCodecFactory;
 import org.apache.rocketmq.common.sysflag.MessageSysFlag;
 
 import java.net.InetAddress;
@@ -26,7 +27,6 @@ import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -119,7 +119,8 @@ public class MessageDecoder {
         int sysFlag = messageExt.getSysFlag();
         byte[] newBody = messageExt.getBody();
         if (needCompress && (sysFlag & MessageSysFlag.COMPRESSED_FLAG) == MessageSysFlag.COMPRESSED_FLAG) {
-            newBody = UtilAll.compress(body, 5);
+            newBody = CompressionCodecFactory.getCodec(MessageSysFlag.getCompressionType(sysFlag))
+                .compress(body, 5, messageExt.getTopic());
         }
         int bodyLength = newBody.length;
         int storeSize = messageExt.getStoreSize();
@@ -311,7 +312,7 @@ public class MessageDecoder {
 
                     // uncompress body
                     if (deCompressBody && (sysFlag & MessageSysFlag.COMPRESSED_FLAG) == MessageSysFlag.COMPRESSED_FLAG) {
-                        body = UtilAll.uncompress(body);
+                        body = CompressionCodecFactory.decompress(sysFlag, body);
                     }
 
                     msgExt.setBody(body);
@@ -370,7 +371,116 @@ public class MessageDecoder {
         return msgExts;
     }
 
+    /**
+     * 客户端解析拉取结果, 消息体、属性、地址等字段延迟到首次访问时解析
+     *
+     * @param byteBuffer 拉取结果, 必须基于字节数组
+     * @return 消息列表
+     * @see LazyMessageClientExt
+     */
+    public static List<MessageExt> clientDecodesLazily(java.nio.ByteBuffer byteBuffer) {
+        List<MessageExt> msgExts = new ArrayList<MessageExt>();
+        while (byteBuffer.hasRemaining()) {
+            MessageExt msgExt = clientDecodeLazily(byteBuffer);
+            if (null != msgExt) {
+                msgExts.add(msgExt);
+            } else {
+                break;
+            }
+        }
+        return msgExts;
+    }
+
+    private static MessageExt clientDecodeLazily(java.nio.ByteBuffer byteBuffer) {
+        try {
+            final byte[] array = byteBuffer.array();
+            final int arrayOffset = byteBuffer.arrayOffset();
+
+            // 1 TOTALSIZE
+            int storeSize = byteBuffer.getInt();
+            // 2 MAGICCODE
+            byteBuffer.getInt();
+            // 3 BODYCRC
+            int bodyCRC = byteBuffer.getInt();
+            // 4 QUEUEID
+            int queueId = byteBuffer.getInt();
+            // 5 FLAG
+            int flag = byteBuffer.getInt();
+            // 6 QUEUEOFFSET
+            long queueOffset = byteBuffer.getLong();
+            // 7 PHYSICALOFFSET
+            long physicOffset = byteBuffer.getLong();
+            // 8 SYSFLAG
+            int sysFlag = byteBuffer.getInt();
+            // 9 BORNTIMESTAMP
+            long bornTimeStamp = byteBuffer.getLong();
+            // 10 BORNHOST
+            int bornHostPosition = arrayOffset + byteBuffer.position();
+            byteBuffer.position(byteBuffer.position() + 8);
+            // 11 STORETIMESTAMP
+            long storeTimestamp = byteBuffer.getLong();
+            // 12 STOREHOST
+            int storeHostPosition = arrayOffset + byteBuffer.position();
+            byteBuffer.position(byteBuffer.position() + 8);
+            // 13 RECONSUMETIMES
+            int reconsumeTimes = byteBuffer.getInt();
+            // 14 Prepared Transaction Offset
+            long preparedTransactionOffset = byteBuffer.getLong();
+            // 15 BODY
+            int bodyLen = byteBuffer.getInt();
+            int bodyPosition = arrayOffset + byteBuffer.position();
+            byte[] compressedBody = null;
+            if (bodyLen > 0) {
+                if ((sysFlag & MessageSysFlag.COMPRESSED_FLAG) == MessageSysFlag.COMPRESSED_FLAG) {
+                    // 压缩的消息体仍立即解压, 解压失败时与 decode 的行为保持一致
+                    compressedBody = new byte[bodyLen];
+                    byteBuffer.get(compressedBody);
+                } else {
+                    byteBuffer.position(byteBuffer.position() + bodyLen);
+                }
+            }
+            // 16 TOPIC
+            byte topicLen = byteBuffer.get();
+            String topic = new String(array, arrayOffset + byteBuffer.position(), topicLen, CHARSET_UTF8);
+            byteBuffer.position(byteBuffer.position() + topicLen);
+            // 17 properties
+            short propertiesLength = byteBuffer.getShort();
+            int propertiesPosition = arrayOffset + byteBuffer.position();
+            if (propertiesLength > 0) {
+                byteBuffer.position(byteBuffer.position() + propertiesLength);
+            }
+
+            LazyMessageClientExt msgExt = new LazyMessageClientExt(array, bornHostPosition, storeHostPosition,
+                bodyPosition, compressedBody != null ? 0 : bodyLen, propertiesPosition, propertiesLength);
+            msgExt.setStoreSize(storeSize);
+            msgExt.setBodyCRC(bodyCRC);
+            msgExt.setQueueId(queueId);
+            msgExt.setFlag(flag);
+            msgExt.setQueueOffset(queueOffset);
+            msgExt.setCommitLogOffset(physicOffset);
+            msgExt.setSysFlag(sysFlag);
+            msgExt.setBornTimestamp(bornTimeStamp);
+            msgExt.setStoreTimestamp(storeTimestamp);
+            msgExt.setReconsumeTimes(reconsumeTimes);
+            msgExt.setPreparedTransactionOffset(preparedTransactionOffset);
+            msgExt.setTopic(topic);
+            if (compressedBody != null) {
+                msgExt.setBody(CompressionCodecFactory.decompress(sysFlag, compressedBody));
+            }
+
+            return msgExt;
+        } catch (Exception e) {
+            byteBuffer.position(byteBuffer.limit());
+        }
+
+        return null;
+    }
+
     public static String messageProperties2String(Map<String, String> properties) {
+        if (properties instanceof MessageProperties) {
+            return ((MessageProperties) properties).encode();
+        }
+
         StringBuilder sb = new StringBuilder();
         if (properties != null) {
             for (final Map.Entry<String, String> entry : properties.entrySet()) {
@@ -386,18 +496,10 @@ public class MessageDecoder {
         return sb.toString();
     }
 
+    /**
+     * 解析属性串, 返回的 {@link MessageProperties} 未被修改时可直接编码回同一属性串
+     */
     public static Map<String, String> string2messageProperties(final String properties) {
-        Map<String, String> map = new HashMap<String, String>();
-        if (properties != null) {
-            String[] items = properties.split(String.valueOf(PROPERTY_SEPARATOR));
-            for (String i : items) {
-                String[] nv = i.split(String.valueOf(NAME_VALUE_SEPARATOR));
-                if (2 == nv.length) {
-                    map.put(nv[0], nv[1]);
-                }
-            }
-        }
-
-        return map;
+        return MessageProperties.decode(properties);
     }
 }
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.message;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 紧凑的消息属性表
+ *
+ * 属性按插入顺序保存在名称、值两个数组中, 按名称顺序查找。从属性串解析时只建立值的位置索引, 值在首次访问时才截取;
+ * {@link MessageConst} 中的系统属性名直接复用常量, 不创建新的字符串。
+ * 未被修改时 {@link #encode()} 直接返回解析时的属性串, 发送与写入CommitLog时无需重新拼接。
+ *
+ * 与 {@link HashMap} 一样非线程安全, 但与 {@link HashMap} 一样允许多个线程同时读取:
+ * 读取时只缓存截取出的值, 不修改位置索引。值是不可变的 {@link String}, 与 {@link String#hashCode()} 缓存同理,
+ * 并发读取至多重复截取, 不会读到不完整的值, 且已缓存的值不会被覆盖。
+ */
+public class MessageProperties extends AbstractMap<String, String> implements Serializable {
+    private static final long serialVersionUID = -3817394046126397427L;
+
+    private static final String[] EMPTY_NAMES = new String[0];
+    private static final String[] EMPTY_VALUES = new String[0];
+    private static final int[] EMPTY_VALUE_INDEX = new int[0];
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * 按名称长度分组的系统属性名
+     */
+    private static final String[][] WELL_KNOWN_NAMES;
+
+    static {
+        int maxLength = 0;
+        for (String name : MessageConst.STRING_HASH_SET) {
+            maxLength = Math.max(maxLength, name.length());
+        }
+
+        List<List<String>> grouped = new ArrayList<List<String>>(maxLength + 1);
+        for (int i = 0; i <= maxLength; i++) {
+            grouped.add(new ArrayList<String>());
+        }
+        for (String name : MessageConst.STRING_HASH_SET) {
+            grouped.get(name.length()).add(name);
+        }
+
+        WELL_KNOWN_NAMES = new String[maxLength + 1][];
+        for (int i = 0; i <= maxLength; i++) {
+            WELL_KNOWN_NAMES[i] = grouped.get(i).toArray(new String[0]);
+        }
+    }
+
+    /**
+     * 编码后的属性串, 格式与 {@link MessageDecoder#messageProperties2String(Map)} 一致; 属性被修改后置为null
+     */
+    private String encoded;
+    /**
+     * 解析来源, 尚未截取的值从中截取
+     */
+    private String source;
+    private String[] names = EMPTY_NAMES;
+    private String[] values = EMPTY_VALUES;
+    /**
+     * 第i个值在 source 中的起止位置为 valueIndex[2i], valueIndex[2i+1]; 起始位置为-1表示值只在 values 中(由put写入)。
+     * values[i] 非空时总是优先使用, 读取时不修改本数组
+     */
+    private int[] valueIndex = EMPTY_VALUE_INDEX;
+    private int size;
+
+    public MessageProperties() {
+        this.encoded = "";
+    }
+
+    public MessageProperties(final Map<String, String> properties) {
+        this();
+        this.putAll(properties);
+    }
+
+    /**
+     * 解析属性串, 结果与按分隔符拆分后放入HashMap一致: 格式不合法的属性被忽略, 后出现的同名属性覆盖前者
+     */
+    public static MessageProperties decode(final String properties) {
+        MessageProperties result = new MessageProperties();
+        if (null == properties || properties.isEmpty()) {
+            return result;
+        }
+
+        result.source = properties;
+        // 属性串与重新编码的结果完全相同时才保留, 否则在下次编码时重建
+        boolean canonical = properties.charAt(properties.length() - 1) == MessageDecoder.PROPERTY_SEPARATOR;
+        final int end = properties.length();
+        int itemBegin = 0;
+        while (itemBegin < end) {
+            int itemEnd = properties.indexOf(MessageDecoder.PROPERTY_SEPARATOR, itemBegin);
+            if (itemEnd < 0) {
+                itemEnd = end;
+            }
+            if (!result.decodeItem(itemBegin, itemEnd)) {
+                canonical = false;
+            }
+            itemBegin = itemEnd + 1;
+        }
+
+        if (canonical) {
+            result.encoded = properties;
+        } else {
+            result.encoded = null;
+        }
+        return result;
+    }
+
+    /**
+     * @return 该属性是否是规范格式
+     */
+    private boolean decodeItem(final int itemBegin, final int itemEnd) {
+        final String properties = this.source;
+        final int separator = properties.indexOf(MessageDecoder.NAME_VALUE_SEPARATOR, itemBegin);
+        if (separator < 0 || separator >= itemEnd) {
+            return false;
+        }
+
+        final int valueBegin = separator + 1;
+        int valueEnd = properties.indexOf(MessageDecoder.NAME_VALUE_SEPARATOR, valueBegin);
+        if (valueEnd < 0 || valueEnd > itemEnd) {
+            valueEnd = itemEnd;
+        }
+        if (valueEnd == valueBegin) {
+            return false;
+        }
+        // 值之后只允许出现分隔符, 与 String#split 丢弃末尾空串的行为一致
+        boolean canonical = valueEnd == itemEnd;
+        for (int i = valueEnd; i < itemEnd; i++) {
+            if (properties.charAt(i) != MessageDecoder.NAME_VALUE_SEPARATOR) {
+                return false;
+            }
+        }
+
+        final String name = nameOf(properties, itemBegin, separator);
+        final int index = this.indexOf(name);
+        if (index >= 0) {
+            this.values[index] = null;
+            this.valueIndex[2 * index] = valueBegin;
+            this.valueIndex[2 * index + 1] = valueEnd;
+            return false;
+        }
+
+        this.ensureCapacity(this.size + 1);
+        this.names[this.size] = name;
+        this.valueIndex[2 * this.size] = valueBegin;
+        this.valueIndex[2 * this.size + 1] = valueEnd;
+        this.size++;
+        return canonical;
+    }
+
+    private static String nameOf(final String properties, final int begin, final int end) {
+        final int length = end - begin;
+        if (length < WELL_KNOWN_NAMES.length) {
+            for (String name : WELL_KNOWN_NAMES[length]) {
+                if (properties.regionMatches(begin, name, 0, length)) {
+                    return name;
+                }
+            }
+        }
+        return properties.substring(begin, end);
+    }
+
+    /**
+     * 编码为 name\u0001value\u0002 拼接的属性串, 未修改时直接返回缓存的结果
+     */
+    public String encode() {
+        String result = this.encoded;
+        if (null == result) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < this.size; i++) {
+                sb.append(this.names[i]);
+                sb.append(MessageDecoder.NAME_VALUE_SEPARATOR);
+                sb.append(this.valueAt(i));
+                sb.append(MessageDecoder.PROPERTY_SEPARATOR);
+            }
+            result = sb.toString();
+            this.encoded = result;
+        }
+        return result;
+    }
+
+    private int indexOf(final Object name) {
+        // 系统属性名多为同一常量, 先按引用比较
+        for (int i = 0; i < this.size; i++) {
+            if (this.names[i] == name) {
+                return i;
+            }
+        }
+        if (name != null) {
+            for (int i = 0; i < this.size; i++) {
+                if (name.equals(this.names[i])) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private String valueAt(final int index) {
+        final String cached = this.values[index];
+        if (cached != null) {
+            return cached;
+        }
+
+        final int begin = this.valueIndex[2 * index];
+        if (begin < 0) {
+            return null;
+        }
+        // 只在尚未缓存时写入, 并发读取时各线程截取的值相同
+        final String value = this.source.substring(begin, this.valueIndex[2 * index + 1]);
+        this.values[index] = value;
+        return value;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > this.names.length) {
+            int newCapacity = Math.max(capacity, Math.max(DEFAULT_CAPACITY, this.names.length * 2));
+            this.names = Arrays.copyOf(this.names, newCapacity);
+            this.values = Arrays.copyOf(this.values, newCapacity);
+            this.valueIndex = Arrays.copyOf(this.valueIndex, 2 * newCapacity);
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(final Object key) {
+        final int index = this.indexOf(key);
+        return index >= 0 ? this.valueAt(index) : null;
+    }
+
+    @Override
+    public String put(final String key, final String value) {
+        final int index = this.indexOf(key);
+        if (index >= 0) {
+            final String old = this.valueAt(index);
+            this.values[index] = value;
+            this.valueIndex[2 * index] = -1;
+            if (old == null ? value != null : !old.equals(value)) {
+                this.encoded = null;
+            }
+            return old;
+        }
+
+        this.ensureCapacity(this.size + 1);
+        this.names[this.size] = key;
+        this.values[this.size] = value;
+        this.valueIndex[2 * this.size] = -1;
+        this.size++;
+        this.encoded = null;
+        return null;
+    }
+
+    @Override
+    public String remove(final Object key) {
+        final int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+
+        final String old = this.valueAt(index);
+        this.removeAt(index);
+        return old;
+    }
+
+    private void removeAt(final int index) {
+        final int moved = this.size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(this.names, index + 1, this.names, index, moved);
+            System.arraycopy(this.values, index + 1, this.values, index, moved);
+            System.arraycopy(this.valueIndex, 2 * (index + 1), this.valueIndex, 2 * index, 2 * moved);
+        }
+        this.size--;
+        this.names[this.size] = null;
+        this.values[this.size] = null;
+        this.encoded = null;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.names, 0, this.size, null);
+        Arrays.fill(this.values, 0, this.size, null);
+        this.size = 0;
+        this.source = null;
+        this.encoded = "";
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return MessageProperties.this.size;
+            }
+
+            @Override
+            public void clear() {
+                MessageProperties.this.clear();
+            }
+        };
+    }
+
+    /**
+     * 按原有格式(HashMap)序列化, 与旧版本保持兼容
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new HashMap<String, String>(this);
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, String>> {
+        private int cursor = 0;
+        private int lastReturned = -1;
+
+        @Override
+        public boolean hasNext() {
+            return this.cursor < MessageProperties.this.size;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (this.cursor >= MessageProperties.this.size) {
+                throw new NoSuchElementException();
+            }
+            this.lastReturned = this.cursor++;
+            return new PropertyEntry(MessageProperties.this.names[this.lastReturned], MessageProperties.this.valueAt(this.lastReturned));
+        }
+
+        @Override
+        public void remove() {
+            if (this.lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            MessageProperties.this.removeAt(this.lastReturned);
+            this.cursor = this.lastReturned;
+            this.lastReturned = -1;
+        }
+    }
+
+    private class PropertyEntry extends SimpleEntry<String, String> {
+        private static final long serialVersionUID = 2604813474262532406L;
+
+        PropertyEntry(final String key, final String value) {
+            super(key, value);
+        }
+
+        @Override
+        public String setValue(final String value) {
+            MessageProperties.this.put(this.getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
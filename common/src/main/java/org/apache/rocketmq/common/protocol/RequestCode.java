@@ -185,4 +185,34 @@ public class RequestCode {
      * get config from name server
      */
     public static final int GET_NAMESRV_CONFIG = 319;
+
+    /**
+     * 批量发回消费失败的消息
+     * Consumer => Broker
+     */
+    public static final int CONSUMER_SEND_MSG_BACK_BATCH = 320;
+
+    /**
+     * 批量更新一个消费分组在Broker上的消费进度
+     * Consumer => Broker
+     */
+    public static final int UPDATE_CONSUMER_OFFSET_BATCH = 321;
+
+    /**
+     * 批量发送同一消息队列的消息
+     * Producer => Broker
+     */
+    public static final int SEND_BATCH_MESSAGE = 322;
+
+    /**
+     * 批量获取版本有变化的Topic路由
+     * Client => Namesrv
+     */
+    public static final int GET_ROUTEINFO_BY_TOPICS = 323;
+
+    /**
+     * 心跳数据未变化时的精简心跳
+     * Client => Broker
+     */
+    public static final int HEART_BEAT_LITE = 324;
 }
@@ -79,4 +79,14 @@ public class ResponseCode extends RemotingSysResponseCode {
     public static final int CONSUME_MSG_TIMEOUT = 207;
 
     public static final int NO_MESSAGE = 208;
+
+    /**
+     * 精简心跳的指纹与Broker登记的不一致, 需要发送完整心跳
+     */
+    public static final int HEARTBEAT_FINGERPRINT_MISMATCH = 209;
+
+    /**
+     * Broker只上报了数据版本, 但Namesrv登记的注册信息与之不一致, 需要完整注册
+     */
+    public static final int REGISTER_BROKER_TOPIC_CONFIG_REQUIRED = 210;
 }
@@ -34,6 +34,10 @@ public class ConsumerRunningInfo extends RemotingSerializable {
     public static final String PROP_CONSUME_TYPE = "PROP_CONSUME_TYPE";
     public static final String PROP_CLIENT_VERSION = "PROP_CLIENT_VERSION";
     public static final String PROP_CONSUMER_START_TIMESTAMP = "PROP_CONSUMER_START_TIMESTAMP";
+    public static final String PROP_CACHED_MSG_SIZE = "PROP_CACHED_MSG_SIZE";
+    public static final String PROP_QUEUE_COUNT_FLOW_CONTROL_TIMES = "PROP_QUEUE_COUNT_FLOW_CONTROL_TIMES";
+    public static final String PROP_QUEUE_SIZE_FLOW_CONTROL_TIMES = "PROP_QUEUE_SIZE_FLOW_CONTROL_TIMES";
+    public static final String PROP_QUEUE_SPAN_FLOW_CONTROL_TIMES = "PROP_QUEUE_SPAN_FLOW_CONTROL_TIMES";
 
     private Properties properties = new Properties();
 
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.common.protocol.body;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.rocketmq.remoting.protocol.RemotingSerializable;
+
+public class ConsumerSendMsgBackBatchRequestBody extends RemotingSerializable {
+
+    private List<SendBackEntry> entryList = new ArrayList<SendBackEntry>();
+
+    public List<SendBackEntry> getEntryList() {
+        return entryList;
+    }
+
+    public void setEntryList(List<SendBackEntry> entryList) {
+        this.entryList = entryList;
+    }
+
+    /**
+     * 单条发回消息, 字段含义与 {@link org.apache.rocketmq.common.protocol.header.ConsumerSendMsgBackRequestHeader} 相同
+     */
+    public static class SendBackEntry {
+        /**
+         * 消息在CommitLog中的物理位置
+         */
+        private long offset;
+        private int delayLevel;
+        private String originMsgId;
+        private String originTopic;
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public void setOffset(long offset) {
+            this.offset = offset;
+        }
+
+        public int getDelayLevel() {
+            return delayLevel;
+        }
+
+        public void setDelayLevel(int delayLevel) {
+            this.delayLevel = delayLevel;
+        }
+
+        public String getOriginMsgId() {
+            return originMsgId;
+        }
+
+        public void setOriginMsgId(String originMsgId) {
+            this.originMsgId = originMsgId;
+        }
+
+        public String getOriginTopic() {
+            return originTopic;
+        }
+
+        public void setOriginTopic(String originTopic) {
+            this.originTopic = originTopic;
+        }
+    }
+}
@@ -25,6 +25,7 @@ public class ProcessQueueInfo {
     private long cachedMsgMinOffset;
     private long cachedMsgMaxOffset;
     private int cachedMsgCount;
+    private int cachedMsgSizeInMiB;
 
     private long transactionMsgMinOffset;
     private long transactionMsgMaxOffset;
@@ -70,6 +71,14 @@ public class ProcessQueueInfo {
         this.cachedMsgCount = cachedMsgCount;
     }
 
+    public int getCachedMsgSizeInMiB() {
+        return cachedMsgSizeInMiB;
+    }
+
+    public void setCachedMsgSizeInMiB(final int cachedMsgSizeInMiB) {
+        this.cachedMsgSizeInMiB = cachedMsgSizeInMiB;
+    }
+
     public long getTransactionMsgMinOffset() {
         return transactionMsgMinOffset;
     }
@@ -146,7 +155,7 @@ public class ProcessQueueInfo {
     public String toString() {
         return "ProcessQueueInfo [commitOffset=" + commitOffset + ", cachedMsgMinOffset="
             + cachedMsgMinOffset + ", cachedMsgMaxOffset=" + cachedMsgMaxOffset + ", cachedMsgCount="
-            + cachedMsgCount + ", transactionMsgMinOffset=" + transactionMsgMinOffset
+            + cachedMsgCount + ", cachedMsgSizeInMiB=" + cachedMsgSizeInMiB + ", transactionMsgMinOffset=" + transactionMsgMinOffset
             + ", transactionMsgMaxOffset=" + transactionMsgMaxOffset + ", transactionMsgCount="
             + transactionMsgCount + ", locked=" + locked + ", tryUnlockTimes=" + tryUnlockTimes
             + ", lastLockTimestamp=" + UtilAll.timeMillisToHumanString(lastLockTimestamp) + ", droped="
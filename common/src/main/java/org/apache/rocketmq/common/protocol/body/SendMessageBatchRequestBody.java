@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.protocol.body;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.rocketmq.common.message.MessageDecoder;
+
+/**
+ * 批量发送消息请求体
+ *
+ * 消息体为二进制内容, 不使用JSON序列化, 按如下格式依次编码每条消息:
+ * <pre>
+ * count(4) { flag(4) sysFlag(4) bornTimestamp(8) bodyLength(4) body propertiesLength(4) properties }
+ * </pre>
+ */
+public class SendMessageBatchRequestBody {
+    /**
+     * 每条消息除消息体与属性外的定长部分
+     */
+    private static final int ENTRY_FIXED_LENGTH = 4 + 4 + 8 + 4 + 4;
+
+    private final List<MessageEntry> entryList;
+
+    public SendMessageBatchRequestBody(final List<MessageEntry> entryList) {
+        this.entryList = entryList;
+    }
+
+    public byte[] encode() {
+        int size = 4;
+        final List<byte[]> propertiesList = new ArrayList<byte[]>(this.entryList.size());
+        for (MessageEntry entry : this.entryList) {
+            byte[] properties = entry.getProperties() == null ? new byte[0] : entry.getProperties().getBytes(MessageDecoder.CHARSET_UTF8);
+            propertiesList.add(properties);
+            size += ENTRY_FIXED_LENGTH + entry.getBody().length + properties.length;
+        }
+
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(size);
+        byteBuffer.putInt(this.entryList.size());
+        for (int i = 0; i < this.entryList.size(); i++) {
+            MessageEntry entry = this.entryList.get(i);
+            byteBuffer.putInt(entry.getFlag());
+            byteBuffer.putInt(entry.getSysFlag());
+            byteBuffer.putLong(entry.getBornTimestamp());
+            byteBuffer.putInt(entry.getBody().length);
+            byteBuffer.put(entry.getBody());
+            byteBuffer.putInt(propertiesList.get(i).length);
+            byteBuffer.put(propertiesList.get(i));
+        }
+        return byteBuffer.array();
+    }
+
+    /**
+     * 解码请求体, 长度字段来自网络, 均按剩余字节数校验后再分配
+     *
+     * @param data           请求体
+     * @param maxMessageSize 单条消息体的最大长度
+     * @return 请求体, 格式不合法时返回null
+     */
+    public static SendMessageBatchRequestBody decode(final byte[] data, final int maxMessageSize) {
+        if (data == null || data.length < 4) {
+            return null;
+        }
+
+        final ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+        final int count = byteBuffer.getInt();
+        if (count < 0 || count > byteBuffer.remaining() / ENTRY_FIXED_LENGTH) {
+            return null;
+        }
+        final List<MessageEntry> entryList = new ArrayList<MessageEntry>(count);
+        for (int i = 0; i < count; i++) {
+            if (byteBuffer.remaining() < ENTRY_FIXED_LENGTH) {
+                return null;
+            }
+            MessageEntry entry = new MessageEntry();
+            entry.setFlag(byteBuffer.getInt());
+            entry.setSysFlag(byteBuffer.getInt());
+            entry.setBornTimestamp(byteBuffer.getLong());
+            final int bodyLength = byteBuffer.getInt();
+            // 还需读取4字节的属性长度
+            if (bodyLength < 0 || bodyLength > maxMessageSize || bodyLength > byteBuffer.remaining() - 4) {
+                return null;
+            }
+            byte[] body = new byte[bodyLength];
+            byteBuffer.get(body);
+            entry.setBody(body);
+            final int propertiesLength = byteBuffer.getInt();
+            if (propertiesLength < 0 || propertiesLength > byteBuffer.remaining()) {
+                return null;
+            }
+            entry.setProperties(new String(data, byteBuffer.position(), propertiesLength, MessageDecoder.CHARSET_UTF8));
+            byteBuffer.position(byteBuffer.position() + propertiesLength);
+            entryList.add(entry);
+        }
+        return new SendMessageBatchRequestBody(entryList);
+    }
+
+    public List<MessageEntry> getEntryList() {
+        return entryList;
+    }
+
+    /**
+     * 批量中的一条消息
+     */
+    public static class MessageEntry {
+        private int flag;
+        /**
+         * 消息系统标识, 如是否压缩
+         */
+        private int sysFlag;
+        private long bornTimestamp;
+        private byte[] body;
+        private String properties;
+
+        public int getFlag() {
+            return flag;
+        }
+
+        public void setFlag(int flag) {
+            this.flag = flag;
+        }
+
+        public int getSysFlag() {
+            return sysFlag;
+        }
+
+        public void setSysFlag(int sysFlag) {
+            this.sysFlag = sysFlag;
+        }
+
+        public long getBornTimestamp() {
+            return bornTimestamp;
+        }
+
+        public void setBornTimestamp(long bornTimestamp) {
+            this.bornTimestamp = bornTimestamp;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public void setBody(byte[] body) {
+            this.body = body;
+        }
+
+        public String getProperties() {
+            return properties;
+        }
+
+        public void setProperties(String properties) {
+            this.properties = properties;
+        }
+    }
+}
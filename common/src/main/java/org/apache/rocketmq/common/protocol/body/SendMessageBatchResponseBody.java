@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.protocol.body;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.rocketmq.remoting.protocol.RemotingSerializable;
+
+public class SendMessageBatchResponseBody extends RemotingSerializable {
+
+    /**
+     * 每条消息的发送结果, 与请求中的消息一一对应
+     */
+    private List<SendResultEntry> resultList = new ArrayList<SendResultEntry>();
+
+    public List<SendResultEntry> getResultList() {
+        return resultList;
+    }
+
+    public void setResultList(List<SendResultEntry> resultList) {
+        this.resultList = resultList;
+    }
+
+    public static class SendResultEntry {
+        /**
+         * 响应码, 与单条发送的响应码含义一致
+         */
+        private int code;
+        private String remark;
+        private String msgId;
+        private long queueOffset;
+
+        public int getCode() {
+            return code;
+        }
+
+        public void setCode(int code) {
+            this.code = code;
+        }
+
+        public String getRemark() {
+            return remark;
+        }
+
+        public void setRemark(String remark) {
+            this.remark = remark;
+        }
+
+        public String getMsgId() {
+            return msgId;
+        }
+
+        public void setMsgId(String msgId) {
+            this.msgId = msgId;
+        }
+
+        public long getQueueOffset() {
+            return queueOffset;
+        }
+
+        public void setQueueOffset(long queueOffset) {
+            this.queueOffset = queueOffset;
+        }
+    }
+}
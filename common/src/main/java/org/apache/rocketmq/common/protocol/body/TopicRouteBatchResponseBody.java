@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.protocol.body;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.rocketmq.common.protocol.route.TopicRouteData;
+import org.apache.rocketmq.remoting.protocol.RemotingSerializable;
+
+public class TopicRouteBatchResponseBody extends RemotingSerializable {
+
+    /**
+     * 版本有变化的路由, 版本未变的Topic不返回
+     */
+    private HashMap<String/* topic */, TopicRouteData> topicRouteTable = new HashMap<String, TopicRouteData>();
+    /**
+     * 变化路由的当前版本
+     */
+    private HashMap<String/* topic */, Long/* routeVersion */> topicVersionTable = new HashMap<String, Long>();
+    /**
+     * Namesrv上不存在路由的Topic
+     */
+    private Set<String> notExistTopics = new HashSet<String>();
+
+    public HashMap<String, TopicRouteData> getTopicRouteTable() {
+        return topicRouteTable;
+    }
+
+    public void setTopicRouteTable(HashMap<String, TopicRouteData> topicRouteTable) {
+        this.topicRouteTable = topicRouteTable;
+    }
+
+    public HashMap<String, Long> getTopicVersionTable() {
+        return topicVersionTable;
+    }
+
+    public void setTopicVersionTable(HashMap<String, Long> topicVersionTable) {
+        this.topicVersionTable = topicVersionTable;
+    }
+
+    public Set<String> getNotExistTopics() {
+        return notExistTopics;
+    }
+
+    public void setNotExistTopics(Set<String> notExistTopics) {
+        this.notExistTopics = notExistTopics;
+    }
+}
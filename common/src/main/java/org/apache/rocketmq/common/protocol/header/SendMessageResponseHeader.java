@@ -47,6 +47,14 @@ public class SendMessageResponseHeader implements CommandCustomHeader {
      * TODO 待读
      */
     private String transactionId;
+    /**
+     * Broker负载提示：发送线程池队列使用率(百分比)，Broker未开启时为空
+     */
+    private Integer sendQueueLoad;
+    /**
+     * Broker负载提示：CommitLog写入锁持有时间已接近PageCache繁忙阈值
+     */
+    private Boolean pageCacheBusy;
 
     @Override
     public void checkFields() throws RemotingCommandException {
@@ -83,4 +91,20 @@ public class SendMessageResponseHeader implements CommandCustomHeader {
     public void setTransactionId(String transactionId) {
         this.transactionId = transactionId;
     }
+
+    public Integer getSendQueueLoad() {
+        return sendQueueLoad;
+    }
+
+    public void setSendQueueLoad(Integer sendQueueLoad) {
+        this.sendQueueLoad = sendQueueLoad;
+    }
+
+    public Boolean getPageCacheBusy() {
+        return pageCacheBusy;
+    }
+
+    public void setPageCacheBusy(Boolean pageCacheBusy) {
+        this.pageCacheBusy = pageCacheBusy;
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.protocol.header;
+
+import org.apache.rocketmq.remoting.CommandCustomHeader;
+import org.apache.rocketmq.remoting.annotation.CFNullable;
+import org.apache.rocketmq.remoting.exception.RemotingCommandException;
+
+/**
+ * Slave从Master同步元数据的响应头, 旧版本Master不返回
+ */
+public class SyncMetadataResponseHeader implements CommandCustomHeader {
+    /**
+     * 数据版本与请求中的一致, 响应不带消息体
+     */
+    @CFNullable
+    private Boolean notModified;
+    /**
+     * 消息体为二进制编码的增量数据
+     */
+    @CFNullable
+    private Boolean incremental;
+
+    public Boolean getNotModified() {
+        return notModified;
+    }
+
+    public void setNotModified(Boolean notModified) {
+        this.notModified = notModified;
+    }
+
+    public Boolean getIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(Boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    @Override
+    public void checkFields() throws RemotingCommandException {
+    }
+}
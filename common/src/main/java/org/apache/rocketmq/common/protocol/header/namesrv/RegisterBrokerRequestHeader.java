@@ -22,6 +22,7 @@ package org.apache.rocketmq.common.protocol.header.namesrv;
 
 import org.apache.rocketmq.remoting.CommandCustomHeader;
 import org.apache.rocketmq.remoting.annotation.CFNotNull;
+import org.apache.rocketmq.remoting.annotation.CFNullable;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 
 public class RegisterBrokerRequestHeader implements CommandCustomHeader {
@@ -35,6 +36,16 @@ public class RegisterBrokerRequestHeader implements CommandCustomHeader {
     private String haServerAddr;
     @CFNotNull
     private Long brokerId;
+    /**
+     * 请求体是否经过zlib压缩
+     */
+    @CFNullable
+    private Boolean compressed;
+    /**
+     * 请求体是否只包含数据版本与filtersrv, 不包含Topic配置
+     */
+    @CFNullable
+    private Boolean versionOnly;
 
     @Override
     public void checkFields() throws RemotingCommandException {
@@ -79,4 +90,20 @@ public class RegisterBrokerRequestHeader implements CommandCustomHeader {
     public void setBrokerId(Long brokerId) {
         this.brokerId = brokerId;
     }
+
+    public Boolean getCompressed() {
+        return compressed;
+    }
+
+    public void setCompressed(Boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    public Boolean getVersionOnly() {
+        return versionOnly;
+    }
+
+    public void setVersionOnly(Boolean versionOnly) {
+        this.versionOnly = versionOnly;
+    }
 }
@@ -26,6 +26,11 @@ public class RegisterBrokerResponseHeader implements CommandCustomHeader {
     private String haServerAddr;
     @CFNullable
     private String masterAddr;
+    /**
+     * Namesrv是否支持压缩请求体与只上报数据版本的注册
+     */
+    @CFNullable
+    private Boolean compactRegisterSupported;
 
     @Override
     public void checkFields() throws RemotingCommandException {
@@ -46,4 +51,12 @@ public class RegisterBrokerResponseHeader implements CommandCustomHeader {
     public void setMasterAddr(String masterAddr) {
         this.masterAddr = masterAddr;
     }
+
+    public Boolean getCompactRegisterSupported() {
+        return compactRegisterSupported;
+    }
+
+    public void setCompactRegisterSupported(Boolean compactRegisterSupported) {
+        this.compactRegisterSupported = compactRegisterSupported;
+    }
 }
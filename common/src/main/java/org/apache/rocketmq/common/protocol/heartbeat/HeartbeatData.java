@@ -20,7 +20,11 @@
  */
 package org.apache.rocketmq.common.protocol.heartbeat;
 
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import org.apache.rocketmq.remoting.protocol.RemotingSerializable;
 
@@ -53,6 +57,46 @@ public class HeartbeatData extends RemotingSerializable {
         this.consumerDataSet = consumerDataSet;
     }
 
+    /**
+     * 计算心跳数据指纹, 与集合的遍历顺序无关
+     *
+     * @return 64位 FNV-1a 哈希
+     */
+    public long computeFingerprint() {
+        List<String> producers = new ArrayList<String>(this.producerDataSet.size());
+        for (ProducerData producerData : this.producerDataSet) {
+            producers.add(producerData.getGroupName());
+        }
+        Collections.sort(producers);
+
+        List<String> consumers = new ArrayList<String>(this.consumerDataSet.size());
+        for (ConsumerData consumerData : this.consumerDataSet) {
+            List<String> subscriptions = new ArrayList<String>(consumerData.getSubscriptionDataSet().size());
+            for (SubscriptionData subscriptionData : consumerData.getSubscriptionDataSet()) {
+                List<String> tags = new ArrayList<String>(subscriptionData.getTagsSet());
+                Collections.sort(tags);
+                List<Integer> codes = new ArrayList<Integer>(subscriptionData.getCodeSet());
+                Collections.sort(codes);
+                subscriptions.add(subscriptionData.getTopic() + '\u0001' + subscriptionData.getSubString()
+                    + '\u0001' + subscriptionData.isClassFilterMode() + '\u0001' + subscriptionData.getSubVersion()
+                    + '\u0001' + tags + '\u0001' + codes);
+            }
+            Collections.sort(subscriptions);
+            consumers.add(consumerData.getGroupName() + '\u0001' + consumerData.getConsumeType()
+                + '\u0001' + consumerData.getMessageModel() + '\u0001' + consumerData.getConsumeFromWhere()
+                + '\u0001' + consumerData.isUnitMode() + '\u0001' + subscriptions);
+        }
+        Collections.sort(consumers);
+
+        final byte[] data = (this.clientID + '\u0002' + producers + '\u0002' + consumers).getBytes(Charset.forName("UTF-8"));
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : data) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
     @Override
     public String toString() {
         return "HeartbeatData [clientID=" + clientID + ", producerDataSet=" + producerDataSet
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.protocol.heartbeat;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.apache.rocketmq.remoting.protocol.RemotingSerializable;
+
+/**
+ * 精简心跳: 心跳数据未变化时只携带分组名与心跳数据指纹
+ * Broker上该连接登记的指纹与之一致时只刷新存活时间, 否则要求客户端发送完整心跳
+ */
+public class HeartbeatLiteData extends RemotingSerializable {
+    private String clientID;
+    private long fingerprint;
+    private Set<String> producerGroups = new HashSet<String>();
+    private Set<String> consumerGroups = new HashSet<String>();
+
+    public String getClientID() {
+        return clientID;
+    }
+
+    public void setClientID(String clientID) {
+        this.clientID = clientID;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(long fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public Set<String> getProducerGroups() {
+        return producerGroups;
+    }
+
+    public void setProducerGroups(Set<String> producerGroups) {
+        this.producerGroups = producerGroups;
+    }
+
+    public Set<String> getConsumerGroups() {
+        return consumerGroups;
+    }
+
+    public void setConsumerGroups(Set<String> consumerGroups) {
+        this.consumerGroups = consumerGroups;
+    }
+
+    @Override
+    public String toString() {
+        return "HeartbeatLiteData [clientID=" + clientID + ", fingerprint=" + fingerprint + ", producerGroups=" + producerGroups
+            + ", consumerGroups=" + consumerGroups + "]";
+    }
+}
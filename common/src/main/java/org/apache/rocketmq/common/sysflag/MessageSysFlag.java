@@ -41,6 +41,12 @@ public class MessageSysFlag {
      * 事务类型 - 回滚
      */
     public final static int TRANSACTION_ROLLBACK_TYPE = 0x3 << 2;
+    /**
+     * 压缩算法编号, 仅在设置了 {@link #COMPRESSED_FLAG} 时有效, 0 为zlib以兼容旧版本
+     */
+    public final static int COMPRESSION_TYPE_SHIFT = 8;
+    public final static int COMPRESSION_TYPE_MAX = 0x7;
+    public final static int COMPRESSION_TYPE_MASK = COMPRESSION_TYPE_MAX << COMPRESSION_TYPE_SHIFT;
 
     public static int getTransactionValue(final int flag) {
         return flag & TRANSACTION_ROLLBACK_TYPE;
@@ -51,6 +57,14 @@ public class MessageSysFlag {
     }
 
     public static int clearCompressedFlag(final int flag) {
-        return flag & (~COMPRESSED_FLAG);
+        return flag & (~(COMPRESSED_FLAG | COMPRESSION_TYPE_MASK));
+    }
+
+    public static int getCompressionType(final int flag) {
+        return (flag & COMPRESSION_TYPE_MASK) >>> COMPRESSION_TYPE_SHIFT;
+    }
+
+    public static int setCompressionType(final int flag, final int type) {
+        return (flag & (~COMPRESSION_TYPE_MASK)) | ((type & COMPRESSION_TYPE_MAX) << COMPRESSION_TYPE_SHIFT);
     }
 }
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.compression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.rocketmq.common.sysflag.MessageSysFlag;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class CompressionCodecTest {
+    private static final String TOPIC = "CompressionCodecTest";
+
+    @Test
+    public void testLz4RoundTrip() throws IOException {
+        CompressionCodec codec = CompressionCodecFactory.getCodec(CompressionType.LZ4);
+        Random random = new Random(7);
+        byte[] randomBytes = new byte[100000];
+        random.nextBytes(randomBytes);
+        byte[] json = orderJson(random, 200).getBytes("UTF-8");
+
+        for (byte[] src : new byte[][] {new byte[0], "a".getBytes("UTF-8"), "0123456789abcdef".getBytes("UTF-8"), randomBytes, json, new byte[70000]}) {
+            byte[] compressed = codec.compress(src, 5, TOPIC);
+            assertThat(codec.decompress(compressed)).isEqualTo(src);
+        }
+        assertThat(codec.compress(json, 5, TOPIC).length).isLessThan(json.length / 2);
+    }
+
+    @Test
+    public void testLz4Corrupted() throws IOException {
+        CompressionCodec codec = CompressionCodecFactory.getCodec(CompressionType.LZ4);
+        byte[] compressed = codec.compress(orderJson(new Random(1), 20).getBytes("UTF-8"), 5, TOPIC);
+        byte[] truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        try {
+            codec.decompress(truncated);
+            fail("truncated body should not be decompressed");
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Test
+    public void testLz4IllegalLength() {
+        CompressionCodec codec = CompressionCodecFactory.getCodec(CompressionType.LZ4);
+        // 原始长度为负数, 或超过压缩数据所能展开的最大长度
+        byte[][] bodies = {
+            {(byte) 0x80, 0, 0, 0, 0},
+            {0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x10, 'a'}
+        };
+        for (byte[] body : bodies) {
+            try {
+                codec.decompress(body);
+                fail("illegal length should be rejected");
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void testDictionary() throws IOException {
+        ZlibDictionaryCompressionCodec codec = new ZlibDictionaryCompressionCodec();
+        Random random = new Random(3);
+        byte[] message = orderJson(random, 1).getBytes("UTF-8");
+        byte[] plain = codec.compress(message, 5, TOPIC);
+        assertThat(codec.decompress(plain)).isEqualTo(message);
+
+        List<byte[]> samples = new ArrayList<byte[]>();
+        for (int i = 0; i < 100; i++) {
+            samples.add(orderJson(random, 1).getBytes("UTF-8"));
+        }
+        byte[] dictionary = ZlibDictionaryCompressionCodec.trainDictionary(samples, 4096);
+        assertThat(dictionary.length).isGreaterThan(0).isLessThanOrEqualTo(4096);
+        codec.registerDictionary(TOPIC, dictionary);
+
+        byte[] withDictionary = codec.compress(message, 5, TOPIC);
+        assertThat(withDictionary.length).isLessThan(plain.length);
+        assertThat(codec.decompress(withDictionary)).isEqualTo(message);
+
+        ZlibDictionaryCompressionCodec consumerCodec = new ZlibDictionaryCompressionCodec();
+        try {
+            consumerCodec.decompress(withDictionary);
+            fail("dictionary is not registered");
+        } catch (IOException ignored) {
+        }
+        consumerCodec.registerDictionary(null, dictionary);
+        assertThat(consumerCodec.decompress(withDictionary)).isEqualTo(message);
+    }
+
+    @Test
+    public void testSysFlag() throws IOException {
+        int sysFlag = MessageSysFlag.COMPRESSED_FLAG | MessageSysFlag.TRANSACTION_PREPARED_TYPE;
+        assertThat(MessageSysFlag.getCompressionType(sysFlag)).isEqualTo(CompressionType.ZLIB.getType());
+
+        sysFlag = MessageSysFlag.setCompressionType(sysFlag, CompressionType.LZ4.getType());
+        assertThat(MessageSysFlag.getCompressionType(sysFlag)).isEqualTo(CompressionType.LZ4.getType());
+        assertThat(MessageSysFlag.getTransactionValue(sysFlag)).isEqualTo(MessageSysFlag.TRANSACTION_PREPARED_TYPE);
+        assertThat(MessageSysFlag.clearCompressedFlag(sysFlag)).isEqualTo(MessageSysFlag.TRANSACTION_PREPARED_TYPE);
+
+        byte[] body = "hello".getBytes("UTF-8");
+        byte[] compressed = CompressionCodecFactory.getCodec(CompressionType.LZ4).compress(body, 5, TOPIC);
+        assertThat(CompressionCodecFactory.decompress(sysFlag, compressed)).isEqualTo(body);
+        try {
+            CompressionCodecFactory.decompress(MessageSysFlag.setCompressionType(0, 6), compressed);
+            fail("unknown compression type");
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String orderJson(Random random, int count) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"orderId\":\"").append(Math.abs(random.nextLong()))
+                .append("\",\"userId\":").append(random.nextInt(1000000))
+                .append(",\"status\":\"").append(random.nextBoolean() ? "PAID" : "CREATED")
+                .append("\",\"amount\":").append(random.nextInt(100000) / 100.0)
+                .append(",\"currency\":\"CNY\",\"channel\":\"mobile\",\"items\":[{\"skuId\":")
+                .append(random.nextInt(10000)).append(",\"quantity\":").append(random.nextInt(5) + 1)
+                .append("}]}");
+        }
+        return sb.append(']').toString();
+    }
+}
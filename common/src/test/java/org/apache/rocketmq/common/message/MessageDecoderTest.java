@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.message;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.apache.rocketmq.common.compression.CompressionType;
+import org.apache.rocketmq.common.sysflag.MessageSysFlag;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageDecoderTest {
+
+    @Test
+    public void testClientDecodesLazily() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MessageDecoder.encode(createMessageExt("TagA", "hello", 0), false));
+        out.write(MessageDecoder.encode(createMessageExt("TagB", "world", MessageSysFlag.COMPRESSED_FLAG), true));
+        byte[] binary = out.toByteArray();
+
+        List<MessageExt> eager = MessageDecoder.decodes(ByteBuffer.wrap(binary));
+        List<MessageExt> lazy = MessageDecoder.clientDecodesLazily(ByteBuffer.wrap(binary));
+        assertThat(lazy).hasSize(2);
+
+        for (int i = 0; i < eager.size(); i++) {
+            MessageExt expect = eager.get(i);
+            MessageExt actual = lazy.get(i);
+            assertThat(actual).isInstanceOf(LazyMessageClientExt.class);
+            assertThat(actual.getTags()).isEqualTo(expect.getTags());
+            assertThat(actual.getKeys()).isEqualTo(expect.getKeys());
+            assertThat(actual.getMsgId()).isEqualTo(expect.getMsgId());
+            assertThat(((MessageClientExt) actual).getOffsetMsgId()).isEqualTo(((MessageClientExt) expect).getOffsetMsgId());
+            assertThat(actual.getTopic()).isEqualTo(expect.getTopic());
+            assertThat(actual.getQueueOffset()).isEqualTo(expect.getQueueOffset());
+            assertThat(actual.getCommitLogOffset()).isEqualTo(expect.getCommitLogOffset());
+            assertThat(actual.getBornHost()).isEqualTo(expect.getBornHost());
+            assertThat(actual.getStoreHost()).isEqualTo(expect.getStoreHost());
+            assertThat(actual.getBody()).isEqualTo(expect.getBody());
+            assertThat(actual.getProperties()).isEqualTo(expect.getProperties());
+        }
+    }
+
+    @Test
+    public void testDecodeWithCompressionType() throws Exception {
+        int sysFlag = MessageSysFlag.setCompressionType(MessageSysFlag.COMPRESSED_FLAG, CompressionType.LZ4.getType());
+        byte[] binary = MessageDecoder.encode(createMessageExt("TagA", "hello hello hello hello", sysFlag), true);
+
+        MessageExt eager = MessageDecoder.decode(ByteBuffer.wrap(binary));
+        MessageExt lazy = MessageDecoder.clientDecodesLazily(ByteBuffer.wrap(binary)).get(0);
+        assertThat(MessageSysFlag.getCompressionType(eager.getSysFlag())).isEqualTo(CompressionType.LZ4.getType());
+        assertThat(new String(eager.getBody(), MessageDecoder.CHARSET_UTF8)).isEqualTo("hello hello hello hello");
+        assertThat(lazy.getBody()).isEqualTo(eager.getBody());
+    }
+
+    @Test
+    public void testPropertyBeforeAndAfterDecode() throws Exception {
+        MessageExt messageExt = createMessageExt("TagA", "hello", 0);
+        MessageExt lazy = MessageDecoder.clientDecodesLazily(ByteBuffer.wrap(MessageDecoder.encode(messageExt, false))).get(0);
+
+        assertThat(lazy.getProperty("NotExist")).isNull();
+        assertThat(lazy.getUserProperty("a")).isEqualTo("1");
+
+        MessageAccessor.putProperty(lazy, MessageConst.PROPERTY_MAX_OFFSET, "100");
+        assertThat(lazy.getProperty(MessageConst.PROPERTY_MAX_OFFSET)).isEqualTo("100");
+        assertThat(lazy.getTags()).isEqualTo("TagA");
+        assertThat(lazy.toString()).contains("queueOffset=7");
+    }
+
+    @Test
+    public void testBodyLengthWithoutDecode() throws Exception {
+        MessageExt messageExt = createMessageExt("TagA", "hello", 0);
+        LazyMessageClientExt lazy = (LazyMessageClientExt) MessageDecoder.clientDecodesLazily(
+            ByteBuffer.wrap(MessageDecoder.encode(messageExt, false))).get(0);
+
+        Field body = Message.class.getDeclaredField("body");
+        body.setAccessible(true);
+        assertThat(lazy.getBodyLength()).isEqualTo(5);
+        assertThat(body.get(lazy)).isNull();
+        assertThat(lazy.getBody()).isEqualTo("hello".getBytes(MessageDecoder.CHARSET_UTF8));
+        assertThat(lazy.getBodyLength()).isEqualTo(5);
+
+        lazy.setBody(null);
+        assertThat(lazy.getBodyLength()).isEqualTo(0);
+    }
+
+    private MessageExt createMessageExt(String tags, String body, int sysFlag) {
+        MessageExt messageExt = new MessageExt();
+        messageExt.setTopic("FooBar");
+        messageExt.setTags(tags);
+        messageExt.setKeys("key1 key2");
+        messageExt.putUserProperty("a", "1");
+        MessageClientIDSetter.setUniqID(messageExt);
+        messageExt.setBody(body.getBytes(MessageDecoder.CHARSET_UTF8));
+        messageExt.setQueueId(1);
+        messageExt.setQueueOffset(7);
+        messageExt.setCommitLogOffset(123456);
+        messageExt.setSysFlag(sysFlag);
+        messageExt.setBornTimestamp(System.currentTimeMillis());
+        messageExt.setStoreTimestamp(System.currentTimeMillis());
+        messageExt.setBornHost(new InetSocketAddress("127.0.0.1", 10911));
+        messageExt.setStoreHost(new InetSocketAddress("127.0.0.2", 10912));
+        return messageExt;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessagePropertiesTest {
+    private static final char NV = MessageDecoder.NAME_VALUE_SEPARATOR;
+    private static final char PS = MessageDecoder.PROPERTY_SEPARATOR;
+
+    @Test
+    public void testDecodeKeepsEncodedString() {
+        String encoded = MessageConst.PROPERTY_TAGS + NV + "TagA" + PS + "userKey" + NV + "userValue" + PS;
+        MessageProperties properties = MessageProperties.decode(encoded);
+
+        assertThat(properties).hasSize(2);
+        assertThat(properties.get(MessageConst.PROPERTY_TAGS)).isEqualTo("TagA");
+        assertThat(properties.get("userKey")).isEqualTo("userValue");
+        assertThat(properties.encode()).isSameAs(encoded);
+        // 系统属性名复用常量
+        assertThat(properties.keySet().iterator().next()).isSameAs(MessageConst.PROPERTY_TAGS);
+
+        properties.put(MessageConst.PROPERTY_TAGS, "TagA");
+        assertThat(properties.encode()).isSameAs(encoded);
+        properties.put(MessageConst.PROPERTY_TAGS, "TagB");
+        assertThat(properties.encode()).isEqualTo(MessageConst.PROPERTY_TAGS + NV + "TagB" + PS + "userKey" + NV + "userValue" + PS);
+    }
+
+    @Test
+    public void testDecodeSameAsSplit() {
+        String[] samples = new String[] {
+            "",
+            "a" + NV + "1",
+            "a" + NV + "1" + PS + PS + "b" + NV + "2" + PS,
+            "a" + NV + PS + "b" + PS + NV + "c" + PS,
+            "a" + NV + "1" + NV + PS + "b" + NV + "2" + NV + "3" + PS + "c" + NV + NV + "4" + PS,
+            "a" + NV + "1" + PS + "a" + NV + "2" + PS + "b" + NV + "3" + PS,
+        };
+        for (String sample : samples) {
+            Map<String, String> expected = splitToHashMap(sample);
+            MessageProperties properties = MessageProperties.decode(sample);
+            assertThat(properties).isEqualTo(expected);
+            assertThat(MessageProperties.decode(properties.encode())).isEqualTo(expected);
+            assertThat(MessageDecoder.string2messageProperties(properties.encode())).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    public void testModify() {
+        MessageProperties properties = new MessageProperties();
+        assertThat(properties.encode()).isEmpty();
+        for (int i = 0; i < 20; i++) {
+            properties.put("k" + i, "v" + i);
+        }
+        assertThat(properties.remove("k3")).isEqualTo("v3");
+        assertThat(properties.remove("k3")).isNull();
+
+        Iterator<Map.Entry<String, String>> it = properties.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            if (entry.getKey().equals("k5")) {
+                it.remove();
+            } else if (entry.getKey().equals("k6")) {
+                entry.setValue("x");
+            }
+        }
+
+        assertThat(properties).hasSize(18);
+        assertThat(properties.containsKey("k5")).isFalse();
+        assertThat(properties.get("k6")).isEqualTo("x");
+        assertThat(properties.get("k19")).isEqualTo("v19");
+        assertThat(MessageDecoder.string2messageProperties(MessageDecoder.messageProperties2String(properties))).isEqualTo(properties);
+
+        properties.clear();
+        assertThat(properties).isEmpty();
+        assertThat(properties.encode()).isEmpty();
+    }
+
+    @Test
+    public void testConcurrentGet() throws Exception {
+        final int propertyCount = 16;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < propertyCount; i++) {
+            sb.append("key").append(i).append(NV).append("value").append(i).append(PS);
+        }
+        final MessageProperties[] samples = new MessageProperties[2000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = MessageProperties.decode(sb.toString());
+        }
+
+        // 多个线程同时首次读取同一批属性表, 每个线程都应读到完整的值
+        final int threadCount = 4;
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        final AtomicInteger mismatch = new AtomicInteger(0);
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        barrier.await();
+                    } catch (Exception e) {
+                        mismatch.incrementAndGet();
+                        return;
+                    }
+                    for (MessageProperties properties : samples) {
+                        for (int i = 0; i < propertyCount; i++) {
+                            if (!("value" + i).equals(properties.get("key" + i))) {
+                                mismatch.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(mismatch.get()).isEqualTo(0);
+
+        // 已解析的值被置为null后不再从属性串中截取
+        MessageProperties properties = MessageProperties.decode(sb.toString());
+        properties.put("key0", null);
+        assertThat(properties.get("key0")).isNull();
+        assertThat(properties.containsKey("key0")).isTrue();
+    }
+
+    @Test
+    public void testSerializeAsHashMap() throws Exception {
+        Message message = new Message("FooBar", "TagA", "Key1", new byte[] {'a'});
+        assertThat(message.getProperties()).isInstanceOf(MessageProperties.class);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(message);
+        oos.close();
+        Message copy = (Message) new ObjectInputStream(new ByteArrayInputStream(out.toByteArray())).readObject();
+
+        assertThat(copy.getProperties()).isInstanceOf(HashMap.class);
+        assertThat(copy.getProperties()).isEqualTo(message.getProperties());
+        assertThat(copy.getTags()).isEqualTo("TagA");
+    }
+
+    private static Map<String, String> splitToHashMap(String properties) {
+        Map<String, String> map = new HashMap<String, String>();
+        for (String item : properties.split(String.valueOf(PS))) {
+            String[] nv = item.split(String.valueOf(NV));
+            if (2 == nv.length) {
+                map.put(nv[0], nv[1]);
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.protocol.body;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsumerSendMsgBackBatchBodyTest {
+    @Test
+    public void testRequestBodyEncodeDecode() {
+        ConsumerSendMsgBackBatchRequestBody body = new ConsumerSendMsgBackBatchRequestBody();
+        for (int i = 0; i < 3; i++) {
+            ConsumerSendMsgBackBatchRequestBody.SendBackEntry entry = new ConsumerSendMsgBackBatchRequestBody.SendBackEntry();
+            entry.setOffset(1024L * i);
+            entry.setDelayLevel(i);
+            entry.setOriginMsgId("msgId" + i);
+            entry.setOriginTopic("topic");
+            body.getEntryList().add(entry);
+        }
+
+        ConsumerSendMsgBackBatchRequestBody decoded = ConsumerSendMsgBackBatchRequestBody.decode(body.encode(), ConsumerSendMsgBackBatchRequestBody.class);
+        assertThat(decoded.getEntryList()).hasSize(3);
+        assertThat(decoded.getEntryList().get(2).getOffset()).isEqualTo(2048L);
+        assertThat(decoded.getEntryList().get(2).getDelayLevel()).isEqualTo(2);
+        assertThat(decoded.getEntryList().get(2).getOriginMsgId()).isEqualTo("msgId2");
+        assertThat(decoded.getEntryList().get(2).getOriginTopic()).isEqualTo("topic");
+    }
+
+    @Test
+    public void testResponseBodyEncodeDecode() {
+        ConsumerSendMsgBackBatchResponseBody body = new ConsumerSendMsgBackBatchResponseBody();
+        body.getSendBackOKOffsetSet().add(1L);
+        body.getSendBackOKOffsetSet().add(Long.MAX_VALUE);
+
+        ConsumerSendMsgBackBatchResponseBody decoded = ConsumerSendMsgBackBatchResponseBody.decode(body.encode(), ConsumerSendMsgBackBatchResponseBody.class);
+        // 小数值也必须解析为Long, 客户端按 Long 查找
+        assertThat(decoded.getSendBackOKOffsetSet()).containsOnly(1L, Long.MAX_VALUE);
+        assertThat(decoded.getSendBackOKOffsetSet().contains(1L)).isTrue();
+    }
+}
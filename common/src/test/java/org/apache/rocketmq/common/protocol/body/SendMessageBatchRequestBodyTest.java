@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.protocol.body;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SendMessageBatchRequestBodyTest {
+    @Test
+    public void testEncodeDecode() {
+        char[] value = new char[70000];
+        Arrays.fill(value, 'v');
+        List<SendMessageBatchRequestBody.MessageEntry> entryList = new ArrayList<SendMessageBatchRequestBody.MessageEntry>();
+        entryList.add(newEntry(new byte[] {'a', 'b'}, "TAGS\u0001TagA"));
+        // 属性超过65535字节
+        entryList.add(newEntry(new byte[0], "KEY\u0001" + new String(value)));
+
+        SendMessageBatchRequestBody decoded = SendMessageBatchRequestBody.decode(new SendMessageBatchRequestBody(entryList).encode(), 1024);
+        assertThat(decoded).isNotNull();
+        assertThat(decoded.getEntryList()).hasSize(2);
+        assertThat(decoded.getEntryList().get(0).getBody()).isEqualTo(new byte[] {'a', 'b'});
+        assertThat(decoded.getEntryList().get(0).getProperties()).isEqualTo("TAGS\u0001TagA");
+        assertThat(decoded.getEntryList().get(0).getBornTimestamp()).isEqualTo(123L);
+        assertThat(decoded.getEntryList().get(1).getProperties()).hasSize(70004);
+    }
+
+    @Test
+    public void testDecodeIllegal() {
+        assertThat(SendMessageBatchRequestBody.decode(null, 1024)).isNull();
+        assertThat(SendMessageBatchRequestBody.decode(new byte[2], 1024)).isNull();
+        // 消息数量超过请求体长度
+        assertThat(SendMessageBatchRequestBody.decode(ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).array(), 1024)).isNull();
+        assertThat(SendMessageBatchRequestBody.decode(ByteBuffer.allocate(4).putInt(-1).array(), 1024)).isNull();
+
+        List<SendMessageBatchRequestBody.MessageEntry> entryList = new ArrayList<SendMessageBatchRequestBody.MessageEntry>();
+        entryList.add(newEntry(new byte[16], "TAGS\u0001TagA"));
+        byte[] data = new SendMessageBatchRequestBody(entryList).encode();
+        // 消息体超过最大长度
+        assertThat(SendMessageBatchRequestBody.decode(data, 8)).isNull();
+        // 消息体长度超过剩余字节数
+        ByteBuffer.wrap(data).putInt(4 + 4 + 4 + 8, Integer.MAX_VALUE);
+        assertThat(SendMessageBatchRequestBody.decode(data, Integer.MAX_VALUE)).isNull();
+        // 属性长度超过剩余字节数
+        data = new SendMessageBatchRequestBody(entryList).encode();
+        ByteBuffer.wrap(data).putInt(4 + 4 + 4 + 8 + 4 + 16, 1024);
+        assertThat(SendMessageBatchRequestBody.decode(data, 1024)).isNull();
+    }
+
+    private static SendMessageBatchRequestBody.MessageEntry newEntry(final byte[] body, final String properties) {
+        SendMessageBatchRequestBody.MessageEntry entry = new SendMessageBatchRequestBody.MessageEntry();
+        entry.setBody(body);
+        entry.setProperties(properties);
+        entry.setBornTimestamp(123L);
+        return entry;
+    }
+}
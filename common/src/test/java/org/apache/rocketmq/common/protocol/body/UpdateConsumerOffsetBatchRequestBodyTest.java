@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.common.protocol.body;
+
+import java.util.Map;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UpdateConsumerOffsetBatchRequestBodyTest {
+    @Test
+    public void testEncodeDecode() {
+        UpdateConsumerOffsetBatchRequestBody body = new UpdateConsumerOffsetBatchRequestBody();
+        body.putOffset("TopicA", 0, 10L);
+        body.putOffset("TopicA", 1, Long.MAX_VALUE);
+        body.putOffset("TopicB", 0, 0L);
+
+        UpdateConsumerOffsetBatchRequestBody decoded = UpdateConsumerOffsetBatchRequestBody.decode(body.encode(), UpdateConsumerOffsetBatchRequestBody.class);
+        assertThat(decoded.getOffsetTable()).hasSize(2);
+        Map<Integer, Long> topicA = decoded.getOffsetTable().get("TopicA");
+        assertThat(topicA).containsEntry(0, 10L).containsEntry(1, Long.MAX_VALUE);
+        assertThat(decoded.getOffsetTable().get("TopicB")).containsEntry(0, 0L);
+    }
+}
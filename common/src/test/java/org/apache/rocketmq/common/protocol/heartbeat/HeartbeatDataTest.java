@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.rocketmq.common.protocol.heartbeat;
+
+import org.apache.rocketmq.common.consumer.ConsumeFromWhere;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HeartbeatDataTest {
+
+    @Test
+    public void testComputeFingerprint() {
+        HeartbeatData heartbeatData = createHeartbeatData(new String[] {"TopicA", "TopicB", "TopicC"}, "TagA");
+        HeartbeatData reordered = createHeartbeatData(new String[] {"TopicC", "TopicA", "TopicB"}, "TagA");
+        assertThat(heartbeatData.computeFingerprint()).isEqualTo(reordered.computeFingerprint());
+
+        HeartbeatData decoded = HeartbeatData.decode(heartbeatData.encode(), HeartbeatData.class);
+        assertThat(decoded.computeFingerprint()).isEqualTo(heartbeatData.computeFingerprint());
+
+        HeartbeatData changed = createHeartbeatData(new String[] {"TopicA", "TopicB", "TopicC"}, "TagB");
+        assertThat(changed.computeFingerprint()).isNotEqualTo(heartbeatData.computeFingerprint());
+
+        ProducerData producerData = new ProducerData();
+        producerData.setGroupName("ProducerGroupB");
+        reordered.getProducerDataSet().add(producerData);
+        assertThat(reordered.computeFingerprint()).isNotEqualTo(heartbeatData.computeFingerprint());
+    }
+
+    private static HeartbeatData createHeartbeatData(String[] topics, String tag) {
+        HeartbeatData heartbeatData = new HeartbeatData();
+        heartbeatData.setClientID("127.0.0.1@1");
+
+        ProducerData producerData = new ProducerData();
+        producerData.setGroupName("ProducerGroupA");
+        heartbeatData.getProducerDataSet().add(producerData);
+
+        ConsumerData consumerData = new ConsumerData();
+        consumerData.setGroupName("ConsumerGroupA");
+        consumerData.setConsumeType(ConsumeType.CONSUME_PASSIVELY);
+        consumerData.setMessageModel(MessageModel.CLUSTERING);
+        consumerData.setConsumeFromWhere(ConsumeFromWhere.CONSUME_FROM_LAST_OFFSET);
+        for (String topic : topics) {
+            SubscriptionData subscriptionData = new SubscriptionData(topic, tag);
+            subscriptionData.getTagsSet().add(tag);
+            subscriptionData.getCodeSet().add(tag.hashCode());
+            subscriptionData.setSubVersion(1L);
+            consumerData.getSubscriptionDataSet().add(subscriptionData);
+        }
+        heartbeatData.getConsumerDataSet().add(consumerData);
+        return heartbeatData;
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.rocketmq.client.exception.MQBrokerException;
 import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.client.log.ClientLogger;
 import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.common.compression.CompressionType;
 import org.apache.rocketmq.common.message.Message;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.exception.RemotingException;
@@ -50,8 +51,10 @@ public class Producer {
         final int threadCount = commandLine.hasOption('w') ? Integer.parseInt(commandLine.getOptionValue('w')) : 64;
         final int messageSize = commandLine.hasOption('s') ? Integer.parseInt(commandLine.getOptionValue('s')) : 128;
         final boolean keyEnable = commandLine.hasOption('k') && Boolean.parseBoolean(commandLine.getOptionValue('k'));
+        final CompressionType compressionType = commandLine.hasOption('c') ? CompressionType.valueOf(commandLine.getOptionValue('c').trim()) : null;
 
-        System.out.printf("topic %s threadCount %d messageSize %d keyEnable %s%n", topic, threadCount, messageSize, keyEnable);
+        System.out.printf("topic %s threadCount %d messageSize %d keyEnable %s compressionType %s%n", topic, threadCount, messageSize, keyEnable,
+            compressionType == null ? "NONE" : compressionType);
 
         final Logger log = ClientLogger.getLog();
 
@@ -107,7 +110,13 @@ public class Producer {
             producer.setNamesrvAddr(ns);
         }
 
-        producer.setCompressMsgBodyOverHowmuch(Integer.MAX_VALUE);
+        if (compressionType == null) {
+            producer.setCompressMsgBodyOverHowmuch(Integer.MAX_VALUE);
+        } else {
+            // 压缩每条消息, 用于比较各压缩算法的发送TPS
+            producer.setCompressMsgBodyOverHowmuch(0);
+            producer.setCompressionType(compressionType);
+        }
 
         producer.start();
 
@@ -182,6 +191,10 @@ public class Producer {
         opt.setRequired(false);
         options.addOption(opt);
 
+        opt = new Option("c", "compressionType", true, "Compress every message with ZLIB, LZ4 or ZLIB_DICT, Default: no compression");
+        opt.setRequired(false);
+        options.addOption(opt);
+
         return options;
     }
 
@@ -20,6 +20,7 @@ import io.netty.channel.ChannelHandlerContext;
 import org.apache.rocketmq.common.MQVersion;
 import org.apache.rocketmq.common.MQVersion.Version;
 import org.apache.rocketmq.common.MixAll;
+import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.constant.LoggerName;
 import org.apache.rocketmq.common.help.FAQUrl;
 import org.apache.rocketmq.common.namesrv.NamesrvUtil;
@@ -28,10 +29,14 @@ import org.apache.rocketmq.common.protocol.RequestCode;
 import org.apache.rocketmq.common.protocol.ResponseCode;
 import org.apache.rocketmq.common.protocol.body.RegisterBrokerBody;
 import org.apache.rocketmq.common.protocol.body.TopicConfigSerializeWrapper;
+import org.apache.rocketmq.common.protocol.body.TopicRouteBatchRequestBody;
+import org.apache.rocketmq.common.protocol.body.TopicRouteBatchResponseBody;
 import org.apache.rocketmq.common.protocol.header.GetTopicsByClusterRequestHeader;
 import org.apache.rocketmq.common.protocol.header.namesrv.*;
 import org.apache.rocketmq.common.protocol.route.TopicRouteData;
 import org.apache.rocketmq.namesrv.NamesrvController;
+import org.apache.rocketmq.namesrv.routeinfo.RouteInfoManager;
+import org.apache.rocketmq.namesrv.routeinfo.TopicRouteSnapshot;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.netty.NettyRequestProcessor;
@@ -39,7 +44,9 @@ import org.apache.rocketmq.remoting.protocol.RemotingCommand;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -82,6 +89,8 @@ public class DefaultRequestProcessor implements NettyRequestProcessor {
                 return this.unregisterBroker(ctx, request);
             case RequestCode.GET_ROUTEINTO_BY_TOPIC:  //获取指定Topic的路由信息
                 return this.getRouteInfoByTopic(ctx, request);
+            case RequestCode.GET_ROUTEINFO_BY_TOPICS:
+                return this.getRouteInfoByTopics(ctx, request);
             case RequestCode.GET_BROKER_CLUSTER_INFO:
                 return this.getBrokerClusterInfo(ctx, request);
 
@@ -128,6 +137,7 @@ public class DefaultRequestProcessor implements NettyRequestProcessor {
             requestHeader.getKey(),
             requestHeader.getValue()
         );
+        this.touchOrderTopicConf(requestHeader.getNamespace(), requestHeader.getKey());
 
         response.setCode(ResponseCode.SUCCESS);
         response.setRemark(null);
@@ -166,12 +176,22 @@ public class DefaultRequestProcessor implements NettyRequestProcessor {
             requestHeader.getNamespace(),
             requestHeader.getKey()
         );
+        this.touchOrderTopicConf(requestHeader.getNamespace(), requestHeader.getKey());
 
         response.setCode(ResponseCode.SUCCESS);
         response.setRemark(null);
         return response;
     }
 
+    /**
+     * 顺序消息配置是路由的一部分, 变化时更新Topic路由版本
+     */
+    private void touchOrderTopicConf(final String namespace, final String topic) {
+        if (NamesrvUtil.NAMESPACE_ORDER_TOPIC_CONFIG.equals(namespace)) {
+            this.namesrvController.getRouteInfoManager().touchTopicByLock(topic);
+        }
+    }
+
     /**
      * 注册带filtersrv的broker
      * Broker每次发送心跳也就是注册Broker
@@ -191,24 +211,53 @@ public class DefaultRequestProcessor implements NettyRequestProcessor {
         RegisterBrokerBody registerBrokerBody = new RegisterBrokerBody();
 
         if (request.getBody() != null) {
-            registerBrokerBody = RegisterBrokerBody.decode(request.getBody(), RegisterBrokerBody.class);
+            byte[] body = request.getBody();
+            if (Boolean.TRUE.equals(requestHeader.getCompressed())) {
+                try {
+                    body = UtilAll.uncompress(body);
+                } catch (IOException e) {
+                    throw new RemotingCommandException("uncompress register broker body failed", e);
+                }
+            }
+            registerBrokerBody = RegisterBrokerBody.decode(body, RegisterBrokerBody.class);
         } else {
             registerBrokerBody.getTopicConfigSerializeWrapper().getDataVersion().setCounter(new AtomicLong(0));
             registerBrokerBody.getTopicConfigSerializeWrapper().getDataVersion().setTimestamp(0);
         }
 
-        RegisterBrokerResult result = this.namesrvController.getRouteInfoManager().registerBroker(
-            requestHeader.getClusterName(),
-            requestHeader.getBrokerAddr(),
-            requestHeader.getBrokerName(),
-            requestHeader.getBrokerId(),
-            requestHeader.getHaServerAddr(),
-            registerBrokerBody.getTopicConfigSerializeWrapper(),
-            registerBrokerBody.getFilterServerList(),
-            ctx.channel());
+        RegisterBrokerResult result;
+        if (Boolean.TRUE.equals(requestHeader.getVersionOnly())) {
+            // 只上报了数据版本, 与已登记的注册信息一致时只刷新存活时间, 否则要求Broker完整注册
+            result = this.namesrvController.getRouteInfoManager().refreshBrokerIfUnchanged(
+                requestHeader.getClusterName(),
+                requestHeader.getBrokerAddr(),
+                requestHeader.getBrokerName(),
+                requestHeader.getBrokerId(),
+                requestHeader.getHaServerAddr(),
+                registerBrokerBody.getTopicConfigSerializeWrapper(),
+                registerBrokerBody.getFilterServerList(),
+                ctx.channel());
+            if (null == result) {
+                responseHeader.setCompactRegisterSupported(true);
+                response.setCode(ResponseCode.REGISTER_BROKER_TOPIC_CONFIG_REQUIRED);
+                response.setRemark("broker registration changed, topic config required");
+                return response;
+            }
+        } else {
+            result = this.namesrvController.getRouteInfoManager().registerBroker(
+                requestHeader.getClusterName(),
+                requestHeader.getBrokerAddr(),
+                requestHeader.getBrokerName(),
+                requestHeader.getBrokerId(),
+                requestHeader.getHaServerAddr(),
+                registerBrokerBody.getTopicConfigSerializeWrapper(),
+                registerBrokerBody.getFilterServerList(),
+                ctx.channel());
+        }
 
         responseHeader.setHaServerAddr(result.getHaServerAddr());
         responseHeader.setMasterAddr(result.getMasterAddr());
+        responseHeader.setCompactRegisterSupported(true);
 
         // TODO 待读：顺序消息配置
         byte[] jsonValue = this.namesrvController.getKvConfigManager().getKVListByNamespace(NamesrvUtil.NAMESPACE_ORDER_TOPIC_CONFIG);
@@ -302,17 +351,19 @@ public class DefaultRequestProcessor implements NettyRequestProcessor {
         final GetRouteInfoRequestHeader requestHeader =
             (GetRouteInfoRequestHeader)request.decodeCommandCustomHeader(GetRouteInfoRequestHeader.class);
 
-        TopicRouteData topicRouteData = this.namesrvController.getRouteInfoManager().pickupTopicRouteData(requestHeader.getTopic());
+        // 路由快照缓存了序列化结果, 路由未变化时无需加锁与重复序列化
+        TopicRouteSnapshot topicRouteSnapshot =
+            this.namesrvController.getRouteInfoManager().pickupTopicRouteSnapshot(requestHeader.getTopic());
 
-        if (topicRouteData != null) {
+        if (topicRouteSnapshot != null) {
+            String orderTopicConf = null;
             if (this.namesrvController.getNamesrvConfig().isOrderMessageEnable()) {
-                String orderTopicConf =
+                orderTopicConf =
                     this.namesrvController.getKvConfigManager().getKVConfig(NamesrvUtil.NAMESPACE_ORDER_TOPIC_CONFIG,
                         requestHeader.getTopic());
-                topicRouteData.setOrderTopicConf(orderTopicConf);
             }
 
-            byte[] content = topicRouteData.encode();
+            byte[] content = topicRouteSnapshot.encode(orderTopicConf);
             response.setBody(content);
             response.setCode(ResponseCode.SUCCESS);
             response.setRemark(null);
@@ -325,6 +376,48 @@ public class DefaultRequestProcessor implements NettyRequestProcessor {
         return response;
     }
 
+    /**
+     * 批量获取Topic路由, 只返回与客户端已知版本不同的路由
+     */
+    public RemotingCommand getRouteInfoByTopics(ChannelHandlerContext ctx, RemotingCommand request) {
+        final RemotingCommand response = RemotingCommand.createResponseCommand(null);
+        final TopicRouteBatchRequestBody requestBody =
+            TopicRouteBatchRequestBody.decode(request.getBody(), TopicRouteBatchRequestBody.class);
+        final TopicRouteBatchResponseBody responseBody = new TopicRouteBatchResponseBody();
+
+        final RouteInfoManager routeInfoManager = this.namesrvController.getRouteInfoManager();
+        // 先取版本再取路由, 两者之间路由若有变化, 客户端下次请求时版本不同会再次获取
+        final Map<String, Long> versionTable = routeInfoManager.getTopicRouteVersions(requestBody.getTopicVersionTable().keySet());
+        for (Map.Entry<String, Long> entry : requestBody.getTopicVersionTable().entrySet()) {
+            final String topic = entry.getKey();
+            final Long version = versionTable.get(topic);
+            if (null == version) {
+                responseBody.getNotExistTopics().add(topic);
+                continue;
+            }
+            if (version.equals(entry.getValue())) {
+                continue;
+            }
+
+            TopicRouteData topicRouteData = routeInfoManager.pickupTopicRouteData(topic);
+            if (null == topicRouteData) {
+                responseBody.getNotExistTopics().add(topic);
+                continue;
+            }
+            if (this.namesrvController.getNamesrvConfig().isOrderMessageEnable()) {
+                topicRouteData.setOrderTopicConf(
+                    this.namesrvController.getKvConfigManager().getKVConfig(NamesrvUtil.NAMESPACE_ORDER_TOPIC_CONFIG, topic));
+            }
+            responseBody.getTopicRouteTable().put(topic, topicRouteData);
+            responseBody.getTopicVersionTable().put(topic, version);
+        }
+
+        response.setBody(responseBody.encode());
+        response.setCode(ResponseCode.SUCCESS);
+        response.setRemark(null);
+        return response;
+    }
+
     private RemotingCommand getBrokerClusterInfo(ChannelHandlerContext ctx, RemotingCommand request) {
         final RemotingCommand response = RemotingCommand.createResponseCommand(null);
 
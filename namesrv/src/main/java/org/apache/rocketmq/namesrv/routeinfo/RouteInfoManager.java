@@ -67,6 +67,23 @@ public class RouteInfoManager {
      * broker地址 与 filtersrv数组 Map
      */
     private final HashMap<String/* brokerAddr */, List<String>/* Filter Server */> filterServerTable;
+    /**
+     * topic 与 队列数据最后变化的版本号
+     */
+    private final HashMap<String/* topic */, Long> topicVersionTable;
+    /**
+     * broker名 与 地址、filtersrv、权限最后变化的版本号
+     * Topic路由版本为Topic自身版本与其所在Broker版本的最大值, Broker变化时无需逐个更新Topic版本
+     */
+    private final HashMap<String/* brokerName */, Long> brokerVersionTable;
+    /**
+     * 路由版本号, 只在写锁内递增。高位为启动时生成的随机数, 避免客户端切换Namesrv后误认为版本相同
+     */
+    private long routeVersion;
+    /**
+     * topic 与 路由快照 Map, 路由变化时在写锁内移除
+     */
+    private final ConcurrentHashMap<String/* topic */, TopicRouteSnapshot> topicRouteSnapshotTable;
 
     public RouteInfoManager() {
         // TODO 疑问：为什么初始化选择了这些参数
@@ -75,6 +92,85 @@ public class RouteInfoManager {
         this.clusterAddrTable = new HashMap<String, Set<String>>(32);
         this.brokerLiveTable = new HashMap<String, BrokerLiveInfo>(256);
         this.filterServerTable = new HashMap<String, List<String>>(256);
+        this.topicVersionTable = new HashMap<String, Long>(1024);
+        this.brokerVersionTable = new HashMap<String, Long>(128);
+        this.routeVersion = (new Random().nextLong() & 0x7FFFFFL) << 40;
+        this.topicRouteSnapshotTable = new ConcurrentHashMap<String, TopicRouteSnapshot>(1024);
+    }
+
+    /**
+     * 标记Topic路由变化, 需持有写锁
+     */
+    private void touchTopic(final String topic) {
+        this.topicVersionTable.put(topic, ++this.routeVersion);
+        this.topicRouteSnapshotTable.remove(topic);
+    }
+
+    /**
+     * 移除Topic路由版本与快照, 需持有写锁
+     */
+    private void removeTopicVersion(final String topic) {
+        this.topicVersionTable.remove(topic);
+        this.topicRouteSnapshotTable.remove(topic);
+    }
+
+    /**
+     * 标记Broker上所有Topic路由变化, 需持有写锁
+     */
+    private void touchBroker(final String brokerName) {
+        this.brokerVersionTable.put(brokerName, ++this.routeVersion);
+        // Broker变化较少, 直接清空所有快照, 无需查找其上的Topic
+        this.topicRouteSnapshotTable.clear();
+    }
+
+    public void touchTopicByLock(final String topic) {
+        try {
+            try {
+                this.lock.writeLock().lockInterruptibly();
+                this.touchTopic(topic);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            log.error("touchTopicByLock Exception", e);
+        }
+    }
+
+    /**
+     * 获取Topic当前的路由版本
+     *
+     * @param topics Topic集合
+     * @return Topic 与 路由版本 Map, 不包含路由不存在的Topic
+     */
+    public Map<String, Long> getTopicRouteVersions(final Collection<String> topics) {
+        Map<String, Long> result = new HashMap<String, Long>(topics.size());
+        try {
+            try {
+                this.lock.readLock().lockInterruptibly();
+                for (String topic : topics) {
+                    List<QueueData> queueDataList = this.topicQueueTable.get(topic);
+                    if (null == queueDataList) {
+                        continue;
+                    }
+
+                    Long topicVersion = this.topicVersionTable.get(topic);
+                    long version = topicVersion != null ? topicVersion : 0;
+                    for (QueueData qd : queueDataList) {
+                        Long brokerVersion = this.brokerVersionTable.get(qd.getBrokerName());
+                        if (brokerVersion != null && brokerVersion > version) {
+                            version = brokerVersion;
+                        }
+                    }
+                    result.put(topic, version);
+                }
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        } catch (Exception e) {
+            log.error("getTopicRouteVersions Exception", e);
+        }
+
+        return result;
     }
 
     public byte[] getAllClusterInfo() {
@@ -89,6 +185,7 @@ public class RouteInfoManager {
             try {
                 this.lock.writeLock().lockInterruptibly();
                 this.topicQueueTable.remove(topic);
+                this.removeTopicVersion(topic);
             } finally {
                 this.lock.writeLock().unlock();
             }
@@ -137,7 +234,13 @@ public class RouteInfoManager {
         final TopicConfigSerializeWrapper topicConfigWrapper,
         final List<String> filterServerList,
         final Channel channel) {
-        RegisterBrokerResult result = new RegisterBrokerResult();
+        RegisterBrokerResult result = this.refreshBrokerIfUnchanged(clusterName, brokerAddr, brokerName, brokerId,
+            haServerAddr, topicConfigWrapper, filterServerList, channel);
+        if (result != null) {
+            return result;
+        }
+
+        result = new RegisterBrokerResult();
         try {
             try {
                 this.lock.writeLock().lockInterruptibly(); // TODO 疑问：为什么要两层try
@@ -163,6 +266,9 @@ public class RouteInfoManager {
                 String oldAddr = brokerData.getBrokerAddrs().put(brokerId, brokerAddr);
                 // 当前Broker的第一台机器 || 当前Broker下新的机器
                 registerFirst = registerFirst || (null == oldAddr);
+                if (!brokerAddr.equals(oldAddr)) {
+                    this.touchBroker(brokerName);
+                }
 
                 // 当注册Master && 有Topic配置时,更新topic信息
                 if (null != topicConfigWrapper && MixAll.MASTER_ID == brokerId) {
@@ -191,25 +297,18 @@ public class RouteInfoManager {
 
                 // 更新filtersrv信息
                 if (filterServerList != null) {
+                    List<String> prevFilterServerList;
                     if (filterServerList.isEmpty()) {
-                        this.filterServerTable.remove(brokerAddr);
+                        prevFilterServerList = this.filterServerTable.remove(brokerAddr);
                     } else {
-                        this.filterServerTable.put(brokerAddr, filterServerList);
+                        prevFilterServerList = this.filterServerTable.put(brokerAddr, filterServerList);
                     }
-                }
-
-                // 当注册Slave时,返回Master的addr作为高可用的地址
-                if (MixAll.MASTER_ID != brokerId) {
-                    String masterAddr = brokerData.getBrokerAddrs().get(MixAll.MASTER_ID);
-                    if (masterAddr != null) {
-                        // 获取master的brokerLiveInfo,将其haServerAddr(addr)赋值给Slave的haServerAddr
-                        BrokerLiveInfo brokerLiveInfo = this.brokerLiveTable.get(masterAddr);
-                        if (brokerLiveInfo != null) {
-                            result.setHaServerAddr(brokerLiveInfo.getHaServerAddr());
-                            result.setMasterAddr(masterAddr);
-                        }
+                    if (prevFilterServerList != null ? !prevFilterServerList.equals(filterServerList) : !filterServerList.isEmpty()) {
+                        this.touchBroker(brokerName);
                     }
                 }
+
+                this.fillMasterAddr(result, brokerData, brokerId);
             } finally {
                 this.lock.writeLock().unlock();
             }
@@ -220,6 +319,81 @@ public class RouteInfoManager {
         return result;
     }
 
+    /**
+     * Broker注册信息与上次相同时(即绝大多数的定时心跳), 只在读锁内刷新存活时间, 不阻塞路由查询
+     * Broker只上报数据版本时也由此刷新, 此时 topicConfigWrapper 中没有Topic配置
+     *
+     * @return 注册结果。注册信息有变化时返回null, 需在写锁内完整注册
+     */
+    public RegisterBrokerResult refreshBrokerIfUnchanged(
+        final String clusterName,
+        final String brokerAddr,
+        final String brokerName,
+        final long brokerId,
+        final String haServerAddr,
+        final TopicConfigSerializeWrapper topicConfigWrapper,
+        final List<String> filterServerList,
+        final Channel channel) {
+        if (null == topicConfigWrapper) {
+            return null;
+        }
+
+        try {
+            try {
+                this.lock.readLock().lockInterruptibly();
+                BrokerLiveInfo brokerLiveInfo = this.brokerLiveTable.get(brokerAddr);
+                if (null == brokerLiveInfo
+                    || brokerLiveInfo.getChannel() != channel
+                    || !brokerLiveInfo.getDataVersion().equals(topicConfigWrapper.getDataVersion())
+                    || !(null == haServerAddr ? null == brokerLiveInfo.getHaServerAddr() : haServerAddr.equals(brokerLiveInfo.getHaServerAddr()))) {
+                    return null;
+                }
+
+                Set<String> brokerNames = this.clusterAddrTable.get(clusterName);
+                BrokerData brokerData = this.brokerAddrTable.get(brokerName);
+                if (null == brokerNames || !brokerNames.contains(brokerName)
+                    || null == brokerData || !brokerAddr.equals(brokerData.getBrokerAddrs().get(brokerId))) {
+                    return null;
+                }
+
+                if (filterServerList != null) {
+                    List<String> prevFilterServerList = this.filterServerTable.get(brokerAddr);
+                    if (filterServerList.isEmpty() ? prevFilterServerList != null : !filterServerList.equals(prevFilterServerList)) {
+                        return null;
+                    }
+                }
+
+                brokerLiveInfo.setLastUpdateTimestamp(System.currentTimeMillis());
+                RegisterBrokerResult result = new RegisterBrokerResult();
+                this.fillMasterAddr(result, brokerData, brokerId);
+                return result;
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        } catch (Exception e) {
+            log.error("refreshBrokerIfUnchanged Exception", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * 当注册Slave时,返回Master的addr作为高可用的地址, 需持有锁
+     */
+    private void fillMasterAddr(final RegisterBrokerResult result, final BrokerData brokerData, final long brokerId) {
+        if (MixAll.MASTER_ID != brokerId) {
+            String masterAddr = brokerData.getBrokerAddrs().get(MixAll.MASTER_ID);
+            if (masterAddr != null) {
+                // 获取master的brokerLiveInfo,将其haServerAddr(addr)赋值给Slave的haServerAddr
+                BrokerLiveInfo brokerLiveInfo = this.brokerLiveTable.get(masterAddr);
+                if (brokerLiveInfo != null) {
+                    result.setHaServerAddr(brokerLiveInfo.getHaServerAddr());
+                    result.setMasterAddr(masterAddr);
+                }
+            }
+        }
+    }
+
     /**
      * 是否Broker Topic配置有变化
      *
@@ -257,6 +431,7 @@ public class RouteInfoManager {
             queueDataList = new LinkedList<QueueData>();
             queueDataList.add(queueData);
             this.topicQueueTable.put(topicConfig.getTopicName(), queueDataList);
+            this.touchTopic(topicConfig.getTopicName());
             log.info("new topic registerd, {} {}", topicConfig.getTopicName(), queueData);
         } else {
             boolean addNewOne = true;
@@ -277,6 +452,7 @@ public class RouteInfoManager {
 
             if (addNewOne) {
                 queueDataList.add(queueData);
+                this.touchTopic(topicConfig.getTopicName());
             }
         }
     }
@@ -315,6 +491,9 @@ public class RouteInfoManager {
             }
         }
 
+        if (wipeTopicCnt > 0) {
+            this.touchBroker(brokerName);
+        }
         return wipeTopicCnt;
     }
 
@@ -355,6 +534,7 @@ public class RouteInfoManager {
                         addr != null ? "OK" : "Failed",
                         brokerAddr
                     );
+                    this.touchBroker(brokerName);
 
                     if (brokerData.getBrokerAddrs().isEmpty()) { // 如果broker名下午broker了，移除brokerAddrTable
                         this.brokerAddrTable.remove(brokerName);
@@ -411,80 +591,128 @@ public class RouteInfoManager {
                 if (qd.getBrokerName().equals(brokerName)) {
                     log.info("removeTopicByBrokerName, remove one broker's topic {} {}", topic, qd);
                     it.remove();
+                    this.touchTopic(topic);
                 }
             }
 
             if (queueDataList.isEmpty()) {
                 log.info("removeTopicByBrokerName, remove the topic all queue {}", topic);
                 itMap.remove();
+                this.removeTopicVersion(topic);
             }
         }
+        this.brokerVersionTable.remove(brokerName);
     }
 
     /**
-     * 从{@link #topicQueueTable}里获取指定List<QueueData>
-     * 从{@link #brokerAddrTable}里获取BrokerData
-     * 组合成TopicRouteData返回给客户端
+     * 获取Topic路由数据
      *
      * @param topic
-     * @return
+     * @return 路由数据的拷贝, 路由不存在时返回null
      */
     public TopicRouteData pickupTopicRouteData(final String topic) {
-        TopicRouteData topicRouteData = new TopicRouteData();
-        boolean foundQueueData = false;
-        boolean foundBrokerData = false;
-        Set<String> brokerNameSet = new HashSet<>();
-        List<BrokerData> brokerDataList = new LinkedList<>();
-        topicRouteData.setBrokerDatas(brokerDataList);
+        TopicRouteSnapshot snapshot = this.pickupTopicRouteSnapshot(topic);
+        TopicRouteData topicRouteData = snapshot != null ? snapshot.cloneTopicRouteData() : null;
 
-        HashMap<String, List<String>> filterServerMap = new HashMap<>();
-        topicRouteData.setFilterServerTable(filterServerMap);
+        if (log.isDebugEnabled()) {
+            log.debug("pickupTopicRouteData {} {}", topic, topicRouteData);
+        }
+
+        return topicRouteData;
+    }
+
+    /**
+     * 获取Topic路由快照
+     * 快照已缓存时无需加锁; 否则在读锁内拷贝生成并缓存。
+     * 路由变化时由{@link #touchTopic(String)}、{@link #touchBroker(String)}在写锁内失效,
+     * 快照在读锁内放入缓存, 因此不会覆盖其后发生的失效
+     *
+     * @param topic
+     * @return 路由快照, 路由不存在时返回null
+     */
+    public TopicRouteSnapshot pickupTopicRouteSnapshot(final String topic) {
+        if (null == topic) {
+            return null;
+        }
+
+        TopicRouteSnapshot snapshot = this.topicRouteSnapshotTable.get(topic);
+        if (snapshot != null) {
+            return snapshot;
+        }
 
         try {
             try {
                 this.lock.readLock().lockInterruptibly();
-                List<QueueData> queueDataList = this.topicQueueTable.get(topic);
-                if (queueDataList != null) {
-                    topicRouteData.setQueueDatas(queueDataList);
-                    foundQueueData = true;
-
-                    Iterator<QueueData> it = queueDataList.iterator();
-                    while (it.hasNext()) {
-                        QueueData qd = it.next();
-                        brokerNameSet.add(qd.getBrokerName());
-                    }
-
-                    for (String brokerName : brokerNameSet) {
-                        BrokerData brokerData = this.brokerAddrTable.get(brokerName);
-                        if (null != brokerData) {
-                            BrokerData brokerDataClone = new BrokerData();
-                            brokerDataClone.setBrokerName(brokerData.getBrokerName());
-                            brokerDataClone.setBrokerAddrs((HashMap<Long, String>)brokerData.getBrokerAddrs().clone());
-                            brokerDataList.add(brokerDataClone);
-                            foundBrokerData = true;
-                            for (final String brokerAddr : brokerDataClone.getBrokerAddrs().values()) {
-                                List<String> filterServerList = this.filterServerTable.get(brokerAddr);
-                                filterServerMap.put(brokerAddr, filterServerList);
-                            }
-                        }
+                snapshot = this.topicRouteSnapshotTable.get(topic);
+                if (null == snapshot) {
+                    TopicRouteData topicRouteData = this.buildTopicRouteData(topic);
+                    if (topicRouteData != null) {
+                        snapshot = new TopicRouteSnapshot(topicRouteData);
+                        this.topicRouteSnapshotTable.put(topic, snapshot);
                     }
                 }
             } finally {
                 this.lock.readLock().unlock();
             }
         } catch (Exception e) {
-            log.error("pickupTopicRouteData Exception", e);
+            log.error("pickupTopicRouteSnapshot Exception", e);
         }
 
-        if (log.isDebugEnabled()) {
-            log.debug("pickupTopicRouteData {} {}", topic, topicRouteData);
+        return snapshot;
+    }
+
+    /**
+     * 从{@link #topicQueueTable}里获取指定List<QueueData>
+     * 从{@link #brokerAddrTable}里获取BrokerData
+     * 拷贝组合成TopicRouteData, 需持有读锁
+     *
+     * @param topic
+     * @return 路由数据, 路由不存在时返回null
+     */
+    private TopicRouteData buildTopicRouteData(final String topic) {
+        List<QueueData> queueDataList = this.topicQueueTable.get(topic);
+        if (null == queueDataList) {
+            return null;
         }
 
-        if (foundBrokerData && foundQueueData) {
-            return topicRouteData;
+        List<QueueData> queueDataListClone = new ArrayList<>(queueDataList.size());
+        Set<String> brokerNameSet = new HashSet<>();
+        for (QueueData qd : queueDataList) {
+            QueueData queueDataClone = new QueueData();
+            queueDataClone.setBrokerName(qd.getBrokerName());
+            queueDataClone.setReadQueueNums(qd.getReadQueueNums());
+            queueDataClone.setWriteQueueNums(qd.getWriteQueueNums());
+            queueDataClone.setPerm(qd.getPerm());
+            queueDataClone.setTopicSynFlag(qd.getTopicSynFlag());
+            queueDataListClone.add(queueDataClone);
+            brokerNameSet.add(qd.getBrokerName());
         }
 
-        return null;
+        List<BrokerData> brokerDataList = new ArrayList<>(brokerNameSet.size());
+        HashMap<String, List<String>> filterServerMap = new HashMap<>();
+        for (String brokerName : brokerNameSet) {
+            BrokerData brokerData = this.brokerAddrTable.get(brokerName);
+            if (null != brokerData) {
+                BrokerData brokerDataClone = new BrokerData();
+                brokerDataClone.setBrokerName(brokerData.getBrokerName());
+                brokerDataClone.setBrokerAddrs((HashMap<Long, String>)brokerData.getBrokerAddrs().clone());
+                brokerDataList.add(brokerDataClone);
+                for (final String brokerAddr : brokerDataClone.getBrokerAddrs().values()) {
+                    List<String> filterServerList = this.filterServerTable.get(brokerAddr);
+                    filterServerMap.put(brokerAddr, filterServerList != null ? new ArrayList<>(filterServerList) : null);
+                }
+            }
+        }
+
+        if (brokerDataList.isEmpty()) {
+            return null;
+        }
+
+        TopicRouteData topicRouteData = new TopicRouteData();
+        topicRouteData.setQueueDatas(queueDataListClone);
+        topicRouteData.setBrokerDatas(brokerDataList);
+        topicRouteData.setFilterServerTable(filterServerMap);
+        return topicRouteData;
     }
 
     /**
@@ -565,6 +793,7 @@ public class RouteInfoManager {
                             if (brokerAddr.equals(brokerAddrFound)) {
                                 brokerNameFound = brokerData.getBrokerName();
                                 it.remove();
+                                this.touchBroker(brokerNameFound);
                                 log.info("remove brokerAddr[{}, {}] from brokerAddrTable, because channel destroyed",
                                     brokerId, brokerAddr);
                                 break;
@@ -615,6 +844,7 @@ public class RouteInfoManager {
                                 QueueData queueData = itQueueData.next();
                                 if (queueData.getBrokerName().equals(brokerNameFound)) {
                                     itQueueData.remove();
+                                    this.touchTopic(topic);
                                     log.info("remove topic[{} {}], from topicQueueTable, because channel destroyed",
                                         topic, queueData);
                                 }
@@ -622,10 +852,12 @@ public class RouteInfoManager {
                             // 如果某个topic仅存在一个Broker上，且其宕机了
                             if (queueDataList.isEmpty()) {
                                 itTopicQueueTable.remove();
+                                this.removeTopicVersion(topic);
                                 log.info("remove topic[{}] all queue, from topicQueueTable, because channel destroyed",
                                     topic);
                             }
                         }
+                        this.brokerVersionTable.remove(brokerNameFound);
                     }
                 } finally {
                     this.lock.writeLock().unlock();
@@ -835,7 +1067,7 @@ class BrokerLiveInfo {
     /**
      * 最后更新时间
      */
-    private long lastUpdateTimestamp;
+    private volatile long lastUpdateTimestamp;
     /**
      * 数据版本号
      */
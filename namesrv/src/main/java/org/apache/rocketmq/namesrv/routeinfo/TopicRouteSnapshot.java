@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.namesrv.routeinfo;
+
+import org.apache.rocketmq.common.protocol.route.TopicRouteData;
+
+/**
+ * Topic路由快照
+ *
+ * 在读锁内由 {@link RouteInfoManager} 深拷贝生成, 生成后不再修改, 路由变化时整体替换。
+ * 同时缓存序列化后的路由数据, 查询路由时无需加锁、拷贝与重复序列化。
+ */
+public class TopicRouteSnapshot {
+    /**
+     * 路由数据, 只读
+     */
+    private final TopicRouteData topicRouteData;
+    /**
+     * 最近一次序列化的结果
+     */
+    private volatile EncodedRoute encodedRoute;
+
+    public TopicRouteSnapshot(final TopicRouteData topicRouteData) {
+        this.topicRouteData = topicRouteData;
+    }
+
+    /**
+     * 序列化路由数据, 顺序消息配置不变时直接返回缓存的结果
+     *
+     * @param orderTopicConf 顺序消息配置
+     * @return 序列化后的路由数据, 调用方不可修改
+     */
+    public byte[] encode(final String orderTopicConf) {
+        EncodedRoute encoded = this.encodedRoute;
+        if (encoded != null && (orderTopicConf == null ? encoded.orderTopicConf == null : orderTopicConf.equals(encoded.orderTopicConf))) {
+            return encoded.body;
+        }
+
+        TopicRouteData topicRouteData = this.topicRouteData.cloneTopicRouteData();
+        topicRouteData.setOrderTopicConf(orderTopicConf);
+        encoded = new EncodedRoute(orderTopicConf, topicRouteData.encode());
+        this.encodedRoute = encoded;
+        return encoded.body;
+    }
+
+    /**
+     * @return 路由数据的拷贝, 调用方可修改其顺序消息配置
+     */
+    public TopicRouteData cloneTopicRouteData() {
+        return this.topicRouteData.cloneTopicRouteData();
+    }
+
+    private static class EncodedRoute {
+        private final String orderTopicConf;
+        private final byte[] body;
+
+        EncodedRoute(final String orderTopicConf, final byte[] body) {
+            this.orderTopicConf = orderTopicConf;
+            this.body = body;
+        }
+    }
+}
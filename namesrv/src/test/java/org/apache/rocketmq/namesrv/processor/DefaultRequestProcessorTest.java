@@ -24,17 +24,23 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import org.apache.rocketmq.common.DataVersion;
 import org.apache.rocketmq.common.TopicConfig;
+import org.apache.rocketmq.common.UtilAll;
 import org.apache.rocketmq.common.namesrv.NamesrvConfig;
 import org.apache.rocketmq.common.namesrv.RegisterBrokerResult;
 import org.apache.rocketmq.common.protocol.RequestCode;
 import org.apache.rocketmq.common.protocol.ResponseCode;
+import org.apache.rocketmq.common.protocol.body.RegisterBrokerBody;
 import org.apache.rocketmq.common.protocol.body.TopicConfigSerializeWrapper;
+import org.apache.rocketmq.common.protocol.body.TopicRouteBatchRequestBody;
+import org.apache.rocketmq.common.protocol.body.TopicRouteBatchResponseBody;
 import org.apache.rocketmq.common.protocol.header.namesrv.DeleteKVConfigRequestHeader;
 import org.apache.rocketmq.common.protocol.header.namesrv.GetKVConfigRequestHeader;
 import org.apache.rocketmq.common.protocol.header.namesrv.GetKVConfigResponseHeader;
 import org.apache.rocketmq.common.protocol.header.namesrv.PutKVConfigRequestHeader;
 import org.apache.rocketmq.common.protocol.header.namesrv.RegisterBrokerRequestHeader;
+import org.apache.rocketmq.common.protocol.header.namesrv.RegisterBrokerResponseHeader;
 import org.apache.rocketmq.common.protocol.route.BrokerData;
 import org.apache.rocketmq.namesrv.NamesrvController;
 import org.apache.rocketmq.namesrv.routeinfo.RouteInfoManager;
@@ -213,6 +219,34 @@ public class DefaultRequestProcessorTest {
             .contains(new HashMap.SimpleEntry("broker", broker));
     }
 
+    @Test
+    public void testProcessRequest_GetRouteInfoByTopics() throws RemotingCommandException {
+        TopicConfigSerializeWrapper wrapper = new TopicConfigSerializeWrapper();
+        wrapper.getTopicConfigTable().put("batch-test", new TopicConfig("batch-test", 4, 4, 6));
+        routeInfoManager.registerBroker("default-cluster", "127.0.0.1:10921", "batch-broker", 0, "127.0.0.1:10922",
+            wrapper, new ArrayList<String>(), mock(Channel.class));
+
+        TopicRouteBatchRequestBody requestBody = new TopicRouteBatchRequestBody();
+        requestBody.getTopicVersionTable().put("batch-test", TopicRouteBatchRequestBody.UNKNOWN_VERSION);
+        requestBody.getTopicVersionTable().put("not-exist", TopicRouteBatchRequestBody.UNKNOWN_VERSION);
+        TopicRouteBatchResponseBody responseBody = getRouteInfoByTopics(requestBody);
+        assertThat(responseBody.getTopicRouteTable()).containsOnlyKeys("batch-test");
+        assertThat(responseBody.getTopicRouteTable().get("batch-test").getQueueDatas()).hasSize(1);
+        assertThat(responseBody.getNotExistTopics()).containsOnly("not-exist");
+
+        // 已知最新版本时不再返回路由
+        requestBody.getTopicVersionTable().put("batch-test", responseBody.getTopicVersionTable().get("batch-test"));
+        assertThat(getRouteInfoByTopics(requestBody).getTopicRouteTable()).isEmpty();
+    }
+
+    private TopicRouteBatchResponseBody getRouteInfoByTopics(TopicRouteBatchRequestBody requestBody) throws RemotingCommandException {
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.GET_ROUTEINFO_BY_TOPICS, null);
+        request.setBody(requestBody.encode());
+        RemotingCommand response = defaultRequestProcessor.processRequest(mock(ChannelHandlerContext.class), request);
+        assertThat(response.getCode()).isEqualTo(ResponseCode.SUCCESS);
+        return TopicRouteBatchResponseBody.decode(response.getBody(), TopicRouteBatchResponseBody.class);
+    }
+
     @Test
     public void testProcessRequest_UnregisterBroker() throws RemotingCommandException, NoSuchFieldException, IllegalAccessException {
         ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
@@ -236,6 +270,61 @@ public class DefaultRequestProcessorTest {
         assertThat((Map) brokerAddrTable.get(routes)).isNotEmpty();
     }
 
+    @Test
+    public void testProcessRequest_RegisterBrokerCompact() throws Exception {
+        ChannelHandlerContext ctx = mock(ChannelHandlerContext.class);
+        when(ctx.channel()).thenReturn(null);
+
+        TopicConfigSerializeWrapper wrapper = new TopicConfigSerializeWrapper();
+        wrapper.getTopicConfigTable().put("compact-topic", new TopicConfig("compact-topic", 8, 8, 6));
+        RegisterBrokerBody body = new RegisterBrokerBody();
+        body.setTopicConfigSerializeWrapper(wrapper);
+
+        // 压缩的完整注册
+        RemotingCommand response = defaultRequestProcessor.processRequest(ctx,
+            genCompactRegisterCmd(false, UtilAll.compress(body.encode(), 5)));
+        assertThat(response.getCode()).isEqualTo(ResponseCode.SUCCESS);
+        response.makeCustomHeaderToNet();
+        RegisterBrokerResponseHeader responseHeader =
+            (RegisterBrokerResponseHeader) response.decodeCommandCustomHeader(RegisterBrokerResponseHeader.class);
+        assertThat(responseHeader.getCompactRegisterSupported()).isTrue();
+        assertThat(namesrvController.getRouteInfoManager().pickupTopicRouteData("compact-topic")).isNotNull();
+
+        // 数据版本未变化, 只上报数据版本
+        TopicConfigSerializeWrapper versionOnlyWrapper = new TopicConfigSerializeWrapper();
+        versionOnlyWrapper.setDataVersion(wrapper.getDataVersion());
+        body.setTopicConfigSerializeWrapper(versionOnlyWrapper);
+        response = defaultRequestProcessor.processRequest(ctx, genCompactRegisterCmd(true, body.encode()));
+        assertThat(response.getCode()).isEqualTo(ResponseCode.SUCCESS);
+        assertThat(namesrvController.getRouteInfoManager().pickupTopicRouteData("compact-topic")).isNotNull();
+
+        // 数据版本与Namesrv登记的不一致, 要求完整注册
+        DataVersion dataVersion = new DataVersion();
+        dataVersion.nextVersion();
+        versionOnlyWrapper.setDataVersion(dataVersion);
+        response = defaultRequestProcessor.processRequest(ctx, genCompactRegisterCmd(true, body.encode()));
+        assertThat(response.getCode()).isEqualTo(ResponseCode.REGISTER_BROKER_TOPIC_CONFIG_REQUIRED);
+    }
+
+    private static RemotingCommand genCompactRegisterCmd(boolean versionOnly, byte[] body) {
+        RegisterBrokerRequestHeader header = new RegisterBrokerRequestHeader();
+        header.setBrokerName("broker");
+        header.setBrokerAddr("10.10.1.1");
+        header.setClusterName("cluster");
+        header.setHaServerAddr("10.10.2.1");
+        header.setBrokerId(0L);
+        if (versionOnly) {
+            header.setVersionOnly(true);
+        } else {
+            header.setCompressed(true);
+        }
+        RemotingCommand request = RemotingCommand.createRequestCommand(RequestCode.REGISTER_BROKER, header);
+        request.setVersion(100);
+        request.setBody(body);
+        request.makeCustomHeaderToNet();
+        return request;
+    }
+
     private static RemotingCommand genSampleRegisterCmd(boolean reg) {
         RegisterBrokerRequestHeader header = new RegisterBrokerRequestHeader();
         header.setBrokerName("broker");
@@ -18,8 +18,12 @@ package org.apache.rocketmq.namesrv.routeinfo;
 
 import io.netty.channel.Channel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import org.apache.rocketmq.common.DataVersion;
 import org.apache.rocketmq.common.TopicConfig;
+import org.apache.rocketmq.common.constant.PermName;
 import org.apache.rocketmq.common.namesrv.RegisterBrokerResult;
 import org.apache.rocketmq.common.protocol.body.TopicConfigSerializeWrapper;
 import org.apache.rocketmq.common.protocol.route.TopicRouteData;
@@ -90,6 +94,84 @@ public class RouteInfoManagerTest {
         assertThat(result).isNull();
     }
 
+    @Test
+    public void testTopicRouteVersion() {
+        RouteInfoManager manager = new RouteInfoManager();
+        TopicConfigSerializeWrapper wrapper = new TopicConfigSerializeWrapper();
+        wrapper.getTopicConfigTable().put("topicA", new TopicConfig("topicA", 8, 8, 6));
+        wrapper.getTopicConfigTable().put("topicB", new TopicConfig("topicB", 8, 8, 6));
+        Channel channel = mock(Channel.class);
+        manager.registerBroker("cluster", "127.0.0.1:10911", "brokerA", 0, "127.0.0.1:10912", wrapper, new ArrayList<String>(), channel);
+
+        Map<String, Long> versions = manager.getTopicRouteVersions(Arrays.asList("topicA", "topicB", "notExist"));
+        assertThat(versions).containsOnlyKeys("topicA", "topicB");
+
+        // 心跳未带来变化, 版本不变
+        manager.registerBroker("cluster", "127.0.0.1:10911", "brokerA", 0, "127.0.0.1:10912", wrapper, new ArrayList<String>(), channel);
+        assertThat(manager.getTopicRouteVersions(Arrays.asList("topicA", "topicB"))).isEqualTo(versions);
+
+        // 只有变化的Topic版本改变
+        wrapper.getTopicConfigTable().put("topicA", new TopicConfig("topicA", 16, 16, 6));
+        DataVersion dataVersion = new DataVersion();
+        dataVersion.nextVersion();
+        wrapper.setDataVersion(dataVersion);
+        manager.registerBroker("cluster", "127.0.0.1:10911", "brokerA", 0, "127.0.0.1:10912", wrapper, new ArrayList<String>(), channel);
+        Map<String, Long> changed = manager.getTopicRouteVersions(Arrays.asList("topicA", "topicB"));
+        assertThat(changed.get("topicA")).isNotEqualTo(versions.get("topicA"));
+        assertThat(changed.get("topicB")).isEqualTo(versions.get("topicB"));
+
+        // Broker变化影响其上所有Topic
+        manager.wipeWritePermOfBrokerByLock("brokerA");
+        Map<String, Long> wiped = manager.getTopicRouteVersions(Arrays.asList("topicA", "topicB"));
+        assertThat(wiped.get("topicA")).isNotEqualTo(changed.get("topicA"));
+        assertThat(wiped.get("topicB")).isNotEqualTo(changed.get("topicB"));
+
+        manager.unregisterBroker("cluster", "127.0.0.1:10911", "brokerA", 0);
+        assertThat(manager.getTopicRouteVersions(Arrays.asList("topicA", "topicB"))).isEmpty();
+    }
+
+    @Test
+    public void testTopicRouteSnapshot() {
+        RouteInfoManager manager = new RouteInfoManager();
+        TopicConfigSerializeWrapper wrapper = new TopicConfigSerializeWrapper();
+        wrapper.getTopicConfigTable().put("topicA", new TopicConfig("topicA", 8, 8, 6));
+        Channel channel = mock(Channel.class);
+        manager.registerBroker("cluster", "127.0.0.1:10911", "brokerA", 0, "127.0.0.1:10912", wrapper, new ArrayList<String>(), channel);
+
+        TopicRouteSnapshot snapshot = manager.pickupTopicRouteSnapshot("topicA");
+        assertThat(snapshot).isNotNull();
+        assertThat(manager.pickupTopicRouteSnapshot("notExist")).isNull();
+        byte[] body = snapshot.encode(null);
+        assertThat(snapshot.encode(null)).isSameAs(body);
+        TopicRouteData decoded = TopicRouteData.decode(snapshot.encode("brokerA:8"), TopicRouteData.class);
+        assertThat(decoded.getOrderTopicConf()).isEqualTo("brokerA:8");
+        assertThat(decoded.getQueueDatas()).hasSize(1);
+
+        // 心跳未带来变化, 快照不变
+        RegisterBrokerResult result = manager.registerBroker("cluster", "127.0.0.1:10911", "brokerA", 0, "127.0.0.1:10912",
+            wrapper, new ArrayList<String>(), channel);
+        assertThat(result).isNotNull();
+        assertThat(manager.pickupTopicRouteSnapshot("topicA")).isSameAs(snapshot);
+
+        // 新的Slave注册, 快照重新生成, 并返回Master的高可用地址
+        result = manager.registerBroker("cluster", "127.0.0.1:20911", "brokerA", 1, "127.0.0.1:20912",
+            wrapper, new ArrayList<String>(), mock(Channel.class));
+        assertThat(result.getMasterAddr()).isEqualTo("127.0.0.1:10911");
+        assertThat(result.getHaServerAddr()).isEqualTo("127.0.0.1:10912");
+        TopicRouteSnapshot slaveSnapshot = manager.pickupTopicRouteSnapshot("topicA");
+        assertThat(slaveSnapshot).isNotSameAs(snapshot);
+        assertThat(slaveSnapshot.cloneTopicRouteData().getBrokerDatas().get(0).getBrokerAddrs()).hasSize(2);
+
+        // 快照与路由表相互独立
+        manager.wipeWritePermOfBrokerByLock("brokerA");
+        assertThat(PermName.isWriteable(slaveSnapshot.cloneTopicRouteData().getQueueDatas().get(0).getPerm())).isTrue();
+        assertThat(PermName.isWriteable(manager.pickupTopicRouteData("topicA").getQueueDatas().get(0).getPerm())).isFalse();
+
+        manager.unregisterBroker("cluster", "127.0.0.1:20911", "brokerA", 1);
+        manager.unregisterBroker("cluster", "127.0.0.1:10911", "brokerA", 0);
+        assertThat(manager.pickupTopicRouteSnapshot("topicA")).isNull();
+    }
+
     @Test
     public void testGetSystemTopicList() {
         byte[] topicList = routeInfoManager.getSystemTopicList();
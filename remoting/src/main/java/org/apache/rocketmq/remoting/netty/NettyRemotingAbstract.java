@@ -20,6 +20,9 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import java.net.SocketAddress;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -31,7 +34,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.rocketmq.remoting.ChannelEventListener;
 import org.apache.rocketmq.remoting.InvokeCallback;
 import org.apache.rocketmq.remoting.RPCHook;
@@ -63,6 +68,22 @@ public abstract class NettyRemotingAbstract {
 
     protected Pair<NettyRequestProcessor, ExecutorService> defaultRequestProcessor;
 
+    /**
+     * 异步请求超时时间轮, 请求放入 responseTable 时登记超时任务, 收到响应时取消
+     * 同步请求由调用线程自行等待超时并移除, 无需登记
+     * 时间轮在JVM内共享, 工作线程在首次登记时启动
+     */
+    private static final HashedWheelTimer TIMEOUT_TIMER = new HashedWheelTimer(new ThreadFactory() {
+        private AtomicInteger threadIndex = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "NettyTimeoutTimer_" + this.threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }, 10, TimeUnit.MILLISECONDS, 512);
+
     public NettyRemotingAbstract(final int permitsOneway, final int permitsAsync) {
         this.semaphoreOneway = new Semaphore(permitsOneway, true);
         this.semaphoreAsync = new Semaphore(permitsAsync, true);
@@ -182,6 +203,7 @@ public abstract class NettyRemotingAbstract {
         final int opaque = cmd.getOpaque();
         final ResponseFuture responseFuture = responseTable.get(opaque);
         if (responseFuture != null) {
+            responseFuture.cancelTimeout();
             responseFuture.setResponseCommand(cmd);
 
             responseFuture.release();
@@ -236,6 +258,34 @@ public abstract class NettyRemotingAbstract {
 
     abstract public ExecutorService getCallbackExecutor();
 
+    /**
+     * 为异步请求登记超时任务, 超时后从 responseTable 移除并回调
+     * 比 {@link #scanResponseTable()} 的逐秒全表扫描更及时, 且单个请求的代价与在途请求数无关
+     */
+    private void scheduleTimeout(final ResponseFuture responseFuture) {
+        // 多等待1毫秒, 保证回调中 ResponseFuture#isTimeout() 为真
+        final long delay = responseFuture.getBeginTimestamp() + responseFuture.getTimeoutMillis() + 1 - System.currentTimeMillis();
+        Timeout timeout = TIMEOUT_TIMER.newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) throws Exception {
+                if (responseTable.remove(responseFuture.getOpaque(), responseFuture)) {
+                    responseFuture.release();
+                    PLOG.warn("remove timeout request, " + responseFuture);
+                    try {
+                        executeInvokeCallback(responseFuture);
+                    } catch (Throwable e) {
+                        PLOG.warn("timeout request, operationComplete Exception", e);
+                    }
+                }
+            }
+        }, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+        responseFuture.setTimeout(timeout);
+    }
+
+    /**
+     * 扫描并移除超时请求
+     * 异步请求的超时已由 {@link #TIMEOUT_TIMER} 处理, 本方法仅作为兜底
+     */
     public void scanResponseTable() {
         final List<ResponseFuture> rfList = new LinkedList<ResponseFuture>();
         Iterator<Entry<Integer, ResponseFuture>> it = this.responseTable.entrySet().iterator();
@@ -312,6 +362,7 @@ public abstract class NettyRemotingAbstract {
             final ResponseFuture responseFuture = new ResponseFuture(opaque, timeoutMillis, invokeCallback, once);
             this.responseTable.put(opaque, responseFuture);
             try {
+                this.scheduleTimeout(responseFuture);
                 channel.writeAndFlush(request).addListener(new ChannelFutureListener() {
                     @Override
                     public void operationComplete(ChannelFuture f) throws Exception {
@@ -322,6 +373,7 @@ public abstract class NettyRemotingAbstract {
                             responseFuture.setSendRequestOK(false);
                         }
 
+                        responseFuture.cancelTimeout();
                         responseFuture.putResponse(null);
                         responseTable.remove(opaque);
                         try {
@@ -336,6 +388,8 @@ public abstract class NettyRemotingAbstract {
                     }
                 });
             } catch (Exception e) {
+                responseFuture.cancelTimeout();
+                this.responseTable.remove(opaque);
                 responseFuture.release();
                 PLOG.warn("send a request command to channel <" + RemotingHelper.parseChannelRemoteAddr(channel) + "> Exception", e);
                 throw new RemotingSendRequestException(RemotingHelper.parseChannelRemoteAddr(channel), e);
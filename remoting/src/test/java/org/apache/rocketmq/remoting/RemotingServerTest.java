@@ -20,6 +20,8 @@ package org.apache.rocketmq.remoting;
 import io.netty.channel.ChannelHandlerContext;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.rocketmq.remoting.annotation.CFNullable;
 import org.apache.rocketmq.remoting.exception.RemotingCommandException;
 import org.apache.rocketmq.remoting.exception.RemotingConnectException;
@@ -60,6 +62,18 @@ public class RemotingServerTest {
                 return false;
             }
         }, Executors.newCachedThreadPool());
+        remotingServer.registerProcessor(1, new NettyRequestProcessor() {
+            @Override
+            public RemotingCommand processRequest(ChannelHandlerContext ctx, RemotingCommand request) throws Exception {
+                Thread.sleep(1000);
+                return request;
+            }
+
+            @Override
+            public boolean rejectRequest() {
+                return false;
+            }
+        }, Executors.newCachedThreadPool());
 
         remotingServer.start();
 
@@ -126,6 +140,29 @@ public class RemotingServerTest {
         });
         latch.await();
     }
+
+    @Test
+    public void testInvokeAsyncTimeout() throws InterruptedException, RemotingConnectException,
+        RemotingTimeoutException, RemotingTooMuchRequestException, RemotingSendRequestException {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<ResponseFuture> result = new AtomicReference<ResponseFuture>();
+        RemotingCommand request = RemotingCommand.createRequestCommand(1, null);
+        final long begin = System.currentTimeMillis();
+        remotingClient.invokeAsync("localhost:8888", request, 100, new InvokeCallback() {
+            @Override
+            public void operationComplete(ResponseFuture responseFuture) {
+                result.set(responseFuture);
+                latch.countDown();
+            }
+        });
+
+        // 超时回调由时间轮触发, 不必等待逐秒扫描
+        assertThat(latch.await(800, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(System.currentTimeMillis() - begin).isGreaterThanOrEqualTo(100);
+        assertThat(result.get().getResponseCommand()).isNull();
+        assertThat(result.get().isTimeout()).isTrue();
+    }
 }
 
 class RequestHeader implements CommandCustomHeader {
@@ -64,6 +64,10 @@ public class CommitLog {
      * 映射文件队列
      */
     private final MappedFileQueue mappedFileQueue;
+    /**
+     * 过期文件删除限速器
+     */
+    private final FileDeleteThrottle deleteThrottle;
     /**
      * 消息存储
      */
@@ -108,6 +112,9 @@ public class CommitLog {
         this.mappedFileQueue = new MappedFileQueue(defaultMessageStore.getMessageStoreConfig().getStorePathCommitLog(),
             defaultMessageStore.getMessageStoreConfig().getMapedFileSizeCommitLog(), defaultMessageStore.getAllocateMappedFileService());
         this.defaultMessageStore = defaultMessageStore;
+        // 只在开启限速删除时创建并启动截断线程
+        this.deleteThrottle = defaultMessageStore.getMessageStoreConfig().isCommitLogDeleteThrottleEnable()
+            ? new FileDeleteThrottle(defaultMessageStore.getMessageStoreConfig(), this.mappedFileQueue) : null;
 
         if (FlushDiskType.SYNC_FLUSH == defaultMessageStore.getMessageStoreConfig().getFlushDiskType()) {
             this.flushCommitLogService = new GroupCommitService();
@@ -128,6 +135,9 @@ public class CommitLog {
 
     public void start() {
         this.flushCommitLogService.start();
+        if (this.deleteThrottle != null) {
+            this.deleteThrottle.start();
+        }
 
         if (defaultMessageStore.getMessageStoreConfig().isTransientStorePoolEnable()) {
             this.commitLogService.start();
@@ -140,6 +150,9 @@ public class CommitLog {
         }
 
         this.flushCommitLogService.shutdown();
+        if (this.deleteThrottle != null) {
+            this.deleteThrottle.shutdown();
+        }
     }
 
     public long flush() {
@@ -165,7 +178,7 @@ public class CommitLog {
                                  final long intervalForcibly,
                                  final boolean cleanImmediately
     ) {
-        return this.mappedFileQueue.deleteExpiredFileByTime(expiredTime, deleteFilesInterval, intervalForcibly, cleanImmediately);
+        return this.mappedFileQueue.deleteExpiredFileByTime(expiredTime, deleteFilesInterval, intervalForcibly, cleanImmediately, this.deleteThrottle);
     }
 
     /**
@@ -601,33 +614,8 @@ public class CommitLog {
 
         StoreStatsService storeStatsService = this.defaultMessageStore.getStoreStatsService();
 
+        this.resetDelayTopic(msg);
         String topic = msg.getTopic();
-        int queueId = msg.getQueueId();
-
-        // 延时消息处理,事务的 TRANSACTION_PREPARED_TYPE和TRANSACTION_ROLLBACK_TYPE 消息不支持延时投递
-        final int tranType = MessageSysFlag.getTransactionValue(msg.getSysFlag());
-        if (tranType == MessageSysFlag.TRANSACTION_NOT_TYPE || tranType == MessageSysFlag.TRANSACTION_COMMIT_TYPE) {
-            // Delay Delivery
-            if (msg.getDelayTimeLevel() > 0) {
-                if (msg.getDelayTimeLevel() > this.defaultMessageStore.getScheduleMessageService().getMaxDelayLevel()) {
-                    msg.setDelayTimeLevel(this.defaultMessageStore.getScheduleMessageService().getMaxDelayLevel());
-                }
-
-                // 存储消息时，延时消息进入 `Topic` 为 `SCHEDULE_TOPIC_XXXX` 。
-                topic = ScheduleMessageService.SCHEDULE_TOPIC;
-
-                //  消息队列编号 与 延迟级别  做固定映射 queueId = delayLevel - 1
-                queueId = ScheduleMessageService.delayLevel2QueueId(msg.getDelayTimeLevel());
-
-                // Backup real topic, queueId
-                MessageAccessor.putProperty(msg, MessageConst.PROPERTY_REAL_TOPIC, msg.getTopic());  // %RETRY%+consumeGroup
-                MessageAccessor.putProperty(msg, MessageConst.PROPERTY_REAL_QUEUE_ID, String.valueOf(msg.getQueueId()));  //0
-                msg.setPropertiesString(MessageDecoder.messageProperties2String(msg.getProperties()));
-
-                msg.setTopic(topic);
-                msg.setQueueId(queueId);
-            }
-        }
 
         long eclipseTimeInLock = 0;
 
@@ -636,7 +624,10 @@ public class CommitLog {
         MappedFile mappedFile = this.mappedFileQueue.getLastMappedFile();
 
         // 获取追加锁,限制同一时间只能有一个线程进行数据的Put工作
+        long beginLockNanos = System.nanoTime();
         lockForPutMessage(); //spin...
+        long lockedNanos = System.nanoTime();
+        storeStatsService.getPutMessageLockWaitLatency().recordNanos(lockedNanos - beginLockNanos);
         try {
             long beginLockTimestamp = this.defaultMessageStore.getSystemClock().now();
             this.beginTimeInLock = beginLockTimestamp;
@@ -689,6 +680,7 @@ public class CommitLog {
         } finally {
             // 释放锁
             releasePutMessageLock();
+            storeStatsService.getPutMessageLockHoldLatency().recordNanos(System.nanoTime() - lockedNanos);
         }
 
         if (eclipseTimeInLock > 500) {
@@ -705,13 +697,179 @@ public class CommitLog {
         storeStatsService.getSinglePutMessageTopicTimesTotal(msg.getTopic()).incrementAndGet();
         storeStatsService.getSinglePutMessageTopicSizeTotal(topic).addAndGet(result.getWroteBytes());
 
-        // 进行同步||异步 flush||commit
+        // 进行同步||异步 flush||commit, 同步双写
+        this.handleDiskFlushAndHA(putMessageResult, result.getWroteOffset() + result.getWroteBytes(), msg);
+
+        return putMessageResult;
+    }
+
+    /**
+     * 批量存储消息
+     * 所有消息只获取一次追加锁; 刷盘与同步双写只等待最后一条需要等待的消息。
+     * 单条消息追加失败不影响其他消息, 返回结果与消息一一对应。
+     *
+     * @param msgs 消息
+     * @return 存储结果
+     */
+    public List<PutMessageResult> putMessages(final List<MessageExtBrokerInner> msgs) {
+        final StoreStatsService storeStatsService = this.defaultMessageStore.getStoreStatsService();
+        final AppendMessageResult[] results = new AppendMessageResult[msgs.size()];
+        final PutMessageStatus[] statuses = new PutMessageStatus[msgs.size()];
+
+        for (MessageExtBrokerInner msg : msgs) {
+            msg.setBodyCRC(UtilAll.crc32(msg.getBody()));
+            this.resetDelayTopic(msg);
+        }
+
+        long eclipseTimeInLock = 0;
+        MappedFile unlockMappedFile = null;
+        MappedFile mappedFile = this.mappedFileQueue.getLastMappedFile();
+
+        long beginLockNanos = System.nanoTime();
+        lockForPutMessage(); //spin...
+        long lockedNanos = System.nanoTime();
+        storeStatsService.getPutMessageLockWaitLatency().recordNanos(lockedNanos - beginLockNanos);
+        try {
+            long beginLockTimestamp = this.defaultMessageStore.getSystemClock().now();
+            this.beginTimeInLock = beginLockTimestamp;
+
+            for (int i = 0; i < msgs.size(); i++) {
+                final MessageExtBrokerInner msg = msgs.get(i);
+                msg.setStoreTimestamp(beginLockTimestamp);
+
+                if (null == mappedFile || mappedFile.isFull()) {
+                    mappedFile = this.mappedFileQueue.getLastMappedFile(0); // Mark: NewFile may be cause noise
+                }
+                if (null == mappedFile) {
+                    log.error("create maped file1 error, topic: " + msg.getTopic() + " clientAddr: " + msg.getBornHostString());
+                    statuses[i] = PutMessageStatus.CREATE_MAPEDFILE_FAILED;
+                    continue;
+                }
+
+                AppendMessageResult result = mappedFile.appendMessage(msg, this.appendMessageCallback);
+                if (AppendMessageStatus.END_OF_FILE == result.getStatus()) {
+                    unlockMappedFile = mappedFile;
+                    // Create a new file, re-write the message
+                    mappedFile = this.mappedFileQueue.getLastMappedFile(0);
+                    if (null == mappedFile) {
+                        log.error("create maped file2 error, topic: " + msg.getTopic() + " clientAddr: " + msg.getBornHostString());
+                        results[i] = result;
+                        statuses[i] = PutMessageStatus.CREATE_MAPEDFILE_FAILED;
+                        continue;
+                    }
+                    result = mappedFile.appendMessage(msg, this.appendMessageCallback);
+                }
+
+                results[i] = result;
+                switch (result.getStatus()) {
+                    case PUT_OK:
+                        statuses[i] = PutMessageStatus.PUT_OK;
+                        break;
+                    case MESSAGE_SIZE_EXCEEDED:
+                    case PROPERTIES_SIZE_EXCEEDED:
+                        statuses[i] = PutMessageStatus.MESSAGE_ILLEGAL;
+                        break;
+                    default:
+                        statuses[i] = PutMessageStatus.UNKNOWN_ERROR;
+                        break;
+                }
+            }
+
+            eclipseTimeInLock = this.defaultMessageStore.getSystemClock().now() - beginLockTimestamp;
+            beginTimeInLock = 0;
+        } finally {
+            // 释放锁
+            releasePutMessageLock();
+            storeStatsService.getPutMessageLockHoldLatency().recordNanos(System.nanoTime() - lockedNanos);
+        }
+
+        if (eclipseTimeInLock > 500) {
+            log.warn("[NOTIFYME]putMessages in lock cost time(ms)={}, size={}", eclipseTimeInLock, msgs.size());
+        }
+
+        if (null != unlockMappedFile && this.defaultMessageStore.getMessageStoreConfig().isWarmMapedFileEnable()) {
+            this.defaultMessageStore.unlockMappedFile(unlockMappedFile);
+        }
+
+        final List<PutMessageResult> putMessageResults = new ArrayList<PutMessageResult>(msgs.size());
+        long waitOffset = -1;
+        MessageExtBrokerInner waitMsg = null;
+        for (int i = 0; i < msgs.size(); i++) {
+            final MessageExtBrokerInner msg = msgs.get(i);
+            putMessageResults.add(new PutMessageResult(statuses[i], results[i]));
+            if (PutMessageStatus.PUT_OK == statuses[i]) {
+                // Statistics
+                storeStatsService.getSinglePutMessageTopicTimesTotal(msg.getTopic()).incrementAndGet();
+                storeStatsService.getSinglePutMessageTopicSizeTotal(msg.getTopic()).addAndGet(results[i].getWroteBytes());
+
+                final long nextOffset = results[i].getWroteOffset() + results[i].getWroteBytes();
+                if (null == waitMsg || (msg.isWaitStoreMsgOK() && nextOffset > waitOffset)) {
+                    waitOffset = nextOffset;
+                    waitMsg = msg;
+                }
+            }
+        }
+
+        // 刷盘与同步双写只处理一次, 等待失败时所有等待存储完成的消息使用相同的状态
+        if (waitMsg != null) {
+            final PutMessageResult waitResult = new PutMessageResult(PutMessageStatus.PUT_OK, null);
+            this.handleDiskFlushAndHA(waitResult, waitOffset, waitMsg);
+            if (!waitResult.isOk()) {
+                for (int i = 0; i < msgs.size(); i++) {
+                    if (PutMessageStatus.PUT_OK == statuses[i] && msgs.get(i).isWaitStoreMsgOK()) {
+                        putMessageResults.get(i).setPutMessageStatus(waitResult.getPutMessageStatus());
+                    }
+                }
+            }
+        }
+
+        return putMessageResults;
+    }
+
+    /**
+     * 延时消息处理: 存储到 SCHEDULE_TOPIC_XXXX, 并备份真实的Topic与队列编号
+     * 事务的 TRANSACTION_PREPARED_TYPE和TRANSACTION_ROLLBACK_TYPE 消息不支持延时投递
+     */
+    private void resetDelayTopic(final MessageExtBrokerInner msg) {
+        final int tranType = MessageSysFlag.getTransactionValue(msg.getSysFlag());
+        if (tranType == MessageSysFlag.TRANSACTION_NOT_TYPE || tranType == MessageSysFlag.TRANSACTION_COMMIT_TYPE) {
+            // Delay Delivery
+            if (msg.getDelayTimeLevel() > 0) {
+                if (msg.getDelayTimeLevel() > this.defaultMessageStore.getScheduleMessageService().getMaxDelayLevel()) {
+                    msg.setDelayTimeLevel(this.defaultMessageStore.getScheduleMessageService().getMaxDelayLevel());
+                }
+
+                // 存储消息时，延时消息进入 `Topic` 为 `SCHEDULE_TOPIC_XXXX` 。
+                String topic = ScheduleMessageService.SCHEDULE_TOPIC;
+
+                //  消息队列编号 与 延迟级别  做固定映射 queueId = delayLevel - 1
+                int queueId = ScheduleMessageService.delayLevel2QueueId(msg.getDelayTimeLevel());
+
+                // Backup real topic, queueId
+                MessageAccessor.putProperty(msg, MessageConst.PROPERTY_REAL_TOPIC, msg.getTopic());  // %RETRY%+consumeGroup
+                MessageAccessor.putProperty(msg, MessageConst.PROPERTY_REAL_QUEUE_ID, String.valueOf(msg.getQueueId()));  //0
+                msg.setPropertiesString(MessageDecoder.messageProperties2String(msg.getProperties()));
+
+                msg.setTopic(topic);
+                msg.setQueueId(queueId);
+            }
+        }
+    }
+
+    /**
+     * 同步||异步 flush||commit, 以及同步双写
+     *
+     * @param putMessageResult 存储结果, 等待超时时修改其状态
+     * @param nextOffset       需要等待刷盘/同步到的位置
+     * @param msg              决定是否等待的消息
+     */
+    private void handleDiskFlushAndHA(final PutMessageResult putMessageResult, final long nextOffset, final MessageExtBrokerInner msg) {
         GroupCommitRequest request = null;
         // Synchronization flush
         if (FlushDiskType.SYNC_FLUSH == this.defaultMessageStore.getMessageStoreConfig().getFlushDiskType()) {
             final GroupCommitService service = (GroupCommitService)this.flushCommitLogService;
             if (msg.isWaitStoreMsgOK()) {
-                request = new GroupCommitRequest(result.getWroteOffset() + result.getWroteBytes());
+                request = new GroupCommitRequest(nextOffset);
                 service.putRequest(request);
                 boolean flushOK = request.waitForFlush(this.defaultMessageStore.getMessageStoreConfig().getSyncFlushTimeout());
                 if (!flushOK) {
@@ -737,10 +895,10 @@ public class CommitLog {
             HAService service = this.defaultMessageStore.getHaService();
             if (msg.isWaitStoreMsgOK()) {
                 // 推送到Slave的Offset是否小于这条消息的Offset,且Slave落后Master的进度在允许范围内(256MB)
-                if (service.isSlaveOK(result.getWroteOffset() + result.getWroteBytes())) {
+                if (service.isSlaveOK(nextOffset)) {
                     //如果是ASYNC_FLUSH
                     if (null == request) {
-                        request = new GroupCommitRequest(result.getWroteOffset() + result.getWroteBytes());
+                        request = new GroupCommitRequest(nextOffset);
                     }
                     service.putRequest(request);
 
@@ -761,8 +919,6 @@ public class CommitLog {
                 }
             }
         }
-
-        return putMessageResult;
     }
 
     /**
@@ -814,6 +970,22 @@ public class CommitLog {
         return null;
     }
 
+    /**
+     * 预读CommitLog中 [offset, offset + size) 的数据, 范围不能跨越MappedFile
+     *
+     * @param offset CommitLog全局Offset
+     * @param size   预读长度
+     * @return 实际发起预读的字节数
+     */
+    public int prefetch(final long offset, final int size) {
+        int mappedFileSize = this.defaultMessageStore.getMessageStoreConfig().getMapedFileSizeCommitLog();
+        MappedFile mappedFile = this.mappedFileQueue.findMappedFileByOffset(offset, offset == 0);
+        if (mappedFile != null) {
+            return mappedFile.prefetch((int)(offset % mappedFileSize), size);
+        }
+        return 0;
+    }
+
     /**
      * 跳到当前Offset对应的MappedFile的下一个MappedFile的起始位置
      * 比如当前Offset为1G+5000,
@@ -1001,9 +1173,11 @@ public class CommitLog {
 
                 try {
                     //Commit需要缓冲区内至少含有4页数据，也就是16KB,或者是最近200毫秒内没有消息Commit
+                    long beginNanos = System.nanoTime();
                     boolean result = CommitLog.this.mappedFileQueue.commit(commitDataLeastPages);
                     long end = System.currentTimeMillis();
                     if (!result) {   //代表着writeBuffer里的数据commit到了fileChannel中，可能是writeBuffer里数据超过16KB或者最近200毫秒内没有消息Commit
+                        CommitLog.this.defaultMessageStore.getStoreStatsService().getCommitLogCommitLatency().recordNanos(System.nanoTime() - beginNanos);
                         this.lastCommitTimestamp = end;
                         //now wake up flush thread.
                         flushCommitLogService.wakeup();
@@ -1079,7 +1253,10 @@ public class CommitLog {
                     // flush commitLog
                     long begin = System.currentTimeMillis();
                     //刷盘至少需要4页数据，也就是16KB
-                    CommitLog.this.mappedFileQueue.flush(flushPhysicQueueLeastPages);
+                    long beginNanos = System.nanoTime();
+                    if (!CommitLog.this.mappedFileQueue.flush(flushPhysicQueueLeastPages)) {
+                        CommitLog.this.defaultMessageStore.getStoreStatsService().getCommitLogFlushLatency().recordNanos(System.nanoTime() - beginNanos);
+                    }
                     long storeTimestamp = CommitLog.this.mappedFileQueue.getStoreTimestamp();
                     if (storeTimestamp > 0) {
                         CommitLog.this.defaultMessageStore.getStoreCheckpoint().setPhysicMsgTimestamp(storeTimestamp);
@@ -1173,7 +1350,9 @@ public class CommitLog {
                             // 是否满足需要flush条件，即请求的offset超过flush的offset
                             flushOK = CommitLog.this.mappedFileQueue.getFlushedWhere() >= req.getNextOffset();
                             if (!flushOK) {
+                                long beginNanos = System.nanoTime();
                                 CommitLog.this.mappedFileQueue.flush(0);
+                                CommitLog.this.defaultMessageStore.getStoreStatsService().getCommitLogFlushLatency().recordNanos(System.nanoTime() - beginNanos);
                             }
                         }
                         // 唤醒等待请求
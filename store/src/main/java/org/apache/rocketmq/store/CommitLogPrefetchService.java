@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.rocketmq.common.ServiceThread;
+import org.apache.rocketmq.common.constant.LoggerName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CommitLog预读服务
+ *
+ * 消费者追赶堆积消息时(消息已不在PageCache中), 每次拉取都会在CommitLog上产生同步缺页。
+ * 本服务按 topic-queueId 记录拉取游标, 识别顺序拉取后, 在后台线程中沿ConsumeQueue向后扫描,
+ * 将后续消息所在的CommitLog区间合并后通过 madvise(MADV_WILLNEED) 交给内核预读。
+ */
+public class CommitLogPrefetchService extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+    /**
+     * 游标超过该时间未被拉取则清理
+     */
+    static final long CURSOR_EXPIRED_MILLS = 1000 * 60 * 2;
+
+    /**
+     * 单次预读最多扫描的ConsumeQueue条目数
+     */
+    private static final int MAX_SCAN_UNITS = 16000;
+
+    private final DefaultMessageStore defaultMessageStore;
+
+    private final ConcurrentHashMap<String/* topic-queueId */, PullCursor> cursorTable =
+        new ConcurrentHashMap<String, PullCursor>(256);
+
+    private final LinkedBlockingQueue<PullCursor> requestQueue = new LinkedBlockingQueue<PullCursor>();
+
+    private long lastCleanTimestamp = System.currentTimeMillis();
+
+    public CommitLogPrefetchService(final DefaultMessageStore defaultMessageStore) {
+        this.defaultMessageStore = defaultMessageStore;
+    }
+
+    /**
+     * 拉取消息后调用, 更新游标并在需要时提交预读请求
+     *
+     * @param topic           主题
+     * @param queueId         队列编号
+     * @param offset          本次拉取的ConsumeQueue Offset
+     * @param nextBeginOffset 下次拉取的ConsumeQueue Offset
+     * @param isInDisk        本次拉取的消息是否已不在内存中
+     */
+    public void onPullMessage(final String topic, final int queueId, final long offset, final long nextBeginOffset,
+        final boolean isInDisk) {
+        String key = topic + "-" + queueId;
+        PullCursor cursor = this.cursorTable.get(key);
+        if (null == cursor) {
+            cursor = new PullCursor(topic, queueId);
+            PullCursor prev = this.cursorTable.putIfAbsent(key, cursor);
+            if (prev != null) {
+                cursor = prev;
+            }
+        }
+
+        final boolean sequential;
+        final boolean needPrefetch;
+        synchronized (cursor) {
+            sequential = cursor.nextOffset == offset;
+            cursor.nextOffset = nextBeginOffset;
+            cursor.lastPullTimestamp = System.currentTimeMillis();
+
+            if (!isInDisk) {
+                return;
+            }
+
+            StoreStatsService storeStatsService = this.defaultMessageStore.getStoreStatsService();
+            if (sequential && nextBeginOffset <= cursor.prefetchedOffset) {
+                storeStatsService.getCommitLogPrefetchHitTimes().incrementAndGet();
+            } else {
+                storeStatsService.getCommitLogPrefetchMissTimes().incrementAndGet();
+            }
+
+            if (!sequential) {
+                // 随机拉取, 之前的预读区间作废, 进行中的预读结果也不再采用
+                cursor.prefetchedOffset = nextBeginOffset;
+                cursor.prefetchedUnits = 0;
+                cursor.resetTimes++;
+                return;
+            }
+
+            // 已预读的剩余条目不足上次预读的一半时, 提前发起下一轮预读
+            long remain = cursor.prefetchedOffset - nextBeginOffset;
+            needPrefetch = remain <= cursor.prefetchedUnits / 2;
+        }
+
+        if (needPrefetch && cursor.inflight.compareAndSet(false, true)) {
+            if (!this.requestQueue.offer(cursor)) {
+                cursor.inflight.set(false);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        log.info(this.getServiceName() + " service started");
+
+        while (!this.isStopped()) {
+            try {
+                this.prefetch(this.requestQueue.poll(3000, TimeUnit.MILLISECONDS));
+                this.cleanExpiredCursor(System.currentTimeMillis());
+            } catch (Exception e) {
+                log.warn(this.getServiceName() + " service has exception. ", e);
+            }
+        }
+
+        log.info(this.getServiceName() + " service end");
+    }
+
+    void prefetch(final PullCursor cursor) {
+        if (cursor != null) {
+            try {
+                this.doPrefetch(cursor);
+            } finally {
+                cursor.inflight.set(false);
+            }
+        }
+    }
+
+    /**
+     * 从游标位置开始扫描ConsumeQueue, 合并相邻的CommitLog区间并预读, 总量不超过 commitLogPrefetchSize
+     */
+    private void doPrefetch(final PullCursor cursor) {
+        final int prefetchSize = this.defaultMessageStore.getMessageStoreConfig().getCommitLogPrefetchSize();
+        final int mappedFileSize = this.defaultMessageStore.getMessageStoreConfig().getMapedFileSizeCommitLog();
+        final long maxOffsetPy = this.defaultMessageStore.getCommitLog().getMaxOffset();
+        final long startOffset;
+        final long resetTimes;
+        synchronized (cursor) {
+            startOffset = Math.max(cursor.nextOffset, cursor.prefetchedOffset);
+            resetTimes = cursor.resetTimes;
+        }
+
+        ConsumeQueue consumeQueue = this.defaultMessageStore.findConsumeQueue(cursor.topic, cursor.queueId);
+        SelectMappedBufferResult bufferConsumeQueue = consumeQueue.getIndexBuffer(startOffset);
+        if (null == bufferConsumeQueue) {
+            return;
+        }
+
+        long rangeBegin = -1;
+        long rangeEnd = -1;
+        long prefetchBytes = 0;
+        int units = 0;
+        try {
+            for (int i = 0; i < bufferConsumeQueue.getSize() && units < MAX_SCAN_UNITS && prefetchBytes < prefetchSize;
+                 i += ConsumeQueue.CQ_STORE_UNIT_SIZE, units++) {
+                long offsetPy = bufferConsumeQueue.getByteBuffer().getLong();
+                int sizePy = bufferConsumeQueue.getByteBuffer().getInt();
+                bufferConsumeQueue.getByteBuffer().getLong();
+
+                // 后续消息已在内存中, 无需预读
+                if (!this.defaultMessageStore.checkInDiskByCommitOffset(offsetPy, maxOffsetPy)) {
+                    break;
+                }
+
+                boolean sameFile = rangeBegin >= 0 && offsetPy / mappedFileSize == rangeBegin / mappedFileSize;
+                if (sameFile && offsetPy >= rangeEnd && offsetPy - rangeEnd <= MappedFile.OS_PAGE_SIZE) {
+                    rangeEnd = offsetPy + sizePy;
+                    continue;
+                }
+
+                if (rangeBegin >= 0) {
+                    prefetchBytes += this.defaultMessageStore.getCommitLog().prefetch(rangeBegin, (int)(rangeEnd - rangeBegin));
+                }
+                rangeBegin = offsetPy;
+                rangeEnd = offsetPy + sizePy;
+            }
+
+            if (rangeBegin >= 0) {
+                prefetchBytes += this.defaultMessageStore.getCommitLog().prefetch(rangeBegin, (int)(rangeEnd - rangeBegin));
+            }
+        } finally {
+            bufferConsumeQueue.release();
+        }
+
+        synchronized (cursor) {
+            // 扫描期间发生随机拉取时丢弃本轮结果
+            if (resetTimes == cursor.resetTimes && startOffset + units > cursor.prefetchedOffset) {
+                cursor.prefetchedOffset = startOffset + units;
+                cursor.prefetchedUnits = units;
+            }
+        }
+        this.defaultMessageStore.getStoreStatsService().getCommitLogPrefetchBytes().addAndGet(prefetchBytes);
+    }
+
+    void cleanExpiredCursor(final long now) {
+        if (now - this.lastCleanTimestamp < CURSOR_EXPIRED_MILLS) {
+            return;
+        }
+        this.lastCleanTimestamp = now;
+
+        Iterator<Map.Entry<String, PullCursor>> it = this.cursorTable.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, PullCursor> next = it.next();
+            synchronized (next.getValue()) {
+                if (now - next.getValue().lastPullTimestamp > CURSOR_EXPIRED_MILLS) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    PullCursor getCursor(final String topic, final int queueId) {
+        return this.cursorTable.get(topic + "-" + queueId);
+    }
+
+    PullCursor pollRequest() {
+        return this.requestQueue.poll();
+    }
+
+    @Override
+    public String getServiceName() {
+        return CommitLogPrefetchService.class.getSimpleName();
+    }
+
+    /**
+     * 队列拉取游标, 除 inflight 外的字段在本对象锁内读写
+     */
+    static class PullCursor {
+        private final String topic;
+        private final int queueId;
+        private final AtomicBoolean inflight = new AtomicBoolean(false);
+        /**
+         * 期望的下一次拉取Offset
+         */
+        private long nextOffset = -1;
+        /**
+         * 已预读到的ConsumeQueue Offset(不包含)
+         */
+        private long prefetchedOffset = -1;
+        /**
+         * 上一轮预读覆盖的条目数
+         */
+        private int prefetchedUnits = 0;
+        /**
+         * 随机拉取导致预读区间作废的次数
+         */
+        private long resetTimes = 0;
+        private long lastPullTimestamp = System.currentTimeMillis();
+
+        PullCursor(final String topic, final int queueId) {
+            this.topic = topic;
+            this.queueId = queueId;
+        }
+
+        synchronized long getPrefetchedOffset() {
+            return prefetchedOffset;
+        }
+
+        synchronized long getNextOffset() {
+            return nextOffset;
+        }
+    }
+}
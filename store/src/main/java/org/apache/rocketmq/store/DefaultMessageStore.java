@@ -81,6 +81,8 @@ public class DefaultMessageStore implements MessageStore {
 
     private final AllocateMappedFileService allocateMappedFileService;
 
+    private final CommitLogPrefetchService commitLogPrefetchService;
+
     /**
      * 重放消息线程服务
      */
@@ -124,6 +126,7 @@ public class DefaultMessageStore implements MessageStore {
         this.cleanCommitLogService = new CleanCommitLogService();
         this.cleanConsumeQueueService = new CleanConsumeQueueService();
         this.storeStatsService = new StoreStatsService();
+        this.commitLogPrefetchService = new CommitLogPrefetchService(this);
         this.indexService = new IndexService(this);
         this.haService = new HAService(this);
 
@@ -201,6 +204,9 @@ public class DefaultMessageStore implements MessageStore {
         this.flushConsumeQueueService.start();              //启动ConsumeQueue Flush线程
         this.commitLog.start();                             //启动Flush线程,若开启缓冲池则也启动Commit线程
         this.storeStatsService.start();                     //启动TPS及状态新打印线程
+        if (this.messageStoreConfig.isCommitLogPrefetchEnable()) {
+            this.commitLogPrefetchService.start();          //启动CommitLog预读线程
+        }
 
         if (this.scheduleMessageService != null && SLAVE != messageStoreConfig.getBrokerRole()) {
             this.scheduleMessageService.start();            //Master启动延时任务投递线程,同时每隔10S持久化每隔延时队列的投递进度
@@ -243,6 +249,9 @@ public class DefaultMessageStore implements MessageStore {
             this.haService.shutdown();
 
             this.storeStatsService.shutdown();
+            if (this.messageStoreConfig.isCommitLogPrefetchEnable()) {
+                this.commitLogPrefetchService.shutdown();
+            }
             this.indexService.shutdown();
             this.commitLog.shutdown();
             this.reputMessageService.shutdown();
@@ -279,9 +288,89 @@ public class DefaultMessageStore implements MessageStore {
 
     @Override
     public PutMessageResult putMessage(MessageExtBrokerInner msg) {
+        PutMessageStatus checkStatus = this.checkStoreStatus();
+        if (checkStatus != null) {
+            return new PutMessageResult(checkStatus, null);
+        }
+
+        checkStatus = this.checkMessage(msg);
+        if (checkStatus != null) {
+            return new PutMessageResult(checkStatus, null);
+        }
+
+        long beginTime = this.getSystemClock().now();
+        // 添加消息到commitLog
+        PutMessageResult result = this.commitLog.putMessage(msg);
+
+        long eclipseTime = this.getSystemClock().now() - beginTime;
+        if (eclipseTime > 500) {
+            log.warn("putMessage not in lock eclipse time(ms)={}, bodyLength={}", eclipseTime, msg.getBody().length);
+        }
+        this.storeStatsService.setPutMessageEntireTimeMax(eclipseTime);
+
+        if (null == result || !result.isOk()) {
+            this.storeStatsService.getPutMessageFailedTimes().incrementAndGet();
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<PutMessageResult> putMessages(List<MessageExtBrokerInner> msgs) {
+        final List<PutMessageResult> results = new ArrayList<PutMessageResult>(msgs.size());
+        final PutMessageStatus checkStatus = this.checkStoreStatus();
+        if (checkStatus != null) {
+            for (int i = 0; i < msgs.size(); i++) {
+                results.add(new PutMessageResult(checkStatus, null));
+            }
+            return results;
+        }
+
+        // 不合法的消息单独返回失败, 其余消息批量写入
+        final List<MessageExtBrokerInner> validMsgs = new ArrayList<MessageExtBrokerInner>(msgs.size());
+        for (MessageExtBrokerInner msg : msgs) {
+            PutMessageStatus msgStatus = this.checkMessage(msg);
+            results.add(msgStatus != null ? new PutMessageResult(msgStatus, null) : null);
+            if (null == msgStatus) {
+                validMsgs.add(msg);
+            }
+        }
+
+        if (!validMsgs.isEmpty()) {
+            long beginTime = this.getSystemClock().now();
+            final List<PutMessageResult> putResults = this.commitLog.putMessages(validMsgs);
+
+            long eclipseTime = this.getSystemClock().now() - beginTime;
+            if (eclipseTime > 500) {
+                log.warn("putMessages not in lock eclipse time(ms)={}, size={}", eclipseTime, validMsgs.size());
+            }
+            this.storeStatsService.setPutMessageEntireTimeMax(eclipseTime);
+
+            int index = 0;
+            for (int i = 0; i < results.size(); i++) {
+                if (null == results.get(i)) {
+                    results.set(i, putResults.get(index++));
+                }
+            }
+        }
+
+        for (PutMessageResult result : results) {
+            if (!result.isOk()) {
+                this.storeStatsService.getPutMessageFailedTimes().incrementAndGet();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 检查store是否允许写入
+     *
+     * @return 不允许写入时返回失败状态, 否则返回null
+     */
+    private PutMessageStatus checkStoreStatus() {
         if (this.shutdown) {
             log.warn("message store has shutdown, so putMessage is forbidden");
-            return new PutMessageResult(PutMessageStatus.SERVICE_NOT_AVAILABLE, null);
+            return PutMessageStatus.SERVICE_NOT_AVAILABLE;
         }
 
         // 从节点不允许写入
@@ -291,7 +380,7 @@ public class DefaultMessageStore implements MessageStore {
                 log.warn("message store is slave mode, so putMessage is forbidden ");
             }
 
-            return new PutMessageResult(PutMessageStatus.SERVICE_NOT_AVAILABLE, null);
+            return PutMessageStatus.SERVICE_NOT_AVAILABLE;
         }
 
         // store是否允许写入
@@ -301,42 +390,37 @@ public class DefaultMessageStore implements MessageStore {
                 log.warn("message store is not writeable, so putMessage is forbidden " + this.runningFlags.getFlagBits());
             }
 
-            return new PutMessageResult(PutMessageStatus.SERVICE_NOT_AVAILABLE, null);
+            return PutMessageStatus.SERVICE_NOT_AVAILABLE;
         } else {
             this.printTimes.set(0);
         }
 
+        if (this.isOSPageCacheBusy()) {
+            return PutMessageStatus.OS_PAGECACHE_BUSY;
+        }
+
+        return null;
+    }
+
+    /**
+     * 检查消息是否合法
+     *
+     * @return 不合法时返回失败状态, 否则返回null
+     */
+    private PutMessageStatus checkMessage(final MessageExtBrokerInner msg) {
         // topic过长
         if (msg.getTopic().length() > Byte.MAX_VALUE) {
             log.warn("putMessage message topic length too long " + msg.getTopic().length());
-            return new PutMessageResult(PutMessageStatus.MESSAGE_ILLEGAL, null);
+            return PutMessageStatus.MESSAGE_ILLEGAL;
         }
 
         // 消息附加属性过长
         if (msg.getPropertiesString() != null && msg.getPropertiesString().length() > Short.MAX_VALUE) {
             log.warn("putMessage message properties length too long " + msg.getPropertiesString().length());
-            return new PutMessageResult(PutMessageStatus.PROPERTIES_SIZE_EXCEEDED, null);
-        }
-
-        if (this.isOSPageCacheBusy()) {
-            return new PutMessageResult(PutMessageStatus.OS_PAGECACHE_BUSY, null);
+            return PutMessageStatus.PROPERTIES_SIZE_EXCEEDED;
         }
 
-        long beginTime = this.getSystemClock().now();
-        // 添加消息到commitLog
-        PutMessageResult result = this.commitLog.putMessage(msg);
-
-        long eclipseTime = this.getSystemClock().now() - beginTime;
-        if (eclipseTime > 500) {
-            log.warn("putMessage not in lock eclipse time(ms)={}, bodyLength={}", eclipseTime, msg.getBody().length);
-        }
-        this.storeStatsService.setPutMessageEntireTimeMax(eclipseTime);
-
-        if (null == result || !result.isOk()) {
-            this.storeStatsService.getPutMessageFailedTimes().incrementAndGet();
-        }
-
-        return result;
+        return null;
     }
 
     @Override
@@ -393,6 +477,7 @@ public class DefaultMessageStore implements MessageStore {
         }
 
         long beginTime = this.getSystemClock().now();
+        long beginNanos = System.nanoTime();
 
         GetMessageStatus status = GetMessageStatus.NO_MESSAGE_IN_QUEUE;
         long nextBeginOffset = offset;
@@ -435,6 +520,7 @@ public class DefaultMessageStore implements MessageStore {
 
                         long nextPhyFileStartOffset = Long.MIN_VALUE; // commitLog下一个文件(MappedFile)对应的开始offset。
                         long maxPhyOffsetPulling = 0; // 消息物理位置拉取到的最大offset
+                        boolean firstInDisk = false; // 本次拉取的第一条消息是否已不在内存中
 
                         int i = 0;
                         final int maxFilterMessageCount = 16000;  //每次拉取最多16000字节,也就是800个消息的ConsumeQueue
@@ -454,6 +540,9 @@ public class DefaultMessageStore implements MessageStore {
                             }
                             // 校验 commitLog 是否需要硬盘，无法全部放在内存
                             boolean isInDisk = checkInDiskByCommitOffset(offsetPy, maxOffsetPy);
+                            if (i == 0) {
+                                firstInDisk = isInDisk;
+                            }
                             // 是否已经获得足够消息,若加上当前解析的这条消息超出限制,则中断此条信息的解析
                             if (this.isTheBatchFull(sizePy, maxMsgNums, getResult.getBufferTotalSize(), getResult.getMessageCount(), isInDisk)) {
                                 break;
@@ -491,6 +580,10 @@ public class DefaultMessageStore implements MessageStore {
                         }
                         // 计算下次拉取消息的消费队列的序号
                         nextBeginOffset = offset + (i / ConsumeQueue.CQ_STORE_UNIT_SIZE);
+                        // 顺序拉取堆积消息时, 后台预读后续的CommitLog数据
+                        if (this.messageStoreConfig.isCommitLogPrefetchEnable()) {
+                            this.commitLogPrefetchService.onPullMessage(topic, queueId, offset, nextBeginOffset, firstInDisk);
+                        }
                         // 剩余待拉取消息的字节数
                         long diff = maxOffsetPy - maxPhyOffsetPulling;
                         // 配置的内存中可用来存储待拉取消息的大小,默认为总内存的40%
@@ -521,6 +614,7 @@ public class DefaultMessageStore implements MessageStore {
         }
         long eclipseTime = this.getSystemClock().now() - beginTime;
         this.storeStatsService.setGetMessageEntireTimeMax(eclipseTime);
+        this.storeStatsService.getGetMessageLatency().recordNanos(System.nanoTime() - beginNanos);
         // 设置返回结果
         getResult.setStatus(status);
         getResult.setNextBeginOffset(nextBeginOffset);
@@ -1092,7 +1186,7 @@ public class DefaultMessageStore implements MessageStore {
      * @param maxOffsetPy commitLog 最大offset
      * @return 是否需要硬盘
      */
-    private boolean checkInDiskByCommitOffset(long offsetPy, long maxOffsetPy) {
+    boolean checkInDiskByCommitOffset(long offsetPy, long maxOffsetPy) {
         long memory = (long)(StoreUtil.TOTAL_PHYSICAL_MEMORY_SIZE * (this.messageStoreConfig.getAccessMessageInMemoryMaxRatio() / 100.0));
         return (maxOffsetPy - offsetPy) > memory;
     }
@@ -1355,6 +1449,7 @@ public class DefaultMessageStore implements MessageStore {
      * @param req 调度请求
      */
     public void doDispatch(DispatchRequest req) {
+        long beginNanos = System.nanoTime();
         // 非事务消息 或 事务提交消息 建立 消息位置信息 到 ConsumeQueue
         final int tranType = MessageSysFlag.getTransactionValue(req.getSysFlag());
         switch (tranType) {
@@ -1371,6 +1466,7 @@ public class DefaultMessageStore implements MessageStore {
         if (DefaultMessageStore.this.getMessageStoreConfig().isMessageIndexEnable()) {
             DefaultMessageStore.this.indexService.buildIndex(req);
         }
+        this.storeStatsService.getDispatchLatency().recordNanos(System.nanoTime() - beginNanos);
     }
 
     /**
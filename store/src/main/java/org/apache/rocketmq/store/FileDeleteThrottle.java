@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.rocketmq.common.ServiceThread;
+import org.apache.rocketmq.common.UtilAll;
+import org.apache.rocketmq.common.constant.LoggerName;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 过期文件限速删除服务
+ *
+ * 直接unlink一个1G的文件会让文件系统一次性回收所有数据块并丢弃其PageCache, 造成数百毫秒的I/O抖动。
+ * 过期文件在清理线程中unmap并unlink后, 仍打开的FileChannel交给本服务, 在独立线程中按 commitLogDeleteChunkSize
+ * 从尾部分段截断, 每段按 commitLogDeleteBytesPerSecond 限速, 并在CommitLog刷盘或commit期间暂缓截断, 最后关闭文件释放剩余空间。
+ * 文件在提交前已从目录中移除, 重启时不会加载到截断了一半的文件。
+ *
+ * unmap不做限速: 过期文件早已刷盘, 其映射的页都是干净页, munmap只拆除页表, 不回收磁盘块也不写回数据,
+ * 真正的抖动来自截断与unlink时文件系统回收数据块和PageCache。
+ */
+public class FileDeleteThrottle extends ServiceThread {
+    private static final Logger log = LoggerFactory.getLogger(LoggerName.STORE_LOGGER_NAME);
+
+    private final MessageStoreConfig messageStoreConfig;
+    private final MappedFileQueue flushingQueue;
+    private final LinkedBlockingQueue<DeleteRequest> requestQueue = new LinkedBlockingQueue<DeleteRequest>();
+    /**
+     * 已提交、尚未关闭的文件数
+     */
+    private final AtomicInteger pendingFiles = new AtomicInteger(0);
+
+    /**
+     * 下一次允许截断的时间
+     */
+    private long nextAllowedTimestamp = 0;
+
+    public FileDeleteThrottle(final MessageStoreConfig messageStoreConfig, final MappedFileQueue flushingQueue) {
+        this.messageStoreConfig = messageStoreConfig;
+        this.flushingQueue = flushingQueue;
+    }
+
+    /**
+     * 提交已unlink的文件, 由本服务分段截断后关闭
+     */
+    public void submit(final String fileName, final FileChannel fileChannel) {
+        this.pendingFiles.incrementAndGet();
+        this.requestQueue.offer(new DeleteRequest(fileName, fileChannel));
+    }
+
+    @Override
+    public void run() {
+        log.info(this.getServiceName() + " service started");
+
+        while (!this.isStopped()) {
+            try {
+                DeleteRequest request = this.requestQueue.poll(1000, TimeUnit.MILLISECONDS);
+                if (request != null) {
+                    this.truncateGradually(request);
+                    this.close(request);
+                }
+            } catch (Exception e) {
+                log.warn(this.getServiceName() + " service has exception. ", e);
+            }
+        }
+
+        // 停止时不再限速, 直接关闭剩余文件
+        DeleteRequest request;
+        while ((request = this.requestQueue.poll()) != null) {
+            this.close(request);
+        }
+
+        log.info(this.getServiceName() + " service end");
+    }
+
+    private void truncateGradually(final DeleteRequest request) {
+        final int chunkSize = this.messageStoreConfig.getCommitLogDeleteChunkSize();
+        if (chunkSize <= 0) {
+            return;
+        }
+
+        long beginTime = System.currentTimeMillis();
+        try {
+            long size = request.fileChannel.size();
+            while (size > 0 && !this.isStopped()) {
+                long truncateBytes = Math.min(chunkSize, size);
+                this.acquire(truncateBytes);
+                size -= truncateBytes;
+                request.fileChannel.truncate(size);
+            }
+            log.info("truncate file " + request.fileName + " OK, " + UtilAll.computeEclipseTimeMilliseconds(beginTime));
+        } catch (IOException e) {
+            log.warn("truncate file " + request.fileName + " Failed. ", e);
+        }
+    }
+
+    private void close(final DeleteRequest request) {
+        try {
+            request.fileChannel.close();
+            log.info("close deleted file channel " + request.fileName + " OK");
+        } catch (IOException e) {
+            log.warn("close deleted file channel " + request.fileName + " Failed. ", e);
+        } finally {
+            this.pendingFiles.decrementAndGet();
+        }
+    }
+
+    /**
+     * 截断 bytes 字节之前调用, 按配置的速率与刷盘状态等待
+     */
+    private void acquire(final long bytes) {
+        long now = System.currentTimeMillis();
+        if (this.nextAllowedTimestamp > now) {
+            sleep(this.nextAllowedTimestamp - now);
+        }
+
+        final long maxWait = this.messageStoreConfig.getCommitLogDeleteMaxWaitFlushMills();
+        final long waitBegin = System.currentTimeMillis();
+        while (this.flushingQueue != null && this.flushingQueue.isDiskWriting()
+            && System.currentTimeMillis() - waitBegin < maxWait) {
+            sleep(1);
+        }
+
+        final long bytesPerSecond = this.messageStoreConfig.getCommitLogDeleteBytesPerSecond();
+        now = System.currentTimeMillis();
+        this.nextAllowedTimestamp = bytesPerSecond > 0 ? now + bytes * 1000 / bytesPerSecond : now;
+    }
+
+    private static void sleep(final long mills) {
+        try {
+            Thread.sleep(mills);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    public int getPendingFiles() {
+        return pendingFiles.get();
+    }
+
+    @Override
+    public String getServiceName() {
+        return FileDeleteThrottle.class.getSimpleName();
+    }
+
+    static class DeleteRequest {
+        private final String fileName;
+        private final FileChannel fileChannel;
+
+        DeleteRequest(final String fileName, final FileChannel fileChannel) {
+            this.fileName = fileName;
+            this.fileChannel = fileChannel;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 对数-线性分桶的延迟直方图(类似HdrHistogram), 单位微秒
+ *
+ * 每个2的幂区间再均分为 {@link #SUB_BUCKET_COUNT} 个子桶, 相对误差不超过 1/32,
+ * 记录时只做一次数组下标计算与原子自增, 不分配对象。
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * 可记录的最大值约为 2^36 微秒(约19小时), 超过则计入最后一个桶
+     */
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong(0);
+    private final AtomicLong maxValue = new AtomicLong(0);
+    /**
+     * 上一个统计周期的快照, 由 {@link #rotate()} 更新
+     */
+    private volatile LatencyHistogram lastInterval;
+
+    /**
+     * @param valueMicros 耗时, 单位微秒
+     */
+    public void record(final long valueMicros) {
+        final long value = valueMicros < 0 ? 0 : valueMicros;
+        this.counts.incrementAndGet(indexOf(value));
+        this.totalCount.incrementAndGet();
+
+        long max = this.maxValue.get();
+        while (value > max && !this.maxValue.compareAndSet(max, value)) {
+            max = this.maxValue.get();
+        }
+    }
+
+    public void recordNanos(final long valueNanos) {
+        this.record(valueNanos / 1000);
+    }
+
+    static int indexOf(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * @return 下标对应桶内的最大值
+     */
+    static long highestValueOf(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * @param percentile 百分位, 如 99.9
+     * @return 该百分位的耗时上界, 单位微秒
+     */
+    public long getValueAtPercentile(final double percentile) {
+        final long total = this.totalCount.get();
+        if (total <= 0) {
+            return 0;
+        }
+
+        final long countAtPercentile = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+        long sum = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            sum += this.counts.get(i);
+            if (sum >= countAtPercentile) {
+                return Math.min(highestValueOf(i), this.maxValue.get());
+            }
+        }
+        return this.maxValue.get();
+    }
+
+    /**
+     * 取出当前累计的数据并清零, 记录线程无需停顿, 并发写入的样本计入快照或下一周期之一
+     *
+     * @return 本周期的只读快照
+     */
+    public LatencyHistogram snapshotAndReset() {
+        final LatencyHistogram snapshot = new LatencyHistogram();
+        long total = 0;
+        int highestIndex = -1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            final long count = this.counts.getAndSet(i, 0);
+            if (count > 0) {
+                snapshot.counts.set(i, count);
+                total += count;
+                highestIndex = i;
+            }
+        }
+        this.totalCount.addAndGet(-total);
+        snapshot.totalCount.set(total);
+
+        long max = this.maxValue.getAndSet(0);
+        if (highestIndex > 0) {
+            // 最大值与桶计数不是原子地一起清零, 保证快照的最大值不低于最高非空桶
+            max = Math.max(max, highestValueOf(highestIndex - 1) + 1);
+        }
+        snapshot.maxValue.set(highestIndex < 0 ? 0 : max);
+        return snapshot;
+    }
+
+    /**
+     * 结束当前统计周期, 之后 {@link #getLastInterval()} 返回刚结束周期的分布
+     */
+    public void rotate() {
+        this.lastInterval = this.snapshotAndReset();
+    }
+
+    /**
+     * @return 上一个统计周期的分布, 尚未轮转过时为空
+     */
+    public LatencyHistogram getLastInterval() {
+        final LatencyHistogram interval = this.lastInterval;
+        return interval != null ? interval : new LatencyHistogram();
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    /**
+     * @return 如 "count:100 p50:12us p90:30us p99:120us p999:980us max:1500us"
+     */
+    public String toStringInfo() {
+        return String.format("count:%d p50:%dus p90:%dus p99:%dus p999:%dus max:%dus",
+            this.getTotalCount(),
+            this.getValueAtPercentile(50),
+            this.getValueAtPercentile(90),
+            this.getValueAtPercentile(99),
+            this.getValueAtPercentile(99.9),
+            this.getMaxValue());
+    }
+}
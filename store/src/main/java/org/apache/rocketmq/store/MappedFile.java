@@ -536,23 +536,35 @@ public class MappedFile extends ReferenceResource {
     }
 
     public boolean destroy(final long intervalForcibly) {
+        return this.destroy(intervalForcibly, null);
+    }
+
+    /**
+     * 销毁文件, 若指定了限速器, 则unlink后将文件交给限速器分段截断并关闭, 将数据块的回收分摊到一段时间内
+     *
+     * @param intervalForcibly 强制释放引用的间隔
+     * @param deleteThrottle   删除限速器, 为null时直接删除
+     */
+    public boolean destroy(final long intervalForcibly, final FileDeleteThrottle deleteThrottle) {
         this.shutdown(intervalForcibly);
 
         if (this.isCleanupOver()) {
-            try {
-                this.fileChannel.close();
-                log.info("close file channel " + this.fileName + " OK");
-
-                long beginTime = System.currentTimeMillis();
-                boolean result = this.file.delete();
-                log.info("delete file[REF:" + this.getRefCount() + "] " + this.fileName
-                    + (result ? " OK, " : " Failed, ") + "W:" + this.getWrotePosition() + " M:"
-                    + this.getFlushedPosition() + ", "
-                    + UtilAll.computeEclipseTimeMilliseconds(beginTime));
-            } catch (Exception e) {
-                log.warn("close file channel " + this.fileName + " Failed. ", e);
+            // 上次unlink失败后通道已关闭, 重试时直接走普通删除
+            if (deleteThrottle != null && this.fileChannel.isOpen()) {
+                // 文件仍被FileChannel打开, unlink只移除目录项, 数据块在限速截断与关闭时回收
+                if (this.file.delete()) {
+                    log.info("unlink file[REF:" + this.getRefCount() + "] " + this.fileName + " OK, truncate gradually later");
+                    deleteThrottle.submit(this.fileName, this.fileChannel);
+                    return true;
+                }
+
+                // unlink失败时不能交给限速线程, 关闭通道后按普通方式删除, 文件保留在队列中由下次清理重试
+                log.warn("unlink file[REF:" + this.getRefCount() + "] " + this.fileName + " Failed, fall back to normal delete");
+                this.closeAndDelete();
+                return false;
             }
 
+            this.closeAndDelete();
             return true;
         } else {
             log.warn("destroy mapped file[REF:" + this.getRefCount() + "] " + this.fileName
@@ -562,6 +574,22 @@ public class MappedFile extends ReferenceResource {
         return false;
     }
 
+    private void closeAndDelete() {
+        try {
+            this.fileChannel.close();
+            log.info("close file channel " + this.fileName + " OK");
+
+            long beginTime = System.currentTimeMillis();
+            boolean result = this.file.delete();
+            log.info("delete file[REF:" + this.getRefCount() + "] " + this.fileName
+                + (result ? " OK, " : " Failed, ") + "W:" + this.getWrotePosition() + " M:"
+                + this.getFlushedPosition() + ", "
+                + UtilAll.computeEclipseTimeMilliseconds(beginTime));
+        } catch (Exception e) {
+            log.warn("close file channel " + this.fileName + " Failed. ", e);
+        }
+    }
+
     public int getWrotePosition() {
         return wrotePosition.get();
     }
@@ -659,6 +687,45 @@ public class MappedFile extends ReferenceResource {
         }
     }
 
+    /**
+     * 预读 [pos, pos + size) 范围内的页到PageCache, 优先使用 madvise(MADV_WILLNEED) 交给内核异步读取,
+     * madvise 不可用时在当前线程按页读取一次(touch)
+     *
+     * @param pos  文件内起始位置
+     * @param size 预读长度
+     * @return 实际发起预读的字节数, 文件不可用时返回 0
+     */
+    public int prefetch(final int pos, final int size) {
+        int readPosition = getReadPosition();
+        if (pos < 0 || pos >= readPosition || size <= 0) {
+            return 0;
+        }
+        if (!this.hold()) {
+            return 0;
+        }
+        try {
+            // madvise 要求起始地址按页对齐
+            final int alignedPos = pos - pos % OS_PAGE_SIZE;
+            final int end = Math.min(pos + size, readPosition);
+            final int length = end - alignedPos;
+            int ret = -1;
+            try {
+                final long address = ((DirectBuffer)(this.mappedByteBuffer)).address() + alignedPos;
+                ret = LibC.INSTANCE.madvise(new Pointer(address), new NativeLong(length), LibC.MADV_WILLNEED);
+            } catch (Throwable e) {
+                log.debug("madvise unavailable, fall back to touch. mappedFile={}", this.fileName, e);
+            }
+            if (ret != 0) {
+                for (int i = alignedPos; i < end; i += OS_PAGE_SIZE) {
+                    this.mappedByteBuffer.get(i);
+                }
+            }
+            return length;
+        } finally {
+            this.release();
+        }
+    }
+
     public void munlock() {
         final long beginTime = System.currentTimeMillis();
         final long address = ((DirectBuffer)(this.mappedByteBuffer)).address();
@@ -25,6 +25,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 映射文件队列
@@ -66,6 +67,10 @@ public class MappedFileQueue {
      * 最后store时间戳
      */
     private volatile long storeTimestamp = 0;
+    /**
+     * 正在进行的刷盘与commit数, 限速删除过期文件时据此避让
+     */
+    private final AtomicInteger diskWritingCount = new AtomicInteger(0);
 
     public MappedFileQueue(final String storePath, int mappedFileSize,
                            AllocateMappedFileService allocateMappedFileService) {
@@ -374,6 +379,19 @@ public class MappedFileQueue {
                                        final int deleteFilesInterval,
                                        final long intervalForcibly,
                                        final boolean cleanImmediately) {
+        return this.deleteExpiredFileByTime(expiredTime, deleteFilesInterval, intervalForcibly, cleanImmediately, null);
+    }
+
+    /**
+     * 按时间删除过期文件
+     *
+     * @param deleteThrottle 删除限速器, 为null时直接删除文件
+     */
+    public int deleteExpiredFileByTime(final long expiredTime,
+                                       final int deleteFilesInterval,
+                                       final long intervalForcibly,
+                                       final boolean cleanImmediately,
+                                       final FileDeleteThrottle deleteThrottle) {
         Object[] mfs = this.copyMappedFiles(0);
 
         if (null == mfs) { return 0; }
@@ -386,7 +404,7 @@ public class MappedFileQueue {
             long liveMaxTimestamp = mappedFile.getLastModifiedTimestamp() + expiredTime;
             // 如果MappedFile的最后更新时间距离现在超过了72h
             if (System.currentTimeMillis() >= liveMaxTimestamp || cleanImmediately) {
-                if (mappedFile.destroy(intervalForcibly)) {
+                if (mappedFile.destroy(intervalForcibly, deleteThrottle)) {
                     files.add(mappedFile);
                     deleteCount++;
 
@@ -476,7 +494,13 @@ public class MappedFileQueue {
             long tmpTimeStamp = mappedFile.getStoreTimestamp();
             // 如果满足flush条件,返回这次flush后的位置
             // 如果不满住flush条件,返回上次flush的位置
-            int offset = mappedFile.flush(flushLeastPages);
+            int offset;
+            this.diskWritingCount.incrementAndGet();
+            try {
+                offset = mappedFile.flush(flushLeastPages);
+            } finally {
+                this.diskWritingCount.decrementAndGet();
+            }
             long where = mappedFile.getFileFromOffset() + offset;
             // flush的偏移量 == 文件里的数据偏移量
             result = where == this.flushedWhere;
@@ -499,7 +523,13 @@ public class MappedFileQueue {
         boolean result = true;
         MappedFile mappedFile = this.findMappedFileByOffset(this.committedWhere, false);  //通过committedWhere找到当前Commit到哪个文件
         if (mappedFile != null) {
-            int offset = mappedFile.commit(commitLeastPages);
+            int offset;
+            this.diskWritingCount.incrementAndGet();
+            try {
+                offset = mappedFile.commit(commitLeastPages);
+            } finally {
+                this.diskWritingCount.decrementAndGet();
+            }
             long where = mappedFile.getFileFromOffset() + offset;
             result = where == this.committedWhere;  //当Commit成功后，(where = wrotePosition) > (this.committedWhere = 上次commit的位置),所以返回false
             this.committedWhere = where;
@@ -587,6 +617,13 @@ public class MappedFileQueue {
         return size;
     }
 
+    /**
+     * @return 是否正在刷盘或commit
+     */
+    public boolean isDiskWriting() {
+        return this.diskWritingCount.get() > 0;
+    }
+
     public boolean retryDeleteFirstFile(final long intervalForcibly) {
         MappedFile mappedFile = this.getFirstMappedFile();
         if (mappedFile != null) {
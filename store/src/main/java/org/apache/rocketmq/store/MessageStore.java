@@ -20,6 +20,7 @@ import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.common.protocol.heartbeat.SubscriptionData;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -37,6 +38,14 @@ public interface MessageStore {
 
     PutMessageResult putMessage(final MessageExtBrokerInner msg);
 
+    /**
+     * 批量存储消息, 只获取一次CommitLog追加锁
+     *
+     * @param msgs 消息
+     * @return 与消息一一对应的存储结果
+     */
+    List<PutMessageResult> putMessages(final List<MessageExtBrokerInner> msgs);
+
     GetMessageResult getMessage(final String group, final String topic, final int queueId,
         final long offset, final int maxMsgNums, final SubscriptionData subscriptionData);
 
@@ -50,6 +50,18 @@ public class StoreStatsService extends ServiceThread {
     private final AtomicLong getMessageTimesTotalFound = new AtomicLong(0);
     private final AtomicLong getMessageTransferedMsgCount = new AtomicLong(0);
     private final AtomicLong getMessageTimesTotalMiss = new AtomicLong(0);
+    private final AtomicLong commitLogPrefetchHitTimes = new AtomicLong(0);
+    private final AtomicLong commitLogPrefetchMissTimes = new AtomicLong(0);
+    private final AtomicLong commitLogPrefetchBytes = new AtomicLong(0);
+    /**
+     * 各阶段耗时分布, 单位微秒
+     */
+    private final LatencyHistogram putMessageLockWaitLatency = new LatencyHistogram();
+    private final LatencyHistogram putMessageLockHoldLatency = new LatencyHistogram();
+    private final LatencyHistogram commitLogFlushLatency = new LatencyHistogram();
+    private final LatencyHistogram commitLogCommitLatency = new LatencyHistogram();
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    private final LatencyHistogram getMessageLatency = new LatencyHistogram();
     private final LinkedList<CallSnapshot> putTimesList = new LinkedList<CallSnapshot>();
 
     private final LinkedList<CallSnapshot> getTimesFoundList = new LinkedList<CallSnapshot>();
@@ -187,6 +199,13 @@ public class StoreStatsService extends ServiceThread {
         sb.append("\tgetMissTps: " + this.getGetMissTps() + "\r\n");
         sb.append("\tgetTotalTps: " + this.getGetTotalTps() + "\r\n");
         sb.append("\tgetTransferedTps: " + this.getGetTransferedTps() + "\r\n");
+        sb.append("\tcommitLogPrefetchHitRatio: " + this.getCommitLogPrefetchHitRatio() + "\r\n");
+        sb.append("\tputMessageLockWaitLatency: " + this.putMessageLockWaitLatency.getLastInterval().toStringInfo() + "\r\n");
+        sb.append("\tputMessageLockHoldLatency: " + this.putMessageLockHoldLatency.getLastInterval().toStringInfo() + "\r\n");
+        sb.append("\tcommitLogFlushLatency: " + this.commitLogFlushLatency.getLastInterval().toStringInfo() + "\r\n");
+        sb.append("\tcommitLogCommitLatency: " + this.commitLogCommitLatency.getLastInterval().toStringInfo() + "\r\n");
+        sb.append("\tdispatchLatency: " + this.dispatchLatency.getLastInterval().toStringInfo() + "\r\n");
+        sb.append("\tgetMessageLatency: " + this.getMessageLatency.getLastInterval().toStringInfo() + "\r\n");
         return sb.toString();
     }
 
@@ -439,6 +458,16 @@ public class StoreStatsService extends ServiceThread {
         result.put("getMissTps", String.valueOf(this.getGetMissTps()));
         result.put("getTotalTps", String.valueOf(this.getGetTotalTps()));
         result.put("getTransferedTps", String.valueOf(this.getGetTransferedTps()));
+        result.put("commitLogPrefetchHitTimes", String.valueOf(this.commitLogPrefetchHitTimes.get()));
+        result.put("commitLogPrefetchMissTimes", String.valueOf(this.commitLogPrefetchMissTimes.get()));
+        result.put("commitLogPrefetchHitRatio", this.getCommitLogPrefetchHitRatio());
+        result.put("commitLogPrefetchBytes", String.valueOf(this.commitLogPrefetchBytes.get()));
+        result.put("putMessageLockWaitLatency", this.putMessageLockWaitLatency.getLastInterval().toStringInfo());
+        result.put("putMessageLockHoldLatency", this.putMessageLockHoldLatency.getLastInterval().toStringInfo());
+        result.put("commitLogFlushLatency", this.commitLogFlushLatency.getLastInterval().toStringInfo());
+        result.put("commitLogCommitLatency", this.commitLogCommitLatency.getLastInterval().toStringInfo());
+        result.put("dispatchLatency", this.dispatchLatency.getLastInterval().toStringInfo());
+        result.put("getMessageLatency", this.getMessageLatency.getLastInterval().toStringInfo());
 
         return result;
     }
@@ -497,6 +526,18 @@ public class StoreStatsService extends ServiceThread {
         }
     }
 
+    /**
+     * 每个打印周期轮转一次, 对外展示的是最近一个周期的耗时分布, 而非进程启动以来的累计值
+     */
+    void rotateLatency() {
+        this.putMessageLockWaitLatency.rotate();
+        this.putMessageLockHoldLatency.rotate();
+        this.commitLogFlushLatency.rotate();
+        this.commitLogCommitLatency.rotate();
+        this.dispatchLatency.rotate();
+        this.getMessageLatency.rotate();
+    }
+
     private void printTps() {
         if (System.currentTimeMillis() > (this.lastPrintTimestamp + printTPSInterval * 1000)) {
             this.lastPrintTimestamp = System.currentTimeMillis();
@@ -508,6 +549,16 @@ public class StoreStatsService extends ServiceThread {
                 this.getGetTransferedTps(printTPSInterval)
             );
 
+            this.rotateLatency();
+            log.info("[STORELATENCY] lock_wait {} lock_hold {} flush {} commit {} dispatch {} get {}",
+                this.putMessageLockWaitLatency.getLastInterval().toStringInfo(),
+                this.putMessageLockHoldLatency.getLastInterval().toStringInfo(),
+                this.commitLogFlushLatency.getLastInterval().toStringInfo(),
+                this.commitLogCommitLatency.getLastInterval().toStringInfo(),
+                this.dispatchLatency.getLastInterval().toStringInfo(),
+                this.getMessageLatency.getLastInterval().toStringInfo()
+            );
+
             final AtomicLong[] times = this.initPutMessageDistributeTime();
             if (null == times)
                 return;
@@ -533,6 +584,30 @@ public class StoreStatsService extends ServiceThread {
         return getMessageTimesTotalMiss;
     }
 
+    public AtomicLong getCommitLogPrefetchHitTimes() {
+        return commitLogPrefetchHitTimes;
+    }
+
+    public AtomicLong getCommitLogPrefetchMissTimes() {
+        return commitLogPrefetchMissTimes;
+    }
+
+    public AtomicLong getCommitLogPrefetchBytes() {
+        return commitLogPrefetchBytes;
+    }
+
+    /**
+     * 从磁盘拉取消息时命中预读的比例, 未命中的拉取意味着同步缺页
+     */
+    public String getCommitLogPrefetchHitRatio() {
+        long hit = this.commitLogPrefetchHitTimes.get();
+        long total = hit + this.commitLogPrefetchMissTimes.get();
+        if (0 == total) {
+            return "0.00";
+        }
+        return String.format("%.2f", hit * 100.0 / total);
+    }
+
     public AtomicLong getGetMessageTransferedMsgCount() {
         return getMessageTransferedMsgCount;
     }
@@ -567,6 +642,30 @@ public class StoreStatsService extends ServiceThread {
         return putMessageTopicSizeTotal;
     }
 
+    public LatencyHistogram getPutMessageLockWaitLatency() {
+        return putMessageLockWaitLatency;
+    }
+
+    public LatencyHistogram getPutMessageLockHoldLatency() {
+        return putMessageLockHoldLatency;
+    }
+
+    public LatencyHistogram getCommitLogFlushLatency() {
+        return commitLogFlushLatency;
+    }
+
+    public LatencyHistogram getCommitLogCommitLatency() {
+        return commitLogCommitLatency;
+    }
+
+    public LatencyHistogram getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    public LatencyHistogram getGetMessageLatency() {
+        return getMessageLatency;
+    }
+
     static class CallSnapshot {
         public final long timestamp;
         public final long callTimesTotal;
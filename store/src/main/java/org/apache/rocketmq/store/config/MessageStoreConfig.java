@@ -174,6 +174,31 @@ public class MessageStoreConfig {
     private int transientStorePoolSize = 5;
     private boolean fastFailIfNoBufferInStorePool = false;
 
+    /**
+     * 消费者顺序拉取堆积消息时, 是否在后台预读后续CommitLog数据
+     */
+    private boolean commitLogPrefetchEnable = false;
+    /**
+     * 每个队列单次预读CommitLog的字节数
+     */
+    private int commitLogPrefetchSize = 1024 * 1024 * 4;
+    /**
+     * 删除过期CommitLog文件时, 是否先分段截断再删除, 并限制删除的I/O速率
+     */
+    private boolean commitLogDeleteThrottleEnable = false;
+    /**
+     * 每次截断的字节数
+     */
+    private int commitLogDeleteChunkSize = 1024 * 1024 * 64;
+    /**
+     * 每秒最多回收的字节数
+     */
+    private long commitLogDeleteBytesPerSecond = 1024L * 1024 * 256;
+    /**
+     * CommitLog正在刷盘时, 每次截断前最多等待的时间
+     */
+    private int commitLogDeleteMaxWaitFlushMills = 1000;
+
     public boolean isDebugLockEnable() {
         return debugLockEnable;
     }
@@ -671,4 +696,52 @@ public class MessageStoreConfig {
     public void setCommitCommitLogThoroughInterval(final int commitCommitLogThoroughInterval) {
         this.commitCommitLogThoroughInterval = commitCommitLogThoroughInterval;
     }
+
+    public boolean isCommitLogPrefetchEnable() {
+        return commitLogPrefetchEnable;
+    }
+
+    public void setCommitLogPrefetchEnable(final boolean commitLogPrefetchEnable) {
+        this.commitLogPrefetchEnable = commitLogPrefetchEnable;
+    }
+
+    public int getCommitLogPrefetchSize() {
+        return commitLogPrefetchSize;
+    }
+
+    public void setCommitLogPrefetchSize(final int commitLogPrefetchSize) {
+        this.commitLogPrefetchSize = commitLogPrefetchSize;
+    }
+
+    public boolean isCommitLogDeleteThrottleEnable() {
+        return commitLogDeleteThrottleEnable;
+    }
+
+    public void setCommitLogDeleteThrottleEnable(final boolean commitLogDeleteThrottleEnable) {
+        this.commitLogDeleteThrottleEnable = commitLogDeleteThrottleEnable;
+    }
+
+    public int getCommitLogDeleteChunkSize() {
+        return commitLogDeleteChunkSize;
+    }
+
+    public void setCommitLogDeleteChunkSize(final int commitLogDeleteChunkSize) {
+        this.commitLogDeleteChunkSize = commitLogDeleteChunkSize;
+    }
+
+    public long getCommitLogDeleteBytesPerSecond() {
+        return commitLogDeleteBytesPerSecond;
+    }
+
+    public void setCommitLogDeleteBytesPerSecond(final long commitLogDeleteBytesPerSecond) {
+        this.commitLogDeleteBytesPerSecond = commitLogDeleteBytesPerSecond;
+    }
+
+    public int getCommitLogDeleteMaxWaitFlushMills() {
+        return commitLogDeleteMaxWaitFlushMills;
+    }
+
+    public void setCommitLogDeleteMaxWaitFlushMills(final int commitLogDeleteMaxWaitFlushMills) {
+        this.commitLogDeleteMaxWaitFlushMills = commitLogDeleteMaxWaitFlushMills;
+    }
 }
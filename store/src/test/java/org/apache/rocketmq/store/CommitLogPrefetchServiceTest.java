@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class CommitLogPrefetchServiceTest {
+    private static final String TOPIC = "FooBar";
+    private static final int TOTAL_MSGS = 100;
+
+    private DefaultMessageStore messageStore;
+
+    @Before
+    public void init() throws Exception {
+        MessageStoreConfig messageStoreConfig = new MessageStoreConfig();
+        messageStoreConfig.setMapedFileSizeCommitLog(1024 * 8);
+        messageStoreConfig.setMapedFileSizeConsumeQueue(1024 * 4);
+        messageStoreConfig.setMaxHashSlotNum(100);
+        messageStoreConfig.setMaxIndexNum(100 * 10);
+        // 所有消息都视为已不在内存中
+        messageStoreConfig.setAccessMessageInMemoryMaxRatio(0);
+        messageStore = new DefaultMessageStore(messageStoreConfig, null, new MessageArrivingListener() {
+            @Override
+            public void arriving(String topic, int queueId, long logicOffset, long tagsCode) {
+            }
+        }, new BrokerConfig());
+        assertTrue(messageStore.load());
+        messageStore.start();
+
+        for (int i = 0; i < TOTAL_MSGS; i++) {
+            MessageExtBrokerInner msg = new MessageExtBrokerInner();
+            msg.setTopic(TOPIC);
+            msg.setTags("TAG1");
+            msg.setBody("Once, there was a chance for me!".getBytes());
+            msg.setQueueId(0);
+            msg.setBornTimestamp(System.currentTimeMillis());
+            msg.setStoreHost(new InetSocketAddress(InetAddress.getLocalHost(), 8123));
+            msg.setBornHost(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+            messageStore.putMessage(msg);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (messageStore.getMaxOffsetInQuque(TOPIC, 0) < TOTAL_MSGS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(messageStore.getMaxOffsetInQuque(TOPIC, 0)).isEqualTo(TOTAL_MSGS);
+    }
+
+    @After
+    public void destroy() {
+        messageStore.shutdown();
+        messageStore.destroy();
+    }
+
+    @Test
+    public void testPrefetchAdvancesCursor() {
+        CommitLogPrefetchService prefetchService = new CommitLogPrefetchService(messageStore);
+
+        // 首次拉取不是顺序拉取, 不发起预读
+        prefetchService.onPullMessage(TOPIC, 0, 0, 10, true);
+        assertThat(prefetchService.pollRequest()).isNull();
+
+        prefetchService.onPullMessage(TOPIC, 0, 10, 20, true);
+        CommitLogPrefetchService.PullCursor cursor = prefetchService.pollRequest();
+        assertThat(cursor).isSameAs(prefetchService.getCursor(TOPIC, 0));
+        prefetchService.prefetch(cursor);
+        assertThat(cursor.getNextOffset()).isEqualTo(20);
+        assertThat(cursor.getPrefetchedOffset()).isEqualTo(TOTAL_MSGS);
+
+        // 已预读区间内的顺序拉取计为命中, 且剩余条目充足时不再发起预读
+        long hitTimes = messageStore.getStoreStatsService().getCommitLogPrefetchHitTimes().get();
+        prefetchService.onPullMessage(TOPIC, 0, 20, 30, true);
+        assertThat(messageStore.getStoreStatsService().getCommitLogPrefetchHitTimes().get()).isEqualTo(hitTimes + 1);
+        assertThat(prefetchService.pollRequest()).isNull();
+
+        // 随机拉取使预读区间作废
+        prefetchService.onPullMessage(TOPIC, 0, 5, 15, true);
+        assertThat(cursor.getPrefetchedOffset()).isEqualTo(15);
+    }
+
+    @Test
+    public void testExpireCursor() {
+        CommitLogPrefetchService prefetchService = new CommitLogPrefetchService(messageStore);
+        prefetchService.onPullMessage(TOPIC, 0, 0, 10, false);
+        assertThat(prefetchService.getCursor(TOPIC, 0)).isNotNull();
+
+        prefetchService.cleanExpiredCursor(System.currentTimeMillis() + CommitLogPrefetchService.CURSOR_EXPIRED_MILLS + 1);
+        assertThat(prefetchService.getCursor(TOPIC, 0)).isNull();
+    }
+}
@@ -20,6 +20,8 @@ package org.apache.rocketmq.store;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.rocketmq.common.BrokerConfig;
 import org.apache.rocketmq.store.config.FlushDiskType;
@@ -122,6 +124,40 @@ public class DefaultMessageStoreTest {
         }
     }
 
+    @Test
+    public void testPutMessages() throws Exception {
+        QUEUE_TOTAL = 1;
+        MessageBody = StoreMessage.getBytes();
+        MessageStoreConfig messageStoreConfig = new MessageStoreConfig();
+        // 文件较小, 批量写入时会跨越文件末尾
+        messageStoreConfig.setMapedFileSizeCommitLog(1024 * 8);
+        MessageStore master = new DefaultMessageStore(messageStoreConfig, null, new MyMessageArrivingListener(), new BrokerConfig());
+        boolean load = master.load();
+        assertTrue(load);
+
+        master.start();
+        try {
+            long lastOffset = -1;
+            for (int batch = 0; batch < 10; batch++) {
+                List<MessageExtBrokerInner> msgs = new ArrayList<MessageExtBrokerInner>();
+                for (int i = 0; i < 10; i++) {
+                    msgs.add(buildMessage());
+                }
+
+                List<PutMessageResult> results = master.putMessages(msgs);
+                assertThat(results).hasSize(msgs.size());
+                for (PutMessageResult result : results) {
+                    assertThat(result.getPutMessageStatus()).isEqualTo(PutMessageStatus.PUT_OK);
+                    assertThat(result.getAppendMessageResult().getWroteOffset()).isGreaterThan(lastOffset);
+                    lastOffset = result.getAppendMessageResult().getWroteOffset();
+                }
+            }
+        } finally {
+            master.shutdown();
+            master.destroy();
+        }
+    }
+
     private class MyMessageArrivingListener implements MessageArrivingListener {
         @Override
         public void arriving(String topic, int queueId, long logicOffset, long tagsCode) {
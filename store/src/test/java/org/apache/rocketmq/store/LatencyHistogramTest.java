@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.rocketmq.store;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testIndexRoundTrip() {
+        long[] values = new long[] {0, 1, 31, 32, 33, 63, 64, 100, 1000, 123456, 1L << 36};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.highestValueOf(index)).isGreaterThanOrEqualTo(value);
+            // 相对误差不超过 1/32
+            assertThat(LatencyHistogram.highestValueOf(index) - value).isLessThanOrEqualTo(value / 32);
+        }
+        assertThat(LatencyHistogram.indexOf(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.indexOf(1L << 40));
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        histogram.record(1000000);
+
+        assertThat(histogram.getTotalCount()).isEqualTo(1001);
+        assertThat(histogram.getMaxValue()).isEqualTo(1000000);
+        assertThat(histogram.getValueAtPercentile(50)).isBetween(500L, 500L + 500 / 32);
+        assertThat(histogram.getValueAtPercentile(99)).isBetween(990L, 990L + 990 / 32);
+        assertThat(histogram.getValueAtPercentile(100)).isEqualTo(1000000);
+        assertThat(histogram.toStringInfo()).startsWith("count:1001 p50:");
+    }
+
+    @Test
+    public void testRotate() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(10000);
+        }
+        assertThat(histogram.getLastInterval().getTotalCount()).isEqualTo(0);
+
+        histogram.rotate();
+        assertThat(histogram.getTotalCount()).isEqualTo(0);
+        assertThat(histogram.getMaxValue()).isEqualTo(0);
+        assertThat(histogram.getLastInterval().getTotalCount()).isEqualTo(100);
+        assertThat(histogram.getLastInterval().getValueAtPercentile(50)).isBetween(10000L, 10000L + 10000 / 32);
+
+        // 上一周期的高延迟不应影响下一周期的分位数
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(10);
+        }
+        histogram.rotate();
+        assertThat(histogram.getLastInterval().getTotalCount()).isEqualTo(10);
+        assertThat(histogram.getLastInterval().getValueAtPercentile(99)).isEqualTo(10);
+        assertThat(histogram.getLastInterval().getMaxValue()).isEqualTo(10);
+
+        histogram.rotate();
+        assertThat(histogram.getLastInterval().toStringInfo()).isEqualTo("count:0 p50:0us p90:0us p99:0us p999:0us max:0us");
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getValueAtPercentile(99.9)).isEqualTo(0);
+        assertThat(histogram.toStringInfo()).isEqualTo("count:0 p50:0us p90:0us p99:0us p999:0us max:0us");
+    }
+}
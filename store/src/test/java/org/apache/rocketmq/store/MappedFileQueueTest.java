@@ -18,7 +18,9 @@
 package org.apache.rocketmq.store;
 
 import java.nio.ByteBuffer;
+import java.io.File;
 import java.util.Arrays;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -176,4 +178,40 @@ public class MappedFileQueueTest {
         mappedFileQueue.shutdown(1000);
         mappedFileQueue.destroy();
     }
+
+    @Test
+    public void testDeleteExpiredFileByTimeWithThrottle() throws Exception {
+        MappedFileQueue mappedFileQueue =
+            new MappedFileQueue("target/unit_test_store/f", 4096, null);
+
+        for (int i = 0; i < 4; i++) {
+            MappedFile mappedFile = mappedFileQueue.getLastMappedFile(0);
+            assertThat(mappedFile).isNotNull();
+            assertThat(mappedFile.appendMessage(new byte[4096])).isTrue();
+        }
+
+        MessageStoreConfig messageStoreConfig = new MessageStoreConfig();
+        messageStoreConfig.setCommitLogDeleteChunkSize(1024);
+        messageStoreConfig.setCommitLogDeleteBytesPerSecond(1024 * 100);
+        FileDeleteThrottle throttle = new FileDeleteThrottle(messageStoreConfig, mappedFileQueue);
+        throttle.start();
+
+        MappedFile first = mappedFileQueue.getFirstMappedFile();
+        long beginTime = System.currentTimeMillis();
+        assertThat(mappedFileQueue.deleteExpiredFileByTime(0, 0, 1000, true, throttle)).isEqualTo(3);
+        // 文件立即从目录中移除, 截断在限速线程中进行
+        assertThat(new File(first.getFileName()).exists()).isFalse();
+        assertThat(mappedFileQueue.getMappedFiles()).hasSize(1);
+
+        while (throttle.getPendingFiles() > 0 && System.currentTimeMillis() - beginTime < 5000) {
+            Thread.sleep(10);
+        }
+        assertThat(throttle.getPendingFiles()).isEqualTo(0);
+        // 3个文件共12K, 按100K/s限速, 每段1K
+        assertThat(System.currentTimeMillis() - beginTime).isGreaterThanOrEqualTo(100);
+
+        throttle.shutdown();
+        mappedFileQueue.shutdown(1000);
+        mappedFileQueue.destroy();
+    }
 }